@@ -0,0 +1,15 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.io.IOException;
+
+import com.walmart.productgenome.matching.models.data.Table;
+
+/*
+ * A blocking method bound to its parameters and blocking attributes, so that
+ * several of them can feed one candset (see BlockingDao.blockUnion).
+ * Implementations for the existing blockers are in Blockers.
+ */
+public interface Blocker {
+	void block(Table table1, Table table2, CandsetBuilder candsetBuilder)
+			throws IOException;
+}
@@ -0,0 +1,152 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Table;
+
+/*
+ * Blocker implementations for the blocking methods of BlockingDao.
+ */
+public class Blockers {
+
+	// pairs that agree on all the attribute pairs, as BlockingDao.block
+	public static Blocker equality(String[] blockingAttr1Names,
+			String[] blockingAttr2Names) {
+		KeyFunction[] keyFunctions = new KeyFunction[blockingAttr1Names.length];
+		Arrays.fill(keyFunctions, KeyFunctions.exact());
+		return equality(blockingAttr1Names, blockingAttr2Names, keyFunctions);
+	}
+
+	public static Blocker equality(String attr1Name, String attr2Name) {
+		return equality(attr1Name, attr2Name, KeyFunctions.exact());
+	}
+
+	// pairs whose keys agree on all the attribute pairs
+	public static Blocker equality(final String[] blockingAttr1Names,
+			final String[] blockingAttr2Names, final KeyFunction[] keyFunctions) {
+		return new Blocker() {
+			public void block(Table table1, Table table2, CandsetBuilder candsetBuilder)
+					throws IOException {
+				if (blockingAttr1Names.length == 1 && blockingAttr2Names.length == 1
+						&& keyFunctions.length == 1) {
+					BlockingDao.block(table1, table2, blockingAttr1Names[0],
+							blockingAttr2Names[0], keyFunctions[0], candsetBuilder);
+				}
+				else {
+					BlockingDao.block(table1, table2, blockingAttr1Names,
+							blockingAttr2Names, keyFunctions, candsetBuilder);
+				}
+			}
+		};
+	}
+
+	public static Blocker equality(String attr1Name, String attr2Name,
+			KeyFunction keyFunction) {
+		return equality(new String[] {attr1Name}, new String[] {attr2Name},
+				new KeyFunction[] {keyFunction});
+	}
+
+	public static Blocker jaccard(String attr1Name, String attr2Name, double threshold) {
+		return tokenOverlap(attr1Name, attr2Name,
+				new OverlapBlocker(OverlapBlocker.Measure.JACCARD, threshold));
+	}
+
+	public static Blocker overlap(String attr1Name, String attr2Name, int minOverlap) {
+		return tokenOverlap(attr1Name, attr2Name,
+				new OverlapBlocker(OverlapBlocker.Measure.OVERLAP, minOverlap));
+	}
+
+	// the k best table1 tuples for every table2 tuple
+	public static Blocker topK(final String attr1Name, final String attr2Name,
+			final TopKBlocker blocker) {
+		return new Blocker() {
+			public void block(Table table1, Table table2, CandsetBuilder candsetBuilder) {
+				Attribute attribute1 = table1.getAttributeByName(attr1Name);
+				Attribute attribute2 = table2.getAttributeByName(attr2Name);
+				checkTypes(attribute1, attribute2);
+				blocker.block(table1, table2, attribute1, attribute2, candsetBuilder);
+			}
+		};
+	}
+
+	// pairs whose keys are within the edit distance of the blocker
+	public static Blocker editDistance(final String attr1Name, final String attr2Name,
+			final EditDistanceBlocker blocker) {
+		return new Blocker() {
+			public void block(Table table1, Table table2, CandsetBuilder candsetBuilder) {
+				Attribute attribute1 = table1.getAttributeByName(attr1Name);
+				Attribute attribute2 = table2.getAttributeByName(attr2Name);
+				if (blocker.getKeyFunction() == KeyFunctions.exact()) {
+					checkTypes(attribute1, attribute2);
+				}
+				blocker.block(table1, table2, attribute1, attribute2, candsetBuilder);
+			}
+		};
+	}
+
+	// the MetaBlockingReport is dropped, BlockingDao.blockByMetaBlocking returns it
+	public static Blocker metaBlocking(final MetaBlocker blocker) {
+		return new Blocker() {
+			public void block(Table table1, Table table2, CandsetBuilder candsetBuilder) {
+				blocker.block(table1, table2, null, candsetBuilder);
+			}
+		};
+	}
+
+	private static Blocker tokenOverlap(final String attr1Name, final String attr2Name,
+			final OverlapBlocker blocker) {
+		return new Blocker() {
+			public void block(Table table1, Table table2, CandsetBuilder candsetBuilder) {
+				Attribute attribute1 = table1.getAttributeByName(attr1Name);
+				Attribute attribute2 = table2.getAttributeByName(attr2Name);
+				checkTypes(attribute1, attribute2);
+				blocker.block(table1, table2, attribute1, attribute2, candsetBuilder);
+			}
+		};
+	}
+
+	public static Blocker sortedNeighborhood(String[] blockingKeyExpressions,
+			int windowSize, int maxRecordsInMemory) {
+		List<BlockingKey> keys = new ArrayList<BlockingKey>();
+		for (String expression : blockingKeyExpressions) {
+			keys.add(BlockingKey.parse(expression));
+		}
+		final SortedNeighborhoodBlocker blocker = new SortedNeighborhoodBlocker(keys,
+				windowSize, maxRecordsInMemory);
+		return new Blocker() {
+			public void block(Table table1, Table table2, CandsetBuilder candsetBuilder)
+					throws IOException {
+				blocker.block(table1, table2, candsetBuilder);
+			}
+		};
+	}
+
+	// the signatures are shared with BlockingDao.blockByMinHash through MinHashSignatureDao
+	public static Blocker minHash(final String attr1Name, final String attr2Name,
+			final MinHashBlocker blocker) {
+		return new Blocker() {
+			public void block(Table table1, Table table2, CandsetBuilder candsetBuilder)
+					throws IOException {
+				Attribute attribute1 = table1.getAttributeByName(attr1Name);
+				Attribute attribute2 = table2.getAttributeByName(attr2Name);
+				checkTypes(attribute1, attribute2);
+				int[][] signatures1 = MinHashSignatureDao.getSignatures(table1.getProjectName(),
+						table1, attribute1, blocker.getNumHashes(), blocker.getSeed());
+				int[][] signatures2 = MinHashSignatureDao.getSignatures(table2.getProjectName(),
+						table2, attribute2, blocker.getNumHashes(), blocker.getSeed());
+				blocker.block(table1, table2, signatures1, signatures2, candsetBuilder);
+			}
+		};
+	}
+
+	private static void checkTypes(Attribute attribute1, Attribute attribute2) {
+		if (attribute1.getType() != attribute2.getType()) {
+			throw new InputMismatchException("Blocking attributes must be of the same type");
+		}
+	}
+}
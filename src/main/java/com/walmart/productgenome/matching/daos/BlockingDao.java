@@ -2,16 +2,24 @@ package com.walmart.productgenome.matching.daos;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.walmart.productgenome.matching.models.Constants;
+import com.walmart.productgenome.matching.models.DefaultType;
 import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Dictionary;
+import com.walmart.productgenome.matching.models.data.Schema;
 import com.walmart.productgenome.matching.models.data.Table;
 import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.service.explorer.BlockingPlan;
+import com.walmart.productgenome.matching.service.explorer.BlockingPlanEstimator;
+import com.walmart.productgenome.matching.service.explorer.BlockingScheme;
+import com.walmart.productgenome.matching.service.explorer.BlockingSchemeLearner;
 import com.walmart.productgenome.matching.utils.JSONUtils;
 
 public class BlockingDao {
@@ -19,270 +27,567 @@ public class BlockingDao {
 	public static final Attribute PAIR_ID_ATTRIBUTE = new Attribute("pairId",
 			Attribute.Type.INTEGER);
 
+	// number of sort keys held in memory before sorted runs are spilled to disk
+	public static final int DEFAULT_SORT_MEMORY_RECORDS = 1000000;
+
 	public static Table block(String projectName,String table1Name, String table2Name,
 			String attr1Name, String attr2Name, String candsetName,
 			String[] table1AttributeNames, String[] table2AttributeNames)
 					throws IOException {
 		Table table1 = TableDao.open(projectName, table1Name);
 		Table table2 = TableDao.open(projectName, table2Name);
+		CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+				candsetName, table1AttributeNames, table2AttributeNames);
+		block(table1, table2, attr1Name, attr2Name, candsetBuilder);
+		Table candset = candsetBuilder.getCandset();
+		//System.out.println(JSONUtils.getTableJSON(candset));
+		return candset;
+	}
+
+	/*
+	 * Streams the candset straight to its table file instead of building it in
+	 * memory, and registers it with the project. Returns the number of pairs.
+	 */
+	public static int blockToFile(String projectName, String table1Name,
+			String table2Name, String attr1Name, String attr2Name, String candsetName,
+			String[] table1AttributeNames, String[] table2AttributeNames,
+			Set<DefaultType> defaultTypes) throws IOException {
+		Table table1 = TableDao.open(projectName, table1Name);
+		Table table2 = TableDao.open(projectName, table2Name);
+		CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+				candsetName, table1AttributeNames, table2AttributeNames,
+				getTableFilePath(projectName, candsetName));
+		try {
+			block(table1, table2, attr1Name, attr2Name, candsetBuilder);
+		}
+		finally {
+			candsetBuilder.close();
+		}
+		TableDao.register(projectName, candsetName, defaultTypes);
+		return candsetBuilder.getNumPairs();
+	}
+
+	private static String getTableFilePath(String projectName, String tableName) {
+		return Constants.ROOT_DIR + projectName + "/" + tableName
+				+ Constants.TABLE_EXTENSION;
+	}
 
+	static void block(Table table1, Table table2, String attr1Name,
+			String attr2Name, CandsetBuilder candsetBuilder) throws IOException {
+		block(table1, table2, attr1Name, attr2Name, KeyFunctions.exact(), candsetBuilder);
+	}
+
+	static void block(Table table1, Table table2, String attr1Name,
+			String attr2Name, final KeyFunction keyFunction,
+			CandsetBuilder candsetBuilder) throws IOException {
 		Attribute attribute1 = table1.getAttributeByName(attr1Name);
 		Attribute attribute2 = table2.getAttributeByName(attr2Name);
 
-		if (attribute1.getType() != attribute2.getType()) {
+		// raw values only match within a type, derived keys may match across types
+		if (keyFunction == KeyFunctions.exact() && attribute1.getType() != attribute2.getType()) {
 			throw new InputMismatchException("Blocking attributes must be of the same type");
 		}
 
-		Attribute idAttribute1 = table1.getIdAttribute();
-
-		// index all the values for attribute1 from table1
-		Map<Object, List<Object>> index = new HashMap<Object, List<Object>>();
-		for (Tuple tuple : table1.getAllTuples()) {
-			Object value = tuple.getAttributeValue(attribute1);
-			Object tupleId = tuple.getAttributeValue(idAttribute1);
-			if (null != value && value instanceof String && !((String)value).isEmpty()) {
-				if (index.containsKey(value)) {
-					index.get(value).add(tupleId);
+		// index all the keys for attribute1 from table1
+		final PostingIndex index = BlockingIndexDao.getIndex(table1.getProjectName(),
+				table1, attribute1, keyFunction);
+		final List<Tuple> tuples1 = table1.getAllTuplesInOrder();
+
+		// probe the index with all the keys for attribute2 in table2
+		final IndexProbe indexProbe = new IndexProbe(table2, attribute2, keyFunction, index);
+		ParallelProber.run(table2.getAllTuplesInOrder(), new ParallelProber.Probe() {
+			public void probe(Tuple tuple, ParallelProber.PairBuffer pairs) {
+				int slot = indexProbe.getSlot(tuple);
+				if (slot == PostingIndex.NO_SLOT) {
+					return;
 				}
-				else {
-					List<Object> tupleIdList = new ArrayList<Object>();
-					tupleIdList.add(tupleId);
-					index.put(value, tupleIdList);
+				for (int position = index.getStart(slot); position < index.getEnd(slot); position++) {
+					pairs.add(tuples1.get(index.getPosting(position)), tuple);
 				}
 			}
-		}
-
-		String id1Name = table1Name + "." + idAttribute1.getName();
-		Attribute id1 = new Attribute(id1Name, idAttribute1.getType());
+		}, candsetBuilder);
+	}
 
-		Attribute idAttribute2 = table2.getIdAttribute();
-		String id2Name = table2Name + "." + idAttribute2.getName();
-		Attribute id2 = new Attribute(id2Name, idAttribute2.getType());
+	public static Table block(String projectName, String table1Name, String table2Name,
+			String[] blockingAttr1Names, String[] blockingAttr2Names, String candsetName,
+			String[] table1AttributeNames, String[] table2AttributeNames)
+					throws IOException {
+		Table table1 = TableDao.open(projectName, table1Name);
+		Table table2 = TableDao.open(projectName, table2Name);
+		CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+				candsetName, table1AttributeNames, table2AttributeNames);
+		block(table1, table2, blockingAttr1Names, blockingAttr2Names, candsetBuilder);
+		Table candset = candsetBuilder.getCandset();
+		//System.out.println(JSONUtils.getTableJSON(candset));
+		return candset;
+	}
 
-		List<Attribute> attributes = new ArrayList<Attribute>();
-		attributes.add(PAIR_ID_ATTRIBUTE);
-		attributes.add(id1);
-		attributes.add(id2);
+	// blocks on the keys keyFunction derives from the attribute values
+	public static Table block(String projectName, String table1Name, String table2Name,
+			String attr1Name, String attr2Name, KeyFunction keyFunction,
+			String candsetName, String[] table1AttributeNames,
+			String[] table2AttributeNames) throws IOException {
+		return block(projectName, table1Name, table2Name, new String[] {attr1Name},
+				new String[] {attr2Name}, new KeyFunction[] {keyFunction}, candsetName,
+				table1AttributeNames, table2AttributeNames);
+	}
 
-		// add table 1 attributes
-		if (null != table1AttributeNames) {
-			for (String attributeName: table1AttributeNames) {
-				Attribute attribute = table1.getAttributeByName(attributeName);
-				attributes.add(new Attribute(table1Name + "." + attributeName, attribute.getType()));
-			}
-		}
+	public static Table block(String projectName, String table1Name, String table2Name,
+			String[] blockingAttr1Names, String[] blockingAttr2Names,
+			KeyFunction[] keyFunctions, String candsetName,
+			String[] table1AttributeNames, String[] table2AttributeNames)
+					throws IOException {
+		Table table1 = TableDao.open(projectName, table1Name);
+		Table table2 = TableDao.open(projectName, table2Name);
+		CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+				candsetName, table1AttributeNames, table2AttributeNames);
+		Blockers.equality(blockingAttr1Names, blockingAttr2Names, keyFunctions).block(
+				table1, table2, candsetBuilder);
+		return candsetBuilder.getCandset();
+	}
 
-		// add table 2 attributes
-		if (null != table2AttributeNames) {
-			for (String attributeName : table2AttributeNames) {
-				Attribute attribute = table2.getAttributeByName(attributeName);
-				attributes.add(new Attribute(table2Name + "." + attributeName, attribute.getType()));
-			}
+	public static int blockToFile(String projectName, String table1Name,
+			String table2Name, String[] blockingAttr1Names, String[] blockingAttr2Names,
+			String candsetName, String[] table1AttributeNames,
+			String[] table2AttributeNames, Set<DefaultType> defaultTypes)
+					throws IOException {
+		Table table1 = TableDao.open(projectName, table1Name);
+		Table table2 = TableDao.open(projectName, table2Name);
+		CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+				candsetName, table1AttributeNames, table2AttributeNames,
+				getTableFilePath(projectName, candsetName));
+		try {
+			block(table1, table2, blockingAttr1Names, blockingAttr2Names, candsetBuilder);
 		}
-
-		Table candset = new Table(candsetName, PAIR_ID_ATTRIBUTE, attributes, projectName);
-
-		Map<Attribute,Object> data = new HashMap<Attribute,Object>();
-		int pairId = 1;
-		// iterate through all the values for attribute2 in table2
-		for (Tuple tuple : table2.getAllTuplesInOrder()){
-			Object value = tuple.getAttributeValue(attribute2);
-			Object tupleId = tuple.getAttributeValue(idAttribute2);
-			if (index.containsKey(value)) {
-				List<Object> id1List = index.get(value);
-				for (Object id1Val: id1List) {
-					data.put(PAIR_ID_ATTRIBUTE, pairId);
-					data.put(id1, id1Val);
-					data.put(id2, tupleId);
-
-					// put table 1 attribute values
-					int i = 3;
-					Tuple table1Tuple = table1.getTuple(id1Val);
-					if (null != table1AttributeNames) {
-						for (String attributeName : table1AttributeNames) {
-							Attribute attribute = table1.getAttributeByName(attributeName);
-							Object attributeValue = table1Tuple.getAttributeValue(attribute);
-							data.put(attributes.get(i), attributeValue);
-							i++;
-						}
-					}
-
-					// put table 2 attribute values
-					if (null != table2AttributeNames) {
-						for (String attributeName : table2AttributeNames) {
-							Attribute attribute = table2.getAttributeByName(attributeName);
-							Object attributeValue = tuple.getAttributeValue(attribute);
-							data.put(attributes.get(i), attributeValue);
-							i++;
-						}
-					}
-
-					Tuple pair = new Tuple(data);
-					candset.addTuple(pair);
-					//System.out.println("Found candidate pair: " + pairId + ", " +
-					//						id1Val + ", " + tupleId);
-					pairId++;
-					data.clear();
-				}
-			}
+		finally {
+			candsetBuilder.close();
 		}
-		//System.out.println(JSONUtils.getTableJSON(candset));
-		return candset;
+		TableDao.register(projectName, candsetName, defaultTypes);
+		return candsetBuilder.getNumPairs();
 	}
 
-	public static Table block(String projectName, String table1Name, String table2Name,
-			String[] blockingAttr1Names, String[] blockingAttr2Names, String candsetName,
-			String[] table1AttributeNames, String[] table2AttributeNames)
+	static void block(Table table1, Table table2, String[] blockingAttr1Names,
+			String[] blockingAttr2Names, CandsetBuilder candsetBuilder)
 					throws IOException {
+		KeyFunction[] keyFunctions = new KeyFunction[blockingAttr1Names.length];
+		Arrays.fill(keyFunctions, KeyFunctions.exact());
+		block(table1, table2, blockingAttr1Names, blockingAttr2Names, keyFunctions,
+				candsetBuilder);
+	}
+
+	static void block(Table table1, Table table2, String[] blockingAttr1Names,
+			String[] blockingAttr2Names, final KeyFunction[] keyFunctions,
+			CandsetBuilder candsetBuilder) throws IOException {
 		int l = blockingAttr1Names.length;
-		if (l != blockingAttr2Names.length) {
+		if (l != blockingAttr2Names.length || l != keyFunctions.length) {
 			throw new InputMismatchException("Unequal number of blocking "
 					+ "attributes for the two tables");
 		}
 
-		Table table1 = TableDao.open(projectName, table1Name);
-		Table table2 = TableDao.open(projectName, table2Name);
-
 		// blocking attributes
-		Attribute[] table1BlockingAttributes = new Attribute[l];
 		Attribute[] table2BlockingAttributes = new Attribute[l];
 
-		// indexes
-		Map<String, Map<Object, Set<Object>>> table1Indexes = new HashMap<String, Map<Object, Set<Object>>>();
+		// indexes over the table1 tuple ordinals
+		Map<String, PostingIndex> table1Indexes = new HashMap<String, PostingIndex>();
 
-		Attribute idAttribute1 = table1.getIdAttribute();
 		for (int i = 0; i < l; i++) {
 			String table1BlockingAttributeName = blockingAttr1Names[i];
 			Attribute attribute1 = table1.getAttributeByName(table1BlockingAttributeName);
 			String table2BlockingAttributeName = blockingAttr2Names[i];
 			Attribute attribute2 = table2.getAttributeByName(table2BlockingAttributeName);
-			if (attribute1.getType() != attribute2.getType()) {
+			if (keyFunctions[i] == KeyFunctions.exact()
+					&& attribute1.getType() != attribute2.getType()) {
 				throw new InputMismatchException("Blocking attributes must be of "
 						+ "the same type. Violating attributes: "
 						+ table1BlockingAttributeName + " and "
 						+ table2BlockingAttributeName);
 			}
-			table1BlockingAttributes[i] = attribute1;
 			table2BlockingAttributes[i] = attribute2;
 
-			if (table1Indexes.containsKey(table1BlockingAttributeName)) {
+			String indexName = getIndexName(table1BlockingAttributeName, keyFunctions[i]);
+			if (table1Indexes.containsKey(indexName)) {
 				continue;
 			}
 
-			// index all the values for attribute1 from table1
-			Map<Object, Set<Object>> index = new HashMap<Object, Set<Object>>();
-			for (Tuple tuple : table1.getAllTuples()) {
-				Object value = tuple.getAttributeValue(attribute1);
-				Object tupleId = tuple.getAttributeValue(idAttribute1);
-				if (null != value && value instanceof String && !((String)value).isEmpty()) {
-					if (index.containsKey(value)) {
-						index.get(value).add(tupleId);
-					}
-					else {
-						Set<Object> tupleIdSet = new HashSet<Object>();
-						tupleIdSet.add(tupleId);
-						index.put(value, tupleIdSet);
+			// index all the keys for attribute1 from table1
+			table1Indexes.put(indexName, BlockingIndexDao.getIndex(
+					table1.getProjectName(), table1, attribute1, keyFunctions[i]));
+		}
+
+		// resolve the index probe of every blocking attribute once
+		final List<Tuple> tuples1 = table1.getAllTuplesInOrder();
+		final int numBlockingAttributes = l;
+		final IndexProbe[] indexProbes = new IndexProbe[l];
+		final PostingIndex[] indexes = new PostingIndex[l];
+		for (int i = 0; i < l; i++) {
+			indexes[i] = table1Indexes.get(getIndexName(blockingAttr1Names[i], keyFunctions[i]));
+			indexProbes[i] = new IndexProbe(table2, table2BlockingAttributes[i], keyFunctions[i],
+					indexes[i]);
+		}
+		ParallelProber.run(table2.getAllTuplesInOrder(), new ParallelProber.Probe() {
+			public void probe(Tuple tuple, ParallelProber.PairBuffer pairs) {
+				int[] slots = new int[numBlockingAttributes];
+				for (int i = 0; i < numBlockingAttributes; i++) {
+					slots[i] = indexProbes[i].getSlot(tuple);
+					if (slots[i] == PostingIndex.NO_SLOT) {
+						return;
 					}
 				}
+				for (int ordinal : PostingIndex.intersect(indexes, slots)) {
+					pairs.add(tuples1.get(ordinal), tuple);
+				}
+			}
+		}, candsetBuilder);
+	}
+
+	/*
+	 * Looks the key of a table2 tuple up in a table1 index. The tuples are read
+	 * by slot, and the posting list slots of a dictionary-encoded attribute are
+	 * looked up once per code before probing, so probing a code is an array
+	 * access. The postings themselves stay in the index. Shared by the probing
+	 * threads, it is only read while probing.
+	 */
+	private static class IndexProbe {
+		private final Schema schema;
+		private final int slot;
+		private final KeyFunction keyFunction;
+		private final PostingIndex index;
+		private final Dictionary dictionary;
+		private final int[] codeSlots;
+
+		IndexProbe(Table table, Attribute attribute, KeyFunction keyFunction,
+				PostingIndex index) {
+			this.schema = table.getSchema();
+			this.slot = schema.getSlot(attribute);
+			this.keyFunction = keyFunction;
+			this.index = index;
+			this.dictionary = table.getDictionary(attribute);
+			if (null == dictionary) {
+				codeSlots = null;
+				return;
+			}
+			codeSlots = new int[dictionary.size()];
+			for (int code = 0; code < codeSlots.length; code++) {
+				codeSlots[code] = getSlot(dictionary.getValue(code));
 			}
-			System.out.println("Created index of size " + index.size() + " for attribute " + table1BlockingAttributeName);
-			table1Indexes.put(table1BlockingAttributeName, index);
 		}
 
-		String id1Name = table1Name + "." + idAttribute1.getName();
-		Attribute id1 = new Attribute(id1Name, idAttribute1.getType());
+		// the index slot of the table1 tuples with the key of the tuple, or NO_SLOT
+		int getSlot(Tuple tuple) {
+			int code = null == dictionary ? Dictionary.NO_CODE : dictionary.getCode(tuple);
+			if (code != Dictionary.NO_CODE && code < codeSlots.length) {
+				return codeSlots[code];
+			}
+			return getSlot(tuple.getValue(schema, slot));
+		}
 
-		Attribute idAttribute2 = table2.getIdAttribute();
-		String id2Name = table2Name + "." + idAttribute2.getName();
-		Attribute id2 = new Attribute(id2Name, idAttribute2.getType());
+		private int getSlot(Object value) {
+			String key = keyFunction.getKey(value);
+			return null == key ? PostingIndex.NO_SLOT : index.getSlot(key);
+		}
+	}
+
+	private static String getIndexName(String attributeName, KeyFunction keyFunction) {
+		return attributeName + "." + keyFunction.getName();
+	}
 
-		List<Attribute> attributes = new ArrayList<Attribute>();
-		attributes.add(PAIR_ID_ATTRIBUTE);
-		attributes.add(id1);
-		attributes.add(id2);
+	/*
+	 * Dry run of the equality blocking plans over the attributes shared by the
+	 * two tables: returns them ranked, with their predicted candset sizes and
+	 * running times and, if goldName is not null, their pair completeness.
+	 */
+	public static List<BlockingPlan> estimateBlockingPlans(String projectName,
+			String table1Name, String table2Name, String goldName, int maxAttrCount,
+			long maxPairs, String[] table1AttributeNames,
+			String[] table2AttributeNames) throws IOException {
+		return getPlanEstimator(projectName, table1Name, table2Name, goldName,
+				table1AttributeNames, table2AttributeNames).rankPlans(maxAttrCount, maxPairs);
+	}
 
-		// add table 1 attributes
-		if (null != table1AttributeNames) {
-			for (String attributeName: table1AttributeNames) {
-				Attribute attribute = table1.getAttributeByName(attributeName);
-				attributes.add(new Attribute(table1Name + "." + attributeName, attribute.getType()));
-			}
+	public static BlockingPlan estimateBlockingPlan(String projectName,
+			String table1Name, String table2Name, String[] blockingAttr1Names,
+			String[] blockingAttr2Names, String goldName,
+			String[] table1AttributeNames, String[] table2AttributeNames)
+					throws IOException {
+		return getPlanEstimator(projectName, table1Name, table2Name, goldName,
+				table1AttributeNames, table2AttributeNames).estimate(blockingAttr1Names,
+						blockingAttr2Names);
+	}
+
+	private static BlockingPlanEstimator getPlanEstimator(String projectName,
+			String table1Name, String table2Name, String goldName,
+			String[] table1AttributeNames, String[] table2AttributeNames)
+					throws IOException {
+		Table table1 = TableDao.open(projectName, table1Name);
+		Table table2 = TableDao.open(projectName, table2Name);
+		Table gold = null == goldName ? null : TableDao.open(projectName, goldName);
+		return new BlockingPlanEstimator(table1, table2, gold,
+				BlockingPlanEstimator.DEFAULT_SAMPLE_SIZE, BlockingPlanEstimator.DEFAULT_SEED,
+				table1AttributeNames, table2AttributeNames);
+	}
+
+	/*
+	 * Learns a disjunction of equality plans keeping the most matches of the
+	 * gold table within maxPairs. Run it with blockUnion and
+	 * BlockingScheme.getBlockers().
+	 */
+	public static BlockingScheme learnBlockingScheme(String projectName,
+			String table1Name, String table2Name, String goldName, long maxPairs,
+			String[] table1AttributeNames, String[] table2AttributeNames)
+					throws IOException {
+		BlockingPlanEstimator estimator = getPlanEstimator(projectName, table1Name,
+				table2Name, goldName, table1AttributeNames, table2AttributeNames);
+		return new BlockingSchemeLearner(estimator).learn(maxPairs);
+	}
+
+	public static Table blockByJaccard(String projectName, String table1Name,
+			String table2Name, String attr1Name, String attr2Name, double threshold,
+			String candsetName, String[] table1AttributeNames,
+			String[] table2AttributeNames) throws IOException {
+		return blockByTokenOverlap(projectName, table1Name, table2Name, attr1Name,
+				attr2Name, new OverlapBlocker(OverlapBlocker.Measure.JACCARD, threshold),
+				candsetName, table1AttributeNames, table2AttributeNames);
+	}
+
+	public static Table blockByOverlap(String projectName, String table1Name,
+			String table2Name, String attr1Name, String attr2Name, int minOverlap,
+			String candsetName, String[] table1AttributeNames,
+			String[] table2AttributeNames) throws IOException {
+		return blockByTokenOverlap(projectName, table1Name, table2Name, attr1Name,
+				attr2Name, new OverlapBlocker(OverlapBlocker.Measure.OVERLAP, minOverlap),
+				candsetName, table1AttributeNames, table2AttributeNames);
+	}
+
+	private static Table blockByTokenOverlap(String projectName, String table1Name,
+			String table2Name, String attr1Name, String attr2Name,
+			OverlapBlocker blocker, String candsetName,
+			String[] table1AttributeNames, String[] table2AttributeNames)
+					throws IOException {
+		Table table1 = TableDao.open(projectName, table1Name);
+		Table table2 = TableDao.open(projectName, table2Name);
+
+		Attribute attribute1 = table1.getAttributeByName(attr1Name);
+		Attribute attribute2 = table2.getAttributeByName(attr2Name);
+
+		if (attribute1.getType() != attribute2.getType()) {
+			throw new InputMismatchException("Blocking attributes must be of the same type");
 		}
 
-		// add table 2 attributes
-		if (null != table2AttributeNames) {
-			for (String attributeName : table2AttributeNames) {
-				Attribute attribute = table2.getAttributeByName(attributeName);
-				attributes.add(new Attribute(table2Name + "." + attributeName, attribute.getType()));
-			}
+		CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+				candsetName, table1AttributeNames, table2AttributeNames);
+		blocker.block(table1, table2, attribute1, attribute2, candsetBuilder);
+		return candsetBuilder.getCandset();
+	}
+
+	// pairs every table2 tuple with its k most similar table1 tuples by BM25
+	public static Table blockByTopK(String projectName, String table1Name,
+			String table2Name, String attr1Name, String attr2Name, int k,
+			String candsetName, String[] table1AttributeNames,
+			String[] table2AttributeNames) throws IOException {
+		return blockByTopK(projectName, table1Name, table2Name, attr1Name, attr2Name,
+				k, TopKBlocker.Weighting.BM25, candsetName, table1AttributeNames,
+				table2AttributeNames);
+	}
+
+	public static Table blockByTopK(String projectName, String table1Name,
+			String table2Name, String attr1Name, String attr2Name, int k,
+			TopKBlocker.Weighting weighting, String candsetName,
+			String[] table1AttributeNames, String[] table2AttributeNames)
+					throws IOException {
+		Table table1 = TableDao.open(projectName, table1Name);
+		Table table2 = TableDao.open(projectName, table2Name);
+		CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+				candsetName, table1AttributeNames, table2AttributeNames);
+		Blockers.topK(attr1Name, attr2Name, new TopKBlocker(k, weighting)).block(
+				table1, table2, candsetBuilder);
+		return candsetBuilder.getCandset();
+	}
+
+	// pairs whose values are within maxDistance edits, for model numbers and MPNs
+	public static Table blockByEditDistance(String projectName, String table1Name,
+			String table2Name, String attr1Name, String attr2Name, int maxDistance,
+			String candsetName, String[] table1AttributeNames,
+			String[] table2AttributeNames) throws IOException {
+		return blockByEditDistance(projectName, table1Name, table2Name, attr1Name,
+				attr2Name, maxDistance, KeyFunctions.exact(), candsetName,
+				table1AttributeNames, table2AttributeNames);
+	}
+
+	// compares the keys of the values, e.g. KeyFunctions.mpn()
+	public static Table blockByEditDistance(String projectName, String table1Name,
+			String table2Name, String attr1Name, String attr2Name, int maxDistance,
+			KeyFunction keyFunction, String candsetName,
+			String[] table1AttributeNames, String[] table2AttributeNames)
+					throws IOException {
+		Table table1 = TableDao.open(projectName, table1Name);
+		Table table2 = TableDao.open(projectName, table2Name);
+		CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+				candsetName, table1AttributeNames, table2AttributeNames);
+		Blockers.editDistance(attr1Name, attr2Name, new EditDistanceBlocker(maxDistance,
+				EditDistanceBlocker.DEFAULT_Q, keyFunction)).block(table1, table2, candsetBuilder);
+		return candsetBuilder.getCandset();
+	}
+
+	// the candset of a meta-blocking run and its report
+	public static class MetaBlockingResult {
+		private final Table candset;
+		private final MetaBlockingReport report;
+
+		MetaBlockingResult(Table candset, MetaBlockingReport report) {
+			this.candset = candset;
+			this.report = report;
 		}
 
-		Table candset = new Table(candsetName, PAIR_ID_ATTRIBUTE, attributes, projectName);
-
-		Map<Attribute, Object> data = new HashMap<Attribute, Object>();
-		int pairId = 1;
-
-		for (Tuple tuple : table2.getAllTuplesInOrder()) {
-			Set<Object> tupleIdSet = new HashSet<Object>();
-			Object tupleId = tuple.getAttributeValue(idAttribute2);
-			for (int i = 0; i < l; i++) {
-				Attribute attribute2 = table2BlockingAttributes[i];
-				Object value = tuple.getAttributeValue(attribute2);
-				String attribute1Name = table1BlockingAttributes[i].getName();
-				Map<Object, Set<Object>> index = table1Indexes.get(attribute1Name);
-				if (index.containsKey(value)) {
-					Set<Object> id1Set = index.get(value);
-					System.out.println("Hits from index " + i + ": " + id1Set.size());
-					if (i == 0) {
-						tupleIdSet.addAll(id1Set);
-					}
-					else {
-						tupleIdSet.retainAll(id1Set);
-					}
-					System.out.println("Total Hits after probing index " + i + ": " + tupleIdSet.size());
-				}
-				else {
-					tupleIdSet.clear();
-					break;
-				}
-			}
-			for (Object id1Val: tupleIdSet) {
-				data.put(PAIR_ID_ATTRIBUTE, pairId);
-				data.put(id1, id1Val);
-				data.put(id2, tupleId);
-
-				// put table 1 attribute values
-				int i = 3;
-				Tuple table1Tuple = table1.getTuple(id1Val);
-				if (null != table1AttributeNames) {
-					for (String attributeName : table1AttributeNames) {
-						Attribute attribute = table1.getAttributeByName(attributeName);
-						Object attributeValue = table1Tuple.getAttributeValue(attribute);
-						data.put(attributes.get(i), attributeValue);
-						i++;
-					}
-				}
+		public Table getCandset() {
+			return candset;
+		}
 
-				// put table 2 attribute values
-				if (null != table2AttributeNames) {
-					for (String attributeName : table2AttributeNames) {
-						Attribute attribute = table2.getAttributeByName(attributeName);
-						Object attributeValue = tuple.getAttributeValue(attribute);
-						data.put(attributes.get(i), attributeValue);
-						i++;
-					}
-				}
+		public MetaBlockingReport getReport() {
+			return report;
+		}
+	}
 
-				Tuple pair = new Tuple(data);
-				candset.addTuple(pair);
-				//System.out.println("Found candidate pair: " + pairId + ", " +
-				//						id1Val + ", " + tupleId);
-				pairId++;
-				data.clear();
-			}
+	/*
+	 * Purges the blocks of the sources with more than maxBlockPairs pairs (see
+	 * MetaBlocker for the default), then prunes the blocking graph. The report
+	 * is returned with the candset and printed, with the recall loss measured
+	 * on the gold table if goldName is not null.
+	 */
+	public static MetaBlockingResult blockByMetaBlocking(String projectName, String table1Name,
+			String table2Name, List<MetaBlocker.BlockSource> sources, long maxBlockPairs,
+			MetaBlocker.Weighting weighting, String goldName, String candsetName,
+			String[] table1AttributeNames, String[] table2AttributeNames)
+					throws IOException {
+		Table table1 = TableDao.open(projectName, table1Name);
+		Table table2 = TableDao.open(projectName, table2Name);
+		Table gold = null == goldName ? null : TableDao.open(projectName, goldName);
+		CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+				candsetName, table1AttributeNames, table2AttributeNames);
+		MetaBlockingReport report = new MetaBlocker(sources, maxBlockPairs, weighting).block(
+				table1, table2, gold, candsetBuilder);
+		System.out.println("Meta-blocking " + candsetName + ": " + report);
+		return new MetaBlockingResult(candsetBuilder.getCandset(), report);
+	}
+
+	public static Table blockBySortedNeighborhood(String projectName,
+			String table1Name, String table2Name, String[] blockingKeyExpressions,
+			int windowSize, String candsetName, String[] table1AttributeNames,
+			String[] table2AttributeNames) throws IOException {
+		return blockBySortedNeighborhood(projectName, table1Name, table2Name,
+				blockingKeyExpressions, windowSize, DEFAULT_SORT_MEMORY_RECORDS,
+				candsetName, table1AttributeNames, table2AttributeNames);
+	}
+
+	public static Table blockBySortedNeighborhood(String projectName,
+			String table1Name, String table2Name, String[] blockingKeyExpressions,
+			int windowSize, int maxRecordsInMemory, String candsetName,
+			String[] table1AttributeNames, String[] table2AttributeNames)
+					throws IOException {
+		Table table1 = TableDao.open(projectName, table1Name);
+		Table table2 = TableDao.open(projectName, table2Name);
 
+		List<BlockingKey> keys = new ArrayList<BlockingKey>();
+		for (String expression : blockingKeyExpressions) {
+			keys.add(BlockingKey.parse(expression));
+		}
+
+		CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+				candsetName, table1AttributeNames, table2AttributeNames);
+		new SortedNeighborhoodBlocker(keys, windowSize, maxRecordsInMemory).block(
+				table1, table2, candsetBuilder);
+		return candsetBuilder.getCandset();
+	}
+
+	public static Table blockByMinHash(String projectName, String table1Name,
+			String table2Name, String attr1Name, String attr2Name, double threshold,
+			int bands, int rows, String candsetName, String[] table1AttributeNames,
+			String[] table2AttributeNames) throws IOException {
+		return blockByMinHash(projectName, table1Name, table2Name, attr1Name, attr2Name,
+				new MinHashBlocker(threshold, bands, rows, MinHashBlocker.DEFAULT_SEED),
+				candsetName, table1AttributeNames, table2AttributeNames);
+	}
+
+	// derives the number of bands and rows from the threshold and the recall target
+	public static Table blockByMinHash(String projectName, String table1Name,
+			String table2Name, String attr1Name, String attr2Name, double threshold,
+			double recallTarget, String candsetName, String[] table1AttributeNames,
+			String[] table2AttributeNames) throws IOException {
+		return blockByMinHash(projectName, table1Name, table2Name, attr1Name, attr2Name,
+				MinHashBlocker.forThreshold(threshold, recallTarget,
+						MinHashBlocker.DEFAULT_NUM_HASHES, MinHashBlocker.DEFAULT_SEED),
+				candsetName, table1AttributeNames, table2AttributeNames);
+	}
+
+	private static Table blockByMinHash(String projectName, String table1Name,
+			String table2Name, String attr1Name, String attr2Name,
+			MinHashBlocker blocker, String candsetName,
+			String[] table1AttributeNames, String[] table2AttributeNames)
+					throws IOException {
+		Table table1 = TableDao.open(projectName, table1Name);
+		Table table2 = TableDao.open(projectName, table2Name);
+
+		Attribute attribute1 = table1.getAttributeByName(attr1Name);
+		Attribute attribute2 = table2.getAttributeByName(attr2Name);
+
+		if (attribute1.getType() != attribute2.getType()) {
+			throw new InputMismatchException("Blocking attributes must be of the same type");
+		}
+
+		int[][] signatures1 = MinHashSignatureDao.getSignatures(projectName, table1,
+				attribute1, blocker.getNumHashes(), blocker.getSeed());
+		int[][] signatures2 = MinHashSignatureDao.getSignatures(projectName, table2,
+				attribute2, blocker.getNumHashes(), blocker.getSeed());
+
+		CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+				candsetName, table1AttributeNames, table2AttributeNames);
+		blocker.block(table1, table2, signatures1, signatures2, candsetBuilder);
+		return candsetBuilder.getCandset();
+	}
+
+	/*
+	 * Disjunctive blocking: runs the blockers in order into one candset. A pair
+	 * found by several blockers is kept once, with the pair id of its first
+	 * occurrence, so the pair ids are stable for a given list of blockers.
+	 */
+	public static Table blockUnion(String projectName, String table1Name,
+			String table2Name, List<Blocker> blockers, String candsetName,
+			String[] table1AttributeNames, String[] table2AttributeNames)
+					throws IOException {
+		Table table1 = TableDao.open(projectName, table1Name);
+		Table table2 = TableDao.open(projectName, table2Name);
+		CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+				candsetName, table1AttributeNames, table2AttributeNames);
+		blockUnion(table1, table2, blockers, candsetBuilder);
+		return candsetBuilder.getCandset();
+	}
+
+	public static int blockUnionToFile(String projectName, String table1Name,
+			String table2Name, List<Blocker> blockers, String candsetName,
+			String[] table1AttributeNames, String[] table2AttributeNames,
+			Set<DefaultType> defaultTypes) throws IOException {
+		Table table1 = TableDao.open(projectName, table1Name);
+		Table table2 = TableDao.open(projectName, table2Name);
+		CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+				candsetName, table1AttributeNames, table2AttributeNames,
+				getTableFilePath(projectName, candsetName));
+		try {
+			blockUnion(table1, table2, blockers, candsetBuilder);
+		}
+		finally {
+			candsetBuilder.close();
+		}
+		TableDao.register(projectName, candsetName, defaultTypes);
+		return candsetBuilder.getNumPairs();
+	}
+
+	private static void blockUnion(Table table1, Table table2, List<Blocker> blockers,
+			CandsetBuilder candsetBuilder) throws IOException {
+		if (blockers.isEmpty()) {
+			throw new IllegalArgumentException("Union blocking needs at least one blocker");
+		}
+		candsetBuilder.deduplicatePairs();
+		for (Blocker blocker : blockers) {
+			blocker.block(table1, table2, candsetBuilder);
 		}
-		//System.out.println(JSONUtils.getTableJSON(candset));
-		return candset;
 	}
 }
@@ -0,0 +1,219 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.walmart.productgenome.matching.models.Constants;
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Project;
+import com.walmart.productgenome.matching.models.data.Table;
+
+/*
+ * Stores the blocking indexes of the project in its blocking directory, one
+ * file per table, attribute and key function. An index is built the first
+ * time it is asked for, written to disk and memory-mapped from then on, so
+ * blocking many tables against the same table1 pays for the index once.
+ *
+ * An index file records the length and the modification time of the table
+ * file it was built from, and is rebuilt whenever the table file changes.
+ * An opened index is shared by the block calls on the same table object for
+ * as long as the table does not change in memory (see Table.getVersion). A
+ * table that was changed in any way since it was loaded or saved no longer
+ * matches its file (see Table.matchesFile), and gets an index that is not
+ * persisted. Tables that are
+ * not saved to disk get fresh indexes that are neither persisted nor shared.
+ */
+public class BlockingIndexDao {
+
+	// the key function of the equality blocking indexes: the raw value
+	public static final String EXACT_KEY_FUNCTION = "exact";
+
+	private static final int MAGIC = 0x424c4b49; // "BLKI"
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static class OpenIndex {
+		// the table the index was opened for, whose ordinals it holds
+		final WeakReference<Table> table;
+		final long tableVersion;
+		final long tableFileLength;
+		final long tableFileLastModified;
+		final PostingIndex index;
+
+		OpenIndex(Table table, long tableFileLength, long tableFileLastModified,
+				PostingIndex index) {
+			this.table = new WeakReference<Table>(table);
+			this.tableVersion = table.getVersion();
+			this.tableFileLength = tableFileLength;
+			this.tableFileLastModified = tableFileLastModified;
+			this.index = index;
+		}
+
+		boolean isFor(Table table, long tableFileLength, long tableFileLastModified) {
+			return this.table.get() == table && tableVersion == table.getVersion()
+					&& this.tableFileLength == tableFileLength
+					&& this.tableFileLastModified == tableFileLastModified;
+		}
+	}
+
+	// index file path -> open index
+	private static Map<String, OpenIndex> indexCache = new HashMap<String, OpenIndex>();
+
+	public static PostingIndex getIndex(String projectName, Table table,
+			Attribute attribute) throws IOException {
+		return getIndex(projectName, table, attribute, KeyFunctions.exact());
+	}
+
+	public static synchronized PostingIndex getIndex(String projectName, Table table,
+			Attribute attribute, KeyFunction keyFunction) throws IOException {
+		File tableFile = new File(Constants.ROOT_DIR + projectName + "/"
+				+ table.getName() + Constants.TABLE_EXTENSION);
+		Project project = ProjectDao.open(projectName);
+		if (!tableFile.exists() || (null != project && project.isUnsavedTable(table.getName()))) {
+			return PostingIndex.build(table, attribute, keyFunction);
+		}
+
+		File indexFile = getIndexFile(projectName, table.getName(), attribute.getName(),
+				keyFunction.getName());
+		String key = indexFile.getPath();
+		long tableFileLength = tableFile.length();
+		long tableFileLastModified = tableFile.lastModified();
+
+		// shared copy
+		OpenIndex open = indexCache.get(key);
+		if (null != open && open.isFor(table, tableFileLength, tableFileLastModified)) {
+			return open.index;
+		}
+
+		PostingIndex index;
+		if (!table.matchesFile()) {
+			// the ordinals of a persisted index are those of the table file
+			index = PostingIndex.build(table, attribute, keyFunction);
+		}
+		else {
+			// persisted copy
+			index = load(indexFile, tableFileLength, tableFileLastModified, table.getSize());
+			if (null == index) {
+				index = PostingIndex.build(table, attribute, keyFunction);
+				save(indexFile, tableFileLength, tableFileLastModified, table.getSize(), index);
+			}
+		}
+		indexCache.put(key, new OpenIndex(table, tableFileLength, tableFileLastModified, index));
+		return index;
+	}
+
+	private static File getIndexFile(String projectName, String tableName,
+			String attributeName, String keyFunction) {
+		File blockingDir = new File(Constants.ROOT_DIR + projectName + "/"
+				+ Constants.BLOCKING_DIR_NAME);
+		return new File(blockingDir, tableName + "." + attributeName + "."
+				+ keyFunction + Constants.INDEX_EXTENSION);
+	}
+
+	// maps the index file, returns null if the file is missing or stale
+	private static PostingIndex load(File indexFile, long tableFileLength,
+			long tableFileLastModified, long numTuples) throws IOException {
+		if (!indexFile.exists()) {
+			return null;
+		}
+		MappedByteBuffer buffer;
+		RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+		try {
+			// the mapping stays valid after the file is closed
+			buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+		}
+		finally {
+			file.close();
+		}
+
+		if (buffer.remaining() < 32
+				|| buffer.getInt() != MAGIC
+				|| buffer.getLong() != tableFileLength
+				|| buffer.getLong() != tableFileLastModified
+				|| buffer.getInt() != numTuples) {
+			return null;
+		}
+		int numKeys = buffer.getInt();
+		int numPostings = buffer.getInt();
+
+		int[] offsets = new int[numKeys + 1];
+		buffer.asIntBuffer().get(offsets);
+		buffer.position(buffer.position() + offsets.length * 4);
+
+		// the postings stay in the mapped file
+		ByteBuffer postingBytes = buffer.slice();
+		postingBytes.limit(numPostings * 4);
+		IntBuffer postings = postingBytes.asIntBuffer();
+		buffer.position(buffer.position() + numPostings * 4);
+
+		Map<Object, Integer> slots = new HashMap<Object, Integer>(numKeys * 4 / 3 + 1);
+		for (int slot = 0; slot < numKeys; slot++) {
+			byte[] bytes = new byte[buffer.getInt()];
+			buffer.get(bytes);
+			slots.put(new String(bytes, UTF8), slot);
+		}
+		return new PostingIndex(slots, offsets, postings);
+	}
+
+	private static void save(File indexFile, long tableFileLength,
+			long tableFileLastModified, long numTuples, PostingIndex index)
+					throws IOException {
+		File blockingDir = indexFile.getParentFile();
+		if (!blockingDir.exists() && !blockingDir.mkdirs()) {
+			throw new IOException("Failed to create directory " + blockingDir);
+		}
+
+		// keys in slot order
+		String[] keys = new String[index.size()];
+		for (Map.Entry<Object, Integer> entry : index.getSlots().entrySet()) {
+			keys[entry.getValue()] = (String) entry.getKey();
+		}
+		int[] offsets = index.getOffsets();
+		IntBuffer postings = index.getPostings();
+
+		// write a temporary file and move it in place, so that a mapped copy
+		// of the previous index is never overwritten
+		File tempFile = new File(blockingDir, indexFile.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tempFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeLong(tableFileLength);
+			out.writeLong(tableFileLastModified);
+			out.writeInt((int) numTuples);
+			out.writeInt(keys.length);
+			out.writeInt(offsets[keys.length]);
+			for (int offset : offsets) {
+				out.writeInt(offset);
+			}
+			for (int i = 0; i < offsets[keys.length]; i++) {
+				out.writeInt(postings.get(i));
+			}
+			for (String key : keys) {
+				byte[] bytes = key.getBytes(UTF8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+		finally {
+			out.close();
+		}
+		if (indexFile.exists() && !indexFile.delete()) {
+			throw new IOException("Failed to replace index " + indexFile);
+		}
+		if (!tempFile.renameTo(indexFile)) {
+			throw new IOException("Failed to write index " + indexFile);
+		}
+	}
+}
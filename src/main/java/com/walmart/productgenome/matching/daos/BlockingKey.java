@@ -0,0 +1,145 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+/*
+ * A blocking key built by concatenating the normalized values of one or more
+ * attributes, each optionally truncated to its first few characters.
+ * Normalization lowercases the value and drops everything that is not a letter
+ * or a digit, so "Sony" and "SONY ", or "KDL-40" and "kdl40" get the same key.
+ *
+ * A key can be parsed from an expression such as "brand[4]+mpn", which means
+ * the first 4 characters of the normalized brand followed by the normalized
+ * mpn. Parsed expressions use the same attribute names for both tables.
+ */
+public class BlockingKey {
+
+	public static final String PART_SEPARATOR = "+";
+
+	private static final Pattern PART_PATTERN = Pattern.compile("\\s*([^\\[\\]]+?)\\s*(?:\\[\\s*(\\d+)\\s*\\])?\\s*");
+	private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{Alnum}]+");
+	// normalized values are alphanumeric, so neither of these is ever in one:
+	// the separator keeps ("ab", "c") apart from ("a", "bc"), and a null part
+	// sorts before any value of its part
+	private static final char KEY_SEPARATOR = '\u0001';
+	private static final char NULL_PART = '\u0000';
+
+	private static class Part {
+		final String attr1Name;
+		final String attr2Name;
+		final int prefixLength;
+
+		Part(String attr1Name, String attr2Name, int prefixLength) {
+			this.attr1Name = attr1Name;
+			this.attr2Name = attr2Name;
+			this.prefixLength = prefixLength;
+		}
+	}
+
+	private final List<Part> parts = new ArrayList<Part>();
+
+	// prefixLength <= 0 keeps the whole normalized value
+	public BlockingKey addPart(String attr1Name, String attr2Name, int prefixLength) {
+		parts.add(new Part(attr1Name, attr2Name, prefixLength));
+		return this;
+	}
+
+	public BlockingKey addPart(String attrName, int prefixLength) {
+		return addPart(attrName, attrName, prefixLength);
+	}
+
+	public static BlockingKey parse(String expression) {
+		BlockingKey key = new BlockingKey();
+		for (String part : expression.split(Pattern.quote(PART_SEPARATOR))) {
+			Matcher m = PART_PATTERN.matcher(part);
+			if (!m.matches()) {
+				throw new IllegalArgumentException("Invalid blocking key expression: " + expression);
+			}
+			int prefixLength = null == m.group(2) ? 0 : Integer.parseInt(m.group(2));
+			key.addPart(m.group(1), prefixLength);
+		}
+		return key;
+	}
+
+	public Attribute[] resolveTable1Attributes(Table table1) {
+		Attribute[] attributes = new Attribute[parts.size()];
+		for (int i = 0; i < attributes.length; i++) {
+			attributes[i] = resolve(table1, parts.get(i).attr1Name);
+		}
+		return attributes;
+	}
+
+	public Attribute[] resolveTable2Attributes(Table table2) {
+		Attribute[] attributes = new Attribute[parts.size()];
+		for (int i = 0; i < attributes.length; i++) {
+			attributes[i] = resolve(table2, parts.get(i).attr2Name);
+		}
+		return attributes;
+	}
+
+	private static Attribute resolve(Table table, String attrName) {
+		Attribute attribute = table.getAttributeByName(attrName);
+		if (null == attribute) {
+			throw new IllegalArgumentException("Attribute " + attrName
+					+ " not found in table " + table.getName());
+		}
+		return attribute;
+	}
+
+	/*
+	 * Computes the key of a tuple given the attributes resolved for its table:
+	 * the normalized parts, separated by a character normalization never
+	 * produces, with a placeholder for a null part. Returns null if every part
+	 * of the key is null or empty.
+	 */
+	public String getKey(Tuple tuple, Attribute[] attributes) {
+		StringBuilder sb = new StringBuilder();
+		boolean empty = true;
+		for (int i = 0; i < attributes.length; i++) {
+			if (i > 0) {
+				sb.append(KEY_SEPARATOR);
+			}
+			Object value = tuple.getAttributeValue(attributes[i]);
+			if (null == value) {
+				sb.append(NULL_PART);
+				continue;
+			}
+			String normalized = normalize(String.valueOf(value));
+			int prefixLength = parts.get(i).prefixLength;
+			if (prefixLength > 0 && normalized.length() > prefixLength) {
+				normalized = normalized.substring(0, prefixLength);
+			}
+			sb.append(normalized);
+			empty &= normalized.isEmpty();
+		}
+		return empty ? null : sb.toString();
+	}
+
+	public static String normalize(String value) {
+		return NON_ALPHANUMERIC.matcher(value.toLowerCase()).replaceAll("");
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Part part : parts) {
+			if (sb.length() > 0) {
+				sb.append(PART_SEPARATOR);
+			}
+			sb.append(part.attr1Name);
+			if (!part.attr1Name.equals(part.attr2Name)) {
+				sb.append("/").append(part.attr2Name);
+			}
+			if (part.prefixLength > 0) {
+				sb.append("[").append(part.prefixLength).append("]");
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,269 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.csv.CSVPrinter;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.PairTable;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.models.savers.TableSaver;
+import com.walmart.productgenome.matching.utils.LongHashSet;
+
+/*
+ * Builds a candset table with the layout produced by all the blockers:
+ * pairId, table1 id, table2 id, projected table1 attributes and projected
+ * table2 attributes. The projected attributes are resolved once, not once
+ * per candidate pair.
+ *
+ * In memory the candset is a PairTable, whose projected attributes are read
+ * from the tuples of table1 and table2 through the ids of the pairs instead
+ * of being copied into every pair. A pair is added to it as the ordinals of
+ * its tuples in the PairTable, without building a candset tuple; the ordinal
+ * of a tuple is looked up by its id once and then kept by tuple.
+ *
+ * In streaming mode the pairs are written to a table file as they are added,
+ * and the candset is never held in memory. The file must be closed with close().
+ *
+ * With deduplicatePairs(), a pair that was added before is dropped, so that
+ * several blockers can feed one candset. The pairs seen are kept as
+ * (ordinal1 << 32 | ordinal2) in a LongHashSet, with the PairTable ordinals.
+ */
+public class CandsetBuilder {
+
+	private final Attribute idAttribute1;
+	private final Attribute idAttribute2;
+	private final Attribute id1;
+	private final Attribute id2;
+	private final Attribute[] table1Attributes;
+	private final Attribute[] table2Attributes;
+	private final List<Attribute> attributes;
+	private final Table table1;
+	private final Table table2;
+	private final PairTable pairs;
+	private final Table candset;
+	private CSVPrinter pairPrinter;
+	// the PairTable ordinals of the tuples seen so far
+	private final Map<Tuple, Integer> ordinals1 = new IdentityHashMap<Tuple, Integer>();
+	private final Map<Tuple, Integer> ordinals2 = new IdentityHashMap<Tuple, Integer>();
+	private LongHashSet pairKeys;
+	private int pairId = 1;
+
+	public CandsetBuilder(Table table1, Table table2, String candsetName,
+			String[] table1AttributeNames, String[] table2AttributeNames) {
+		this.table1 = table1;
+		this.table2 = table2;
+		String table1Name = table1.getName();
+		String table2Name = table2.getName();
+
+		idAttribute1 = table1.getIdAttribute();
+		String id1Name = table1Name + "." + idAttribute1.getName();
+		id1 = new Attribute(id1Name, idAttribute1.getType());
+
+		idAttribute2 = table2.getIdAttribute();
+		String id2Name = table2Name + "." + idAttribute2.getName();
+		id2 = new Attribute(id2Name, idAttribute2.getType());
+
+		attributes = new ArrayList<Attribute>();
+		attributes.add(BlockingDao.PAIR_ID_ATTRIBUTE);
+		attributes.add(id1);
+		attributes.add(id2);
+
+		// add table 1 attributes
+		table1Attributes = resolveAttributes(table1, table1AttributeNames);
+		for (Attribute attribute : table1Attributes) {
+			attributes.add(new Attribute(table1Name + "." + attribute.getName(),
+					attribute.getType()));
+		}
+
+		// add table 2 attributes
+		table2Attributes = resolveAttributes(table2, table2AttributeNames);
+		for (Attribute attribute : table2Attributes) {
+			attributes.add(new Attribute(table2Name + "." + attribute.getName(),
+					attribute.getType()));
+		}
+
+		pairs = new PairTable(candsetName, table1.getProjectName(), table1, table2,
+				BlockingDao.PAIR_ID_ATTRIBUTE, id1, id2, Arrays.asList(table1Attributes),
+				Arrays.asList(table2Attributes), null);
+		candset = pairs.getTable();
+	}
+
+	// streaming mode: the pairs are written to the table file at tableFilePath
+	public CandsetBuilder(Table table1, Table table2, String candsetName,
+			String[] table1AttributeNames, String[] table2AttributeNames,
+			String tableFilePath) throws IOException {
+		this(table1, table2, candsetName, table1AttributeNames, table2AttributeNames);
+		pairPrinter = TableSaver.openTableFile(candset, tableFilePath);
+	}
+
+	private static Attribute[] resolveAttributes(Table table, String[] attributeNames) {
+		if (null == attributeNames) {
+			return new Attribute[0];
+		}
+		Attribute[] resolved = new Attribute[attributeNames.length];
+		for (int i = 0; i < attributeNames.length; i++) {
+			resolved[i] = table.getAttributeByName(attributeNames[i]);
+		}
+		return resolved;
+	}
+
+	// drops from now on the pairs that were added before
+	public void deduplicatePairs() {
+		if (null != pairKeys) {
+			return;
+		}
+		if (pairId > 1) {
+			throw new IllegalStateException("Deduplication must be enabled before adding pairs");
+		}
+		pairKeys = new LongHashSet();
+	}
+
+	public boolean isDeduplicating() {
+		return null != pairKeys;
+	}
+
+	/*
+	 * Records the pair (table1Tuple, table2Tuple) and returns whether it is new.
+	 * Every pair is new when the builder does not deduplicate.
+	 */
+	public boolean markPair(Tuple table1Tuple, Tuple table2Tuple) {
+		if (null == pairKeys) {
+			return true;
+		}
+		return markPair(getOrdinal1(table1Tuple), getOrdinal2(table2Tuple));
+	}
+
+	private boolean markPair(int ordinal1, int ordinal2) {
+		return null == pairKeys || pairKeys.add((long) ordinal1 << 32 | ordinal2);
+	}
+
+	private int getOrdinal1(Tuple tuple) {
+		Integer ordinal = ordinals1.get(tuple);
+		if (null == ordinal) {
+			ordinal = pairs.lookupOrdinal1(tuple.getAttributeValue(idAttribute1));
+			checkOrdinal(ordinal, table1);
+			ordinals1.put(tuple, ordinal);
+		}
+		return ordinal;
+	}
+
+	private int getOrdinal2(Tuple tuple) {
+		Integer ordinal = ordinals2.get(tuple);
+		if (null == ordinal) {
+			ordinal = pairs.lookupOrdinal2(tuple.getAttributeValue(idAttribute2));
+			checkOrdinal(ordinal, table2);
+			ordinals2.put(tuple, ordinal);
+		}
+		return ordinal;
+	}
+
+	private static void checkOrdinal(int ordinal, Table table) {
+		if (ordinal == PairTable.NO_ORDINAL) {
+			throw new IllegalArgumentException("Tuple is not from table " + table.getName());
+		}
+	}
+
+	/*
+	 * Adds the pair (table1Tuple, table2Tuple) with the next pair id, unless it
+	 * is a duplicate. Not thread-safe, the pairs are added by one thread.
+	 */
+	public void addPair(Tuple table1Tuple, Tuple table2Tuple) {
+		if (isStreaming()) {
+			if (markPair(table1Tuple, table2Tuple)) {
+				addCreatedPair(createPair(pairId, table1Tuple, table2Tuple));
+			}
+			return;
+		}
+		int ordinal1 = getOrdinal1(table1Tuple);
+		int ordinal2 = getOrdinal2(table2Tuple);
+		if (markPair(ordinal1, ordinal2)) {
+			pairs.addPair(pairId, ordinal1, ordinal2);
+			pairId++;
+		}
+	}
+
+	/*
+	 * Builds the candset tuple of a pair without adding it to the candset.
+	 * Only reads the builder's state, so it is safe to call from several threads.
+	 * The projected values are only put in the tuples that are streamed; the
+	 * in-memory candset adds its pairs with addPair without building tuples.
+	 */
+	public Tuple createPair(int pairId, Tuple table1Tuple, Tuple table2Tuple) {
+		Map<Attribute, Object> data = new HashMap<Attribute, Object>();
+		data.put(BlockingDao.PAIR_ID_ATTRIBUTE, pairId);
+		data.put(id1, table1Tuple.getAttributeValue(idAttribute1));
+		data.put(id2, table2Tuple.getAttributeValue(idAttribute2));
+		if (!isStreaming()) {
+			// the candset reads the projected values through the ids
+			return new Tuple(data);
+		}
+
+		// put table 1 attribute values
+		int i = 3;
+		for (Attribute attribute : table1Attributes) {
+			data.put(attributes.get(i), table1Tuple.getAttributeValue(attribute));
+			i++;
+		}
+
+		// put table 2 attribute values
+		for (Attribute attribute : table2Attributes) {
+			data.put(attributes.get(i), table2Tuple.getAttributeValue(attribute));
+			i++;
+		}
+
+		return new Tuple(data);
+	}
+
+	/*
+	 * Adds a pair built by createPair, whose id must be the next pair id.
+	 * Deduplicating callers must have checked the pair with markPair.
+	 */
+	public void addCreatedPair(Tuple pair) {
+		Object id = pair.getAttributeValue(BlockingDao.PAIR_ID_ATTRIBUTE);
+		if (!Integer.valueOf(pairId).equals(id)) {
+			throw new IllegalArgumentException("Expected pair id " + pairId + ", found " + id);
+		}
+		if (null != pairPrinter) {
+			try {
+				TableSaver.printTuple(pairPrinter, attributes, pair);
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Failed to write candidate pair " + pairId, e);
+			}
+		}
+		else {
+			candset.addTuple(pair);
+		}
+		pairId++;
+	}
+
+	public boolean isStreaming() {
+		return null != pairPrinter;
+	}
+
+	public void close() throws IOException {
+		if (null != pairPrinter) {
+			pairPrinter.close();
+		}
+	}
+
+	public int getNumPairs() {
+		return pairId - 1;
+	}
+
+	public Table getCandset() {
+		if (isStreaming()) {
+			throw new IllegalStateException("Candset " + candset.getName()
+					+ " is streamed to disk and not held in memory");
+		}
+		return candset;
+	}
+}
@@ -0,0 +1,312 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+/*
+ * Edit distance similarity join for short identifiers such as model numbers
+ * and MPNs. A pair of tuples is a candidate if the keys of their blocking
+ * attribute values are within the given Levenshtein distance d.
+ *
+ * The keys are cut into positional q-grams, padded so that every character
+ * starts one. Two keys within distance d have lengths at most d apart
+ * (length filter), share at least max(l1, l2) + q - 1 - d * q q-grams (count
+ * filter) and every shared q-gram sits at positions at most d apart in the
+ * two keys (position filter). The table1 q-grams are indexed with their
+ * positions, sorted by key length. A table2 key only counts the q-grams at
+ * compatible lengths and positions, and the tuples reaching the count are
+ * verified by a banded edit distance. Keys too short for the count filter
+ * to prune anything are verified against all the table1 keys of compatible
+ * lengths.
+ */
+public class EditDistanceBlocker {
+
+	public static final int DEFAULT_Q = 2;
+
+	private static final char START = '\u0001';
+	private static final char END = '\u0002';
+
+	private final int maxDistance;
+	private final int q;
+	private final KeyFunction keyFunction;
+
+	public EditDistanceBlocker(int maxDistance) {
+		this(maxDistance, DEFAULT_Q, KeyFunctions.exact());
+	}
+
+	public EditDistanceBlocker(int maxDistance, int q, KeyFunction keyFunction) {
+		if (maxDistance < 0) {
+			throw new IllegalArgumentException("Edit distance must not be negative: "
+					+ maxDistance);
+		}
+		if (q < 1) {
+			throw new IllegalArgumentException("q must be positive: " + q);
+		}
+		this.maxDistance = maxDistance;
+		this.q = q;
+		this.keyFunction = keyFunction;
+	}
+
+	public KeyFunction getKeyFunction() {
+		return keyFunction;
+	}
+
+	public void block(Table table1, Table table2, Attribute attribute1,
+			Attribute attribute2, CandsetBuilder candsetBuilder) {
+		final List<Tuple> tuples1 = table1.getAllTuplesInOrder();
+		final Index index = buildIndex(tuples1, attribute1);
+
+		final Attribute probeAttribute = attribute2;
+		ParallelProber.run(table2.getAllTuplesInOrder(), new ParallelProber.Probe() {
+			public void probe(Tuple tuple, ParallelProber.PairBuffer pairs) {
+				String key = keyFunction.getKey(tuple.getAttributeValue(probeAttribute));
+				if (null == key) {
+					return;
+				}
+				for (int ordinal : index.getSimilar(key)) {
+					pairs.add(tuples1.get(ordinal), tuple);
+				}
+			}
+		}, candsetBuilder);
+	}
+
+	private Index buildIndex(List<Tuple> tuples, Attribute attribute) {
+		String[] keys = new String[tuples.size()];
+		int maxLength = 0;
+		for (int ordinal = 0; ordinal < keys.length; ordinal++) {
+			keys[ordinal] = keyFunction.getKey(tuples.get(ordinal).getAttributeValue(attribute));
+			if (null != keys[ordinal]) {
+				maxLength = Math.max(maxLength, keys[ordinal].length());
+			}
+		}
+
+		// ordinals by key length, each list in table1 order
+		List<List<Integer>> lengthLists = new ArrayList<List<Integer>>(maxLength + 1);
+		for (int length = 0; length <= maxLength; length++) {
+			lengthLists.add(new ArrayList<Integer>());
+		}
+		for (int ordinal = 0; ordinal < keys.length; ordinal++) {
+			if (null != keys[ordinal]) {
+				lengthLists.get(keys[ordinal].length()).add(ordinal);
+			}
+		}
+		int[][] byLength = new int[maxLength + 1][];
+		for (int length = 0; length <= maxLength; length++) {
+			byLength[length] = toArray(lengthLists.get(length));
+		}
+
+		// postings of the q-grams, sorted by key length as the keys are added
+		// by increasing length
+		Map<String, Posting> postings = new HashMap<String, Posting>();
+		for (int[] ordinals : byLength) {
+			for (int ordinal : ordinals) {
+				String[] grams = getQGrams(keys[ordinal]);
+				for (int position = 0; position < grams.length; position++) {
+					Posting posting = postings.get(grams[position]);
+					if (null == posting) {
+						posting = new Posting();
+						postings.put(grams[position], posting);
+					}
+					posting.add(ordinal, position, keys[ordinal].length());
+				}
+			}
+		}
+		for (Posting posting : postings.values()) {
+			posting.trim();
+		}
+		return new Index(keys, byLength, postings);
+	}
+
+	// positional q-grams of the key padded with q - 1 start and end characters
+	private String[] getQGrams(String key) {
+		StringBuilder padded = new StringBuilder(key.length() + 2 * (q - 1));
+		for (int i = 1; i < q; i++) {
+			padded.append(START);
+		}
+		padded.append(key);
+		for (int i = 1; i < q; i++) {
+			padded.append(END);
+		}
+		String[] grams = new String[key.length() + q - 1];
+		for (int i = 0; i < grams.length; i++) {
+			grams[i] = padded.substring(i, i + q);
+		}
+		return grams;
+	}
+
+	// minimum number of q-grams shared by keys of these lengths within maxDistance
+	private int getMinCount(int length1, int length2) {
+		return Math.max(length1, length2) + q - 1 - maxDistance * q;
+	}
+
+	private class Index {
+		private final String[] keys;
+		private final int[][] byLength;
+		private final Map<String, Posting> postings;
+		// q-gram counts of the table1 tuples, per probing thread
+		private final ThreadLocal<int[]> counts = new ThreadLocal<int[]>() {
+			protected int[] initialValue() {
+				return new int[keys.length];
+			}
+		};
+
+		Index(String[] keys, int[][] byLength, Map<String, Posting> postings) {
+			this.keys = keys;
+			this.byLength = byLength;
+			this.postings = postings;
+		}
+
+		// the ordinals of the table1 keys within maxDistance of the key, in order
+		List<Integer> getSimilar(String key) {
+			int length = key.length();
+			int minLength = Math.max(0, length - maxDistance);
+			int maxLength = Math.min(byLength.length - 1, length + maxDistance);
+			List<Integer> candidates = new ArrayList<Integer>();
+
+			// the count filter cannot prune the short keys, take them all
+			for (int length1 = minLength; length1 <= maxLength; length1++) {
+				if (getMinCount(length1, length) <= 0) {
+					for (int ordinal : byLength[length1]) {
+						candidates.add(ordinal);
+					}
+				}
+			}
+
+			// count the shared q-grams at compatible lengths and positions
+			int[] tupleCounts = counts.get();
+			List<Integer> counted = new ArrayList<Integer>();
+			String[] grams = getQGrams(key);
+			for (int position = 0; position < grams.length; position++) {
+				Posting posting = postings.get(grams[position]);
+				if (null == posting) {
+					continue;
+				}
+				for (int i = posting.lowerBound(minLength); i < posting.size
+						&& posting.lengths[i] <= maxLength; i++) {
+					if (Math.abs(posting.positions[i] - position) > maxDistance
+							|| getMinCount(posting.lengths[i], length) <= 0) {
+						continue;
+					}
+					int ordinal = posting.ordinals[i];
+					if (tupleCounts[ordinal]++ == 0) {
+						counted.add(ordinal);
+					}
+				}
+			}
+			for (int ordinal : counted) {
+				if (tupleCounts[ordinal] >= getMinCount(keys[ordinal].length(), length)) {
+					candidates.add(ordinal);
+				}
+				tupleCounts[ordinal] = 0;
+			}
+
+			// verify the candidates and return them in table1 order
+			Collections.sort(candidates);
+			List<Integer> similar = new ArrayList<Integer>();
+			for (int ordinal : candidates) {
+				if (isWithinDistance(keys[ordinal], key, maxDistance)) {
+					similar.add(ordinal);
+				}
+			}
+			return similar;
+		}
+	}
+
+	private static class Posting {
+		private int[] ordinals = new int[4];
+		private int[] positions = new int[4];
+		private int[] lengths = new int[4];
+		private int size;
+
+		void add(int ordinal, int position, int length) {
+			if (size == ordinals.length) {
+				ordinals = Arrays.copyOf(ordinals, 2 * size);
+				positions = Arrays.copyOf(positions, 2 * size);
+				lengths = Arrays.copyOf(lengths, 2 * size);
+			}
+			ordinals[size] = ordinal;
+			positions[size] = position;
+			lengths[size] = length;
+			size++;
+		}
+
+		void trim() {
+			ordinals = Arrays.copyOf(ordinals, size);
+			positions = Arrays.copyOf(positions, size);
+			lengths = Arrays.copyOf(lengths, size);
+		}
+
+		// first entry whose key has at least minLength characters
+		int lowerBound(int minLength) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (lengths[mid] < minLength) {
+					low = mid + 1;
+				}
+				else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/*
+	 * Levenshtein distance of at most maxDistance, computed on the diagonal
+	 * band of width 2 * maxDistance + 1 only, and given up as soon as a whole
+	 * row exceeds maxDistance.
+	 */
+	static boolean isWithinDistance(String s1, String s2, int maxDistance) {
+		int n = s1.length();
+		int m = s2.length();
+		if (Math.abs(n - m) > maxDistance) {
+			return false;
+		}
+		int infinity = maxDistance + 1;
+		int[] previous = new int[m + 1];
+		int[] current = new int[m + 1];
+		for (int j = 0; j <= m; j++) {
+			previous[j] = j <= maxDistance ? j : infinity;
+		}
+		for (int i = 1; i <= n; i++) {
+			int from = Math.max(1, i - maxDistance);
+			int to = Math.min(m, i + maxDistance);
+			Arrays.fill(current, infinity);
+			current[0] = i <= maxDistance ? i : infinity;
+			int rowMin = current[0];
+			char c = s1.charAt(i - 1);
+			for (int j = from; j <= to; j++) {
+				int cost = c == s2.charAt(j - 1) ? 0 : 1;
+				int distance = Math.min(previous[j - 1] + cost,
+						Math.min(previous[j], current[j - 1]) + 1);
+				current[j] = Math.min(distance, infinity);
+				rowMin = Math.min(rowMin, current[j]);
+			}
+			if (rowMin > maxDistance) {
+				return false;
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[m] <= maxDistance;
+	}
+}
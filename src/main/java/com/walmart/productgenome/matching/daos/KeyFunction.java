@@ -0,0 +1,16 @@
+package com.walmart.productgenome.matching.daos;
+
+/*
+ * Derives the blocking key of an attribute value: two tuples are blocked
+ * together when their keys are equal. Implementations for the usual
+ * normalizations are in KeyFunctions.
+ *
+ * The name identifies the function and its parameters, since the blocking
+ * indexes of BlockingIndexDao are stored per key function name.
+ */
+public interface KeyFunction {
+	String getName();
+
+	// returns null if the value gets no key, and the tuple is never blocked
+	String getKey(Object value);
+}
@@ -0,0 +1,196 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.walmart.productgenome.matching.models.rules.functions.NormalizeAndMatchMPN;
+import com.walmart.productgenome.matching.models.rules.functions.NormalizeAndMatchUPC;
+import com.walmart.productgenome.matching.utils.TokenUtils;
+
+/*
+ * KeyFunction implementations for normalize-then-block.
+ */
+public class KeyFunctions {
+
+	private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+
+	private static final KeyFunction EXACT = new KeyFunction() {
+		public String getName() {
+			return BlockingIndexDao.EXACT_KEY_FUNCTION;
+		}
+
+		public String getKey(Object value) {
+			if (null != value && value instanceof String && !((String) value).isEmpty()) {
+				return (String) value;
+			}
+			return null;
+		}
+	};
+
+	private static final KeyFunction UPC = new KeyFunction() {
+		public String getName() {
+			return "upc";
+		}
+
+		public String getKey(Object value) {
+			return null == value ? null : NormalizeAndMatchUPC.normalize(String.valueOf(value));
+		}
+	};
+
+	private static final KeyFunction MPN = new KeyFunction() {
+		public String getName() {
+			return "mpn";
+		}
+
+		public String getKey(Object value) {
+			return null == value ? null : emptyToNull(
+					NormalizeAndMatchMPN.normalize(String.valueOf(value)));
+		}
+	};
+
+	private static final KeyFunction SOUNDEX = new KeyFunction() {
+		public String getName() {
+			return "soundex";
+		}
+
+		public String getKey(Object value) {
+			if (null == value) {
+				return null;
+			}
+			StringBuilder key = new StringBuilder();
+			for (String token : TokenUtils.getDistinctTokens(String.valueOf(value))) {
+				String code = soundex(token);
+				if (null != code) {
+					if (key.length() > 0) {
+						key.append(' ');
+					}
+					key.append(code);
+				}
+			}
+			return emptyToNull(key.toString());
+		}
+	};
+
+	// the raw non-empty string values, which is what BlockingDao always indexed
+	public static KeyFunction exact() {
+		return EXACT;
+	}
+
+	// the 11 identifying digits of a 12 or 13 digit UPC (see NormalizeAndMatchUPC)
+	public static KeyFunction upc() {
+		return UPC;
+	}
+
+	// the word characters of an MPN, without leading zeros if numeric (see NormalizeAndMatchMPN)
+	public static KeyFunction mpn() {
+		return MPN;
+	}
+
+	// the Soundex codes of the tokens
+	public static KeyFunction soundex() {
+		return SOUNDEX;
+	}
+
+	// the first k distinct tokens, lowercased
+	public static KeyFunction firstTokens(final int k) {
+		if (k < 1) {
+			throw new IllegalArgumentException("Number of tokens must be positive: " + k);
+		}
+		return new KeyFunction() {
+			public String getName() {
+				return "first" + k + "tokens";
+			}
+
+			public String getKey(Object value) {
+				if (null == value) {
+					return null;
+				}
+				List<String> tokens = TokenUtils.getDistinctTokens(String.valueOf(value));
+				if (tokens.isEmpty()) {
+					return null;
+				}
+				StringBuilder key = new StringBuilder();
+				for (int i = 0; i < Math.min(k, tokens.size()); i++) {
+					if (i > 0) {
+						key.append(' ');
+					}
+					key.append(tokens.get(i));
+				}
+				return key.toString();
+			}
+		};
+	}
+
+	/*
+	 * The bucket floor(x / width) of the number x in the value (a Number, or
+	 * the first number in its text). Values close to a bucket boundary land in
+	 * different buckets; union two bucketings with different widths to catch
+	 * those.
+	 */
+	public static KeyFunction numericBucket(final double width) {
+		if (width <= 0.0) {
+			throw new IllegalArgumentException("Bucket width must be positive: " + width);
+		}
+		return new KeyFunction() {
+			public String getName() {
+				return "bucket" + width;
+			}
+
+			public String getKey(Object value) {
+				Double number = getNumber(value);
+				if (null == number) {
+					return null;
+				}
+				return String.valueOf((long) Math.floor(number / width));
+			}
+		};
+	}
+
+	private static Double getNumber(Object value) {
+		if (null == value) {
+			return null;
+		}
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+		Matcher matcher = NUMBER.matcher(String.valueOf(value));
+		return matcher.find() ? Double.valueOf(matcher.group()) : null;
+	}
+
+	private static String emptyToNull(String key) {
+		return null == key || key.isEmpty() ? null : key;
+	}
+
+	// American Soundex of a token, null if it has no letter
+	static String soundex(String token) {
+		//                  ABCDEFGHIJKLMNOPQRSTUVWXYZ
+		final String codes = "01230120022455012623010202";
+		StringBuilder code = new StringBuilder(4);
+		char last = 0;
+		for (int i = 0; i < token.length() && code.length() < 4; i++) {
+			char c = Character.toUpperCase(token.charAt(i));
+			if (c < 'A' || c > 'Z') {
+				continue;
+			}
+			char digit = codes.charAt(c - 'A');
+			if (code.length() == 0) {
+				code.append(c);
+			}
+			else if (digit != '0' && digit != last) {
+				code.append(digit);
+			}
+			// H and W do not separate letters with the same code, vowels do
+			if (c != 'H' && c != 'W') {
+				last = digit;
+			}
+		}
+		if (code.length() == 0) {
+			return null;
+		}
+		while (code.length() < 4) {
+			code.append('0');
+		}
+		return code.toString();
+	}
+}
@@ -28,6 +28,7 @@ import com.walmart.productgenome.matching.models.EMSRandomForest;
 import com.walmart.productgenome.matching.models.audit.ItemPairAudit;
 import com.walmart.productgenome.matching.models.audit.MatchStatus;
 import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.PairTable;
 import com.walmart.productgenome.matching.models.data.Project;
 import com.walmart.productgenome.matching.models.data.Table;
 import com.walmart.productgenome.matching.models.data.Tuple;
@@ -288,6 +289,8 @@ public class MatchingDao {
 		// ProjectDao.save(project);
 	}
 
+	// table1Attributes and table2Attributes receive the attributes whose values
+	// the matched pairs must copy, none if the matches read them through the ids
 	private static Table createMatchesTable(String projectName, Table candset,
 			Table table1, Table table2, String matchesName,
 			List<Attribute> matchesAttributes,
@@ -318,19 +321,21 @@ public class MatchingDao {
 		matchesAttributes.add(idAttribute2);
 
 		// add table 1 attributes
+		List<Attribute> projected1 = new ArrayList<Attribute>();
 		if(null != table1AttributeNames){
 			for(String attributeName : table1AttributeNames) {
 				Attribute attribute = table1.getAttributeByName(attributeName);
-				table1Attributes.add(attribute);
+				projected1.add(attribute);
 				matchesAttributes.add(new Attribute(table1.getName() + "." + attributeName, attribute.getType()));
 			}
 		}
 
 		// add table 2 attributes
+		List<Attribute> projected2 = new ArrayList<Attribute>();
 		if(null != table2AttributeNames){
 			for(String attributeName : table2AttributeNames) {
 				Attribute attribute = table2.getAttributeByName(attributeName);
-				table2Attributes.add(attribute);
+				projected2.add(attribute);
 				matchesAttributes.add(new Attribute(table2.getName() + "." + attributeName, attribute.getType()));
 			}
 		}
@@ -338,6 +343,14 @@ public class MatchingDao {
 		// add label attribute
 		matchesAttributes.add(labelAttribute);
 
+		// the matches are held as pairs of ordinals, whose projected values are
+		// read through the ids, so the matched pairs do not copy them
+		if (pairIdAttribute.getType() == Attribute.Type.INTEGER) {
+			return new PairTable(matchesName, projectName, table1, table2, pairIdAttribute,
+					idAttribute1, idAttribute2, projected1, projected2, labelAttribute).getTable();
+		}
+		table1Attributes.addAll(projected1);
+		table2Attributes.addAll(projected2);
 		Table matches = new Table(matchesName, pairIdAttribute, matchesAttributes, projectName);
 		return matches;
 	}
@@ -465,9 +478,12 @@ public class MatchingDao {
 			Table table2, Matcher matcher, List<Attribute> matchesAttributes,
 			List<Attribute> table1Attributes, List<Attribute> table2Attributes) throws IOException {
 		List<Tuple> matchedPairs = new ArrayList<Tuple>();
+		PairTable pairs = PairTable.of(candset, table1, table2, false);
+		int index = 0;
 		for (Tuple t : candset.getAllTuplesInOrder()) {
-			addMatchedPair(t, table1, table2, matcher, matchesAttributes,
-					matchedPairs, table1Attributes, table2Attributes);
+			addMatchedPair(t, pairs.getTuple1(index), pairs.getTuple2(index), matcher,
+					matchesAttributes, matchedPairs, table1Attributes, table2Attributes);
+			index++;
 		}
 		return matchedPairs;
 	}
@@ -477,14 +493,17 @@ public class MatchingDao {
 			List<Attribute> table1Attributes, List<Attribute> table2Attributes,
 			Map<Tuple, ItemPairAudit> itemPairAudits) throws IOException {
 		List<Tuple> matchedPairs = new ArrayList<Tuple>();
+		PairTable pairs = PairTable.of(candset, table1, table2, false);
+		int index = 0;
 		for (Tuple t : candset.getAllTuplesInOrder()) {
 			ItemPairAudit itemPairAudit = new ItemPairAudit(t);
-			MatchStatus result = addMatchedPair(t, table1, table2, matcher,
-					matchesAttributes,
+			MatchStatus result = addMatchedPair(t, pairs.getTuple1(index),
+					pairs.getTuple2(index), matcher, matchesAttributes,
 					matchedPairs, table1Attributes, table2Attributes, itemPairAudit);
 
 			itemPairAudit.setStatus(result);
 			itemPairAudits.put(t, itemPairAudit);
+			index++;
 		}
 		return matchedPairs;
 	}
@@ -495,14 +514,17 @@ public class MatchingDao {
 			List<Attribute> table1Attributes, List<Attribute> table2Attributes,
 			Map<Tuple, ItemPairAudit> itemPairAudits) throws IOException {
 		List<Tuple> matchedPairs = new ArrayList<Tuple>();
+		PairTable pairs = PairTable.of(pairsTable, table1, table2, false);
+		int index = 0;
 		for (Tuple t : pairsTable.getAllTuplesInOrder()) {
 			ItemPairAudit itemPairAudit = new ItemPairAudit(t);
-			MatchStatus result = addMatchedPair(t, featuresTable, table1, table2, matcher,
-					matchesAttributes,
+			MatchStatus result = addMatchedPair(t, featuresTable, pairs.getTuple1(index),
+					pairs.getTuple2(index), matcher, matchesAttributes,
 					matchedPairs, table1Attributes, table2Attributes, itemPairAudit);
 
 			itemPairAudit.setStatus(result);
 			itemPairAudits.put(t, itemPairAudit);
+			index++;
 		}
 		return matchedPairs;
 	}
@@ -518,14 +540,17 @@ public class MatchingDao {
 		testInstances = WekaUtils.setClassIndex(testInstances);
 
 		List<Tuple> matchedPairs = new ArrayList<Tuple>();
+		PairTable pairs = PairTable.of(pairsTable, table1, table2, false);
 		int index = 0;
 		for (Tuple t : pairsTable.getAllTuplesInOrder()) {
 			ItemPairAudit itemPairAudit = new ItemPairAudit(t);
-			Instance testInstance = testInstances.get(index++);
-			addMatchedPair(t, testInstance, table1, table2, classifier,
+			Instance testInstance = testInstances.get(index);
+			addMatchedPair(t, testInstance, pairs.getTuple1(index), pairs.getTuple2(index),
+					classifier,
 					matchesAttributes, matchedPairs, table1Attributes,
 					table2Attributes, itemPairAudit);
 			itemPairAudits.put(t, itemPairAudit);
+			index++;
 		}
 		return matchedPairs;
 	}
@@ -542,14 +567,17 @@ public class MatchingDao {
 		testInstances = WekaUtils.setClassIndex(testInstances);
 
 		List<Tuple> matchedPairs = new ArrayList<Tuple>();
+		PairTable pairs = PairTable.of(pairsTable, table1, table2, false);
 		int index = 0;
 		for (Tuple t : pairsTable.getAllTuplesInOrder()) {
 			ItemPairAudit itemPairAudit = new ItemPairAudit(t);
-			Instance testInstance = testInstances.get(index++);
-			addMatchedPair(t, testInstance, table1, table2, classifier,
+			Instance testInstance = testInstances.get(index);
+			addMatchedPair(t, testInstance, pairs.getTuple1(index), pairs.getTuple2(index),
+					classifier,
 					matchesAttributes, matchedPairs, table1Attributes,
 					table2Attributes, itemPairAudit, matchingThreshold);
 			itemPairAudits.put(t, itemPairAudit);
+			index++;
 		}
 		return matchedPairs;
 	}
@@ -578,8 +606,8 @@ public class MatchingDao {
 		return data;
 	}
 
-	private static MatchStatus addMatchedPair(Tuple candsetTuple, Table table1,
-			Table table2, Matcher matcher, List<Attribute> matchesAttributes,
+	private static MatchStatus addMatchedPair(Tuple candsetTuple, Tuple tuple1,
+			Tuple tuple2, Matcher matcher, List<Attribute> matchesAttributes,
 			List<Tuple> matchedPairs, List<Attribute> table1Attributes,
 			List<Attribute> table2Attributes) throws IOException {
 
@@ -588,12 +616,9 @@ public class MatchingDao {
 		Object id1 = candsetTuple.getAttributeValue(idAttribute1);
 		Object id2 = candsetTuple.getAttributeValue(idAttribute2);
 
-		Tuple tuple1 = table1.getTuple(id1);
-
 		if (null == tuple1) {
 			throw new IOException("Cannot retrieve tuple from table 1. Tuple id: " + id1);
 		}
-		Tuple tuple2 = table2.getTuple(id2);
 		if (null == tuple2) {
 			throw new IOException("Cannot retrieve tuple from table 2. Tuple id: " + id2);
 		}
@@ -615,8 +640,8 @@ public class MatchingDao {
 		return result;
 	}
 
-	private static MatchStatus addMatchedPair(Tuple candsetTuple, Table table1,
-			Table table2, Matcher matcher, List<Attribute> matchesAttributes,
+	private static MatchStatus addMatchedPair(Tuple candsetTuple, Tuple tuple1,
+			Tuple tuple2, Matcher matcher, List<Attribute> matchesAttributes,
 			List<Tuple> matchedPairs, List<Attribute> table1Attributes,
 			List<Attribute> table2Attributes, ItemPairAudit itemPairAudit) throws IOException {
 
@@ -625,12 +650,10 @@ public class MatchingDao {
 		Object id1 = candsetTuple.getAttributeValue(idAttribute1);
 		Object id2 = candsetTuple.getAttributeValue(idAttribute2);
 
-		Tuple tuple1 = table1.getTuple(id1);
 		if (null == tuple1) {
 			throw new IOException("Cannot retrieve tuple from table 1. Tuple id: " + id1);
 		}
 
-		Tuple tuple2 = table2.getTuple(id2);
 		if (null == tuple2) {
 			throw new IOException("Cannot retrieve tuple from table 2. Tuple id: " + id2);
 		}
@@ -651,8 +674,8 @@ public class MatchingDao {
 	}
 
 	private static MatchStatus addMatchedPair(Tuple candsetTuple,
-			Table featuresTable, Table table1,
-			Table table2, Matcher matcher, List<Attribute> matchesAttributes,
+			Table featuresTable, Tuple tuple1,
+			Tuple tuple2, Matcher matcher, List<Attribute> matchesAttributes,
 			List<Tuple> matchedPairs, List<Attribute> table1Attributes,
 			List<Attribute> table2Attributes, ItemPairAudit itemPairAudit) throws IOException {
 
@@ -663,12 +686,10 @@ public class MatchingDao {
 		Object id1 = candsetTuple.getAttributeValue(idAttribute1);
 		Object id2 = candsetTuple.getAttributeValue(idAttribute2);
 
-		Tuple tuple1 = table1.getTuple(id1);
 		if (null == tuple1) {
 			throw new IOException("Cannot retrieve tuple from table 1. Tuple id: " + id1);
 		}
 
-		Tuple tuple2 = table2.getTuple(id2);
 		if (null == tuple2) {
 			throw new IOException("Cannot retrieve tuple from table 2. Tuple id: " + id2);
 		}
@@ -690,8 +711,8 @@ public class MatchingDao {
 	}
 
 	private static void addMatchedPair(Tuple candsetTuple,
-			Instance testInstance, Table table1,
-			Table table2, AbstractClassifier classifier, List<Attribute> matchesAttributes,
+			Instance testInstance, Tuple tuple1,
+			Tuple tuple2, AbstractClassifier classifier, List<Attribute> matchesAttributes,
 			List<Tuple> matchedPairs, List<Attribute> table1Attributes,
 			List<Attribute> table2Attributes, ItemPairAudit itemPairAudit) throws Exception {
 
@@ -700,12 +721,10 @@ public class MatchingDao {
 		Object id1 = candsetTuple.getAttributeValue(idAttribute1);
 		Object id2 = candsetTuple.getAttributeValue(idAttribute2);
 
-		Tuple tuple1 = table1.getTuple(id1);
 		if (null == tuple1) {
 			throw new IOException("Cannot retrieve tuple from table 1. Tuple id: " + id1);
 		}
 
-		Tuple tuple2 = table2.getTuple(id2);
 		if (null == tuple2) {
 			throw new IOException("Cannot retrieve tuple from table 2. Tuple id: " + id2);
 		}
@@ -749,8 +768,8 @@ public class MatchingDao {
 	}
 	
 	private static void addMatchedPair(Tuple candsetTuple,
-			Instance testInstance, Table table1,
-			Table table2, AbstractClassifier classifier, List<Attribute> matchesAttributes,
+			Instance testInstance, Tuple tuple1,
+			Tuple tuple2, AbstractClassifier classifier, List<Attribute> matchesAttributes,
 			List<Tuple> matchedPairs, List<Attribute> table1Attributes,
 			List<Attribute> table2Attributes, ItemPairAudit itemPairAudit,
 			double matchingThreshold) throws Exception {
@@ -760,12 +779,10 @@ public class MatchingDao {
 		Object id1 = candsetTuple.getAttributeValue(idAttribute1);
 		Object id2 = candsetTuple.getAttributeValue(idAttribute2);
 
-		Tuple tuple1 = table1.getTuple(id1);
 		if (null == tuple1) {
 			throw new IOException("Cannot retrieve tuple from table 1. Tuple id: " + id1);
 		}
 
-		Tuple tuple2 = table2.getTuple(id2);
 		if (null == tuple2) {
 			throw new IOException("Cannot retrieve tuple from table 2. Tuple id: " + id2);
 		}
@@ -0,0 +1,374 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.walmart.productgenome.matching.models.audit.MatchStatus;
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.utils.TokenUtils;
+
+/*
+ * Block purging and meta-blocking for skewed blocking keys.
+ *
+ * The block sources put every tuple of both tables in blocks, one per key
+ * (an equality key, or every token of the value). Blocks are measured in the
+ * pairs they would produce, |block1| * |block2|. Oversize blocks, such as the
+ * "Generic" brand, are purged first: they hold most of the pairs and almost
+ * none of the matches.
+ *
+ * The remaining blocks define a blocking graph whose edges are the pairs
+ * sharing at least one block, weighted by the number of common blocks (CBS)
+ * or by the Jaccard similarity of the block sets of the two tuples. The graph
+ * is pruned per table2 node (weighted node pruning): a table2 tuple keeps
+ * the edges whose weight is at least the average weight of its edges. The
+ * graph is never materialized, every table2 tuple accumulates the weights of
+ * its edges while it is probed.
+ *
+ * The returned MetaBlockingReport gives the block statistics and, with a gold
+ * table, the fraction of the gold matches lost to purging and to pruning.
+ */
+public class MetaBlocker {
+
+	public enum Weighting {
+		CBS,
+		JACCARD
+	}
+
+	// number of heaviest blocks reported
+	private static final int HEAVIEST_BLOCKS = 10;
+
+	/*
+	 * Puts the tuples in blocks by the keys of one attribute of each table.
+	 */
+	public static class BlockSource {
+		private final String attr1Name;
+		private final String attr2Name;
+		private final KeyFunction keyFunction;
+		private final boolean tokenize;
+
+		private BlockSource(String attr1Name, String attr2Name, KeyFunction keyFunction,
+				boolean tokenize) {
+			this.attr1Name = attr1Name;
+			this.attr2Name = attr2Name;
+			this.keyFunction = keyFunction;
+			this.tokenize = tokenize;
+		}
+
+		// one block per key, as equality blocking
+		public static BlockSource keys(String attr1Name, String attr2Name,
+				KeyFunction keyFunction) {
+			return new BlockSource(attr1Name, attr2Name, keyFunction, false);
+		}
+
+		// one block per distinct token of the values (token blocking)
+		public static BlockSource tokens(String attr1Name, String attr2Name) {
+			return new BlockSource(attr1Name, attr2Name, null, true);
+		}
+
+		private List<String> getKeys(Object value) {
+			if (tokenize) {
+				return null == value ? Collections.<String>emptyList()
+						: TokenUtils.getDistinctTokens(String.valueOf(value));
+			}
+			String key = keyFunction.getKey(value);
+			return null == key ? Collections.<String>emptyList() : Collections.singletonList(key);
+		}
+
+		@Override
+		public String toString() {
+			return attr1Name + "/" + attr2Name + ":"
+					+ (tokenize ? "tokens" : keyFunction.getName());
+		}
+	}
+
+	private final List<BlockSource> sources;
+	private final long maxBlockPairs;
+	private final Weighting weighting;
+
+	/*
+	 * Blocks with more than maxBlockPairs pairs are purged. With a
+	 * non-positive maxBlockPairs, the blocks with more pairs than comparing
+	 * one tuple with the whole other table, max(|table1|, |table2|), are.
+	 */
+	public MetaBlocker(List<BlockSource> sources, long maxBlockPairs, Weighting weighting) {
+		if (sources.isEmpty()) {
+			throw new IllegalArgumentException("Meta-blocking needs at least one block source");
+		}
+		this.sources = new ArrayList<BlockSource>(sources);
+		this.maxBlockPairs = maxBlockPairs;
+		this.weighting = weighting;
+	}
+
+	private static class Block {
+		private final String key;
+		private final List<Integer> ordinals1 = new ArrayList<Integer>();
+		private final List<Integer> ordinals2 = new ArrayList<Integer>();
+
+		Block(String key) {
+			this.key = key;
+		}
+
+		long getPairs() {
+			return (long) ordinals1.size() * ordinals2.size();
+		}
+	}
+
+	/*
+	 * gold may be null. Otherwise it has the layout of the gold tables of
+	 * EvaluateDao: the table1 id second, the table2 id third and the label last.
+	 */
+	public MetaBlockingReport block(Table table1, Table table2, Table gold,
+			CandsetBuilder candsetBuilder) {
+		final List<Tuple> tuples1 = table1.getAllTuplesInOrder();
+		List<Tuple> tuples2 = table2.getAllTuplesInOrder();
+		List<Block> blocks = buildBlocks(table1, table2, tuples1, tuples2);
+
+		// block statistics and purging
+		long limit = maxBlockPairs > 0 ? maxBlockPairs : Math.max(tuples1.size(), tuples2.size());
+		long blockPairs = 0;
+		long purgedPairs = 0;
+		int purgedBlocks = 0;
+		List<Block> kept = new ArrayList<Block>();
+		for (Block block : blocks) {
+			blockPairs += block.getPairs();
+			if (block.getPairs() > limit) {
+				purgedBlocks++;
+				purgedPairs += block.getPairs();
+			}
+			else {
+				kept.add(block);
+			}
+		}
+
+		// block lists of the table2 tuples and block counts of the table1 tuples
+		final int[][] blocks1 = new int[kept.size()][];
+		final int[] blockCounts1 = new int[tuples1.size()];
+		List<List<Integer>> blockLists2 = new ArrayList<List<Integer>>(tuples2.size());
+		for (int i = 0; i < tuples2.size(); i++) {
+			blockLists2.add(new ArrayList<Integer>(2));
+		}
+		for (int b = 0; b < kept.size(); b++) {
+			Block block = kept.get(b);
+			blocks1[b] = toArray(block.ordinals1);
+			for (int ordinal : blocks1[b]) {
+				blockCounts1[ordinal]++;
+			}
+			for (int ordinal : block.ordinals2) {
+				blockLists2.get(ordinal).add(b);
+			}
+		}
+		final int[][] blocks2 = new int[tuples2.size()][];
+		for (int i = 0; i < blocks2.length; i++) {
+			blocks2[i] = toArray(blockLists2.get(i));
+		}
+		final Map<Tuple, Integer> ordinals2 = getOrdinals(tuples2);
+
+		// prune the blocking graph per table2 node while probing
+		final double[] thresholds = new double[tuples2.size()];
+		final long[] edgeCounts = new long[tuples2.size()];
+		final ThreadLocal<int[]> commonBlocks = new ThreadLocal<int[]>() {
+			protected int[] initialValue() {
+				return new int[blockCounts1.length];
+			}
+		};
+		long pairsBefore = candsetBuilder.getNumPairs();
+		ParallelProber.run(tuples2, new ParallelProber.Probe() {
+			public void probe(Tuple tuple, ParallelProber.PairBuffer pairs) {
+				int ordinal2 = ordinals2.get(tuple);
+				int[] counts = commonBlocks.get();
+				List<Integer> neighbors = new ArrayList<Integer>();
+				for (int b : blocks2[ordinal2]) {
+					for (int ordinal1 : blocks1[b]) {
+						if (counts[ordinal1]++ == 0) {
+							neighbors.add(ordinal1);
+						}
+					}
+				}
+				if (neighbors.isEmpty()) {
+					return;
+				}
+				double sum = 0.0;
+				for (int ordinal1 : neighbors) {
+					sum += getWeight(counts[ordinal1], blockCounts1[ordinal1],
+							blocks2[ordinal2].length);
+				}
+				double threshold = sum / neighbors.size();
+				thresholds[ordinal2] = threshold;
+				edgeCounts[ordinal2] = neighbors.size();
+
+				Collections.sort(neighbors);
+				for (int ordinal1 : neighbors) {
+					if (isKept(getWeight(counts[ordinal1], blockCounts1[ordinal1],
+							blocks2[ordinal2].length), threshold)) {
+						pairs.add(tuples1.get(ordinal1), tuple);
+					}
+					counts[ordinal1] = 0;
+				}
+			}
+		}, candsetBuilder);
+
+		long edges = 0;
+		for (long edgeCount : edgeCounts) {
+			edges += edgeCount;
+		}
+
+		int[] goldCounts = null == gold ? null : countGoldMatches(gold, table1, table2,
+				tuples1, tuples2, ordinals2, blocks1, blocks2, blockCounts1, thresholds);
+		return new MetaBlockingReport(blocks.size(), purgedBlocks, blockPairs, purgedPairs,
+				limit, edges, candsetBuilder.getNumPairs() - pairsBefore,
+				getHeaviestBlocks(blocks), goldCounts);
+	}
+
+	private List<Block> buildBlocks(Table table1, Table table2, List<Tuple> tuples1,
+			List<Tuple> tuples2) {
+		List<Block> blocks = new ArrayList<Block>();
+		for (int s = 0; s < sources.size(); s++) {
+			BlockSource source = sources.get(s);
+			Attribute attribute1 = table1.getAttributeByName(source.attr1Name);
+			Attribute attribute2 = table2.getAttributeByName(source.attr2Name);
+			if (null == attribute1 || null == attribute2) {
+				throw new IllegalArgumentException("No blocking attributes " + source);
+			}
+			Map<String, Block> sourceBlocks = new LinkedHashMap<String, Block>();
+			for (int ordinal = 0; ordinal < tuples1.size(); ordinal++) {
+				for (String key : source.getKeys(tuples1.get(ordinal).getAttributeValue(attribute1))) {
+					Block block = sourceBlocks.get(key);
+					if (null == block) {
+						block = new Block(source + "=" + key);
+						sourceBlocks.put(key, block);
+					}
+					block.ordinals1.add(ordinal);
+				}
+			}
+			for (int ordinal = 0; ordinal < tuples2.size(); ordinal++) {
+				for (String key : source.getKeys(tuples2.get(ordinal).getAttributeValue(attribute2))) {
+					Block block = sourceBlocks.get(key);
+					if (null != block) {
+						block.ordinals2.add(ordinal);
+					}
+				}
+			}
+			for (Block block : sourceBlocks.values()) {
+				if (!block.ordinals2.isEmpty()) {
+					blocks.add(block);
+				}
+			}
+		}
+		return blocks;
+	}
+
+	private double getWeight(int commonBlocks, int blockCount1, int blockCount2) {
+		if (weighting == Weighting.JACCARD) {
+			return (double) commonBlocks / (blockCount1 + blockCount2 - commonBlocks);
+		}
+		return commonBlocks;
+	}
+
+	// guards the average against rounding errors when all the weights are equal
+	private static boolean isKept(double weight, double threshold) {
+		return weight >= threshold - 1e-9;
+	}
+
+	private static Map<Tuple, Integer> getOrdinals(List<Tuple> tuples) {
+		Map<Tuple, Integer> ordinals = new IdentityHashMap<Tuple, Integer>(tuples.size());
+		for (int i = 0; i < tuples.size(); i++) {
+			ordinals.put(tuples.get(i), i);
+		}
+		return ordinals;
+	}
+
+	private static Map<String, Long> getHeaviestBlocks(List<Block> blocks) {
+		List<Block> sorted = new ArrayList<Block>(blocks);
+		Collections.sort(sorted, new Comparator<Block>() {
+			public int compare(Block b1, Block b2) {
+				return Long.compare(b2.getPairs(), b1.getPairs());
+			}
+		});
+		Map<String, Long> heaviest = new LinkedHashMap<String, Long>();
+		for (Block block : sorted.subList(0, Math.min(HEAVIEST_BLOCKS, sorted.size()))) {
+			heaviest.put(block.key, block.getPairs());
+		}
+		return heaviest;
+	}
+
+	/*
+	 * Follows every gold match through the stages: sharing a key, still
+	 * sharing a block after purging, and kept by the pruning of its table2
+	 * node. Returns the number of gold matches and the numbers left after
+	 * every stage.
+	 */
+	private int[] countGoldMatches(Table gold, Table table1, Table table2,
+			List<Tuple> tuples1, List<Tuple> tuples2, Map<Tuple, Integer> ordinals2,
+			int[][] blocks1, int[][] blocks2, int[] blockCounts1, double[] thresholds) {
+		List<Attribute> goldAttributes = gold.getAttributes();
+		Attribute goldId1Attr = goldAttributes.get(1);
+		Attribute goldId2Attr = goldAttributes.get(2);
+		Attribute goldLabelAttr = goldAttributes.get(goldAttributes.size()-1);
+		Map<Tuple, Integer> ordinals1 = getOrdinals(tuples1);
+
+		int[] counts = new int[4];
+		for (Tuple goldTuple : gold.getAllTuples()) {
+			Object label = goldTuple.getAttributeValue(goldLabelAttr);
+			if (!Integer.valueOf(MatchStatus.MATCH.getLabel()).equals(label)) {
+				continue;
+			}
+			Tuple tuple1 = table1.getTuple(goldTuple.getAttributeValue(goldId1Attr));
+			Tuple tuple2 = table2.getTuple(goldTuple.getAttributeValue(goldId2Attr));
+			if (null == tuple1 || null == tuple2) {
+				continue;
+			}
+			counts[0]++;
+			if (!shareKey(table1, table2, tuple1, tuple2)) {
+				continue;
+			}
+			counts[1]++;
+
+			int ordinal1 = ordinals1.get(tuple1);
+			int ordinal2 = ordinals2.get(tuple2);
+			int common = 0;
+			for (int b : blocks2[ordinal2]) {
+				if (Arrays.binarySearch(blocks1[b], ordinal1) >= 0) {
+					common++;
+				}
+			}
+			if (common == 0) {
+				continue;
+			}
+			counts[2]++;
+			if (isKept(getWeight(common, blockCounts1[ordinal1], blocks2[ordinal2].length),
+					thresholds[ordinal2])) {
+				counts[3]++;
+			}
+		}
+		return counts;
+	}
+
+	private boolean shareKey(Table table1, Table table2, Tuple tuple1, Tuple tuple2) {
+		for (BlockSource source : sources) {
+			List<String> keys1 = source.getKeys(tuple1.getAttributeValue(
+					table1.getAttributeByName(source.attr1Name)));
+			List<String> keys2 = source.getKeys(tuple2.getAttributeValue(
+					table2.getAttributeByName(source.attr2Name)));
+			if (!Collections.disjoint(keys1, keys2)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+}
@@ -0,0 +1,147 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.util.Map;
+
+import com.google.common.base.Objects;
+
+/*
+ * Block statistics of a MetaBlocker run, and the recall it lost on the gold
+ * matches when a gold table was given.
+ */
+
+public class MetaBlockingReport {
+
+	private final int numBlocks;
+	private final int numPurgedBlocks;
+	private final long blockPairs;
+	private final long purgedPairs;
+	private final long maxBlockPairs;
+	private final long graphEdges;
+	private final long candsetPairs;
+	private final Map<String, Long> heaviestBlocks;
+	private final int goldMatches;
+	private final int blockedGoldMatches;
+	private final int purgedGoldMatches;
+	private final int prunedGoldMatches;
+
+	/*
+	 * goldCounts is null without gold. Otherwise it holds the number of gold
+	 * matches, and the numbers left after blocking, purging and pruning.
+	 */
+	public MetaBlockingReport(int numBlocks, int numPurgedBlocks, long blockPairs,
+			long purgedPairs, long maxBlockPairs, long graphEdges, long candsetPairs,
+			Map<String, Long> heaviestBlocks, int[] goldCounts) {
+		this.numBlocks = numBlocks;
+		this.numPurgedBlocks = numPurgedBlocks;
+		this.blockPairs = blockPairs;
+		this.purgedPairs = purgedPairs;
+		this.maxBlockPairs = maxBlockPairs;
+		this.graphEdges = graphEdges;
+		this.candsetPairs = candsetPairs;
+		this.heaviestBlocks = heaviestBlocks;
+		if (null == goldCounts) {
+			goldMatches = 0;
+			blockedGoldMatches = 0;
+			purgedGoldMatches = 0;
+			prunedGoldMatches = 0;
+		}
+		else {
+			goldMatches = goldCounts[0];
+			blockedGoldMatches = goldCounts[1];
+			purgedGoldMatches = goldCounts[2];
+			prunedGoldMatches = goldCounts[3];
+		}
+	}
+
+	// blocks shared by both tables, purged or not
+	public int getNumBlocks() {
+		return numBlocks;
+	}
+
+	public int getNumPurgedBlocks() {
+		return numPurgedBlocks;
+	}
+
+	// sum of the block sizes in pairs, counting a pair once per shared block
+	public long getBlockPairs() {
+		return blockPairs;
+	}
+
+	public long getPurgedPairs() {
+		return purgedPairs;
+	}
+
+	// size in pairs above which a block was purged
+	public long getMaxBlockPairs() {
+		return maxBlockPairs;
+	}
+
+	// distinct pairs sharing an unpurged block, before pruning
+	public long getGraphEdges() {
+		return graphEdges;
+	}
+
+	// pairs left after pruning, as added to the candset
+	public long getCandsetPairs() {
+		return candsetPairs;
+	}
+
+	// the largest blocks by size in pairs, largest first
+	public Map<String, Long> getHeaviestBlocks() {
+		return heaviestBlocks;
+	}
+
+	public boolean hasRecall() {
+		return goldMatches > 0;
+	}
+
+	// fraction of the gold matches sharing a block, before purging, NaN without gold
+	public double getBlockingRecall() {
+		return getRecall(blockedGoldMatches);
+	}
+
+	// fraction of the gold matches in the candset, NaN without gold
+	public double getRecall() {
+		return getRecall(prunedGoldMatches);
+	}
+
+	/*
+	 * Fraction of the gold matches found by the blocks that purging and
+	 * pruning lost, NaN without gold.
+	 */
+	public double getRecallLoss() {
+		if (blockedGoldMatches == 0) {
+			return Double.NaN;
+		}
+		return 1.0 - (double) prunedGoldMatches / blockedGoldMatches;
+	}
+
+	public double getPurgingRecallLoss() {
+		if (blockedGoldMatches == 0) {
+			return Double.NaN;
+		}
+		return 1.0 - (double) purgedGoldMatches / blockedGoldMatches;
+	}
+
+	private double getRecall(int matches) {
+		return goldMatches == 0 ? Double.NaN : (double) matches / goldMatches;
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+			.add("numBlocks", numBlocks)
+			.add("numPurgedBlocks", numPurgedBlocks)
+			.add("blockPairs", blockPairs)
+			.add("purgedPairs", purgedPairs)
+			.add("maxBlockPairs", maxBlockPairs)
+			.add("graphEdges", graphEdges)
+			.add("candsetPairs", candsetPairs)
+			.add("heaviestBlocks", heaviestBlocks)
+			.add("blockingRecall", getBlockingRecall())
+			.add("recall", getRecall())
+			.add("purgingRecallLoss", getPurgingRecallLoss())
+			.add("recallLoss", getRecallLoss())
+			.toString();
+	}
+}
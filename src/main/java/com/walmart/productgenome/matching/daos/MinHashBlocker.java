@@ -0,0 +1,248 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.utils.TokenUtils;
+
+/*
+ * MinHash-LSH blocker for approximate Jaccard similarity over the token sets
+ * of long text attributes.
+ *
+ * Every tuple gets a signature of bands * rows min-hashes of its tokens. The
+ * signature is cut into bands of rows values each, and two tuples become
+ * candidates when at least one band is identical. A candidate is emitted if
+ * the fraction of equal min-hashes (the estimate of the Jaccard similarity)
+ * clears the threshold.
+ *
+ * A pair with Jaccard similarity s shares a band with probability
+ * 1 - (1 - s^rows)^bands. forThreshold picks the bands and rows that reach a
+ * recall target at the threshold within a budget of hash functions.
+ */
+public class MinHashBlocker {
+
+	public static final int DEFAULT_NUM_HASHES = 128;
+	public static final int DEFAULT_SEED = 17;
+
+	private final double threshold;
+	private final int bands;
+	private final int rows;
+	private final int seed;
+
+	public MinHashBlocker(double threshold, int bands, int rows, int seed) {
+		if (threshold <= 0.0 || threshold > 1.0) {
+			throw new IllegalArgumentException("Jaccard threshold must be in (0, 1]: " + threshold);
+		}
+		if (bands < 1 || rows < 1) {
+			throw new IllegalArgumentException("Bands and rows must be positive: "
+					+ bands + ", " + rows);
+		}
+		this.threshold = threshold;
+		this.bands = bands;
+		this.rows = rows;
+		this.seed = seed;
+	}
+
+	/*
+	 * Chooses the number of rows per band as large as possible (which prunes
+	 * the dissimilar pairs most aggressively) and then the smallest number of
+	 * bands so that a pair at the threshold is a candidate with probability at
+	 * least recallTarget, using at most maxHashes hash functions.
+	 */
+	public static MinHashBlocker forThreshold(double threshold, double recallTarget,
+			int maxHashes, int seed) {
+		if (recallTarget <= 0.0 || recallTarget >= 1.0) {
+			throw new IllegalArgumentException("Recall target must be in (0, 1): " + recallTarget);
+		}
+		for (int r = maxHashes; r >= 1; r--) {
+			double bandMatch = Math.pow(threshold, r);
+			int maxBands = maxHashes / r;
+			for (int b = 1; b <= maxBands; b++) {
+				if (getCandidateProbability(bandMatch, b) >= recallTarget) {
+					return new MinHashBlocker(threshold, b, r, seed);
+				}
+			}
+		}
+		throw new IllegalArgumentException("Cannot reach recall " + recallTarget
+				+ " at threshold " + threshold + " with " + maxHashes + " hash functions");
+	}
+
+	private static double getCandidateProbability(double bandMatch, int bands) {
+		return 1.0 - Math.pow(1.0 - bandMatch, bands);
+	}
+
+	public int getBands() {
+		return bands;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getNumHashes() {
+		return bands * rows;
+	}
+
+	public int getSeed() {
+		return seed;
+	}
+
+	/*
+	 * Returns one signature per tuple, in table order. Tuples without any
+	 * token get a null signature and never become candidates.
+	 */
+	public int[][] computeSignatures(Table table, Attribute attribute) {
+		return computeSignatures(table, attribute, getNumHashes(), seed);
+	}
+
+	public static int[][] computeSignatures(Table table, Attribute attribute,
+			int numHashes, int seed) {
+		int[] hashSeeds = getHashSeeds(numHashes, seed);
+		List<Tuple> tuples = table.getAllTuplesInOrder();
+		int[][] signatures = new int[tuples.size()][];
+		for (int i = 0; i < signatures.length; i++) {
+			Object value = tuples.get(i).getAttributeValue(attribute);
+			if (null == value) {
+				continue;
+			}
+			List<String> tokens = TokenUtils.getDistinctTokens(String.valueOf(value));
+			if (tokens.isEmpty()) {
+				continue;
+			}
+			int[] signature = new int[numHashes];
+			Arrays.fill(signature, Integer.MAX_VALUE);
+			for (String token : tokens) {
+				int tokenHash = token.hashCode();
+				for (int h = 0; h < numHashes; h++) {
+					int hash = mix(tokenHash ^ hashSeeds[h]);
+					if (hash < signature[h]) {
+						signature[h] = hash;
+					}
+				}
+			}
+			signatures[i] = signature;
+		}
+		return signatures;
+	}
+
+	private static int[] getHashSeeds(int numHashes, int seed) {
+		int[] hashSeeds = new int[numHashes];
+		int state = seed;
+		for (int h = 0; h < numHashes; h++) {
+			state = mix(state + 0x9e3779b9);
+			hashSeeds[h] = state;
+		}
+		return hashSeeds;
+	}
+
+	// finalization mix of MurmurHash3
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	public void block(Table table1, Table table2, int[][] signatures1,
+			int[][] signatures2, CandsetBuilder candsetBuilder) {
+		int numHashes = getNumHashes();
+		List<Tuple> tuples1 = table1.getAllTuplesInOrder();
+		List<Tuple> tuples2 = table2.getAllTuplesInOrder();
+		checkSignatures(signatures1, tuples1.size(), numHashes);
+		checkSignatures(signatures2, tuples2.size(), numHashes);
+
+		// one hash table per band over the table1 signatures
+		List<Map<Long, List<Integer>>> bandTables = new ArrayList<Map<Long, List<Integer>>>(bands);
+		for (int b = 0; b < bands; b++) {
+			Map<Long, List<Integer>> bandTable = new HashMap<Long, List<Integer>>();
+			for (int ordinal = 0; ordinal < signatures1.length; ordinal++) {
+				int[] signature = signatures1[ordinal];
+				if (null == signature) {
+					continue;
+				}
+				Long bandKey = getBandKey(signature, b);
+				List<Integer> bucket = bandTable.get(bandKey);
+				if (null == bucket) {
+					bucket = new ArrayList<Integer>(1);
+					bandTable.put(bandKey, bucket);
+				}
+				bucket.add(ordinal);
+			}
+			bandTables.add(bandTable);
+		}
+
+		int[] lastProbe = new int[signatures1.length];
+		Arrays.fill(lastProbe, -1);
+		List<Integer> candidates = new ArrayList<Integer>();
+		for (int probe = 0; probe < signatures2.length; probe++) {
+			int[] signature2 = signatures2[probe];
+			if (null == signature2) {
+				continue;
+			}
+			candidates.clear();
+			for (int b = 0; b < bands; b++) {
+				List<Integer> bucket = bandTables.get(b).get(getBandKey(signature2, b));
+				if (null == bucket) {
+					continue;
+				}
+				for (int ordinal : bucket) {
+					if (lastProbe[ordinal] != probe) {
+						lastProbe[ordinal] = probe;
+						candidates.add(ordinal);
+					}
+				}
+			}
+
+			// verify the estimated similarity and emit in table1 order
+			Collections.sort(candidates);
+			Tuple tuple2 = tuples2.get(probe);
+			for (int ordinal : candidates) {
+				if (estimateJaccard(signatures1[ordinal], signature2) >= threshold) {
+					candsetBuilder.addPair(tuples1.get(ordinal), tuple2);
+				}
+			}
+		}
+	}
+
+	private static void checkSignatures(int[][] signatures, int numTuples, int numHashes) {
+		if (signatures.length != numTuples) {
+			throw new IllegalArgumentException("Expected " + numTuples
+					+ " signatures, found " + signatures.length);
+		}
+		for (int[] signature : signatures) {
+			if (null != signature && signature.length != numHashes) {
+				throw new IllegalArgumentException("Expected signatures of "
+						+ numHashes + " hashes, found " + signature.length);
+			}
+		}
+	}
+
+	private long getBandKey(int[] signature, int band) {
+		long key = band;
+		int start = band * rows;
+		for (int i = start; i < start + rows; i++) {
+			key = key * 0x9e3779b97f4a7c15L + signature[i];
+			key ^= key >>> 29;
+		}
+		return key;
+	}
+
+	private static double estimateJaccard(int[] signature1, int[] signature2) {
+		int equal = 0;
+		for (int i = 0; i < signature1.length; i++) {
+			if (signature1[i] == signature2[i]) {
+				equal++;
+			}
+		}
+		return (double) equal / signature1.length;
+	}
+}
@@ -0,0 +1,122 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import com.walmart.productgenome.matching.models.Constants;
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Project;
+import com.walmart.productgenome.matching.models.data.Table;
+
+/*
+ * Persists the MinHash signatures of a table attribute in the blocking
+ * directory of the project, so that repeated blocking runs against the same
+ * table do not recompute them.
+ *
+ * A signature file records the length and the modification time of the table
+ * file it was computed from. It is recomputed whenever the table file changes,
+ * or when the number of hashes or the seed differ. Tables that are not saved
+ * to disk, or that changed in memory since they were loaded or saved (see
+ * Table.matchesFile), get fresh signatures that are not persisted.
+ */
+public class MinHashSignatureDao {
+
+	private static final int MAGIC = 0x4d485347; // "MHSG"
+
+	public static int[][] getSignatures(String projectName, Table table,
+			Attribute attribute, int numHashes, int seed) throws IOException {
+		File tableFile = new File(Constants.ROOT_DIR + projectName + "/"
+				+ table.getName() + Constants.TABLE_EXTENSION);
+		Project project = ProjectDao.open(projectName);
+		if (!tableFile.exists() || (null != project && project.isUnsavedTable(table.getName()))
+				|| !table.matchesFile()) {
+			return MinHashBlocker.computeSignatures(table, attribute, numHashes, seed);
+		}
+
+		File signatureFile = getSignatureFile(projectName, table.getName(), attribute.getName());
+		int[][] signatures = load(signatureFile, tableFile, numHashes, seed, table.getSize());
+		if (null == signatures) {
+			signatures = MinHashBlocker.computeSignatures(table, attribute, numHashes, seed);
+			save(signatureFile, tableFile, numHashes, seed, signatures);
+		}
+		return signatures;
+	}
+
+	private static File getSignatureFile(String projectName, String tableName,
+			String attributeName) {
+		File blockingDir = new File(Constants.ROOT_DIR + projectName + "/"
+				+ Constants.BLOCKING_DIR_NAME);
+		return new File(blockingDir, tableName + "." + attributeName
+				+ Constants.MINHASH_EXTENSION);
+	}
+
+	// returns null if the file is missing or stale
+	private static int[][] load(File signatureFile, File tableFile, int numHashes,
+			int seed, long numTuples) throws IOException {
+		if (!signatureFile.exists()) {
+			return null;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(signatureFile)));
+		try {
+			if (in.readInt() != MAGIC
+					|| in.readLong() != tableFile.length()
+					|| in.readLong() != tableFile.lastModified()
+					|| in.readInt() != numHashes
+					|| in.readInt() != seed
+					|| in.readInt() != numTuples) {
+				return null;
+			}
+			int[][] signatures = new int[(int) numTuples][];
+			for (int i = 0; i < signatures.length; i++) {
+				if (!in.readBoolean()) {
+					continue;
+				}
+				int[] signature = new int[numHashes];
+				for (int h = 0; h < numHashes; h++) {
+					signature[h] = in.readInt();
+				}
+				signatures[i] = signature;
+			}
+			return signatures;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static void save(File signatureFile, File tableFile, int numHashes,
+			int seed, int[][] signatures) throws IOException {
+		File blockingDir = signatureFile.getParentFile();
+		if (!blockingDir.exists() && !blockingDir.mkdirs()) {
+			throw new IOException("Failed to create directory " + blockingDir);
+		}
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(signatureFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeLong(tableFile.length());
+			out.writeLong(tableFile.lastModified());
+			out.writeInt(numHashes);
+			out.writeInt(seed);
+			out.writeInt(signatures.length);
+			for (int[] signature : signatures) {
+				out.writeBoolean(null != signature);
+				if (null != signature) {
+					for (int hash : signature) {
+						out.writeInt(hash);
+					}
+				}
+			}
+		}
+		finally {
+			out.close();
+		}
+	}
+}
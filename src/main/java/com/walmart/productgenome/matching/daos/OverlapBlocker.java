@@ -0,0 +1,270 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.utils.TokenUtils;
+
+/*
+ * Token based set similarity blocker. A pair of tuples is a candidate if the
+ * token sets of their blocking attribute values have a Jaccard similarity (or
+ * an absolute overlap) of at least the given threshold.
+ *
+ * Tokens are ordered by increasing document frequency over both tables, so
+ * that the rare tokens come first. Only the prefix of every table1 token set
+ * is indexed, and only the prefix of every table2 token set is probed. Any two
+ * sets that clear the threshold share at least one token in their prefixes.
+ * Candidates are further pruned by the length filter and then verified by
+ * merging the sorted token arrays.
+ */
+public class OverlapBlocker {
+
+	public enum Measure {
+		JACCARD,
+		OVERLAP
+	}
+
+	// guards the prefix lengths against rounding errors in threshold * length
+	private static final double EPSILON = 1e-9;
+
+	private final Measure measure;
+	private final double threshold;
+
+	public OverlapBlocker(Measure measure, double threshold) {
+		if (measure == Measure.JACCARD && (threshold <= 0.0 || threshold > 1.0)) {
+			throw new IllegalArgumentException("Jaccard threshold must be in (0, 1]: " + threshold);
+		}
+		if (measure == Measure.OVERLAP && threshold < 1.0) {
+			throw new IllegalArgumentException("Overlap threshold must be at least 1: " + threshold);
+		}
+		this.measure = measure;
+		this.threshold = threshold;
+	}
+
+	public void block(Table table1, Table table2, Attribute attribute1,
+			Attribute attribute2, CandsetBuilder candsetBuilder) {
+		List<Tuple> tuples1 = table1.getAllTuplesInOrder();
+		List<Tuple> tuples2 = table2.getAllTuplesInOrder();
+
+		List<List<String>> tokens1 = tokenize(tuples1, attribute1);
+		List<List<String>> tokens2 = tokenize(tuples2, attribute2);
+
+		// global token order: increasing document frequency over both tables
+		Map<String, Integer> tokenRanks = getTokenRanks(tokens1, tokens2);
+		int[][] sets1 = toSortedRankArrays(tokens1, tokenRanks);
+
+		// index the prefixes of the table1 token sets, shortest sets first, so
+		// that every posting list is sorted by the set length
+		Integer[] byLength = new Integer[sets1.length];
+		for (int i = 0; i < byLength.length; i++) {
+			byLength[i] = i;
+		}
+		final int[][] sets = sets1;
+		Arrays.sort(byLength, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				return sets[i1].length - sets[i2].length;
+			}
+		});
+
+		int[] postingSizes = new int[tokenRanks.size()];
+		for (int[] set : sets1) {
+			int prefixLength = getPrefixLength(set.length);
+			for (int j = 0; j < prefixLength; j++) {
+				postingSizes[set[j]]++;
+			}
+		}
+		int[][] postings = new int[postingSizes.length][];
+		for (int rank = 0; rank < postings.length; rank++) {
+			postings[rank] = new int[postingSizes[rank]];
+			postingSizes[rank] = 0;
+		}
+		for (Integer ordinal : byLength) {
+			int[] set = sets1[ordinal];
+			int prefixLength = getPrefixLength(set.length);
+			for (int j = 0; j < prefixLength; j++) {
+				int rank = set[j];
+				postings[rank][postingSizes[rank]++] = ordinal;
+			}
+		}
+
+		// probe the index with the prefixes of the table2 token sets
+		int[] lastProbe = new int[sets1.length];
+		Arrays.fill(lastProbe, -1);
+		List<Integer> candidates = new ArrayList<Integer>();
+		for (int probe = 0; probe < tuples2.size(); probe++) {
+			int[] set2 = toSortedRankArray(tokens2.get(probe), tokenRanks);
+			int prefixLength = getPrefixLength(set2.length);
+			int minLength = getMinLength(set2.length);
+			int maxLength = getMaxLength(set2.length);
+			candidates.clear();
+			for (int j = 0; j < prefixLength; j++) {
+				int[] posting = postings[set2[j]];
+				int start = lowerBound(posting, sets1, minLength);
+				for (int k = start; k < posting.length; k++) {
+					int ordinal = posting[k];
+					if (sets1[ordinal].length > maxLength) {
+						break;
+					}
+					if (lastProbe[ordinal] != probe) {
+						lastProbe[ordinal] = probe;
+						candidates.add(ordinal);
+					}
+				}
+			}
+
+			// verify the candidates and emit them in table1 order
+			Collections.sort(candidates);
+			Tuple tuple2 = tuples2.get(probe);
+			for (int ordinal : candidates) {
+				int[] set1 = sets1[ordinal];
+				if (isSimilar(set1.length, set2.length, getOverlap(set1, set2))) {
+					candsetBuilder.addPair(tuples1.get(ordinal), tuple2);
+				}
+			}
+		}
+	}
+
+	private static List<List<String>> tokenize(List<Tuple> tuples, Attribute attribute) {
+		List<List<String>> tokens = new ArrayList<List<String>>(tuples.size());
+		for (Tuple tuple : tuples) {
+			Object value = tuple.getAttributeValue(attribute);
+			if (null == value) {
+				tokens.add(Collections.<String>emptyList());
+			}
+			else {
+				tokens.add(TokenUtils.getDistinctTokens(String.valueOf(value)));
+			}
+		}
+		return tokens;
+	}
+
+	private static Map<String, Integer> getTokenRanks(List<List<String>> tokens1,
+			List<List<String>> tokens2) {
+		final Map<String, Integer> frequencies = new HashMap<String, Integer>();
+		countTokens(tokens1, frequencies);
+		countTokens(tokens2, frequencies);
+		List<String> order = new ArrayList<String>(frequencies.keySet());
+		Collections.sort(order, new Comparator<String>() {
+			public int compare(String t1, String t2) {
+				int cmp = frequencies.get(t1).compareTo(frequencies.get(t2));
+				return cmp != 0 ? cmp : t1.compareTo(t2);
+			}
+		});
+		Map<String, Integer> ranks = new HashMap<String, Integer>();
+		for (int rank = 0; rank < order.size(); rank++) {
+			ranks.put(order.get(rank), rank);
+		}
+		return ranks;
+	}
+
+	private static void countTokens(List<List<String>> tokens, Map<String, Integer> frequencies) {
+		for (List<String> tokenList : tokens) {
+			for (String token : tokenList) {
+				Integer count = frequencies.get(token);
+				frequencies.put(token, null == count ? 1 : count + 1);
+			}
+		}
+	}
+
+	private static int[][] toSortedRankArrays(List<List<String>> tokens,
+			Map<String, Integer> tokenRanks) {
+		int[][] sets = new int[tokens.size()][];
+		for (int i = 0; i < sets.length; i++) {
+			sets[i] = toSortedRankArray(tokens.get(i), tokenRanks);
+		}
+		return sets;
+	}
+
+	private static int[] toSortedRankArray(List<String> tokens, Map<String, Integer> tokenRanks) {
+		int[] set = new int[tokens.size()];
+		for (int i = 0; i < set.length; i++) {
+			set[i] = tokenRanks.get(tokens.get(i));
+		}
+		Arrays.sort(set);
+		return set;
+	}
+
+	// minimum overlap that a set of the given size needs with any similar set
+	private int getMinOverlap(int length) {
+		if (measure == Measure.JACCARD) {
+			return (int) Math.ceil(threshold * length - EPSILON);
+		}
+		return (int) Math.ceil(threshold - EPSILON);
+	}
+
+	private int getPrefixLength(int length) {
+		int minOverlap = getMinOverlap(length);
+		if (length == 0 || minOverlap > length) {
+			return 0;
+		}
+		return length - minOverlap + 1;
+	}
+
+	private int getMinLength(int length) {
+		if (measure == Measure.JACCARD) {
+			return (int) Math.ceil(threshold * length - EPSILON);
+		}
+		return getMinOverlap(length);
+	}
+
+	private int getMaxLength(int length) {
+		if (measure == Measure.JACCARD) {
+			return (int) Math.floor(length / threshold + EPSILON);
+		}
+		return Integer.MAX_VALUE;
+	}
+
+	private boolean isSimilar(int length1, int length2, int overlap) {
+		if (overlap == 0) {
+			return false;
+		}
+		if (measure == Measure.JACCARD) {
+			return overlap >= threshold * (length1 + length2 - overlap) - EPSILON;
+		}
+		return overlap >= threshold - EPSILON;
+	}
+
+	private static int getOverlap(int[] set1, int[] set2) {
+		int overlap = 0;
+		int i = 0;
+		int j = 0;
+		while (i < set1.length && j < set2.length) {
+			if (set1[i] == set2[j]) {
+				overlap++;
+				i++;
+				j++;
+			}
+			else if (set1[i] < set2[j]) {
+				i++;
+			}
+			else {
+				j++;
+			}
+		}
+		return overlap;
+	}
+
+	// first position in the posting list whose set has at least minLength tokens
+	private static int lowerBound(int[] posting, int[][] sets, int minLength) {
+		int low = 0;
+		int high = posting.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sets[posting[mid]].length < minLength) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
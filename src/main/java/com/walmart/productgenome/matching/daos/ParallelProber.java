@@ -0,0 +1,185 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+/*
+ * Runs the probe phase of a blocker over chunks of table2 in parallel.
+ *
+ * table2 is processed in rounds of a few chunks per thread. Every chunk
+ * collects its candidate pairs in its own buffer. Once all the chunks of a
+ * round are probed, the pair ids are assigned from the prefix sums of the
+ * chunk sizes, the candset tuples are built in parallel and then appended in
+ * chunk order. The candset is therefore identical to the one a sequential
+ * probe of table2 would produce, including the pair ids. When the candset
+ * builder deduplicates, the pairs it already has are dropped before the ids
+ * are assigned. An in-memory candset builds no tuples, so its pairs are
+ * added directly in chunk order. Only the pairs of one round are buffered, which keeps the
+ * memory bounded when the candset is streamed to disk.
+ */
+public class ParallelProber {
+
+	/*
+	 * Looks up the table1 tuples that form candidate pairs with a table2 tuple.
+	 * Called concurrently from several threads, so it must only read shared state.
+	 */
+	public interface Probe {
+		void probe(Tuple table2Tuple, PairBuffer pairs);
+	}
+
+	public static class PairBuffer {
+		private final List<Tuple> table1Tuples = new ArrayList<Tuple>();
+		private final List<Tuple> table2Tuples = new ArrayList<Tuple>();
+
+		public void add(Tuple table1Tuple, Tuple table2Tuple) {
+			table1Tuples.add(table1Tuple);
+			table2Tuples.add(table2Tuple);
+		}
+
+		public int size() {
+			return table1Tuples.size();
+		}
+
+		private void retainNewPairs(CandsetBuilder candsetBuilder) {
+			int kept = 0;
+			for (int i = 0; i < table1Tuples.size(); i++) {
+				Tuple table1Tuple = table1Tuples.get(i);
+				Tuple table2Tuple = table2Tuples.get(i);
+				if (candsetBuilder.markPair(table1Tuple, table2Tuple)) {
+					table1Tuples.set(kept, table1Tuple);
+					table2Tuples.set(kept, table2Tuple);
+					kept++;
+				}
+			}
+			table1Tuples.subList(kept, table1Tuples.size()).clear();
+			table2Tuples.subList(kept, table2Tuples.size()).clear();
+		}
+	}
+
+	private static final int CHUNK_SIZE = 1024;
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
+	public static void run(List<Tuple> tuples2, Probe probe,
+			CandsetBuilder candsetBuilder) {
+		run(tuples2, probe, candsetBuilder, POOL, CHUNK_SIZE);
+	}
+
+	// the pool and the chunk size are only set by the tests
+	static void run(List<Tuple> tuples2, Probe probe, CandsetBuilder candsetBuilder,
+			ForkJoinPool pool, int chunkSize) {
+		int roundSize = pool.getParallelism() * CHUNKS_PER_THREAD * chunkSize;
+		for (int start = 0; start < tuples2.size(); start += roundSize) {
+			int end = Math.min(tuples2.size(), start + roundSize);
+			runRound(tuples2, start, end, probe, candsetBuilder, pool, chunkSize);
+		}
+	}
+
+	private static void runRound(final List<Tuple> tuples2, int roundStart,
+			int roundEnd, final Probe probe, final CandsetBuilder candsetBuilder,
+			ForkJoinPool pool, int chunkSize) {
+		// probe the chunks
+		List<Callable<PairBuffer>> probeTasks = new ArrayList<Callable<PairBuffer>>();
+		for (int chunkStart = roundStart; chunkStart < roundEnd; chunkStart += chunkSize) {
+			final int start = chunkStart;
+			final int end = Math.min(roundEnd, start + chunkSize);
+			probeTasks.add(new Callable<PairBuffer>() {
+				public PairBuffer call() {
+					PairBuffer pairs = new PairBuffer();
+					for (int i = start; i < end; i++) {
+						probe.probe(tuples2.get(i), pairs);
+					}
+					return pairs;
+				}
+			});
+		}
+		List<PairBuffer> buffers = invokeAll(pool, probeTasks);
+
+		if (!candsetBuilder.isStreaming()) {
+			for (PairBuffer pairs : buffers) {
+				for (int i = 0; i < pairs.size(); i++) {
+					candsetBuilder.addPair(pairs.table1Tuples.get(i), pairs.table2Tuples.get(i));
+				}
+			}
+			return;
+		}
+
+		// drop the pairs the candset already has, in chunk order
+		if (candsetBuilder.isDeduplicating()) {
+			for (PairBuffer pairs : buffers) {
+				pairs.retainNewPairs(candsetBuilder);
+			}
+		}
+
+		// assign the pair ids from the prefix sums of the chunk sizes
+		int[] firstPairIds = new int[buffers.size()];
+		int nextPairId = candsetBuilder.getNumPairs() + 1;
+		for (int chunk = 0; chunk < buffers.size(); chunk++) {
+			firstPairIds[chunk] = nextPairId;
+			nextPairId += buffers.get(chunk).size();
+		}
+
+		// build the candset tuples
+		List<Callable<Tuple[]>> buildTasks = new ArrayList<Callable<Tuple[]>>(buffers.size());
+		for (int chunk = 0; chunk < buffers.size(); chunk++) {
+			final PairBuffer pairs = buffers.get(chunk);
+			final int firstPairId = firstPairIds[chunk];
+			buildTasks.add(new Callable<Tuple[]>() {
+				public Tuple[] call() {
+					Tuple[] candidates = new Tuple[pairs.size()];
+					for (int i = 0; i < candidates.length; i++) {
+						candidates[i] = candsetBuilder.createPair(firstPairId + i,
+								pairs.table1Tuples.get(i), pairs.table2Tuples.get(i));
+					}
+					return candidates;
+				}
+			});
+		}
+
+		// append them in chunk order
+		for (Tuple[] candidates : invokeAll(pool, buildTasks)) {
+			for (Tuple candidate : candidates) {
+				candsetBuilder.addCreatedPair(candidate);
+			}
+		}
+	}
+
+	private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) {
+		List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			if (tasks.size() == 1) {
+				// not worth a hand-off to the pool
+				results.add(tasks.get(0).call());
+				return results;
+			}
+			for (Future<T> future : pool.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException("Parallel probe failed", cause);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Parallel probe interrupted", e);
+		}
+		catch (RuntimeException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Parallel probe failed", e);
+		}
+		return results;
+	}
+}
@@ -0,0 +1,303 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Dictionary;
+import com.walmart.productgenome.matching.models.data.Schema;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+/*
+ * Equality index over the keys a KeyFunction derives from one attribute of a
+ * table, computed once per tuple. Tuples are addressed by their dense ordinal
+ * in table order, and every posting list is a sorted run of ordinals in one
+ * flat int buffer, so the index holds no boxed ids. The buffer is either on
+ * the heap or a memory-mapped index file (see BlockingIndexDao).
+ *
+ * Conjunctions of several indexes are answered by intersect, which walks the
+ * posting lists from the shortest one and gallops through the longer ones.
+ * Only the shortest list is copied; the others are read in place in their
+ * buffers, so a probe of a mapped index does not copy its long lists.
+ */
+public class PostingIndex {
+
+	// the slot of a key the index does not have
+	public static final int NO_SLOT = -1;
+
+	private static final int[] EMPTY = new int[0];
+
+	// value -> slot; the postings of slot s are postings[offsets[s], offsets[s + 1])
+	private final Map<Object, Integer> slots;
+	private final int[] offsets;
+	private final IntBuffer postings;
+
+	PostingIndex(Map<Object, Integer> slots, int[] offsets, IntBuffer postings) {
+		this.slots = slots;
+		this.offsets = offsets;
+		this.postings = postings;
+	}
+
+	// indexes the non-empty string values of attribute, as the blocking DAO always did
+	public static PostingIndex build(List<Tuple> tuples, Attribute attribute) {
+		return build(tuples, attribute, KeyFunctions.exact());
+	}
+
+	// indexes the keys keyFunction derives from the values of attribute
+	public static PostingIndex build(List<Tuple> tuples, Attribute attribute,
+			KeyFunction keyFunction) {
+		String[] keys = new String[tuples.size()];
+		for (int ordinal = 0; ordinal < keys.length; ordinal++) {
+			keys[ordinal] = keyFunction.getKey(tuples.get(ordinal).getAttributeValue(attribute));
+		}
+		return build(keys);
+	}
+
+	/*
+	 * Indexes the keys of an attribute of a table, reading the tuples by slot.
+	 * The keys of a dictionary-encoded attribute are derived once per code.
+	 */
+	public static PostingIndex build(Table table, Attribute attribute,
+			KeyFunction keyFunction) {
+		List<Tuple> tuples = table.getAllTuplesInOrder();
+		Schema schema = table.getSchema();
+		int attributeSlot = schema.getSlot(attribute);
+		Dictionary dictionary = table.getDictionary(attribute);
+		String[] codeKeys = null == dictionary ? null : new String[dictionary.size()];
+		BitSet hasCodeKey = new BitSet();
+		String[] keys = new String[tuples.size()];
+		for (int ordinal = 0; ordinal < keys.length; ordinal++) {
+			Tuple tuple = tuples.get(ordinal);
+			int code = null == dictionary ? Dictionary.NO_CODE : dictionary.getCode(tuple);
+			if (code == Dictionary.NO_CODE) {
+				keys[ordinal] = keyFunction.getKey(tuple.getValue(schema, attributeSlot));
+				continue;
+			}
+			if (!hasCodeKey.get(code)) {
+				codeKeys[code] = keyFunction.getKey(dictionary.getValue(code));
+				hasCodeKey.set(code);
+			}
+			keys[ordinal] = codeKeys[code];
+		}
+		return build(keys);
+	}
+
+	// indexes the keys of the tuples by ordinal, null for the tuples without one
+	private static PostingIndex build(String[] keys) {
+		// count the tuples per key
+		Map<Object, Integer> slots = new HashMap<Object, Integer>();
+		int[] tupleSlots = new int[keys.length];
+		int[] counts = new int[16];
+		for (int ordinal = 0; ordinal < keys.length; ordinal++) {
+			String key = keys[ordinal];
+			if (null == key) {
+				tupleSlots[ordinal] = -1;
+				continue;
+			}
+			Integer slot = slots.get(key);
+			if (null == slot) {
+				slot = slots.size();
+				slots.put(key, slot);
+				if (slot == counts.length) {
+					counts = Arrays.copyOf(counts, counts.length * 2);
+				}
+			}
+			counts[slot]++;
+			tupleSlots[ordinal] = slot;
+		}
+
+		// fill the posting lists, which come out sorted since the tuples are in order
+		int numSlots = slots.size();
+		int[] offsets = new int[numSlots + 1];
+		for (int slot = 0; slot < numSlots; slot++) {
+			offsets[slot + 1] = offsets[slot] + counts[slot];
+		}
+		int[] postings = new int[offsets[numSlots]];
+		int[] next = Arrays.copyOf(offsets, numSlots);
+		for (int ordinal = 0; ordinal < keys.length; ordinal++) {
+			if (tupleSlots[ordinal] >= 0) {
+				postings[next[tupleSlots[ordinal]]++] = ordinal;
+			}
+		}
+		return new PostingIndex(slots, offsets, IntBuffer.wrap(postings));
+	}
+
+	// returns a copy of the sorted ordinals of the tuples with this key, or null
+	public int[] get(Object key) {
+		int slot = getSlot(key);
+		return slot == NO_SLOT ? null : copy(postings, offsets[slot], offsets[slot + 1]);
+	}
+
+	// the slot of the posting list of a key, NO_SLOT if there is none
+	public int getSlot(Object key) {
+		Integer slot = slots.get(key);
+		return null == slot ? NO_SLOT : slot;
+	}
+
+	/*
+	 * The posting list of a slot, read in place: the ordinals at the positions
+	 * from getStart(slot) to getEnd(slot), exclusive.
+	 */
+	public int getStart(int slot) {
+		return offsets[slot];
+	}
+
+	public int getEnd(int slot) {
+		return offsets[slot + 1];
+	}
+
+	public int getPosting(int position) {
+		// absolute reads, so concurrent probes can share the buffer
+		return postings.get(position);
+	}
+
+	// number of distinct keys
+	public int size() {
+		return slots.size();
+	}
+
+	Map<Object, Integer> getSlots() {
+		return slots;
+	}
+
+	int[] getOffsets() {
+		return offsets;
+	}
+
+	IntBuffer getPostings() {
+		return postings;
+	}
+
+	/*
+	 * Intersects sorted posting lists. The lists are taken in increasing order
+	 * of length, so the candidates never outnumber the shortest list, and every
+	 * candidate is located in a longer list by galloping from the position of
+	 * the previous one.
+	 */
+	public static int[] intersect(int[][] lists) {
+		IntBuffer[] buffers = new IntBuffer[lists.length];
+		int[] starts = new int[lists.length];
+		int[] ends = new int[lists.length];
+		for (int l = 0; l < lists.length; l++) {
+			buffers[l] = IntBuffer.wrap(lists[l]);
+			ends[l] = lists[l].length;
+		}
+		return intersect(buffers, starts, ends);
+	}
+
+	// intersects the posting lists of slots[i] of indexes[i], read in place
+	public static int[] intersect(PostingIndex[] indexes, int[] slots) {
+		IntBuffer[] buffers = new IntBuffer[slots.length];
+		int[] starts = new int[slots.length];
+		int[] ends = new int[slots.length];
+		for (int l = 0; l < slots.length; l++) {
+			buffers[l] = indexes[l].postings;
+			starts[l] = indexes[l].offsets[slots[l]];
+			ends[l] = indexes[l].offsets[slots[l] + 1];
+		}
+		return intersect(buffers, starts, ends);
+	}
+
+	// the lists are lists[l][starts[l], ends[l])
+	private static int[] intersect(IntBuffer[] lists, int[] starts, int[] ends) {
+		int numLists = lists.length;
+		if (numLists == 0) {
+			return EMPTY;
+		}
+		// the lists in increasing order of length, by insertion since there are few
+		int[] order = new int[numLists];
+		for (int l = 0; l < numLists; l++) {
+			int length = ends[l] - starts[l];
+			int i = l;
+			while (i > 0 && ends[order[i - 1]] - starts[order[i - 1]] > length) {
+				order[i] = order[i - 1];
+				i--;
+			}
+			order[i] = l;
+		}
+
+		int[] result = copy(lists[order[0]], starts[order[0]], ends[order[0]]);
+		int size = result.length;
+		for (int l = 1; l < numLists && size > 0; l++) {
+			IntBuffer list = lists[order[l]];
+			int end = ends[order[l]];
+			int newSize = 0;
+			int position = starts[order[l]];
+			for (int i = 0; i < size && position < end; i++) {
+				position = gallop(list, position, end, result[i]);
+				if (position < end && list.get(position) == result[i]) {
+					result[newSize++] = result[i];
+					position++;
+				}
+			}
+			size = newSize;
+		}
+		return size == result.length ? result : Arrays.copyOf(result, size);
+	}
+
+	private static int[] copy(IntBuffer list, int start, int end) {
+		int[] copy = new int[end - start];
+		for (int i = 0; i < copy.length; i++) {
+			// absolute reads, so concurrent probes can share the buffer
+			copy[i] = list.get(start + i);
+		}
+		return copy;
+	}
+
+	// gallop over list[from, end) of a buffer, read with absolute gets
+	static int gallop(IntBuffer list, int from, int end, int target) {
+		int step = 1;
+		int low = from;
+		int high = from;
+		while (high < end && list.get(high) < target) {
+			low = high + 1;
+			high = from + step;
+			step <<= 1;
+		}
+		if (high > end) {
+			high = end;
+		}
+		// binary search in [low, high]
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (list.get(mid) < target) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	// returns the first position at or after from whose value is at least target
+	static int gallop(int[] list, int from, int target) {
+		int step = 1;
+		int low = from;
+		int high = from;
+		while (high < list.length && list[high] < target) {
+			low = high + 1;
+			high = from + step;
+			step <<= 1;
+		}
+		if (high > list.length) {
+			high = list.length;
+		}
+		// binary search in [low, high]
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (list[mid] < target) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,153 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.utils.ExternalSorter;
+import com.walmart.productgenome.matching.utils.LongHashSet;
+
+/*
+ * Sorted neighborhood blocker. In every pass the tuples of both tables are
+ * sorted together on a blocking key, and a window of windowSize entries slides
+ * over the merged order. Every table1 tuple and table2 tuple that fall in the
+ * same window form a candidate pair. Multiple passes with different keys are
+ * unioned, each pair being emitted once.
+ *
+ * The sort spills to disk once the number of keyed tuples exceeds
+ * maxRecordsInMemory, so the keys of both tables never need to fit in memory
+ * at the same time.
+ */
+public class SortedNeighborhoodBlocker {
+
+	private static final byte TABLE1 = 1;
+	private static final byte TABLE2 = 2;
+
+	private static class Entry {
+		final String key;
+		final byte table;
+		final int ordinal;
+
+		Entry(String key, byte table, int ordinal) {
+			this.key = key;
+			this.table = table;
+			this.ordinal = ordinal;
+		}
+	}
+
+	private static final Comparator<Entry> ENTRY_COMPARATOR = new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			int cmp = e1.key.compareTo(e2.key);
+			if (cmp != 0) {
+				return cmp;
+			}
+			if (e1.table != e2.table) {
+				return e1.table - e2.table;
+			}
+			return e1.ordinal < e2.ordinal ? -1 : (e1.ordinal == e2.ordinal ? 0 : 1);
+		}
+	};
+
+	private static final ExternalSorter.Codec<Entry> ENTRY_CODEC = new ExternalSorter.Codec<Entry>() {
+		public void write(DataOutput out, Entry entry) throws IOException {
+			out.writeUTF(entry.key);
+			out.writeByte(entry.table);
+			out.writeInt(entry.ordinal);
+		}
+
+		public Entry read(DataInput in) throws IOException {
+			String key = in.readUTF();
+			byte table = in.readByte();
+			int ordinal = in.readInt();
+			return new Entry(key, table, ordinal);
+		}
+	};
+
+	// writeUTF cannot encode more than 64K bytes, and longer keys are useless anyway
+	private static final int MAX_KEY_LENGTH = 1024;
+
+	private final List<BlockingKey> keys;
+	private final int windowSize;
+	private final int maxRecordsInMemory;
+
+	public SortedNeighborhoodBlocker(List<BlockingKey> keys, int windowSize,
+			int maxRecordsInMemory) {
+		if (keys.isEmpty()) {
+			throw new IllegalArgumentException("At least one blocking key is required");
+		}
+		if (windowSize < 2) {
+			throw new IllegalArgumentException("Window size must be at least 2: " + windowSize);
+		}
+		this.keys = new ArrayList<BlockingKey>(keys);
+		this.windowSize = windowSize;
+		this.maxRecordsInMemory = maxRecordsInMemory;
+	}
+
+	public void block(Table table1, Table table2, CandsetBuilder candsetBuilder)
+			throws IOException {
+		List<Tuple> tuples1 = table1.getAllTuplesInOrder();
+		List<Tuple> tuples2 = table2.getAllTuplesInOrder();
+		LongHashSet emitted = new LongHashSet();
+
+		for (BlockingKey key : keys) {
+			ExternalSorter<Entry> sorter = new ExternalSorter<Entry>(ENTRY_COMPARATOR,
+					ENTRY_CODEC, maxRecordsInMemory);
+			try {
+				addEntries(sorter, key, key.resolveTable1Attributes(table1), tuples1, TABLE1);
+				addEntries(sorter, key, key.resolveTable2Attributes(table2), tuples2, TABLE2);
+
+				// the window holds the last windowSize - 1 entries
+				Entry[] window = new Entry[windowSize - 1];
+				int windowStart = 0;
+				int windowCount = 0;
+				Iterator<Entry> it = sorter.sortedIterator();
+				while (it.hasNext()) {
+					Entry entry = it.next();
+					for (int i = 0; i < windowCount; i++) {
+						Entry other = window[(windowStart + i) % window.length];
+						if (other.table == entry.table) {
+							continue;
+						}
+						int ordinal1 = entry.table == TABLE1 ? entry.ordinal : other.ordinal;
+						int ordinal2 = entry.table == TABLE2 ? entry.ordinal : other.ordinal;
+						if (emitted.add(((long) ordinal1 << 32) | (ordinal2 & 0xffffffffL))) {
+							candsetBuilder.addPair(tuples1.get(ordinal1), tuples2.get(ordinal2));
+						}
+					}
+					if (windowCount < window.length) {
+						window[(windowStart + windowCount) % window.length] = entry;
+						windowCount++;
+					}
+					else {
+						window[windowStart] = entry;
+						windowStart = (windowStart + 1) % window.length;
+					}
+				}
+			}
+			finally {
+				sorter.close();
+			}
+		}
+	}
+
+	private static void addEntries(ExternalSorter<Entry> sorter, BlockingKey key,
+			Attribute[] attributes, List<Tuple> tuples, byte table) throws IOException {
+		for (int ordinal = 0; ordinal < tuples.size(); ordinal++) {
+			String value = key.getKey(tuples.get(ordinal), attributes);
+			if (null == value) {
+				continue;
+			}
+			if (value.length() > MAX_KEY_LENGTH) {
+				value = value.substring(0, MAX_KEY_LENGTH);
+			}
+			sorter.add(new Entry(value, table, ordinal));
+		}
+	}
+}
@@ -14,6 +14,7 @@ import com.walmart.productgenome.matching.models.data.Project;
 import com.walmart.productgenome.matching.models.data.Table;
 import com.walmart.productgenome.matching.models.data.Tuple;
 import com.walmart.productgenome.matching.models.loaders.CSVLoader;
+import com.walmart.productgenome.matching.models.loaders.ParallelCSVLoader;
 import com.walmart.productgenome.matching.models.loaders.TableLoader;
 import com.walmart.productgenome.matching.models.savers.TableSaver;
 
@@ -51,6 +52,7 @@ public class TableDao {
 					tableName + ".table";
 
 			table = TableLoader.loadTable(tableFilePath);
+			table.markMatchesFile();
 
 			// put in cache
 			tableMap.put(tableName, table);
@@ -102,6 +104,7 @@ public class TableDao {
 		// table is in memory but not saved
 		Table table = tableCache.get(projectName).get(tableName);
 		TableSaver.saveTable(table);
+		table.markMatchesFile();
 		
 		// update project
 		project.removeUnsavedTable(tableName);
@@ -115,6 +118,7 @@ public class TableDao {
 			// table is in memory but not saved
 			Table table = tableCache.get(projectName).get(tableName);
 			TableSaver.saveTable(table);
+			table.markMatchesFile();
 			
 			// update project
 			project.removeUnsavedTable(tableName);
@@ -132,6 +136,65 @@ public class TableDao {
 		project.addTableName(tableName);
 
 		// set defaults for the project
+		setDefaults(project, tableName, defaultTypes);
+
+		// update map
+		projectTableMap.put(projectName, project.getTableNames());
+
+		// update table cache
+		Map<String, Table> tableMap = tableCache.get(projectName);
+		if(null == tableMap){
+			tableMap = new HashMap<String, Table>();
+		}
+		tableMap.put(tableName, table);
+		tableCache.put(projectName, tableMap);
+		
+		// save to disk
+		if(saveToDisk) {
+			TableSaver.saveTable(table);
+			table.markMatchesFile();
+		}
+		else {
+			// put this table in the unsavedTables
+			project.addUnsavedTable(tableName);
+		}
+	
+		// update project
+		ProjectDao.updateProject(project);
+	}
+
+	/*
+	 * Registers a table that was written straight to its table file, such as a
+	 * candset streamed by the blocking DAO. The table is not cached; open()
+	 * loads it from disk on first use.
+	 */
+	public static void register(String projectName, String tableName,
+			Set<DefaultType> defaultTypes) {
+		// add table to project
+		Project project = ProjectDao.open(projectName);
+		project.addTableName(tableName);
+		project.removeUnsavedTable(tableName);
+
+		// set defaults for the project
+		setDefaults(project, tableName, defaultTypes);
+
+		// update map
+		projectTableMap.put(projectName, project.getTableNames());
+
+		// drop any stale copy from the table cache
+		Map<String, Table> tableMap = tableCache.get(projectName);
+		if(null == tableMap){
+			tableMap = new HashMap<String, Table>();
+		}
+		tableMap.remove(tableName);
+		tableCache.put(projectName, tableMap);
+
+		// update project
+		ProjectDao.updateProject(project);
+	}
+
+	private static void setDefaults(Project project, String tableName,
+			Set<DefaultType> defaultTypes) {
 		for(DefaultType defaultType : defaultTypes){
 			switch(defaultType){
 			case TABLE1:
@@ -174,29 +237,6 @@ public class TableDao {
 				// do nothing
 			}
 		}
-
-		// update map
-		projectTableMap.put(projectName, project.getTableNames());
-
-		// update table cache
-		Map<String, Table> tableMap = tableCache.get(projectName);
-		if(null == tableMap){
-			tableMap = new HashMap<String, Table>();
-		}
-		tableMap.put(tableName, table);
-		tableCache.put(projectName, tableMap);
-		
-		// save to disk
-		if(saveToDisk) {
-			TableSaver.saveTable(table);
-		}
-		else {
-			// put this table in the unsavedTables
-			project.addUnsavedTable(tableName);
-		}
-	
-		// update project
-		ProjectDao.updateProject(project);
 	}
 
 	public static Table importFromCSVWithHeader(String projectName,
@@ -206,6 +246,16 @@ public class TableDao {
 				tableName, csvFilePath);
 	}
 
+	/*
+	 * Same as importFromCSVWithHeader, with the parsing and the conversion of
+	 * the values spread over the cores, see ParallelCSVLoader.
+	 */
+	public static Table importFromCSVWithHeaderInParallel(String projectName,
+			String tableName, String csvFilePath) throws IOException {
+		return new ParallelCSVLoader().loadTableFromCSVWithHeaderAsSchema(projectName,
+				tableName, csvFilePath);
+	}
+
 	public static Table importFromCSV(String projectName, String tableName,
 			String csvFilePath, Attribute idAttrib, List<Attribute> attributes)
 					throws IOException{
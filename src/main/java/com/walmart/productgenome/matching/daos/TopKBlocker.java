@@ -0,0 +1,321 @@
+package com.walmart.productgenome.matching.daos;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.utils.TokenUtils;
+
+/*
+ * Top-k similarity join blocker. Every table2 tuple is paired with the k
+ * table1 tuples whose blocking attribute values score the highest against
+ * its own, so the candset has at most |table2| * k pairs whatever the
+ * threshold a global similarity join would need. Only table1 tuples sharing
+ * at least one token with the table2 tuple are candidates, so a table2 tuple
+ * gets fewer than k pairs when fewer table1 tuples share a token with it.
+ *
+ * The token sets of the table1 values go into an inverted index whose
+ * postings carry the TF-IDF or BM25 weight of the token in the tuple. Token
+ * sets are distinct tokens, as for OverlapBlocker, so every term frequency is
+ * 1 and BM25 only normalizes by the value length. Every table2 tuple is
+ * scored by WAND: the posting cursors of its tokens are kept sorted by their
+ * current ordinal, and a table1 tuple is only scored when the upper bounds of
+ * the cursors up to it can beat the k-th best score found so far. The others
+ * are skipped by galloping the cursors past them. The k best tuples are kept
+ * in a bounded heap and emitted by decreasing score, ties going to the
+ * earliest table1 tuple, which makes the candset deterministic.
+ */
+public class TopKBlocker {
+
+	public enum Weighting {
+		TF_IDF,
+		BM25
+	}
+
+	public static final int DEFAULT_K = 10;
+
+	// BM25 length normalization parameters
+	private static final double K1 = 1.2;
+	private static final double B = 0.75;
+
+	// guards the pruning against rounding errors in the upper bound sums
+	private static final double EPSILON = 1e-9;
+
+	private final int k;
+	private final Weighting weighting;
+
+	public TopKBlocker(int k, Weighting weighting) {
+		if (k < 1) {
+			throw new IllegalArgumentException("k must be positive: " + k);
+		}
+		this.k = k;
+		this.weighting = weighting;
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	public Weighting getWeighting() {
+		return weighting;
+	}
+
+	public void block(Table table1, Table table2, Attribute attribute1,
+			Attribute attribute2, CandsetBuilder candsetBuilder) {
+		final List<Tuple> tuples1 = table1.getAllTuplesInOrder();
+		final Index index = buildIndex(tuples1, attribute1);
+
+		final Attribute probeAttribute = attribute2;
+		ParallelProber.run(table2.getAllTuplesInOrder(), new ParallelProber.Probe() {
+			public void probe(Tuple tuple, ParallelProber.PairBuffer pairs) {
+				Object value = tuple.getAttributeValue(probeAttribute);
+				if (null == value) {
+					return;
+				}
+				for (int ordinal : index.getTopK(TokenUtils.getDistinctTokens(
+						String.valueOf(value)), k)) {
+					pairs.add(tuples1.get(ordinal), tuple);
+				}
+			}
+		}, candsetBuilder);
+	}
+
+	private Index buildIndex(List<Tuple> tuples, Attribute attribute) {
+		List<List<String>> tokens = new ArrayList<List<String>>(tuples.size());
+		Map<String, Integer> frequencies = new HashMap<String, Integer>();
+		long totalLength = 0;
+		for (Tuple tuple : tuples) {
+			Object value = tuple.getAttributeValue(attribute);
+			List<String> tupleTokens = null == value ? Collections.<String>emptyList()
+					: TokenUtils.getDistinctTokens(String.valueOf(value));
+			tokens.add(tupleTokens);
+			totalLength += tupleTokens.size();
+			for (String token : tupleTokens) {
+				Integer count = frequencies.get(token);
+				frequencies.put(token, null == count ? 1 : count + 1);
+			}
+		}
+
+		Map<String, Integer> slots = new HashMap<String, Integer>();
+		double[] idfs = new double[frequencies.size()];
+		int[][] ordinals = new int[frequencies.size()][];
+		for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+			int slot = slots.size();
+			slots.put(entry.getKey(), slot);
+			idfs[slot] = getIdf(tuples.size(), entry.getValue());
+			ordinals[slot] = new int[entry.getValue()];
+		}
+
+		// postings are filled in table1 order, so they are sorted by ordinal
+		float[][] weights = new float[ordinals.length][];
+		for (int slot = 0; slot < ordinals.length; slot++) {
+			weights[slot] = new float[ordinals[slot].length];
+		}
+		int[] sizes = new int[ordinals.length];
+		double averageLength = tuples.isEmpty() ? 0.0 : (double) totalLength / tuples.size();
+		for (int ordinal = 0; ordinal < tokens.size(); ordinal++) {
+			List<String> tupleTokens = tokens.get(ordinal);
+			double norm = getNorm(tupleTokens, slots, idfs, averageLength);
+			for (String token : tupleTokens) {
+				int slot = slots.get(token);
+				ordinals[slot][sizes[slot]] = ordinal;
+				weights[slot][sizes[slot]] = (float) (idfs[slot] / norm);
+				sizes[slot]++;
+			}
+		}
+		return new Index(slots, ordinals, weights);
+	}
+
+	private double getIdf(int numTuples, int frequency) {
+		if (weighting == Weighting.BM25) {
+			return Math.log(1.0 + (numTuples - frequency + 0.5) / (frequency + 0.5));
+		}
+		return Math.log((double) numTuples / frequency) + 1.0;
+	}
+
+	// the weight of a token in a tuple is its idf divided by the norm of the tuple
+	private double getNorm(List<String> tokens, Map<String, Integer> slots,
+			double[] idfs, double averageLength) {
+		if (weighting == Weighting.BM25) {
+			return (1.0 + K1 * (1.0 - B + B * tokens.size() / averageLength)) / (K1 + 1.0);
+		}
+		double sum = 0.0;
+		for (String token : tokens) {
+			double idf = idfs[slots.get(token)];
+			sum += idf * idf;
+		}
+		return Math.sqrt(sum);
+	}
+
+	private static class Index {
+		private final Map<String, Integer> slots;
+		private final int[][] ordinals;
+		private final float[][] weights;
+		// highest weight of every posting list, the WAND upper bound of its token
+		private final float[] maxWeights;
+
+		Index(Map<String, Integer> slots, int[][] ordinals, float[][] weights) {
+			this.slots = slots;
+			this.ordinals = ordinals;
+			this.weights = weights;
+			maxWeights = new float[weights.length];
+			for (int slot = 0; slot < weights.length; slot++) {
+				for (float weight : weights[slot]) {
+					maxWeights[slot] = Math.max(maxWeights[slot], weight);
+				}
+			}
+		}
+
+		// the ordinals of the k best scoring table1 tuples, best first
+		List<Integer> getTopK(List<String> tokens, int k) {
+			List<Cursor> cursors = new ArrayList<Cursor>(tokens.size());
+			for (String token : tokens) {
+				Integer slot = slots.get(token);
+				if (null != slot) {
+					cursors.add(new Cursor(ordinals[slot], weights[slot], maxWeights[slot]));
+				}
+			}
+
+			PriorityQueue<ScoredOrdinal> heap = new PriorityQueue<ScoredOrdinal>(k,
+					WORST_FIRST);
+			while (!cursors.isEmpty()) {
+				sortByOrdinal(cursors);
+
+				// the pivot is the first cursor at which the upper bounds can
+				// beat the k-th best score, all the tuples before its ordinal
+				// score too low
+				double threshold = heap.size() < k ? 0.0 : heap.peek().score;
+				double upperBound = 0.0;
+				int pivot = -1;
+				for (int i = 0; i < cursors.size(); i++) {
+					upperBound += cursors.get(i).maxWeight;
+					if (upperBound >= threshold - EPSILON) {
+						pivot = i;
+						break;
+					}
+				}
+				if (pivot < 0) {
+					break;
+				}
+
+				int pivotOrdinal = cursors.get(pivot).ordinal();
+				if (cursors.get(0).ordinal() == pivotOrdinal) {
+					// all the cursors on the pivot tuple are at the front
+					double score = 0.0;
+					for (int i = 0; i < cursors.size() && cursors.get(i).ordinal() == pivotOrdinal; i++) {
+						Cursor cursor = cursors.get(i);
+						score += cursor.weight();
+						cursor.next();
+					}
+					offer(heap, k, new ScoredOrdinal(pivotOrdinal, score));
+				}
+				else {
+					for (int i = 0; i < pivot; i++) {
+						cursors.get(i).skipTo(pivotOrdinal);
+					}
+				}
+				removeExhausted(cursors);
+			}
+
+			List<ScoredOrdinal> best = new ArrayList<ScoredOrdinal>(heap);
+			Collections.sort(best, Collections.reverseOrder(WORST_FIRST));
+			List<Integer> topK = new ArrayList<Integer>(best.size());
+			for (ScoredOrdinal scoredOrdinal : best) {
+				topK.add(scoredOrdinal.ordinal);
+			}
+			return topK;
+		}
+	}
+
+	private static void offer(PriorityQueue<ScoredOrdinal> heap, int k,
+			ScoredOrdinal scoredOrdinal) {
+		if (heap.size() < k) {
+			heap.add(scoredOrdinal);
+		}
+		else if (WORST_FIRST.compare(scoredOrdinal, heap.peek()) > 0) {
+			heap.poll();
+			heap.add(scoredOrdinal);
+		}
+	}
+
+	// a tuple is worse with a lower score, or a higher ordinal on a tie
+	private static final Comparator<ScoredOrdinal> WORST_FIRST = new Comparator<ScoredOrdinal>() {
+		public int compare(ScoredOrdinal s1, ScoredOrdinal s2) {
+			int cmp = Double.compare(s1.score, s2.score);
+			return cmp != 0 ? cmp : s2.ordinal - s1.ordinal;
+		}
+	};
+
+	private static class ScoredOrdinal {
+		private final int ordinal;
+		private final double score;
+
+		ScoredOrdinal(int ordinal, double score) {
+			this.ordinal = ordinal;
+			this.score = score;
+		}
+	}
+
+	private static class Cursor {
+		private final int[] ordinals;
+		private final float[] weights;
+		private final float maxWeight;
+		private int position;
+
+		Cursor(int[] ordinals, float[] weights, float maxWeight) {
+			this.ordinals = ordinals;
+			this.weights = weights;
+			this.maxWeight = maxWeight;
+		}
+
+		int ordinal() {
+			return ordinals[position];
+		}
+
+		float weight() {
+			return weights[position];
+		}
+
+		boolean isExhausted() {
+			return position >= ordinals.length;
+		}
+
+		void next() {
+			position++;
+		}
+
+		void skipTo(int ordinal) {
+			position = PostingIndex.gallop(ordinals, position, ordinal);
+		}
+	}
+
+	// insertion sort, a query has few tokens and the cursors stay nearly sorted
+	private static void sortByOrdinal(List<Cursor> cursors) {
+		for (int i = 1; i < cursors.size(); i++) {
+			Cursor cursor = cursors.get(i);
+			int j = i - 1;
+			while (j >= 0 && cursors.get(j).ordinal() > cursor.ordinal()) {
+				cursors.set(j + 1, cursors.get(j));
+				j--;
+			}
+			cursors.set(j + 1, cursor);
+		}
+	}
+
+	private static void removeExhausted(List<Cursor> cursors) {
+		int kept = 0;
+		for (int i = 0; i < cursors.size(); i++) {
+			if (!cursors.get(i).isExhausted()) {
+				cursors.set(kept++, cursors.get(i));
+			}
+		}
+		cursors.subList(kept, cursors.size()).clear();
+	}
+}
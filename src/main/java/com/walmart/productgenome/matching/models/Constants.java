@@ -18,6 +18,8 @@ public class Constants {
 	public static final String TABLE_EXTENSION = ".table";
 	public static final String MATCHER_EXTENSION = ".matcher";
 	public static final String EVALUATION_SUMMARY_EXTENSION = ".evalsum";
+	public static final String MINHASH_EXTENSION = ".minhash";
+	public static final String INDEX_EXTENSION = ".index";
 	
 	/* File names */
 	public static final String PROJECT_FUNCTIONS_FILE_NAME = "all.functions";
@@ -26,6 +28,9 @@ public class Constants {
 	public static final String PROJECT_MATCHERS_FILE_NAME = "all.matchers";
 	public static final String GLOBAL_FUNCTIONS_FILE_NAME = "global.functions";
 	
+	/* Directory names */
+	public static final String BLOCKING_DIR_NAME = "blocking";
+	
 	/* Rules */
 	public static final String OPERAND_SEPARATOR = ",";
 	public static final String TERM_SEPARATOR = " AND ";
@@ -22,8 +22,10 @@ public class Attribute {
 		SET_VALUED;
 	}
 	
-	private String name;
-	private Type type;
+	private final String name;
+	private final Type type;
+	// attributes are hashed on every tuple access, so the hash is kept
+	private final int hashCode;
 
 	public String getName(){
 		return name;
@@ -36,6 +38,7 @@ public class Attribute {
 	public Attribute(String name, Type type){
 		this.name = name;
 		this.type = type;
+		this.hashCode = Objects.hashCode(name, type);
 	}
 
 	public void typeCheck(Object attributeValue) throws IllegalArgumentException {
@@ -129,14 +132,18 @@ public class Attribute {
 
   @Override
   public int hashCode(){
-  	return Objects.hashCode(name, type);
+  	return hashCode;
   }
   
   @Override
   public boolean equals(Object object){
+  	if (this == object) {
+  		return true;
+  	}
   	if (object instanceof Attribute) {
   		Attribute that = (Attribute) object;
-  		return Objects.equal(this.name, that.name)
+  		return this.hashCode == that.hashCode
+  			&& Objects.equal(this.name, that.name)
   			&& Objects.equal(this.type, that.type);
   	}
   	return false;
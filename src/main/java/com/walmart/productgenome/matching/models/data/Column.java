@@ -0,0 +1,298 @@
+package com.walmart.productgenome.matching.models.data;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/*
+ * The values of one attribute for all the rows of a ColumnStore.
+ *
+ * Numeric and boolean values go into primitive arrays, with a bitmap of the
+ * non-null rows. TEXT values start as codes into a Dictionary, and a column
+ * with too many distinct values for that moves to one UTF-8 byte array with
+ * per-row offsets. A value that does not fit the column, such as the string
+ * "5" set on an INTEGER attribute, which Tuple accepts, is refused by set(),
+ * and the ColumnStore then moves the column to its fallback().
+ */
+abstract class Column {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	protected final BitSet nonNull = new BitSet();
+
+	static Column forAttribute(Attribute attribute) {
+		switch (attribute.getType()) {
+		case INTEGER:
+			return new IntColumn();
+		case LONG:
+			return new LongColumn();
+		case FLOAT:
+			return new FloatColumn();
+		case BOOLEAN:
+			return new BooleanColumn();
+		case TEXT:
+			return new DictionaryColumn(attribute);
+		default:
+			return new ObjectColumn();
+		}
+	}
+
+	Object get(int row) {
+		return nonNull.get(row) ? getNonNull(row) : null;
+	}
+
+	// returns false, and leaves the column unchanged, if the value does not fit
+	boolean set(int row, Object value) {
+		if (null == value) {
+			nonNull.clear(row);
+			clear(row);
+			return true;
+		}
+		if (!setNonNull(row, value)) {
+			return false;
+		}
+		nonNull.set(row);
+		return true;
+	}
+
+	abstract Object getNonNull(int row);
+
+	abstract boolean setNonNull(int row, Object value);
+
+	// releases what the column holds for a row that becomes null
+	void clear(int row) {
+	}
+
+	// a column taking over the first rows of this one that the value fits in
+	Column fallback(Object value, int rows) {
+		return new ObjectColumn(this, rows);
+	}
+
+	// sets the first rows of this column to those of another one, returns
+	// false if one of them does not fit
+	boolean copy(Column column, int rows) {
+		for (int row = 0; row < rows; row++) {
+			if (!set(row, column.get(row))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static int grow(int length, int row) {
+		return Math.max(row + 1, Math.max(16, length + (length >> 1)));
+	}
+
+	static class IntColumn extends Column {
+		private int[] values = new int[0];
+
+		Object getNonNull(int row) {
+			return values[row];
+		}
+
+		boolean setNonNull(int row, Object value) {
+			if (!(value instanceof Integer)) {
+				return false;
+			}
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, grow(values.length, row));
+			}
+			values[row] = (Integer) value;
+			return true;
+		}
+	}
+
+	static class LongColumn extends Column {
+		private long[] values = new long[0];
+
+		Object getNonNull(int row) {
+			return values[row];
+		}
+
+		boolean setNonNull(int row, Object value) {
+			if (!(value instanceof Long)) {
+				return false;
+			}
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, grow(values.length, row));
+			}
+			values[row] = (Long) value;
+			return true;
+		}
+	}
+
+	static class FloatColumn extends Column {
+		private float[] values = new float[0];
+
+		Object getNonNull(int row) {
+			return values[row];
+		}
+
+		boolean setNonNull(int row, Object value) {
+			if (!(value instanceof Float)) {
+				return false;
+			}
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, grow(values.length, row));
+			}
+			values[row] = (Float) value;
+			return true;
+		}
+	}
+
+	static class BooleanColumn extends Column {
+		private final BitSet values = new BitSet();
+
+		Object getNonNull(int row) {
+			return values.get(row);
+		}
+
+		boolean setNonNull(int row, Object value) {
+			if (!(value instanceof Boolean)) {
+				return false;
+			}
+			values.set(row, (Boolean) value);
+			return true;
+		}
+	}
+
+	/*
+	 * The codes of the strings in a Dictionary. The column is sampled as it
+	 * fills: once it holds SAMPLE_SIZE values, a new value is refused if the
+	 * dictionary already has more than a MAX_DISTINCT_RATIO of the values
+	 * set, and the column moves to a TextColumn.
+	 */
+	static class DictionaryColumn extends Column {
+		static final int SAMPLE_SIZE = 1024;
+		static final double MAX_DISTINCT_RATIO = 0.5;
+
+		private final Dictionary dictionary;
+		private int[] codes = new int[0];
+		private int numSet;
+
+		DictionaryColumn(Attribute attribute) {
+			dictionary = new Dictionary(attribute);
+		}
+
+		Dictionary getDictionary() {
+			return dictionary;
+		}
+
+		int getCode(int row) {
+			return nonNull.get(row) ? codes[row] : Dictionary.NO_CODE;
+		}
+
+		Object getNonNull(int row) {
+			return dictionary.getValue(codes[row]);
+		}
+
+		boolean setNonNull(int row, Object value) {
+			if (!(value instanceof String)) {
+				return false;
+			}
+			int code = dictionary.getCode(value);
+			if (code == Dictionary.NO_CODE) {
+				if (numSet >= SAMPLE_SIZE && dictionary.size() > MAX_DISTINCT_RATIO * numSet) {
+					return false;
+				}
+				code = dictionary.add((String) value);
+			}
+			if (row >= codes.length) {
+				codes = Arrays.copyOf(codes, grow(codes.length, row));
+			}
+			codes[row] = code;
+			numSet++;
+			return true;
+		}
+
+		Column fallback(Object value, int rows) {
+			if (value instanceof String) {
+				TextColumn text = new TextColumn();
+				if (text.copy(this, rows)) {
+					return text;
+				}
+			}
+			return super.fallback(value, rows);
+		}
+	}
+
+	/*
+	 * The UTF-8 bytes of all the strings, appended one after the other. A
+	 * string set over another one is appended too, the old bytes stay unused.
+	 * Every get() decodes a new String.
+	 */
+	static class TextColumn extends Column {
+		private byte[] bytes = new byte[0];
+		private int used;
+		private int[] starts = new int[0];
+		private int[] lengths = new int[0];
+
+		Object getNonNull(int row) {
+			return new String(bytes, starts[row], lengths[row], UTF8);
+		}
+
+		boolean setNonNull(int row, Object value) {
+			if (!(value instanceof String)) {
+				return false;
+			}
+			String string = (String) value;
+			byte[] encoded = string.getBytes(UTF8);
+			// unpaired surrogates do not survive UTF-8
+			if (hasSurrogate(string) && !string.equals(new String(encoded, UTF8))) {
+				return false;
+			}
+			if (used + encoded.length > bytes.length) {
+				bytes = Arrays.copyOf(bytes, grow(bytes.length, used + encoded.length - 1));
+			}
+			if (row >= starts.length) {
+				starts = Arrays.copyOf(starts, grow(starts.length, row));
+				lengths = Arrays.copyOf(lengths, starts.length);
+			}
+			System.arraycopy(encoded, 0, bytes, used, encoded.length);
+			starts[row] = used;
+			lengths[row] = encoded.length;
+			used += encoded.length;
+			return true;
+		}
+
+		private static boolean hasSurrogate(String string) {
+			for (int i = 0; i < string.length(); i++) {
+				if (Character.isSurrogate(string.charAt(i))) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	// any value, as a row Tuple holds it
+	static class ObjectColumn extends Column {
+		private Object[] values = new Object[0];
+
+		ObjectColumn() {
+		}
+
+		// takes over the values of the first rows of another column
+		ObjectColumn(Column column, int rows) {
+			copy(column, rows);
+		}
+
+		Object getNonNull(int row) {
+			return values[row];
+		}
+
+		boolean setNonNull(int row, Object value) {
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, grow(values.length, row));
+			}
+			values[row] = value;
+			return true;
+		}
+
+		void clear(int row) {
+			if (row < values.length) {
+				values[row] = null;
+			}
+		}
+	}
+}
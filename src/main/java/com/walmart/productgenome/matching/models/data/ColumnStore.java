@@ -0,0 +1,308 @@
+package com.walmart.productgenome.matching.models.data;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/*
+ * The tuples of a columnar Table, by id and in insertion order like the
+ * LinkedHashMap of a row Table.
+ *
+ * The values live in one Column per slot of the table's Schema, and every
+ * row has a single Tuple view reading and writing its values in the columns.
+ * The same view is returned for a tuple every time, so tuples can still be
+ * kept in identity maps. A tuple put in the store is copied into the columns:
+ * the views are what the table hands out afterwards, and changes to the
+ * tuple that was put do not reach the table.
+ *
+ * Putting a tuple under an id already in the store overwrites its row, which
+ * keeps its position. Removing a tuple leaves its row unused until the
+ * unused rows outnumber the others, as after a table is trimmed to a small
+ * sample. The rows in use are then copied to new columns sized for them,
+ * their views are moved along, and the views of the removed tuples keep
+ * their values in their own slots.
+ */
+class ColumnStore extends RowStore {
+
+	private final Schema schema;
+	// the columns by slot of the schema, null for the attributes without one
+	private final List<Column> columns = new ArrayList<Column>();
+	private final Map<Object, Integer> rows = new HashMap<Object, Integer>();
+	private Object[] ids = new Object[0];
+	private Tuple[] views = new Tuple[0];
+	private final BitSet removed = new BitSet();
+	private int numRows;
+
+	// the fewest removed rows worth compacting
+	private static final int MIN_COMPACTED_ROWS = 64;
+
+	ColumnStore(Schema schema) {
+		this.schema = schema;
+		for (Attribute attribute : schema.getAttributes()) {
+			columns.add(Column.forAttribute(attribute));
+		}
+	}
+
+	@Override
+	Schema getSchema() {
+		return schema;
+	}
+
+	@Override
+	Object getValue(int row, int slot) {
+		Column column = slot < columns.size() ? columns.get(slot) : null;
+		return null == column ? null : column.get(row);
+	}
+
+	@Override
+	void setValue(int row, Attribute attribute, Object value) {
+		int slot = schema.getSlot(attribute);
+		Column column = slot < 0 || slot >= columns.size() ? null : columns.get(slot);
+		if (null == column) {
+			if (null == value) {
+				return;
+			}
+			slot = schema.addSlot(attribute);
+			while (columns.size() <= slot) {
+				columns.add(null);
+			}
+			column = Column.forAttribute(attribute);
+			columns.set(slot, column);
+		}
+		while (!column.set(row, value)) {
+			column = column.fallback(value, numRows);
+			columns.set(slot, column);
+		}
+	}
+
+	// the dictionary of the column of the attribute, null if it is not encoded
+	Dictionary getDictionary(Attribute attribute) {
+		int slot = schema.getSlot(attribute);
+		Column column = slot < 0 || slot >= columns.size() ? null : columns.get(slot);
+		return column instanceof Column.DictionaryColumn
+				? ((Column.DictionaryColumn) column).getDictionary() : null;
+	}
+
+	// the code of a row in the column of the dictionary, NOT_STORED if that
+	// column has been replaced since
+	@Override
+	int getCode(int row, Dictionary dictionary) {
+		int slot = schema.getSlot(dictionary.getAttribute());
+		Column column = slot < 0 || slot >= columns.size() ? null : columns.get(slot);
+		if (column instanceof Column.DictionaryColumn
+				&& ((Column.DictionaryColumn) column).getDictionary() == dictionary) {
+			return ((Column.DictionaryColumn) column).getCode(row);
+		}
+		return NOT_STORED;
+	}
+
+	@Override
+	Map<Attribute, Object> getData(int row) {
+		Map<Attribute, Object> data = new HashMap<Attribute, Object>();
+		for (int slot = 0; slot < columns.size(); slot++) {
+			Column column = columns.get(slot);
+			if (null != column) {
+				data.put(schema.getAttribute(slot), column.get(row));
+			}
+		}
+		return data;
+	}
+
+	// the next row in use from a row on, -1 if there is none
+	int nextRow(int from) {
+		int row = removed.nextClearBit(from);
+		return row < numRows ? row : -1;
+	}
+
+	// the rows in use and the unused ones not compacted yet
+	int getNumRows() {
+		return numRows;
+	}
+
+	Object getId(int row) {
+		return ids[row];
+	}
+
+	Tuple getView(int row) {
+		return views[row];
+	}
+
+	void removeColumn(Attribute attribute) {
+		int slot = schema.getSlot(attribute);
+		if (slot >= 0 && slot < columns.size()) {
+			columns.set(slot, null);
+		}
+	}
+
+	@Override
+	public int size() {
+		return rows.size();
+	}
+
+	@Override
+	public boolean containsKey(Object id) {
+		return rows.containsKey(id);
+	}
+
+	@Override
+	public Tuple get(Object id) {
+		Integer row = rows.get(id);
+		return null == row ? null : views[row];
+	}
+
+	@Override
+	public Tuple put(Object id, Tuple tuple) {
+		Integer row = rows.get(id);
+		Tuple previous = null;
+		if (null == row) {
+			row = numRows++;
+			if (row >= views.length) {
+				int capacity = Column.grow(views.length, row);
+				views = Arrays.copyOf(views, capacity);
+				ids = Arrays.copyOf(ids, capacity);
+			}
+			views[row] = new Tuple(this, row);
+			ids[row] = id;
+			rows.put(id, row);
+		}
+		else {
+			previous = views[row];
+			if (tuple == previous) {
+				return previous;
+			}
+			for (Column column : columns) {
+				if (null != column) {
+					column.set(row, null);
+				}
+			}
+		}
+		for (Map.Entry<Attribute, Object> entry : tuple.getData().entrySet()) {
+			setValue(row, entry.getKey(), entry.getValue());
+		}
+		return previous;
+	}
+
+	@Override
+	public Tuple remove(Object id) {
+		return remove(id, true);
+	}
+
+	// an iterator removing a tuple must not have the rows moved under it
+	private Tuple remove(Object id, boolean compact) {
+		Integer row = rows.remove(id);
+		if (null == row) {
+			return null;
+		}
+		removed.set(row);
+		ids[row] = null;
+		Tuple view = views[row];
+		int numRemoved = numRows - rows.size();
+		if (compact && numRemoved >= MIN_COMPACTED_ROWS && numRemoved > rows.size()) {
+			compact();
+		}
+		return view;
+	}
+
+	// moves the rows in use to the first rows of new columns
+	private void compact() {
+		List<Column> compacted = new ArrayList<Column>(columns.size());
+		for (int slot = 0; slot < columns.size(); slot++) {
+			compacted.add(null == columns.get(slot) ? null
+					: Column.forAttribute(schema.getAttribute(slot)));
+		}
+		int capacity = rows.size();
+		Object[] compactedIds = new Object[capacity];
+		Tuple[] compactedViews = new Tuple[capacity];
+		int to = 0;
+		for (int from = 0; from < numRows; from++) {
+			Tuple view = views[from];
+			if (removed.get(from)) {
+				view.detach();
+				continue;
+			}
+			for (int slot = 0; slot < compacted.size(); slot++) {
+				Column column = compacted.get(slot);
+				if (null == column) {
+					continue;
+				}
+				Object value = columns.get(slot).get(from);
+				while (!column.set(to, value)) {
+					column = column.fallback(value, to);
+					compacted.set(slot, column);
+				}
+			}
+			view.moveTo(to);
+			compactedIds[to] = ids[from];
+			compactedViews[to] = view;
+			rows.put(ids[from], to);
+			to++;
+		}
+		columns.clear();
+		columns.addAll(compacted);
+		ids = compactedIds;
+		views = compactedViews;
+		removed.clear();
+		numRows = to;
+	}
+
+	@Override
+	public void clear() {
+		rows.clear();
+		for (int slot = 0; slot < columns.size(); slot++) {
+			if (null != columns.get(slot)) {
+				columns.set(slot, Column.forAttribute(schema.getAttribute(slot)));
+			}
+		}
+		ids = new Object[0];
+		views = new Tuple[0];
+		removed.clear();
+		numRows = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<Object, Tuple>> entrySet() {
+		return new AbstractSet<Map.Entry<Object, Tuple>>() {
+			@Override
+			public int size() {
+				return rows.size();
+			}
+
+			@Override
+			public Iterator<Map.Entry<Object, Tuple>> iterator() {
+				return new Iterator<Map.Entry<Object, Tuple>>() {
+					private int next = removed.nextClearBit(0);
+					private int last = -1;
+
+					public boolean hasNext() {
+						return next < numRows;
+					}
+
+					public Map.Entry<Object, Tuple> next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						last = next;
+						next = removed.nextClearBit(next + 1);
+						return new AbstractMap.SimpleImmutableEntry<Object, Tuple>(ids[last],
+								views[last]);
+					}
+
+					public void remove() {
+						if (last < 0 || removed.get(last)) {
+							throw new IllegalStateException();
+						}
+						ColumnStore.this.remove(ids[last], false);
+					}
+				};
+			}
+		};
+	}
+}
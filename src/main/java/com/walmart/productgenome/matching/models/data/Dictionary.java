@@ -0,0 +1,72 @@
+package com.walmart.productgenome.matching.models.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/*
+ * The distinct values of a dictionary-encoded TEXT column of a columnar
+ * table, each with an int code. The rows of the column only hold the codes,
+ * so equal values are compared, counted and hashed by code.
+ *
+ * The values are interned across all the dictionaries, so two tables share
+ * one String for a value they both have, and comparing equal values only
+ * compares references.
+ */
+public class Dictionary {
+
+	// the code of a null value, or of a value the dictionary does not have
+	public static final int NO_CODE = -1;
+
+	private static final Interner<String> VALUES = Interners.newWeakInterner();
+
+	private final Attribute attribute;
+	private final List<String> values = new ArrayList<String>();
+	private final Map<String, Integer> codes = new HashMap<String, Integer>();
+
+	Dictionary(Attribute attribute) {
+		this.attribute = attribute;
+	}
+
+	public Attribute getAttribute() {
+		return attribute;
+	}
+
+	public int size() {
+		return values.size();
+	}
+
+	public String getValue(int code) {
+		return values.get(code);
+	}
+
+	public int getCode(Object value) {
+		Integer code = codes.get(value);
+		return null == code ? NO_CODE : code;
+	}
+
+	/*
+	 * The code of the value of the tuple, read straight from the column for a
+	 * row of the table of the dictionary and looked up by value otherwise.
+	 */
+	public int getCode(Tuple tuple) {
+		int code = tuple.getStoredCode(this);
+		return code == RowStore.NOT_STORED ? getCode(tuple.getAttributeValue(attribute)) : code;
+	}
+
+	// the code of the value, added to the dictionary if it is new
+	int add(String value) {
+		Integer code = codes.get(value);
+		if (null == code) {
+			String interned = VALUES.intern(value);
+			code = values.size();
+			values.add(interned);
+			codes.put(interned, code);
+		}
+		return code;
+	}
+}
@@ -0,0 +1,264 @@
+package com.walmart.productgenome.matching.models.data;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/*
+ * The tuples of the table of a PairTable, by pair id and in the order of the
+ * pairs. A tuple is a view of a row of the pair table, made the first time
+ * the row is read, after which the pair is always the same Tuple object, as
+ * in a ColumnStore. A view reads the id1 and id2 values and the values of
+ * the projected attributes from the tuples of table1 and table2.
+ *
+ * A tuple put in the store is stored as a pair of ordinals, overwriting the
+ * pair of the same id if there is one, and its ids must be in table1 and
+ * table2. Setting the label of a view sets the label of the pair, and
+ * setting its id1 or id2 to an id of table1 or table2 sets the tuple of the
+ * pair. Any other value set on a view, including one removed, is kept in the
+ * store over the value of the pair: it is seen by the tuples of the table
+ * but not by the PairTable, and a changed pair id does not move the pair.
+ */
+class PairStore extends RowStore {
+
+	private static final int PAIR_ID_SLOT = 0;
+	private static final int ID1_SLOT = 1;
+	private static final int ID2_SLOT = 2;
+	private static final int FIRST_PROJECTION_SLOT = 3;
+
+	private final PairTable pairs;
+	private final Schema schema;
+	// the projected attributes are between id2 and the label
+	private final int labelSlot;
+	// the view of every row, made by the first read of the row
+	private Tuple[] views = new Tuple[0];
+	// the values set over the ones of the pairs, by slot and row, NULL for a
+	// value removed
+	private final List<Object[]> values = new ArrayList<Object[]>();
+	private static final Object NULL = new Object();
+
+	PairStore(PairTable pairs) {
+		this.pairs = pairs;
+		this.schema = new Schema(pairs.getAttributes());
+		this.labelSlot = FIRST_PROJECTION_SLOT + pairs.getNumProjections();
+	}
+
+	PairTable getPairTable() {
+		return pairs;
+	}
+
+	@Override
+	Schema getSchema() {
+		return schema;
+	}
+
+	@Override
+	Object getValue(int row, int slot) {
+		Object[] slotValues = slot < values.size() ? values.get(slot) : null;
+		if (null != slotValues && row < slotValues.length && null != slotValues[row]) {
+			return NULL == slotValues[row] ? null : slotValues[row];
+		}
+		switch (slot) {
+		case PAIR_ID_SLOT:
+			return pairs.getStoredPairId(row);
+		case ID1_SLOT:
+			return pairs.getStoredId1(row);
+		case ID2_SLOT:
+			return pairs.getStoredId2(row);
+		default:
+			if (slot < labelSlot) {
+				return pairs.getStoredProjection(row, slot - FIRST_PROJECTION_SLOT);
+			}
+			return slot == labelSlot ? pairs.getStoredLabel(row) : null;
+		}
+	}
+
+	@Override
+	void setValue(int row, Attribute attribute, Object value) {
+		int slot = schema.addSlot(attribute);
+		if (slot == labelSlot && null != pairs.getLabelAttribute()) {
+			pairs.setStoredLabel(row, PairTable.toLabel(value));
+			return;
+		}
+		if (slot == ID1_SLOT || slot == ID2_SLOT) {
+			int ordinal = slot == ID1_SLOT ? pairs.lookupOrdinal1(value)
+					: pairs.lookupOrdinal2(value);
+			if (ordinal != PairTable.NO_ORDINAL) {
+				if (slot == ID1_SLOT) {
+					pairs.setStoredOrdinal1(row, ordinal);
+				}
+				else {
+					pairs.setStoredOrdinal2(row, ordinal);
+				}
+				setOverride(row, slot, null);
+				return;
+			}
+		}
+		setOverride(row, slot, null == value ? NULL : value);
+	}
+
+	// null drops the value set over the one of the pair
+	private void setOverride(int row, int slot, Object value) {
+		while (values.size() <= slot) {
+			values.add(null);
+		}
+		Object[] slotValues = values.get(slot);
+		if (null == slotValues || row >= slotValues.length) {
+			if (null == value) {
+				return;
+			}
+			int length = null == slotValues ? 0 : slotValues.length;
+			slotValues = null == slotValues ? new Object[Column.grow(0, row)]
+					: Arrays.copyOf(slotValues, Column.grow(length, row));
+			values.set(slot, slotValues);
+		}
+		slotValues[row] = value;
+	}
+
+	private void clearOverrides(int row) {
+		for (int slot = 0; slot < values.size(); slot++) {
+			setOverride(row, slot, null);
+		}
+	}
+
+	@Override
+	Map<Attribute, Object> getData(int row) {
+		Map<Attribute, Object> data = new HashMap<Attribute, Object>();
+		for (int slot = 0; slot < schema.size(); slot++) {
+			data.put(schema.getAttribute(slot), getValue(row, slot));
+		}
+		return data;
+	}
+
+	@Override
+	public int size() {
+		return pairs.size();
+	}
+
+	@Override
+	public boolean containsKey(Object pairId) {
+		return pairs.getRow(pairId) >= 0;
+	}
+
+	@Override
+	public Tuple get(Object pairId) {
+		int row = pairs.getRow(pairId);
+		return row < 0 ? null : getView(row);
+	}
+
+	private Tuple getView(int row) {
+		if (row >= views.length) {
+			views = Arrays.copyOf(views, Column.grow(views.length, pairs.getNumRows() - 1));
+		}
+		Tuple view = views[row];
+		if (null == view) {
+			view = new Tuple(this, row);
+			views[row] = view;
+		}
+		return view;
+	}
+
+	@Override
+	public Tuple put(Object pairId, Tuple tuple) {
+		Object id1 = tuple.getAttributeValue(pairs.getId1Attribute());
+		Object id2 = tuple.getAttributeValue(pairs.getId2Attribute());
+		Integer label = null == pairs.getLabelAttribute() ? null
+				: PairTable.toLabel(tuple.getAttributeValue(pairs.getLabelAttribute()));
+		// a pair the ordinals cannot hold would lose its ids
+		int ordinal1 = pairs.lookupOrdinal1(id1);
+		if (ordinal1 == PairTable.NO_ORDINAL) {
+			throw new IllegalArgumentException("No tuple " + id1 + " in table "
+					+ pairs.getTable1().getName());
+		}
+		int ordinal2 = pairs.lookupOrdinal2(id2);
+		if (ordinal2 == PairTable.NO_ORDINAL) {
+			throw new IllegalArgumentException("No tuple " + id2 + " in table "
+					+ pairs.getTable2().getName());
+		}
+		int row = pairs.getRow(pairId);
+		if (row < 0) {
+			if (!(pairId instanceof Integer)) {
+				throw new IllegalArgumentException("Integer pair id expected: " + pairId);
+			}
+			pairs.addPair((Integer) pairId, ordinal1, ordinal2, label);
+			return null;
+		}
+		Tuple previous = new Tuple(getData(row));
+		pairs.setStoredPair(row, ordinal1, ordinal2, label);
+		clearOverrides(row);
+		return previous;
+	}
+
+	@Override
+	public Tuple remove(Object pairId) {
+		int row = pairs.getRow(pairId);
+		if (row < 0) {
+			return null;
+		}
+		Tuple previous = new Tuple(getData(row));
+		pairs.removeRow(row);
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		pairs.clearRows();
+		views = new Tuple[0];
+		values.clear();
+	}
+
+	@Override
+	public Set<Map.Entry<Object, Tuple>> entrySet() {
+		return new AbstractSet<Map.Entry<Object, Tuple>>() {
+			@Override
+			public int size() {
+				return pairs.size();
+			}
+
+			@Override
+			public Iterator<Map.Entry<Object, Tuple>> iterator() {
+				return new Iterator<Map.Entry<Object, Tuple>>() {
+					private int next = nextRow(0);
+					private int last = -1;
+
+					public boolean hasNext() {
+						return next >= 0;
+					}
+
+					public Map.Entry<Object, Tuple> next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						last = next;
+						next = nextRow(next + 1);
+						return new AbstractMap.SimpleImmutableEntry<Object, Tuple>(
+								pairs.getStoredPairId(last), getView(last));
+					}
+
+					public void remove() {
+						if (last < 0 || pairs.isRemoved(last)) {
+							throw new IllegalStateException();
+						}
+						pairs.removeRow(last);
+					}
+				};
+			}
+		};
+	}
+
+	private int nextRow(int from) {
+		for (int row = from; row < pairs.getNumRows(); row++) {
+			if (!pairs.isRemoved(row)) {
+				return row;
+			}
+		}
+		return -1;
+	}
+}
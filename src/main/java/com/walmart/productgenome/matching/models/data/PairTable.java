@@ -0,0 +1,483 @@
+package com.walmart.productgenome.matching.models.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A table of pairs of tuples of table1 and table2, such as a candset or the
+ * matches of a matcher, held as parallel arrays: the int pair ids, the
+ * ordinals of the tuples in table1 and table2, and optionally a byte label
+ * per pair. The ordinals index the tuples the pairs refer to, in the order
+ * they are first looked up by id through the tables' own maps, so a few
+ * pairs over large tables only hold the few tuples they are made of.
+ *
+ * The pairs are read by index, from 0 to size() - 1, and their tuples are
+ * resolved by ordinal without any lookup by id:
+ *
+ *   PairTable pairs = PairTable.of(candset, table1, table2, false);
+ *   for (int i = 0; i < pairs.size(); i++) {
+ *     Tuple tuple1 = pairs.getTuple1(i);
+ *     Tuple tuple2 = pairs.getTuple2(i);
+ *     ...
+ *   }
+ *
+ * getTable() adapts the pairs to a Table with the pairId, id1 and id2
+ * attributes, the projected attributes of table1 and table2 and the label
+ * attribute, for the code that works on tables. Its tuples are views of the
+ * pairs, made when they are read (see PairStore), and the tuples added to it
+ * are stored as pairs of ordinals. The projected attributes are virtual: a
+ * value of table1Name.attribute is read from the table1 tuple of the pair,
+ * so a title is held once in table1 however many pairs it is in, and it is
+ * only copied when the table is saved or exported.
+ *
+ * A removed pair leaves an empty row behind, so the rows the tuples of the
+ * table read never move, and the later pairs move to lower indexes. The
+ * empty rows are only reclaimed when the pairs are cleared.
+ */
+public class PairTable {
+
+	// the ordinal of an id that is not in its table
+	public static final int NO_ORDINAL = -1;
+
+	// the labels are MatchStatus labels, this marks a pair without one
+	private static final byte NO_LABEL = Byte.MIN_VALUE;
+
+	private final Table table1;
+	private final Table table2;
+	private final Attribute pairIdAttribute;
+	private final Attribute id1Attribute;
+	private final Attribute id2Attribute;
+	private final Attribute labelAttribute;
+	// the projected attributes of table1 and table2, and their pair table attributes
+	private final Attribute[] attributes1;
+	private final Attribute[] attributes2;
+	private final List<Attribute> projectedAttributes = new ArrayList<Attribute>();
+	// the tuples looked up so far, by ordinal, and their ordinals by id
+	private final List<Tuple> tuples1 = new ArrayList<Tuple>();
+	private final List<Tuple> tuples2 = new ArrayList<Tuple>();
+	private final Map<Object, Integer> ordinals1 = new HashMap<Object, Integer>();
+	private final Map<Object, Integer> ordinals2 = new HashMap<Object, Integer>();
+
+	private int[] pairIds = new int[0];
+	private int[] pairOrdinals1 = new int[0];
+	private int[] pairOrdinals2 = new int[0];
+	private byte[] labels;
+	private int size;
+	private final BitSet removed = new BitSet();
+	private int numRemoved;
+	// the row of every pair index, built by the first read by index after a removal
+	private int[] rows;
+	// the index of every pair id, built by the first lookup unless the pair
+	// ids follow each other from the first one
+	private boolean consecutive = true;
+	private Map<Integer, Integer> indexes;
+
+	private final Table table;
+
+	/*
+	 * An empty pair table; labelAttribute is null for pairs without labels.
+	 * A tuple of the tables is looked up once, and the tables must not change
+	 * while the pairs are in use.
+	 */
+	public PairTable(String name, String projectName, Table table1, Table table2,
+			Attribute pairIdAttribute, Attribute id1Attribute, Attribute id2Attribute,
+			Attribute labelAttribute) {
+		this(name, projectName, table1, table2, pairIdAttribute, id1Attribute, id2Attribute,
+				new ArrayList<Attribute>(), new ArrayList<Attribute>(), labelAttribute);
+	}
+
+	/*
+	 * An empty pair table with the projected attributes of table1 and table2,
+	 * which the table of the pairs has as table1Name.attribute and
+	 * table2Name.attribute, after id1 and id2 and before the label.
+	 */
+	public PairTable(String name, String projectName, Table table1, Table table2,
+			Attribute pairIdAttribute, Attribute id1Attribute, Attribute id2Attribute,
+			List<Attribute> table1Attributes, List<Attribute> table2Attributes,
+			Attribute labelAttribute) {
+		if (pairIdAttribute.getType() != Attribute.Type.INTEGER) {
+			throw new IllegalArgumentException("INTEGER pair id attribute expected: "
+					+ pairIdAttribute.getName());
+		}
+		this.table1 = table1;
+		this.table2 = table2;
+		this.pairIdAttribute = pairIdAttribute;
+		this.id1Attribute = id1Attribute;
+		this.id2Attribute = id2Attribute;
+		this.labelAttribute = labelAttribute;
+		this.attributes1 = table1Attributes.toArray(new Attribute[0]);
+		this.attributes2 = table2Attributes.toArray(new Attribute[0]);
+		for (Attribute attribute : attributes1) {
+			projectedAttributes.add(new Attribute(table1.getName() + "." + attribute.getName(),
+					attribute.getType()));
+		}
+		for (Attribute attribute : attributes2) {
+			projectedAttributes.add(new Attribute(table2.getName() + "." + attribute.getName(),
+					attribute.getType()));
+		}
+		if (null != labelAttribute) {
+			labels = new byte[0];
+		}
+		this.table = new Table(name, pairIdAttribute, getAttributes(), projectName,
+				new PairStore(this));
+	}
+
+	/*
+	 * The pairs of a table with the layout of the candsets, pairId, id1 and id2
+	 * first, and, if hasLabel, the label last: the pair table behind the table
+	 * if it is the table of one over table1 and table2, and a new one read from
+	 * the table otherwise. The ids that are not in table1 or table2 get
+	 * NO_ORDINAL and null tuples. The pairs are in the order of the table.
+	 */
+	public static PairTable of(Table pairs, Table table1, Table table2, boolean hasLabel) {
+		Map<Object, Tuple> store = pairs.getStore();
+		// a view over the table of a pair table selects only some of its pairs
+		if (store instanceof PairStore && !pairs.isView()) {
+			PairTable pairTable = ((PairStore) store).getPairTable();
+			if (pairTable.table1 == table1 && pairTable.table2 == table2
+					&& hasLabel == pairTable.hasLabels()) {
+				return pairTable;
+			}
+		}
+		List<Attribute> attributes = pairs.getAttributes();
+		Attribute pairIdAttribute = attributes.get(0);
+		// pairs whose ids are not INTEGER are numbered from 1 in order instead
+		boolean numbered = pairIdAttribute.getType() != Attribute.Type.INTEGER;
+		if (numbered) {
+			pairIdAttribute = new Attribute(pairIdAttribute.getName(), Attribute.Type.INTEGER);
+		}
+		Attribute labelAttribute = hasLabel ? attributes.get(attributes.size() - 1) : null;
+		PairTable pairTable = new PairTable(pairs.getName(), pairs.getProjectName(), table1,
+				table2, pairIdAttribute, attributes.get(1), attributes.get(2), labelAttribute);
+		Schema schema = pairs.getSchema();
+		int pairIdSlot = schema.getSlot(attributes.get(0));
+		int id1Slot = schema.getSlot(attributes.get(1));
+		int id2Slot = schema.getSlot(attributes.get(2));
+		int labelSlot = hasLabel ? schema.getSlot(labelAttribute) : -1;
+		TupleCursor cursor = pairs.getCursor();
+		int position = 1;
+		while (cursor.next()) {
+			Tuple pair = cursor.getTuple();
+			Object pairId = numbered ? (Object) position++ : pair.getValue(schema, pairIdSlot);
+			pairTable.addPairOfIds(pairId, pair.getValue(schema, id1Slot),
+					pair.getValue(schema, id2Slot), hasLabel ? pair.getValue(schema, labelSlot) : null);
+		}
+		return pairTable;
+	}
+
+	// the table of the pairs, see PairStore
+	public Table getTable() {
+		return table;
+	}
+
+	public Table getTable1() {
+		return table1;
+	}
+
+	public Table getTable2() {
+		return table2;
+	}
+
+	// the projected attributes of the table of the pairs, table1's first
+	public List<Attribute> getProjectedAttributes() {
+		return Collections.unmodifiableList(projectedAttributes);
+	}
+
+	public boolean hasLabels() {
+		return null != labels;
+	}
+
+	public int size() {
+		return size - numRemoved;
+	}
+
+	public int getPairId(int index) {
+		return pairIds[toRow(index)];
+	}
+
+	public int getOrdinal1(int index) {
+		return pairOrdinals1[toRow(index)];
+	}
+
+	public int getOrdinal2(int index) {
+		return pairOrdinals2[toRow(index)];
+	}
+
+	public Tuple getTuple1(int index) {
+		return getTuple(tuples1, getOrdinal1(index));
+	}
+
+	public Tuple getTuple2(int index) {
+		return getTuple(tuples2, getOrdinal2(index));
+	}
+
+	public Object getId1(int index) {
+		return getId(table1, getTuple1(index));
+	}
+
+	public Object getId2(int index) {
+		return getId(table2, getTuple2(index));
+	}
+
+	// the MatchStatus label of the pair, null if it has none
+	public Integer getLabel(int index) {
+		return getStoredLabel(toRow(index));
+	}
+
+	public void setLabel(int index, Integer label) {
+		setStoredLabel(toRow(index), label);
+	}
+
+	public void addPair(int pairId, int ordinal1, int ordinal2) {
+		addPair(pairId, ordinal1, ordinal2, null);
+	}
+
+	public void addPair(int pairId, int ordinal1, int ordinal2, Integer label) {
+		if (ordinal1 < NO_ORDINAL || ordinal1 >= tuples1.size()) {
+			throw new IllegalArgumentException("No ordinal " + ordinal1 + " in table "
+					+ table1.getName());
+		}
+		if (ordinal2 < NO_ORDINAL || ordinal2 >= tuples2.size()) {
+			throw new IllegalArgumentException("No ordinal " + ordinal2 + " in table "
+					+ table2.getName());
+		}
+		if (size == pairIds.length) {
+			int capacity = Column.grow(pairIds.length, size);
+			pairIds = Arrays.copyOf(pairIds, capacity);
+			pairOrdinals1 = Arrays.copyOf(pairOrdinals1, capacity);
+			pairOrdinals2 = Arrays.copyOf(pairOrdinals2, capacity);
+			if (null != labels) {
+				labels = Arrays.copyOf(labels, capacity);
+			}
+		}
+		if (size > 0 && pairId != pairIds[0] + size) {
+			consecutive = false;
+		}
+		if (null != indexes) {
+			indexes.put(pairId, size);
+		}
+		rows = null;
+		pairIds[size] = pairId;
+		pairOrdinals1[size] = ordinal1;
+		pairOrdinals2[size] = ordinal2;
+		size++;
+		if (null != labels) {
+			setStoredLabel(size - 1, label);
+		}
+	}
+
+	// a pair by the ids of its tuples, which are looked up in table1 and table2
+	public void addPairOfIds(Object pairId, Object id1, Object id2, Object label) {
+		if (!(pairId instanceof Integer)) {
+			throw new IllegalArgumentException("Integer pair id expected: " + pairId);
+		}
+		addPair((Integer) pairId, lookupOrdinal1(id1), lookupOrdinal2(id2), toLabel(label));
+	}
+
+	// the ordinal of the table1 tuple of the id, the next one if it is new
+	public int lookupOrdinal1(Object id) {
+		return lookupOrdinal(table1, tuples1, ordinals1, id);
+	}
+
+	public int lookupOrdinal2(Object id) {
+		return lookupOrdinal(table2, tuples2, ordinals2, id);
+	}
+
+	private static int lookupOrdinal(Table table, List<Tuple> tuples,
+			Map<Object, Integer> ordinals, Object id) {
+		Integer ordinal = ordinals.get(id);
+		if (null != ordinal) {
+			return ordinal;
+		}
+		Tuple tuple = null == id ? null : table.getTuple(id);
+		if (null == tuple) {
+			return NO_ORDINAL;
+		}
+		ordinals.put(id, tuples.size());
+		tuples.add(tuple);
+		return tuples.size() - 1;
+	}
+
+	private static Tuple getTuple(List<Tuple> tuples, int ordinal) {
+		return ordinal == NO_ORDINAL ? null : tuples.get(ordinal);
+	}
+
+	private static Object getId(Table table, Tuple tuple) {
+		return null == tuple ? null : tuple.getAttributeValue(table.getIdAttribute());
+	}
+
+	static Integer toLabel(Object label) {
+		if (null == label || label instanceof Integer) {
+			return (Integer) label;
+		}
+		throw new IllegalArgumentException("Integer label expected: " + label);
+	}
+
+	// the row of a pair index, skipping the rows of the removed pairs
+	private int toRow(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Pair index " + index + ", size " + size());
+		}
+		if (0 == numRemoved) {
+			return index;
+		}
+		if (null == rows) {
+			rows = new int[size()];
+			int i = 0;
+			for (int row = removed.nextClearBit(0); row < size; row = removed.nextClearBit(row + 1)) {
+				rows[i++] = row;
+			}
+		}
+		return rows[index];
+	}
+
+	/*
+	 * The rows of the arrays, read and written by the PairStore: a row holds
+	 * the same pair until the pairs are cleared.
+	 */
+
+	List<Attribute> getAttributes() {
+		List<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(pairIdAttribute);
+		attributes.add(id1Attribute);
+		attributes.add(id2Attribute);
+		attributes.addAll(projectedAttributes);
+		if (null != labelAttribute) {
+			attributes.add(labelAttribute);
+		}
+		return attributes;
+	}
+
+	Attribute getId1Attribute() {
+		return id1Attribute;
+	}
+
+	Attribute getId2Attribute() {
+		return id2Attribute;
+	}
+
+	Attribute getLabelAttribute() {
+		return labelAttribute;
+	}
+
+	int getNumRows() {
+		return size;
+	}
+
+	boolean isRemoved(int row) {
+		return removed.get(row);
+	}
+
+	int getStoredPairId(int row) {
+		return pairIds[row];
+	}
+
+	Object getStoredId1(int row) {
+		return getId(table1, getTuple(tuples1, pairOrdinals1[row]));
+	}
+
+	Object getStoredId2(int row) {
+		return getId(table2, getTuple(tuples2, pairOrdinals2[row]));
+	}
+
+	int getNumProjections() {
+		return projectedAttributes.size();
+	}
+
+	// the value of a projected attribute, read from the tuple of the pair
+	Object getStoredProjection(int row, int projection) {
+		Tuple tuple;
+		Attribute attribute;
+		if (projection < attributes1.length) {
+			tuple = getTuple(tuples1, pairOrdinals1[row]);
+			attribute = attributes1[projection];
+		}
+		else {
+			tuple = getTuple(tuples2, pairOrdinals2[row]);
+			attribute = attributes2[projection - attributes1.length];
+		}
+		return null == tuple ? null : tuple.getAttributeValue(attribute);
+	}
+
+	Integer getStoredLabel(int row) {
+		if (null == labels || labels[row] == NO_LABEL) {
+			return null;
+		}
+		return (int) labels[row];
+	}
+
+	void setStoredLabel(int row, Integer label) {
+		if (null == labels) {
+			throw new IllegalStateException("Pairs of " + table.getName() + " have no label");
+		}
+		if (null != label && (label <= NO_LABEL || label > Byte.MAX_VALUE)) {
+			throw new IllegalArgumentException("Label out of range: " + label);
+		}
+		labels[row] = null == label ? NO_LABEL : label.byteValue();
+	}
+
+	void setStoredOrdinal1(int row, int ordinal1) {
+		pairOrdinals1[row] = ordinal1;
+	}
+
+	void setStoredOrdinal2(int row, int ordinal2) {
+		pairOrdinals2[row] = ordinal2;
+	}
+
+	void setStoredPair(int row, int ordinal1, int ordinal2, Integer label) {
+		pairOrdinals1[row] = ordinal1;
+		pairOrdinals2[row] = ordinal2;
+		if (null != labels) {
+			setStoredLabel(row, label);
+		}
+	}
+
+	// the row of a pair id, -1 if there is none
+	int getRow(Object pairId) {
+		if (!(pairId instanceof Integer) || size == 0) {
+			return -1;
+		}
+		int id = (Integer) pairId;
+		int row;
+		if (consecutive) {
+			long offset = (long) id - pairIds[0];
+			row = offset < 0 || offset >= size ? -1 : (int) offset;
+		}
+		else {
+			if (null == indexes) {
+				indexes = new HashMap<Integer, Integer>(size * 4 / 3 + 1);
+				for (int i = 0; i < size; i++) {
+					if (!removed.get(i)) {
+						indexes.put(pairIds[i], i);
+					}
+				}
+			}
+			Integer index = indexes.get(id);
+			row = null == index ? -1 : index;
+		}
+		return row < 0 || removed.get(row) ? -1 : row;
+	}
+
+	void removeRow(int row) {
+		removed.set(row);
+		numRemoved++;
+		rows = null;
+		if (null != indexes) {
+			indexes.remove(pairIds[row]);
+		}
+	}
+
+	void clearRows() {
+		size = 0;
+		removed.clear();
+		numRemoved = 0;
+		rows = null;
+		consecutive = true;
+		indexes = null;
+	}
+}
@@ -0,0 +1,35 @@
+package com.walmart.productgenome.matching.models.data;
+
+import java.util.AbstractMap;
+import java.util.Map;
+
+/*
+ * The tuples of a table that does not keep a Tuple per row, by id. The
+ * values live in the store, and the tuples it hands out are views reading
+ * and writing a row of it (see Tuple).
+ */
+abstract class RowStore extends AbstractMap<Object, Tuple> {
+
+	// the code of a value that is not in a column of the dictionary
+	static final int NOT_STORED = -2;
+
+	abstract Schema getSchema();
+
+	abstract Object getValue(int row, int slot);
+
+	Object getValue(int row, Attribute attribute) {
+		int slot = getSchema().getSlot(attribute);
+		return slot < 0 ? null : getValue(row, slot);
+	}
+
+	abstract void setValue(int row, Attribute attribute, Object value);
+
+	// the values of a row, including the null ones
+	abstract Map<Attribute, Object> getData(int row);
+
+	// the code of a row in the column of the dictionary, NOT_STORED if the
+	// store has no such column
+	int getCode(int row, Dictionary dictionary) {
+		return NOT_STORED;
+	}
+}
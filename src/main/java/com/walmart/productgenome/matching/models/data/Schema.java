@@ -0,0 +1,86 @@
+package com.walmart.productgenome.matching.models.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * The slots of the tuples of a table: every attribute gets a slot index, and
+ * the tuples of the table keep their values in an array by slot instead of a
+ * map by attribute.
+ *
+ * Code reading an attribute of many tuples looks its slot up once and reads
+ * the tuples by slot:
+ *
+ *   Schema schema = table.getSchema();
+ *   int slot = schema.getSlot(attribute);
+ *   for (Tuple tuple : table.getAllTuplesInOrder()) {
+ *     Object value = tuple.getValue(schema, slot);
+ *     ...
+ *   }
+ *
+ * A schema only grows: setting an attribute the schema does not have on one
+ * of its tuples appends a slot, and removing an attribute from a table leaves
+ * its slot empty.
+ */
+public class Schema {
+
+	private final Map<Attribute, Integer> slots = new HashMap<Attribute, Integer>();
+	private final List<Attribute> attributes = new ArrayList<Attribute>();
+	// the number of values changed in place in the tuples of the table
+	private long modCount;
+
+	public Schema() {
+	}
+
+	public Schema(Iterable<Attribute> attributes) {
+		for (Attribute attribute : attributes) {
+			addSlot(attribute);
+		}
+	}
+
+	// the slot of the attribute, -1 if the schema does not have it
+	public int getSlot(Attribute attribute) {
+		Integer slot = slots.get(attribute);
+		return null == slot ? -1 : slot;
+	}
+
+	public Attribute getAttribute(int slot) {
+		return attributes.get(slot);
+	}
+
+	public int size() {
+		return attributes.size();
+	}
+
+	// the attributes by slot
+	public List<Attribute> getAttributes() {
+		return Collections.unmodifiableList(attributes);
+	}
+
+	// the slot of the attribute, appended if the schema does not have it yet
+	int addSlot(Attribute attribute) {
+		Integer slot = slots.get(attribute);
+		if (null == slot) {
+			slot = attributes.size();
+			slots.put(attribute, slot);
+			attributes.add(attribute);
+		}
+		return slot;
+	}
+
+	long getModCount() {
+		return modCount;
+	}
+
+	// called when a value of a tuple in the table is changed in place
+	void modified() {
+		modCount++;
+	}
+
+	public String toString() {
+		return attributes.toString();
+	}
+}
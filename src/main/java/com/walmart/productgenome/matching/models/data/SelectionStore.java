@@ -0,0 +1,195 @@
+package com.walmart.productgenome.matching.models.data;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/*
+ * The tuples of a view table: a selection of ids of another table, in the
+ * order of the selection, whose tuples are read from the map of that table.
+ * Taking a view only copies the ids, so copying, splitting or sampling a
+ * table costs O(selection) instead of O(table).
+ *
+ * Removing a tuple from a view only drops its id from the selection. Putting
+ * a tuple in the view or clearing it first copies the selected tuples into a
+ * map of its own (copy-on-write), and so does a change to the table the view
+ * reads, which copies its live views before it changes (see Table). The
+ * tuples themselves are shared, as they are by a copy of a table, except
+ * the row views of a columnar or pair table: their rows are overwritten by
+ * a put of the same id and reused after a clear, so their values are copied.
+ */
+class SelectionStore extends AbstractMap<Object, Tuple> {
+
+	private final Map<Object, Tuple> parent;
+	// the views of the parent, to be copied before the parent changes
+	private final List<WeakReference<SelectionStore>> parentViews;
+	// the selected ids, which are expected to be distinct
+	private final Object[] ids;
+	private final BitSet removed = new BitSet();
+	private int size;
+	// the index of every selected id, built by the first lookup
+	private Map<Object, Integer> indexes;
+	// the tuples of the view once they have been copied
+	private Map<Object, Tuple> copy;
+
+	SelectionStore(Map<Object, Tuple> parent, List<WeakReference<SelectionStore>> parentViews,
+			Object[] ids) {
+		this.parent = parent;
+		this.parentViews = parentViews;
+		this.ids = ids;
+		this.size = ids.length;
+		for (Iterator<WeakReference<SelectionStore>> it = parentViews.iterator(); it.hasNext();) {
+			if (null == it.next().get()) {
+				it.remove();
+			}
+		}
+		parentViews.add(new WeakReference<SelectionStore>(this));
+	}
+
+	// the map the tuples are read from, null once they have been copied
+	Map<Object, Tuple> getParent() {
+		return null == copy ? parent : null;
+	}
+
+	List<WeakReference<SelectionStore>> getParentViews() {
+		return parentViews;
+	}
+
+	// the index of the next selected id from an index on, -1 if there is none
+	int nextIndex(int from) {
+		int index = removed.nextClearBit(from);
+		return index < ids.length ? index : -1;
+	}
+
+	Object getId(int index) {
+		return ids[index];
+	}
+
+	// copies the selected tuples, after which the parent may change
+	void materialize() {
+		if (null != copy) {
+			return;
+		}
+		Map<Object, Tuple> tuples = new LinkedHashMap<Object, Tuple>();
+		for (int index = nextIndex(0); index >= 0; index = nextIndex(index + 1)) {
+			Tuple tuple = parent.get(ids[index]);
+			if (parent instanceof RowStore) {
+				Tuple values = new Tuple(tuple.getData());
+				values.bind(((RowStore) parent).getSchema());
+				tuple = values;
+			}
+			tuples.put(ids[index], tuple);
+		}
+		copy = tuples;
+		indexes = null;
+	}
+
+	private int getIndex(Object id) {
+		if (null == indexes) {
+			indexes = new HashMap<Object, Integer>(size * 4 / 3 + 1);
+			for (int index = nextIndex(0); index >= 0; index = nextIndex(index + 1)) {
+				indexes.put(ids[index], index);
+			}
+		}
+		Integer index = indexes.get(id);
+		return null == index ? -1 : index;
+	}
+
+	@Override
+	public int size() {
+		return null == copy ? size : copy.size();
+	}
+
+	@Override
+	public boolean containsKey(Object id) {
+		return null == copy ? getIndex(id) >= 0 : copy.containsKey(id);
+	}
+
+	@Override
+	public Tuple get(Object id) {
+		if (null != copy) {
+			return copy.get(id);
+		}
+		return getIndex(id) >= 0 ? parent.get(id) : null;
+	}
+
+	@Override
+	public Tuple put(Object id, Tuple tuple) {
+		materialize();
+		return copy.put(id, tuple);
+	}
+
+	@Override
+	public Tuple remove(Object id) {
+		if (null != copy) {
+			return copy.remove(id);
+		}
+		int index = getIndex(id);
+		if (index < 0) {
+			return null;
+		}
+		removed.set(index);
+		indexes.remove(id);
+		size--;
+		return parent.get(id);
+	}
+
+	@Override
+	public void clear() {
+		copy = new LinkedHashMap<Object, Tuple>();
+		indexes = null;
+	}
+
+	@Override
+	public Set<Map.Entry<Object, Tuple>> entrySet() {
+		if (null != copy) {
+			return copy.entrySet();
+		}
+		return new AbstractSet<Map.Entry<Object, Tuple>>() {
+			@Override
+			public int size() {
+				return SelectionStore.this.size();
+			}
+
+			@Override
+			public Iterator<Map.Entry<Object, Tuple>> iterator() {
+				if (null != copy) {
+					return copy.entrySet().iterator();
+				}
+				return new Iterator<Map.Entry<Object, Tuple>>() {
+					private int next = nextIndex(0);
+					private int last = -1;
+
+					public boolean hasNext() {
+						return next >= 0;
+					}
+
+					public Map.Entry<Object, Tuple> next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						last = next;
+						next = nextIndex(next + 1);
+						return new AbstractMap.SimpleImmutableEntry<Object, Tuple>(ids[last],
+								parent.get(ids[last]));
+					}
+
+					public void remove() {
+						if (last < 0 || removed.get(last)) {
+							throw new IllegalStateException();
+						}
+						SelectionStore.this.remove(ids[last]);
+					}
+				};
+			}
+		};
+	}
+}
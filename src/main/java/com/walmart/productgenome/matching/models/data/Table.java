@@ -1,32 +1,79 @@
 package com.walmart.productgenome.matching.models.data;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.service.SamplingService;
 import com.walmart.productgenome.matching.utils.JSONUtils;
 
 public class Table {
 
+	/*
+	 * How the tuples of a table are held: ROWS keeps every Tuple with its own
+	 * array of values by slot of the table's Schema, COLUMNS keeps one
+	 * primitive or packed array per attribute in a ColumnStore and hands out
+	 * lightweight row views. A columnar table takes a fraction of the heap of
+	 * a row table, at the cost of boxing or decoding the values on every read.
+	 */
+	public enum Storage {
+		ROWS,
+		COLUMNS
+	}
+
 	private String name;
 	private String description = "";
 	private Attribute idAttrib;
 	private List<Attribute> attributes;
+	private Schema schema;
 	private Map<Object,Tuple> tuples;
+	// the secondary indexes, created by the first query
+	private TableIndexes indexes;
+	// the number of tuples added and removed, see getVersion()
+	private long modCount;
+	// the version of the table when its tuples were last those of its table
+	// file, see matchesFile()
+	private long fileVersion = -1;
+	// the views reading the tuples of this table, copied before it changes
+	private final List<WeakReference<SelectionStore>> views = new ArrayList<WeakReference<SelectionStore>>();
 	private String projectName;
 
 	public Table(String name, Attribute idAttrib, List<Attribute> attributes, String projectName){
+		this(name, idAttrib, attributes, projectName, Storage.ROWS);
+	}
+
+	public Table(String name, Attribute idAttrib, List<Attribute> attributes,
+			String projectName, Storage storage){
 		this.name = name;
 		this.idAttrib = idAttrib;
 		this.attributes = new ArrayList<Attribute>(attributes);
-		tuples = new LinkedHashMap<Object,Tuple>();
+		this.schema = new Schema(this.attributes);
+		if (storage == Storage.COLUMNS) {
+			tuples = new ColumnStore(schema);
+		}
+		else {
+			tuples = new LinkedHashMap<Object,Tuple>();
+		}
+		this.projectName = projectName;
+	}
+
+	// a table whose tuples are views of a store, see PairTable
+	Table(String name, Attribute idAttrib, List<Attribute> attributes, String projectName,
+			RowStore store) {
+		this.name = name;
+		this.idAttrib = idAttrib;
+		this.attributes = new ArrayList<Attribute>(attributes);
+		this.schema = store.getSchema();
+		this.tuples = store;
 		this.projectName = projectName;
 	}
 
@@ -36,39 +83,101 @@ public class Table {
 		addAllTuples(tuples);
 	}
 
+	/*
+	 * The copy constructors return views of the other table (see
+	 * SelectionStore), which only copy the ids and read the tuples from the
+	 * other table until either of them changes.
+	 */
+
 	// copy constructor
 	public Table(Table otherTable) {
-		this.name = otherTable.getName();
-		this.idAttrib = new Attribute(otherTable.getIdAttribute().getName(), otherTable.getIdAttribute().getType());
-		this.attributes = new ArrayList<Attribute>(otherTable.getAttributes());
-		this.tuples = new LinkedHashMap<Object, Tuple>(otherTable.tuples);
-		this.projectName = otherTable.getProjectName();
+		this(otherTable, otherTable.getName());
 	}
 
 	public Table(Table otherTable, String tableName) {
-		this.name = tableName;
-		this.idAttrib = new Attribute(otherTable.getIdAttribute().getName(), otherTable.getIdAttribute().getType());
-		this.attributes = new ArrayList<Attribute>(otherTable.getAttributes());
-		this.tuples = new LinkedHashMap<Object, Tuple>(otherTable.tuples);
-		this.projectName = otherTable.getProjectName();
+		this(otherTable, tableName, otherTable.tuples.keySet().toArray());
 	}
 	
-	// copy constructor for sampling
+	// copy constructor for sampling, the ids are expected to be distinct
 	public Table(Table otherTable, String tableName, List<Object> ids) {
+		this(otherTable, tableName, ids.toArray());
+	}
+
+	private Table(Table otherTable, String tableName, Object[] ids) {
 		this.name = tableName;
 		this.idAttrib = new Attribute(otherTable.getIdAttribute().getName(), otherTable.getIdAttribute().getType());
 		this.attributes = new ArrayList<Attribute>(otherTable.getAttributes());
-		this.tuples = new LinkedHashMap<Object, Tuple>();
-		for(Object id: ids) {
-			this.tuples.put(id, otherTable.getTuple(id));
-		}
+		this.schema = otherTable.schema;
+		this.tuples = otherTable.select(ids);
 		this.projectName = otherTable.getProjectName();
 	}
 
+	/*
+	 * A view of the tuples of the ids, reading them from the map of this table
+	 * or, if this table is a view that has not been copied yet, from the map it
+	 * reads.
+	 */
+	private SelectionStore select(Object[] ids) {
+		if (tuples instanceof SelectionStore) {
+			SelectionStore selection = (SelectionStore) tuples;
+			if (null != selection.getParent()) {
+				return new SelectionStore(selection.getParent(), selection.getParentViews(), ids);
+			}
+		}
+		return new SelectionStore(tuples, views, ids);
+	}
+
+	// copies the views of this table before its tuples change
+	private void detachViews() {
+		for (WeakReference<SelectionStore> view : views) {
+			SelectionStore selection = view.get();
+			if (null != selection) {
+				selection.materialize();
+			}
+		}
+		views.clear();
+	}
+
+	// the map the tuples are read from, the parent of a view not copied yet
+	Map<Object,Tuple> getStore() {
+		if (tuples instanceof SelectionStore) {
+			Map<Object,Tuple> parent = ((SelectionStore) tuples).getParent();
+			if (null != parent) {
+				return parent;
+			}
+		}
+		return tuples;
+	}
+
+	public boolean isView() {
+		return tuples instanceof SelectionStore && null != ((SelectionStore) tuples).getParent();
+	}
+
 	public String getName(){
 		return name;
 	}
 
+	public Storage getStorage() {
+		return getStore() instanceof ColumnStore ? Storage.COLUMNS : Storage.ROWS;
+	}
+
+	// the slots of the attributes in the tuples of the table
+	public Schema getSchema() {
+		return schema;
+	}
+
+	/*
+	 * The dictionary of a dictionary-encoded TEXT attribute of a columnar
+	 * table, null for the other attributes and tables.
+	 */
+	public Dictionary getDictionary(Attribute attribute) {
+		Map<Object,Tuple> store = getStore();
+		if (store instanceof ColumnStore) {
+			return ((ColumnStore) store).getDictionary(attribute);
+		}
+		return null;
+	}
+
 	public void setName(String name) {
 		this.name = name;
 	}
@@ -97,7 +206,15 @@ public class Table {
 		//System.out.println("tuple: " + tuple);
 		Object tupleId = tuple.getAttributeValue(idAttrib);
 		//System.out.println("tupleId: " + tupleId);
+		if (!(tuples instanceof RowStore)) {
+			tuple.bind(schema);
+		}
+		detachViews();
 		tuples.put(tupleId,tuple);
+		modCount++;
+		if (null != indexes) {
+			indexes.add(tupleId, tuple);
+		}
 	}
 
 	public void addAllTuples(Collection<Tuple> tuples){
@@ -107,7 +224,12 @@ public class Table {
 	}
 
 	public void removeTuple(Object id){
+		detachViews();
 		tuples.remove(id);
+		modCount++;
+		if (null != indexes) {
+			indexes.remove(id);
+		}
 	}
 
 	public boolean contains(Tuple tuple){
@@ -135,13 +257,42 @@ public class Table {
 		return tupleList;
 	}
 
+	// iterates over the table without building a list, see TupleCursor
+	public TupleCursor getCursor() {
+		return new TupleCursor(tuples);
+	}
+
 	public List<Object> getAllIdsInOrder() {
 		List<Object> ids = new ArrayList<Object>(tuples.keySet()); //keySet() returns the keys in order
 		return ids;
 	}
 
 	public void clear() {
+		detachViews();
 		tuples.clear();
+		modCount++;
+		indexes = null;
+	}
+
+	/*
+	 * A number that changes whenever a tuple is added or removed or a value
+	 * of a tuple is changed in place, for the data derived from the tuples.
+	 */
+	public long getVersion() {
+		return modCount + schema.getModCount();
+	}
+
+	/*
+	 * Records that the tuples of the table are those of its table file in the
+	 * project, in the same order, for the table just loaded from it or saved
+	 * to it. The table keeps matching its file until it changes in any way.
+	 */
+	public void markMatchesFile() {
+		fileVersion = getVersion();
+	}
+
+	public boolean matchesFile() {
+		return fileVersion == getVersion();
 	}
 
 	public String getProjectName() {
@@ -174,23 +325,39 @@ public class Table {
 		return null;
 	}
 
-	// TODO: What if the table is large? We need to do external sorting.
-	// Right now everything is in memory.
+	// the ids sorted on the attribute, nulls first, and reversed if descending
 	public List<Object> sortTableByAttribute(List<Object> ids, Attribute attr, boolean ascending){
-		Collections.sort(ids, new AttrComparator(attr));
+		sortTableByAttributes(ids, Collections.singletonList(attr),
+				Collections.singletonList(Boolean.TRUE));
 		if (!ascending) {
 			Collections.reverse(ids);
 		}
 		return ids;
 	}
 
-	//TODO: Need inverted indexes on attributes for efficient implementation
+	/*
+	 * Sorts the ids in place on several attributes, each ascending or
+	 * descending, with a TableSorter, which spills to disk for large tables.
+	 */
+	public List<Object> sortTableByAttributes(List<Object> ids, List<Attribute> attrs,
+			List<Boolean> ascending) {
+		try {
+			return new TableSorter(this, attrs, ascending).sort(ids);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Failed to sort table " + name, e);
+		}
+	}
+
 	public List<Object> getAllRowIdsWithAttrValue(Attribute attr, Object value){
 		// type check the attribute value
 		attr.typeCheck(value);
 		List<Object> ids = new ArrayList<Object>();
 		String strValue = String.valueOf(value);
-		for(Tuple tuple : tuples.values()){
+		List<Object> values = new ArrayList<Object>();
+		values.add(strValue);
+		for(Tuple tuple : getQueryTuples(Collections.singletonList(attr), values,
+				Collections.singletonList(QueryOps.CONTAINS))){
 			String tupleVal = String.valueOf(tuple.getAttributeValue(attr));
 			if (tupleVal.contains(strValue)) {
 				ids.add(tuple.getAttributeValue(idAttrib));
@@ -199,61 +366,9 @@ public class Table {
 		return ids;
 	}
 
-	private class AttrComparator implements Comparator<Object> {
-
-		private Attribute attr;
-
-		public AttrComparator(Attribute attr) {
-			this.attr = attr;
-		}
-
-		public int compare(Object id1, Object id2) {
-
-			Object value1 = getTuple(id1).getAttributeValue(attr);
-			Object value2 = getTuple(id2).getAttributeValue(attr);
-			
-			if (value1 == null && value2 != null) {
-			  return -1;
-			}
-			else if (value2 == null && value1 != null) {
-        return 1;
-      } else if (value2 == null && value1 == null) {
-        return 0;
-      }
-
-			switch(attr.getType()){
-			case TEXT:
-				String sval1 = (String) value1;
-				String sval2 = (String) value2;
-				return sval1.compareTo(sval2);
-			case INTEGER:
-				Integer ival1 = (Integer) value1;
-				Integer ival2 = (Integer) value2;
-				return ival1.compareTo(ival2);
-			case FLOAT:
-				Float fval1 = (Float) value1;
-				Float fval2 = (Float) value2;
-				return fval1.compareTo(fval2);
-			case BOOLEAN:
-				Boolean bval1 = (Boolean) value1;
-				Boolean bval2 = (Boolean) value2;
-				return bval1.compareTo(bval2);
-			default:
-				throw new IllegalArgumentException ("Attribute Type violation: Text/Integer/Float/Boolean value expected for " + attr.getName());
-			}
-		}
-	}
-
 	// TODO: Sanjib. review
 	public List<Object> sortTableByAttribute(List<Object> ids, Attribute attr, Boolean ascending) {
-
-		Collections.sort(ids, new AttrComparator(attr));
-
-		if (!ascending) {
-			Collections.reverse(ids);
-		}
-
-		return ids;
+		return sortTableByAttribute(ids, attr, ascending.booleanValue());
 	}	
 
 	// TODO: Sanjib, review
@@ -262,7 +377,7 @@ public class Table {
 
 		List<Object> ids = new ArrayList<Object>();
 
-		for(Tuple tuple : tuples.values()) {
+		for(Tuple tuple : getQueryTuples(attrs, values, ops)) {
 
 			Boolean matches = true;
 			for (int i = 0; i < attrs.size(); i++) {
@@ -282,6 +397,27 @@ public class Table {
 		return ids; 
 	}
 
+	/*
+	 * The tuples a query has to check, in table order: the candidates of the
+	 * most selective index of the conditions (see TableIndexes), or all of
+	 * them. The indexes are dropped once a value is changed in place.
+	 */
+	private Collection<Tuple> getQueryTuples(List<Attribute> attrs, List<Object> values,
+			List<QueryOps> ops) {
+		if (null == indexes || indexes.isStale()) {
+			indexes = new TableIndexes(this);
+		}
+		List<Object> candidates = indexes.getCandidates(attrs, values, ops);
+		if (null == candidates) {
+			return tuples.values();
+		}
+		List<Tuple> candidateTuples = new ArrayList<Tuple>(candidates.size());
+		for (Object id : candidates) {
+			candidateTuples.add(tuples.get(id));
+		}
+		return candidateTuples;
+	}
+
 	// TODO: Sanjib, review
 	private Boolean meetsQueryCondition(Tuple tuple, Attribute attr, Object value, QueryOps op) {
 		Object itemVal = tuple.getAttributeValue(attr);
@@ -363,31 +499,42 @@ public class Table {
 	//  }
 
 
-	// TODO: Sanjib, review.
+	/*
+	 * Keeps a uniform random sample of the tuples in the table and returns
+	 * their ids. SamplingService takes samples as views instead, leaving the
+	 * table as it is.
+	 */
 	public List<Object> getRandomSample(Long sampleSize) {
 
-		Set<Object> sample = new HashSet<Object>();
+		List<Object> sample = SamplingService.sampleIds(this, sampleSize.intValue(), new Random());
+		Set<Object> sampled = new HashSet<Object>(sample);
 
-		List<Object> ids = new ArrayList<Object>(tuples.keySet());
-		Collections.shuffle(ids);
-
-		for (int i = 0; i < sampleSize; i++) {
-			sample.add(ids.get(i));
-		}	 
-
-		for (Object id: ids) {
-			if (!sample.contains(id)) {
-				tuples.remove(id);
+		List<Object> unsampled = new ArrayList<Object>();
+		TupleCursor cursor = getCursor();
+		while (cursor.next()) {
+			if (!sampled.contains(cursor.getId())) {
+				unsampled.add(cursor.getId());
 			}
 		}
+		for (Object id: unsampled) {
+			removeTuple(id);
+		}
 
-		return new ArrayList<Object>(sample);
+		return sample;
 	}
 
 	//TODO: Sanjib, review. Can we delete the id attr?
 	// We may be able to, if we have our own internal identifier.
 	public void removeAttr(Attribute attr) {
 		attributes.remove(attr);
+		modCount++;
+		if (null != indexes) {
+			indexes.removeAttribute(attr);
+		}
+		if (tuples instanceof ColumnStore) {
+			((ColumnStore) tuples).removeColumn(attr);
+			return;
+		}
 		for(Tuple tuple : tuples.values()){
 			tuple.removeAttr(attr);
 		}
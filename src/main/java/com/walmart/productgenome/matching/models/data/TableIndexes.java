@@ -0,0 +1,145 @@
+package com.walmart.productgenome.matching.models.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.walmart.productgenome.matching.models.data.Table.QueryOps;
+
+/*
+ * The secondary indexes of a table and the planner of its queries.
+ *
+ * An index is created for an attribute the first time a query needs it: a
+ * hash index for EQUALS, a sorted index for the range operators and an
+ * n-gram index for CONTAINS. From then on the table keeps it up to date as
+ * tuples are added and removed. A change made to a tuple in place, through
+ * Tuple.setAttributeValue, makes all the indexes stale, and the table drops
+ * them before its next query.
+ *
+ * A query is answered from the index of its most selective condition, and
+ * the candidates are checked against all the conditions and returned in
+ * table order. When no condition narrows the table down to a quarter of its
+ * tuples, the query scans the table instead.
+ */
+class TableIndexes {
+
+	// fraction of the table above which scanning beats the index
+	static final double MAX_SELECTIVITY = 0.25;
+
+	private final Table table;
+	// the count of the in place changes the indexes have seen, see Schema
+	private final long schemaModCount;
+	private final Map<Attribute, List<ValueIndex>> indexes = new HashMap<Attribute, List<ValueIndex>>();
+	// the position of every id in the table, to return candidates in table
+	// order, created by the first query answered from an index
+	private Map<Object, Long> positions;
+	private long nextPosition;
+
+	TableIndexes(Table table) {
+		this.table = table;
+		this.schemaModCount = table.getSchema().getModCount();
+	}
+
+	// whether a value was changed in place since the indexes were created
+	boolean isStale() {
+		return schemaModCount != table.getSchema().getModCount();
+	}
+
+	void add(Object id, Tuple tuple) {
+		if (null != positions && !positions.containsKey(id)) {
+			positions.put(id, nextPosition++);
+		}
+		for (Map.Entry<Attribute, List<ValueIndex>> entry : indexes.entrySet()) {
+			Object value = tuple.getAttributeValue(entry.getKey());
+			for (ValueIndex index : entry.getValue()) {
+				index.add(id, value);
+			}
+		}
+	}
+
+	void remove(Object id) {
+		if (null != positions) {
+			positions.remove(id);
+		}
+		for (List<ValueIndex> attributeIndexes : indexes.values()) {
+			for (ValueIndex index : attributeIndexes) {
+				index.remove(id);
+			}
+		}
+	}
+
+	void removeAttribute(Attribute attribute) {
+		indexes.remove(attribute);
+	}
+
+	/*
+	 * The candidate ids of the conditions in table order, from the index of
+	 * the most selective one, or null if the table should be scanned.
+	 */
+	List<Object> getCandidates(List<Attribute> attributes, List<Object> values,
+			List<QueryOps> ops) {
+		int limit = (int) (MAX_SELECTIVITY * table.getSize());
+		ValueIndex best = null;
+		int bestCondition = -1;
+		for (int i = 0; i < attributes.size(); i++) {
+			ValueIndex index = getIndex(attributes.get(i), ops.get(i));
+			if (null == index) {
+				continue;
+			}
+			int estimate = index.estimate(ops.get(i), values.get(i), limit + 1);
+			if (estimate >= 0 && estimate <= limit) {
+				best = index;
+				bestCondition = i;
+				limit = estimate;
+			}
+		}
+		if (null == best) {
+			return null;
+		}
+		List<Object> candidates = new ArrayList<Object>(best.lookup(ops.get(bestCondition),
+				values.get(bestCondition)));
+		if (candidates.size() < 2) {
+			return candidates;
+		}
+		if (null == positions) {
+			positions = new HashMap<Object, Long>();
+			TupleCursor cursor = table.getCursor();
+			while (cursor.next()) {
+				positions.put(cursor.getId(), nextPosition++);
+			}
+		}
+		Collections.sort(candidates, new Comparator<Object>() {
+			public int compare(Object id1, Object id2) {
+				return positions.get(id1).compareTo(positions.get(id2));
+			}
+		});
+		return candidates;
+	}
+
+	// the index of the attribute for the operator, created if it does not exist yet
+	private ValueIndex getIndex(Attribute attribute, QueryOps op) {
+		List<ValueIndex> attributeIndexes = indexes.get(attribute);
+		if (null == attributeIndexes) {
+			attributeIndexes = new ArrayList<ValueIndex>();
+			indexes.put(attribute, attributeIndexes);
+		}
+		for (ValueIndex index : attributeIndexes) {
+			if (index.supports(op)) {
+				return index;
+			}
+		}
+		ValueIndex index = ValueIndex.forOp(attribute, op);
+		if (null == index) {
+			return null;
+		}
+		TupleCursor cursor = table.getCursor();
+		while (cursor.next()) {
+			index.add(cursor.getId(), cursor.getTuple().getAttributeValue(attribute));
+		}
+		attributeIndexes.add(index);
+		return index;
+	}
+}
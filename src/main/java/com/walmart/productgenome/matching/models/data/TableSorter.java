@@ -0,0 +1,263 @@
+package com.walmart.productgenome.matching.models.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.utils.ExternalSorter;
+
+/*
+ * Sorts ids of a table on one or more attributes, each ascending or
+ * descending. Null values come first in ascending order and last in
+ * descending order, and ids with equal keys keep their input order.
+ *
+ * The sort keys are extracted once per id, as longs for the INTEGER, LONG,
+ * FLOAT and BOOLEAN attributes and the dictionary-encoded TEXT attributes,
+ * whose values are ranked once per code, and as strings for the other TEXT
+ * attributes. The keys are sorted by an ExternalSorter, which spills sorted
+ * runs to disk and merges them once there are more than maxRecordsInMemory
+ * ids, so only the ids and a bounded number of keys are in memory at a time.
+ */
+public class TableSorter {
+
+	public static final int DEFAULT_MAX_RECORDS_IN_MEMORY = 1 << 20;
+
+	// the null flags of the keys are the bits of an int
+	private static final int MAX_KEYS = 32;
+
+	private static class Record {
+		final long[] numbers;
+		final String[] texts;
+		final int nulls;
+		final int position;
+
+		Record(long[] numbers, String[] texts, int nulls, int position) {
+			this.numbers = numbers;
+			this.texts = texts;
+			this.nulls = nulls;
+			this.position = position;
+		}
+	}
+
+	private final Table table;
+	private final List<Attribute> attributes;
+	private final boolean[] ascending;
+	private final int maxRecordsInMemory;
+	private final File tempDir;
+
+	public TableSorter(Table table, List<Attribute> attributes, List<Boolean> ascending) {
+		this(table, attributes, ascending, DEFAULT_MAX_RECORDS_IN_MEMORY, null);
+	}
+
+	// tempDir may be null, in which case the default temporary-file directory is used
+	public TableSorter(Table table, List<Attribute> attributes, List<Boolean> ascending,
+			int maxRecordsInMemory, File tempDir) {
+		if (attributes.isEmpty() || attributes.size() > MAX_KEYS) {
+			throw new IllegalArgumentException("Between 1 and " + MAX_KEYS
+					+ " sort attributes expected: " + attributes.size());
+		}
+		if (attributes.size() != ascending.size()) {
+			throw new IllegalArgumentException("One sort order expected per sort attribute");
+		}
+		this.table = table;
+		this.attributes = new ArrayList<Attribute>(attributes);
+		this.ascending = new boolean[ascending.size()];
+		for (int i = 0; i < this.ascending.length; i++) {
+			this.ascending[i] = ascending.get(i);
+		}
+		this.maxRecordsInMemory = maxRecordsInMemory;
+		this.tempDir = tempDir;
+	}
+
+	// sorts the ids in place and returns them
+	public List<Object> sort(List<Object> ids) throws IOException {
+		int numKeys = attributes.size();
+		Schema schema = table.getSchema();
+		int[] slots = new int[numKeys];
+		long[][] ranks = new long[numKeys][];
+		String[][] sortedValues = new String[numKeys][];
+		Dictionary[] dictionaries = new Dictionary[numKeys];
+		final boolean[] isText = new boolean[numKeys];
+		boolean hasText = false;
+		for (int k = 0; k < numKeys; k++) {
+			Attribute attribute = attributes.get(k);
+			slots[k] = schema.getSlot(attribute);
+			if (attribute.getType() == Type.TEXT) {
+				dictionaries[k] = table.getDictionary(attribute);
+				if (null == dictionaries[k]) {
+					isText[k] = true;
+					hasText = true;
+				}
+				else {
+					sortedValues[k] = getSortedValues(dictionaries[k]);
+					ranks[k] = getRanks(dictionaries[k], sortedValues[k]);
+				}
+			}
+		}
+
+		ExternalSorter<Record> sorter = new ExternalSorter<Record>(getComparator(isText),
+				getCodec(isText, hasText), maxRecordsInMemory, tempDir);
+		try {
+			for (int position = 0; position < ids.size(); position++) {
+				Tuple tuple = table.getTuple(ids.get(position));
+				long[] numbers = new long[numKeys];
+				String[] texts = hasText ? new String[numKeys] : null;
+				int nulls = 0;
+				for (int k = 0; k < numKeys; k++) {
+					Object value = tuple.getValue(schema, slots[k]);
+					if (null == value) {
+						nulls |= 1 << k;
+					}
+					else if (isText[k]) {
+						attributes.get(k).typeCheck(value);
+						texts[k] = (String) value;
+					}
+					else if (null != dictionaries[k]) {
+						int code = dictionaries[k].getCode(tuple);
+						numbers[k] = code == Dictionary.NO_CODE
+								? getRank(sortedValues[k], (String) value) : ranks[k][code];
+					}
+					else {
+						numbers[k] = toLong(attributes.get(k), value);
+					}
+				}
+				sorter.add(new Record(numbers, texts, nulls, position));
+			}
+
+			List<Object> input = new ArrayList<Object>(ids);
+			Iterator<Record> sorted = sorter.sortedIterator();
+			for (int i = 0; sorted.hasNext(); i++) {
+				ids.set(i, input.get(sorted.next().position));
+			}
+			return ids;
+		}
+		finally {
+			sorter.close();
+		}
+	}
+
+	private static String[] getSortedValues(Dictionary dictionary) {
+		String[] values = new String[dictionary.size()];
+		for (int code = 0; code < values.length; code++) {
+			values[code] = dictionary.getValue(code);
+		}
+		Arrays.sort(values);
+		return values;
+	}
+
+	/*
+	 * The ranks of the dictionary values in string order, twice the index in
+	 * that order so that a value the dictionary does not have can rank in
+	 * between.
+	 */
+	private static long[] getRanks(Dictionary dictionary, String[] sortedValues) {
+		long[] ranks = new long[sortedValues.length];
+		for (int code = 0; code < ranks.length; code++) {
+			ranks[code] = 2L * Arrays.binarySearch(sortedValues, dictionary.getValue(code));
+		}
+		return ranks;
+	}
+
+	// the rank of a value, of a tuple of another table than the dictionary's
+	private static long getRank(String[] sortedValues, String value) {
+		int index = Arrays.binarySearch(sortedValues, value);
+		return index >= 0 ? 2L * index : 2L * (-index - 1) - 1;
+	}
+
+	// the key of a non-TEXT value, ordered as the values are
+	private static long toLong(Attribute attribute, Object value) {
+		attribute.typeCheck(value);
+		switch (attribute.getType()) {
+		case INTEGER:
+			return (Integer) value;
+		case LONG:
+			return (Long) value;
+		case FLOAT:
+			// the bits of a float ordered as Float.compare orders the floats
+			int bits = Float.floatToIntBits((Float) value);
+			return bits ^ ((bits >> 31) & 0x7fffffff);
+		default:
+			return ((Boolean) value) ? 1 : 0;
+		}
+	}
+
+	private Comparator<Record> getComparator(final boolean[] isText) {
+		return new Comparator<Record>() {
+			public int compare(Record record1, Record record2) {
+				for (int k = 0; k < isText.length; k++) {
+					int cmp;
+					boolean null1 = (record1.nulls & (1 << k)) != 0;
+					boolean null2 = (record2.nulls & (1 << k)) != 0;
+					if (null1 || null2) {
+						cmp = null1 == null2 ? 0 : (null1 ? -1 : 1);
+					}
+					else if (isText[k]) {
+						cmp = record1.texts[k].compareTo(record2.texts[k]);
+					}
+					else {
+						cmp = record1.numbers[k] < record2.numbers[k] ? -1
+								: (record1.numbers[k] == record2.numbers[k] ? 0 : 1);
+					}
+					if (cmp != 0) {
+						return ascending[k] ? cmp : -cmp;
+					}
+				}
+				return record1.position < record2.position ? -1
+						: (record1.position == record2.position ? 0 : 1);
+			}
+		};
+	}
+
+	// strings are written as chars, writeUTF cannot take more than 64K bytes
+	private static ExternalSorter.Codec<Record> getCodec(final boolean[] isText,
+			final boolean hasText) {
+		return new ExternalSorter.Codec<Record>() {
+			public void write(DataOutput out, Record record) throws IOException {
+				out.writeInt(record.position);
+				out.writeInt(record.nulls);
+				for (int k = 0; k < isText.length; k++) {
+					if ((record.nulls & (1 << k)) != 0) {
+						continue;
+					}
+					if (isText[k]) {
+						out.writeInt(record.texts[k].length());
+						out.writeChars(record.texts[k]);
+					}
+					else {
+						out.writeLong(record.numbers[k]);
+					}
+				}
+			}
+
+			public Record read(DataInput in) throws IOException {
+				int position = in.readInt();
+				int nulls = in.readInt();
+				long[] numbers = new long[isText.length];
+				String[] texts = hasText ? new String[isText.length] : null;
+				for (int k = 0; k < isText.length; k++) {
+					if ((nulls & (1 << k)) != 0) {
+						continue;
+					}
+					if (isText[k]) {
+						char[] chars = new char[in.readInt()];
+						for (int i = 0; i < chars.length; i++) {
+							chars[i] = in.readChar();
+						}
+						texts[k] = new String(chars);
+					}
+					else {
+						numbers[k] = in.readLong();
+					}
+				}
+				return new Record(numbers, texts, nulls, position);
+			}
+		};
+	}
+}
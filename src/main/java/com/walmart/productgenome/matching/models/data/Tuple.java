@@ -1,20 +1,49 @@
 package com.walmart.productgenome.matching.models.data;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import com.google.common.base.Objects;
 
 public class Tuple {
 
+	// marks an attribute set to null in the slots, which an empty slot is not
+	private static final Object NULL = new Object();
+	// the row of a tuple added to a row table, see bind()
+	private static final int IN_TABLE = -2;
+
+	// the values of a tuple that is in no table
 	private Map<Attribute, Object> data;
+	// the values of a tuple of a row table, by slot of the table's schema
+	private Schema schema;
+	private Object[] values;
+	// the store and row of a view on a row of a columnar or pair table, whose
+	// values are in the store instead
+	private RowStore store;
+	private int row;
 	
 	
 	// TODO: Sanjib, review. I added this constructor. It makes writing code easier.
   // First declare the item and then add the attribute values.
   public Tuple() {
     this.data = new HashMap<Attribute,Object>();
+    this.store = null;
+    this.row = -1;
   }
+
+	// an empty tuple for a row table with this schema, see Table.getSchema()
+	public Tuple(Schema schema) {
+		this.schema = schema;
+		this.values = new Object[schema.size()];
+		this.store = null;
+		this.row = -1;
+	}
+
+	Tuple(RowStore store, int row) {
+		this.schema = store.getSchema();
+		this.store = store;
+		this.row = row;
+	}
 	
 	public Tuple(Map<Attribute,Object> data) throws IllegalArgumentException {
 	  this();
@@ -24,9 +53,51 @@ public class Tuple {
 	}
 	
 	public Object getAttributeValue(Attribute attribute){
+		if (null != store) {
+			return store.getValue(row, attribute);
+		}
+		if (null != schema) {
+			return getSlotValue(schema.getSlot(attribute));
+		}
 		return data.get(attribute);
 	}
 
+	/*
+	 * The value in a slot of the schema, read straight from the slots when the
+	 * tuple is in a table with that schema and through its attribute otherwise.
+	 * Slot -1, the slot of an attribute missing from the schema, is null.
+	 */
+	public Object getValue(Schema schema, int slot) {
+		if (schema != this.schema) {
+			return slot < 0 ? null : getAttributeValue(schema.getAttribute(slot));
+		}
+		if (null != store) {
+			return store.getValue(row, slot);
+		}
+		return getSlotValue(slot);
+	}
+
+	// the code of the value in the column of the dictionary, for a view of a
+	// columnar table
+	int getStoredCode(Dictionary dictionary) {
+		return null == store ? RowStore.NOT_STORED : store.getCode(row, dictionary);
+	}
+
+	private Object getSlotValue(int slot) {
+		if (slot < 0 || slot >= values.length) {
+			return null;
+		}
+		Object value = values[slot];
+		return NULL == value ? null : value;
+	}
+
+	private void setSlotValue(int slot, Object value) {
+		if (slot >= values.length) {
+			values = Arrays.copyOf(values, schema.size());
+		}
+		values[slot] = null == value ? NULL : value;
+	}
+
 	public void setAttributeValue(Attribute attribute, Object attributeValue) throws IllegalArgumentException {
 		// check for type
 		// System.out.println(attributeValue);
@@ -39,17 +110,95 @@ public class Tuple {
 				attribute.typeCheck(attributeValueObj);
 			}
 		}
+		if (null != store) {
+			store.setValue(row, attribute, attributeValue);
+			schema.modified();
+			return;
+		}
+		if (null != schema) {
+			setSlotValue(schema.addSlot(attribute), attributeValue);
+			if (IN_TABLE == row) {
+				schema.modified();
+			}
+			return;
+		}
 		data.put(attribute, attributeValue); //accepting null values
 	}
 	
 	public void removeAttr(Attribute attr) {
+		if (null != store) {
+			store.setValue(row, attr, null);
+			schema.modified();
+			return;
+		}
+		if (null != schema) {
+			int slot = schema.getSlot(attr);
+			if (slot >= 0 && slot < values.length) {
+				values[slot] = null;
+			}
+			if (IN_TABLE == row) {
+				schema.modified();
+			}
+			return;
+		}
 		data.remove(attr);
 	}
+
+	/*
+	 * Moves the values of a tuple added to a row table to the slots of the
+	 * table's schema. The tuple stays the same object, only the way it holds
+	 * its values changes. Views of a store keep reading their store.
+	 *
+	 * From then on the changes to its values are counted by the schema, which
+	 * tells the table to drop the data it derived from them. The values set
+	 * while a tuple is built are not counted, even when it is built with the
+	 * schema of the table.
+	 */
+	void bind(Schema schema) {
+		if (null != store) {
+			return;
+		}
+		row = IN_TABLE;
+		if (schema == this.schema) {
+			return;
+		}
+		Map<Attribute, Object> current = getData();
+		this.schema = schema;
+		this.values = new Object[schema.size()];
+		this.data = null;
+		for (Map.Entry<Attribute, Object> entry : current.entrySet()) {
+			setSlotValue(schema.addSlot(entry.getKey()), entry.getValue());
+		}
+	}
 	
+	// the view of a row its store moves to another row
+	void moveTo(int row) {
+		this.row = row;
+	}
+
+	/*
+	 * Copies the values of the view of a row its store drops into slots of
+	 * the schema, so the tuple keeps them as a removed tuple of a row table
+	 * does.
+	 */
+	void detach() {
+		if (null == store) {
+			return;
+		}
+		Object[] current = new Object[schema.size()];
+		for (int slot = 0; slot < current.length; slot++) {
+			Object value = store.getValue(row, slot);
+			current[slot] = null == value ? null : value;
+		}
+		values = current;
+		store = null;
+		row = -1;
+	}
+
 	public String toString(){
 		StringBuilder sb = new StringBuilder();
 		sb.append("[");
-		for(Map.Entry<Attribute, Object> entry : data.entrySet()){
+		for(Map.Entry<Attribute, Object> entry : getData().entrySet()){
 			sb.append(entry.getKey());
 			sb.append(":");
 			sb.append(entry.getValue());
@@ -59,7 +208,20 @@ public class Tuple {
 		return sb.toString();
 	}
 	
+	// for a tuple in a table, a copy: changes to it do not reach the tuple
 	public Map<Attribute, Object> getData() {
+		if (null != store) {
+			return store.getData(row);
+		}
+		if (null != schema) {
+			Map<Attribute, Object> slotData = new HashMap<Attribute, Object>();
+			for (int slot = 0; slot < values.length; slot++) {
+				if (null != values[slot]) {
+					slotData.put(schema.getAttribute(slot), getSlotValue(slot));
+				}
+			}
+			return slotData;
+		}
 		return this.data;
 	}
 	
@@ -76,18 +238,78 @@ public class Tuple {
 		}
 	}
 
+  /*
+   * Tuples are equal when they have the same non-null values, however they
+   * hold them: an attribute set to null is the same as one never set. Both
+   * methods read the values in place instead of copying them with getData().
+   */
   @Override
   public int hashCode(){
-  	return Objects.hashCode(data);
+  	int hash = 0;
+  	if (null == schema) {
+  		for (Map.Entry<Attribute, Object> entry : data.entrySet()) {
+  			hash += entryHash(entry.getKey(), entry.getValue());
+  		}
+  		return hash;
+  	}
+  	for (int slot = 0; slot < getNumSlots(); slot++) {
+  		hash += entryHash(schema.getAttribute(slot), getValue(schema, slot));
+  	}
+  	return hash;
   }
-  
+
+  private static int entryHash(Attribute attribute, Object value) {
+  	return null == value ? 0 : attribute.hashCode() ^ value.hashCode();
+  }
+
+  // the slots the values are read from, when the tuple has a schema
+  private int getNumSlots() {
+  	return null == store ? values.length : schema.size();
+  }
+
   @Override
   public boolean equals(Object object){
-  	if (object instanceof Tuple) {
-  		Tuple that = (Tuple) object;
-  		return Objects.equal(this.data, that.data);
+  	if (!(object instanceof Tuple)) {
+  		return false;
+  	}
+  	Tuple that = (Tuple) object;
+  	return this.getNumValues() == that.getNumValues() && that.hasValuesOf(this);
+  }
+
+  private int getNumValues() {
+  	int numValues = 0;
+  	if (null == schema) {
+  		for (Object value : data.values()) {
+  			numValues += null == value ? 0 : 1;
+  		}
+  		return numValues;
   	}
-  	return false;
+  	for (int slot = 0; slot < getNumSlots(); slot++) {
+  		numValues += null == getValue(schema, slot) ? 0 : 1;
+  	}
+  	return numValues;
+  }
+
+  // whether the non-null values of the other tuple are all values of this one
+  private boolean hasValuesOf(Tuple other) {
+  	if (null == other.schema) {
+  		for (Map.Entry<Attribute, Object> entry : other.data.entrySet()) {
+  			if (!hasValue(entry.getKey(), entry.getValue())) {
+  				return false;
+  			}
+  		}
+  		return true;
+  	}
+  	for (int slot = 0; slot < other.getNumSlots(); slot++) {
+  		if (!hasValue(other.schema.getAttribute(slot), other.getValue(other.schema, slot))) {
+  			return false;
+  		}
+  	}
+  	return true;
+  }
+
+  private boolean hasValue(Attribute attribute, Object value) {
+  	return null == value || value.equals(getAttributeValue(attribute));
   }
 	
 	
@@ -0,0 +1,102 @@
+package com.walmart.productgenome.matching.models.data;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/*
+ * Iterates over the ids and tuples of a table in order without allocating a
+ * list or an entry per tuple, and can be reset to iterate again:
+ *
+ *   TupleCursor cursor = table.getCursor();
+ *   while (cursor.next()) {
+ *     Object id = cursor.getId();
+ *     Tuple tuple = cursor.getTuple();
+ *     ...
+ *   }
+ *
+ * Like an iterator, a cursor must not be used after the table changes.
+ */
+public class TupleCursor {
+
+	private final Map<Object, Tuple> tuples;
+	// the rows of a columnar table or the selection of a view, read directly
+	private ColumnStore store;
+	private SelectionStore selection;
+	private Map<Object, Tuple> selected;
+	private Iterator<Map.Entry<Object, Tuple>> entries;
+	private int position;
+	private boolean finished;
+	private Object id;
+	private Tuple tuple;
+
+	TupleCursor(Map<Object, Tuple> tuples) {
+		this.tuples = tuples;
+		reset();
+	}
+
+	public void reset() {
+		store = null;
+		selection = null;
+		selected = null;
+		entries = null;
+		if (tuples instanceof ColumnStore) {
+			store = (ColumnStore) tuples;
+		}
+		else if (tuples instanceof SelectionStore
+				&& null != ((SelectionStore) tuples).getParent()) {
+			selection = (SelectionStore) tuples;
+			selected = selection.getParent();
+		}
+		else {
+			entries = tuples.entrySet().iterator();
+		}
+		position = -1;
+		finished = false;
+		id = null;
+		tuple = null;
+	}
+
+	// moves to the next tuple, false if there is none
+	public boolean next() {
+		if (finished) {
+			return false;
+		}
+		if (null != store) {
+			position = store.nextRow(position + 1);
+			finished = position < 0;
+			if (!finished) {
+				id = store.getId(position);
+				tuple = store.getView(position);
+			}
+		}
+		else if (null != selection) {
+			position = selection.nextIndex(position + 1);
+			finished = position < 0;
+			if (!finished) {
+				id = selection.getId(position);
+				tuple = selected.get(id);
+			}
+		}
+		else {
+			finished = !entries.hasNext();
+			if (!finished) {
+				Map.Entry<Object, Tuple> entry = entries.next();
+				id = entry.getKey();
+				tuple = entry.getValue();
+			}
+		}
+		if (finished) {
+			id = null;
+			tuple = null;
+		}
+		return !finished;
+	}
+
+	public Object getId() {
+		return id;
+	}
+
+	public Tuple getTuple() {
+		return tuple;
+	}
+}
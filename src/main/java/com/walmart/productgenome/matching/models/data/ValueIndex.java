@@ -0,0 +1,316 @@
+package com.walmart.productgenome.matching.models.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.walmart.productgenome.matching.models.data.Table.QueryOps;
+
+/*
+ * A secondary index on one attribute of a table, from the values to the ids
+ * of the tuples. It only narrows a query down to candidate ids: every
+ * candidate is still checked against the query conditions, so an index may
+ * return more ids than match, but never fewer.
+ *
+ * Every index remembers the value it indexed for each id, so a tuple is
+ * removed from the index under the value it was added with.
+ */
+abstract class ValueIndex {
+
+	protected final Attribute attribute;
+	private final Map<Object, Object> indexed = new HashMap<Object, Object>();
+
+	ValueIndex(Attribute attribute) {
+		this.attribute = attribute;
+	}
+
+	// the index for a query operator, null if no index kind supports it
+	static ValueIndex forOp(Attribute attribute, QueryOps op) {
+		switch (op) {
+		case EQUALS:
+			return new HashIndex(attribute);
+		case GREATER_THAN:
+		case GREATER_THAN_EQUALS:
+		case LESS_THAN:
+		case LESS_THAN_EQUALS:
+			return attribute.getType() == Attribute.Type.BOOLEAN ? null : new SortedIndex(attribute);
+		case CONTAINS:
+			return new NGramIndex(attribute);
+		default:
+			return null;
+		}
+	}
+
+	abstract boolean supports(QueryOps op);
+
+	void add(Object id, Object value) {
+		remove(id);
+		indexed.put(id, value);
+		addValue(id, value);
+	}
+
+	void remove(Object id) {
+		if (indexed.containsKey(id)) {
+			removeValue(id, indexed.remove(id));
+		}
+	}
+
+	abstract void addValue(Object id, Object value);
+
+	abstract void removeValue(Object id, Object value);
+
+	/*
+	 * An upper bound of the number of candidates of the condition, or the
+	 * limit if there are more; -1 if the index cannot answer the condition.
+	 */
+	abstract int estimate(QueryOps op, Object value, int limit);
+
+	// the candidate ids of the condition, in no particular order
+	abstract Collection<Object> lookup(QueryOps op, Object value);
+
+	protected static void addId(Map<Object, Set<Object>> ids, Object key, Object id) {
+		Set<Object> keyIds = ids.get(key);
+		if (null == keyIds) {
+			keyIds = new LinkedHashSet<Object>();
+			ids.put(key, keyIds);
+		}
+		keyIds.add(id);
+	}
+
+	protected static void removeId(Map<Object, Set<Object>> ids, Object key, Object id) {
+		Set<Object> keyIds = ids.get(key);
+		if (null != keyIds) {
+			keyIds.remove(id);
+			if (keyIds.isEmpty()) {
+				ids.remove(key);
+			}
+		}
+	}
+
+	// the ids of the tuples whose value equals the query value
+	static class HashIndex extends ValueIndex {
+		private final Map<Object, Set<Object>> ids = new HashMap<Object, Set<Object>>();
+
+		HashIndex(Attribute attribute) {
+			super(attribute);
+		}
+
+		boolean supports(QueryOps op) {
+			return op == QueryOps.EQUALS;
+		}
+
+		void addValue(Object id, Object value) {
+			if (null != value) {
+				addId(ids, value, id);
+			}
+		}
+
+		void removeValue(Object id, Object value) {
+			if (null != value) {
+				removeId(ids, value, id);
+			}
+		}
+
+		int estimate(QueryOps op, Object value, int limit) {
+			if (!supports(op)) {
+				return -1;
+			}
+			Set<Object> valueIds = ids.get(value);
+			return null == valueIds ? 0 : Math.min(valueIds.size(), limit);
+		}
+
+		Collection<Object> lookup(QueryOps op, Object value) {
+			Set<Object> valueIds = ids.get(value);
+			return null == valueIds ? Collections.emptySet() : valueIds;
+		}
+	}
+
+	/*
+	 * The ids of the tuples by value in value order, for the range operators.
+	 * Values of another class than the one of the attribute type, which Tuple
+	 * accepts for strings, cannot be ordered with the others and are returned
+	 * as candidates of every range.
+	 */
+	static class SortedIndex extends ValueIndex {
+		private final TreeMap<Object, Set<Object>> ids = new TreeMap<Object, Set<Object>>();
+		private final Set<Object> unordered = new LinkedHashSet<Object>();
+
+		SortedIndex(Attribute attribute) {
+			super(attribute);
+		}
+
+		boolean supports(QueryOps op) {
+			return op == QueryOps.GREATER_THAN || op == QueryOps.GREATER_THAN_EQUALS
+					|| op == QueryOps.LESS_THAN || op == QueryOps.LESS_THAN_EQUALS;
+		}
+
+		private boolean isOrdered(Object value) {
+			switch (attribute.getType()) {
+			case TEXT:
+				return value instanceof String;
+			case INTEGER:
+				return value instanceof Integer;
+			case LONG:
+				return value instanceof Long;
+			case FLOAT:
+				return value instanceof Float;
+			default:
+				return false;
+			}
+		}
+
+		void addValue(Object id, Object value) {
+			if (null == value) {
+				return;
+			}
+			if (isOrdered(value)) {
+				addId(ids, value, id);
+			}
+			else {
+				unordered.add(id);
+			}
+		}
+
+		void removeValue(Object id, Object value) {
+			if (null == value) {
+				return;
+			}
+			if (isOrdered(value)) {
+				removeId(ids, value, id);
+			}
+			else {
+				unordered.remove(id);
+			}
+		}
+
+		private NavigableMap<Object, Set<Object>> getRange(QueryOps op, Object value) {
+			switch (op) {
+			case GREATER_THAN:
+				return ids.tailMap(value, false);
+			case GREATER_THAN_EQUALS:
+				return ids.tailMap(value, true);
+			case LESS_THAN:
+				return ids.headMap(value, false);
+			default:
+				return ids.headMap(value, true);
+			}
+		}
+
+		int estimate(QueryOps op, Object value, int limit) {
+			if (!supports(op) || !isOrdered(value)) {
+				return -1;
+			}
+			int count = unordered.size();
+			for (Set<Object> valueIds : getRange(op, value).values()) {
+				if (count >= limit) {
+					break;
+				}
+				count += valueIds.size();
+			}
+			return Math.min(count, limit);
+		}
+
+		Collection<Object> lookup(QueryOps op, Object value) {
+			List<Object> candidates = new ArrayList<Object>(unordered);
+			for (Set<Object> valueIds : getRange(op, value).values()) {
+				candidates.addAll(valueIds);
+			}
+			return candidates;
+		}
+	}
+
+	/*
+	 * The ids of the tuples by the n-grams of their values as strings, for
+	 * CONTAINS. A value contains the query string only if it has all its
+	 * n-grams, so the candidates are the ids of the rarest n-gram, kept if
+	 * they have the others too. Query strings shorter than N are not
+	 * answered.
+	 */
+	static class NGramIndex extends ValueIndex {
+		static final int N = 3;
+
+		private final Map<Object, Set<Object>> ids = new HashMap<Object, Set<Object>>();
+
+		NGramIndex(Attribute attribute) {
+			super(attribute);
+		}
+
+		boolean supports(QueryOps op) {
+			return op == QueryOps.CONTAINS;
+		}
+
+		private static Set<String> getNGrams(String string) {
+			Set<String> grams = new HashSet<String>();
+			for (int i = 0; i + N <= string.length(); i++) {
+				grams.add(string.substring(i, i + N));
+			}
+			return grams;
+		}
+
+		// as the queries see them, a null value is "null"
+		void addValue(Object id, Object value) {
+			for (String gram : getNGrams(String.valueOf(value))) {
+				addId(ids, gram, id);
+			}
+		}
+
+		void removeValue(Object id, Object value) {
+			for (String gram : getNGrams(String.valueOf(value))) {
+				removeId(ids, gram, id);
+			}
+		}
+
+		// the id sets of the n-grams of the query string, the smallest first
+		private List<Set<Object>> getPostings(Object value) {
+			List<Set<Object>> postings = new ArrayList<Set<Object>>();
+			for (String gram : getNGrams(String.valueOf(value))) {
+				Set<Object> gramIds = ids.get(gram);
+				if (null == gramIds) {
+					return Collections.emptyList();
+				}
+				postings.add(gramIds);
+			}
+			Collections.sort(postings, new Comparator<Set<Object>>() {
+				public int compare(Set<Object> ids1, Set<Object> ids2) {
+					return Integer.compare(ids1.size(), ids2.size());
+				}
+			});
+			return postings;
+		}
+
+		int estimate(QueryOps op, Object value, int limit) {
+			if (!supports(op) || String.valueOf(value).length() < N) {
+				return -1;
+			}
+			List<Set<Object>> postings = getPostings(value);
+			return postings.isEmpty() ? 0 : Math.min(postings.get(0).size(), limit);
+		}
+
+		Collection<Object> lookup(QueryOps op, Object value) {
+			List<Set<Object>> postings = getPostings(value);
+			if (postings.isEmpty()) {
+				return Collections.emptySet();
+			}
+			List<Object> candidates = new ArrayList<Object>();
+			for (Object id : postings.get(0)) {
+				boolean inAll = true;
+				for (int i = 1; i < postings.size() && inAll; i++) {
+					inAll = postings.get(i).contains(id);
+				}
+				if (inAll) {
+					candidates.add(id);
+				}
+			}
+			return candidates;
+		}
+	}
+}
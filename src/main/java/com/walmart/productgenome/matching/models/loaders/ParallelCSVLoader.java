@@ -0,0 +1,269 @@
+package com.walmart.productgenome.matching.models.loaders;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Schema;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+/*
+ * Loads a table from a CSV file with the parsing and the conversion of the
+ * values spread over the cores.
+ *
+ * The file is cut into chunks of about chunkSize bytes that end at a record
+ * boundary: a line break outside of a quoted value, so a value with line
+ * breaks stays in one chunk. Finding the boundaries only counts the quotes,
+ * which assumes the quotes of the file are those of quoted values, as they
+ * are in the files the savers and RFC 4180 write.
+ *
+ * The chunks are read in rounds of a few chunks per thread. The chunks of a
+ * round are parsed and converted to tuples in parallel, and the tuples are
+ * then added to the table in chunk order, so the table is identical to the
+ * one StreamingCSVLoader would load, and only the chunks of one round are in
+ * memory at a time besides the table.
+ */
+public class ParallelCSVLoader {
+
+	public static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+	private static final int CHUNKS_PER_THREAD = 2;
+
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
+	// the tuples of a chunk, up to the first record of the wrong size if there is one
+	private static class ChunkResult {
+		final List<Tuple> tuples = new ArrayList<Tuple>();
+		int badRecordSize = -1;
+	}
+
+	private final int chunkSize;
+	private final StreamingCSVLoader.ProgressListener listener;
+
+	public ParallelCSVLoader() {
+		this(DEFAULT_CHUNK_SIZE, null);
+	}
+
+	// listener may be null, it is called once per round of chunks and at the end
+	public ParallelCSVLoader(int chunkSize, StreamingCSVLoader.ProgressListener listener) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+		this.listener = listener;
+	}
+
+	// a CSV file whose header is the schema, with the first attribute being the id
+	public Table loadTableFromCSVWithHeaderAsSchema(String projectName,
+			String tableName, String csvFilePath) throws IOException {
+		ChunkReader reader = new ChunkReader(new FileInputStream(csvFilePath));
+		try {
+			// the header is the first record
+			List<CSVRecord> header = parse(reader.readChunk(1));
+			if (header.isEmpty()) {
+				throw new IOException("No header in " + csvFilePath);
+			}
+			List<Attribute> attributes = StreamingCSVLoader.getAttributes(header.get(0));
+			Table table = new Table(tableName, attributes.get(0), attributes, projectName,
+					Table.Storage.COLUMNS);
+			loadChunks(table, attributes, reader, 1, true);
+			return table;
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	// a CSV file without a header, whose columns are the attributes in order
+	public Table loadTableFromCSV(String projectName, String tableName,
+			String csvFilePath, Attribute idAttrib, List<Attribute> attributes)
+					throws IOException {
+		ChunkReader reader = new ChunkReader(new FileInputStream(csvFilePath));
+		try {
+			Table table = new Table(tableName, idAttrib, attributes, projectName,
+					Table.Storage.COLUMNS);
+			loadChunks(table, attributes, reader, 0, false);
+			return table;
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private void loadChunks(Table table, final List<Attribute> attributes, ChunkReader reader,
+			long firstRecord, final boolean exactSize) throws IOException {
+		final Schema schema = table.getSchema();
+		int roundSize = POOL.getParallelism() * CHUNKS_PER_THREAD;
+		long numTuples = 0;
+		boolean endOfFile = false;
+		while (!endOfFile) {
+			// read a round of chunks
+			List<Callable<ChunkResult>> tasks = new ArrayList<Callable<ChunkResult>>(roundSize);
+			while (tasks.size() < roundSize) {
+				final byte[] chunk = reader.readChunk(chunkSize);
+				if (chunk.length == 0) {
+					endOfFile = true;
+					break;
+				}
+				tasks.add(new Callable<ChunkResult>() {
+					public ChunkResult call() throws IOException {
+						return convert(parse(chunk), attributes, schema, exactSize);
+					}
+				});
+			}
+
+			// parse and convert them, then add the tuples in chunk order
+			for (ChunkResult result : invokeAll(tasks)) {
+				for (Tuple tuple : result.tuples) {
+					table.addTuple(tuple);
+				}
+				numTuples += result.tuples.size();
+				if (result.badRecordSize >= 0) {
+					throw StreamingCSVLoader.incorrectSize(firstRecord + numTuples,
+							result.badRecordSize, attributes.size());
+				}
+			}
+			if (null != listener && (!tasks.isEmpty() || 0 == numTuples)) {
+				listener.progress(table.getName(), numTuples);
+			}
+		}
+	}
+
+	// the chunk bytes are decoded as a FileReader would decode the file
+	private static List<CSVRecord> parse(byte[] chunk) throws IOException {
+		InputStreamReader r = new InputStreamReader(new ByteArrayInputStream(chunk),
+				Charset.defaultCharset());
+		try {
+			return new CSVParser(r, CSVFormat.DEFAULT).getRecords();
+		}
+		finally {
+			r.close();
+		}
+	}
+
+	private static ChunkResult convert(List<CSVRecord> records, List<Attribute> attributes,
+			Schema schema, boolean exactSize) throws IOException {
+		ChunkResult result = new ChunkResult();
+		for (CSVRecord rec : records) {
+			if (!StreamingCSVLoader.hasSize(rec, attributes, exactSize)) {
+				result.badRecordSize = rec.size();
+				break;
+			}
+			result.tuples.add(StreamingCSVLoader.toTuple(rec, attributes, schema, 0, exactSize));
+		}
+		return result;
+	}
+
+	private static <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException {
+		List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			if (tasks.size() == 1) {
+				// not worth a hand-off to the pool
+				results.add(tasks.get(0).call());
+				return results;
+			}
+			for (Future<T> future : POOL.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException("Parallel load failed", cause);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Parallel load interrupted", e);
+		}
+		catch (IOException e) {
+			throw e;
+		}
+		catch (RuntimeException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Parallel load failed", e);
+		}
+		return results;
+	}
+
+	/*
+	 * Reads a file in chunks of whole records. Only the quotes and the line
+	 * breaks are looked at, which is much cheaper than parsing the records.
+	 * The bytes of a quote and a line break are never part of a multi-byte
+	 * character in UTF-8 or the other ASCII-compatible charsets.
+	 */
+	private static class ChunkReader {
+		private final InputStream in;
+		private final byte[] buffer = new byte[1 << 16];
+		private int position;
+		private int limit;
+
+		ChunkReader(InputStream in) {
+			this.in = in;
+		}
+
+		// the records up to the first record boundary after minSize bytes, none at the end
+		byte[] readChunk(int minSize) throws IOException {
+			byte[] chunk = new byte[Math.max(minSize, 16)];
+			int size = 0;
+			boolean inQuotes = false;
+			while (true) {
+				if (position == limit) {
+					limit = in.read(buffer);
+					position = 0;
+					if (limit <= 0) {
+						limit = 0;
+						break;
+					}
+				}
+				int start = position;
+				boolean boundary = false;
+				while (position < limit) {
+					byte b = buffer[position++];
+					if (b == '"') {
+						inQuotes = !inQuotes;
+					}
+					else if (b == '\n' && !inQuotes && size + position - start >= minSize) {
+						boundary = true;
+						break;
+					}
+				}
+				int length = position - start;
+				if (size + length > chunk.length) {
+					chunk = Arrays.copyOf(chunk, Math.max(chunk.length * 2, size + length));
+				}
+				System.arraycopy(buffer, start, chunk, size, length);
+				size += length;
+				if (boundary) {
+					break;
+				}
+			}
+			return size == chunk.length ? chunk : Arrays.copyOf(chunk, size);
+		}
+
+		void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package com.walmart.productgenome.matching.models.loaders;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Schema;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.utils.JSONUtils;
+
+/*
+ * Loads a table from a CSV file or a .table file one record at a time: each
+ * record is parsed, converted to the types of the attributes and added to
+ * the columnar table before the next one is read, so the records of the file
+ * are never all in memory and the peak memory is about that of the table.
+ *
+ * The loader can stop after maxRows tuples, and reports the number of tuples
+ * loaded to a ProgressListener every progressInterval tuples and once at the
+ * end.
+ */
+public class StreamingCSVLoader {
+
+	public static final long NO_LIMIT = -1;
+	public static final long DEFAULT_PROGRESS_INTERVAL = 100000;
+
+	public interface ProgressListener {
+		// called with the number of tuples loaded so far
+		void progress(String tableName, long numTuples);
+	}
+
+	private final long maxRows;
+	private final ProgressListener listener;
+	private final long progressInterval;
+
+	public StreamingCSVLoader() {
+		this(NO_LIMIT, null, DEFAULT_PROGRESS_INTERVAL);
+	}
+
+	// maxRows may be NO_LIMIT and listener null
+	public StreamingCSVLoader(long maxRows, ProgressListener listener, long progressInterval) {
+		if (maxRows < 0 && maxRows != NO_LIMIT) {
+			throw new IllegalArgumentException("Invalid row limit: " + maxRows);
+		}
+		if (progressInterval <= 0) {
+			throw new IllegalArgumentException("Invalid progress interval: " + progressInterval);
+		}
+		this.maxRows = maxRows;
+		this.listener = listener;
+		this.progressInterval = progressInterval;
+	}
+
+	// a .table file: the @info JSON metadata, then the @data header and records
+	public Table loadTable(String tableFilePath) throws IOException {
+		BufferedReader br = new BufferedReader(new FileReader(tableFilePath));
+		try {
+			Table table = createTable(readTableHeader(br));
+
+			//skip the header line
+			br.readLine();
+
+			loadRecords(table, table.getAttributes(),
+					new CSVParser(br, CSVFormat.DEFAULT).iterator(), 0, false);
+			return table;
+		}
+		finally {
+			br.close();
+		}
+	}
+
+	/*
+	 * Reads the metadata of a .table file up to the header line of its data,
+	 * returning the empty table it describes.
+	 */
+	static Table readTableHeader(BufferedReader br) throws IOException {
+		// skip lines till you encounter @info
+		String line;
+		while ((line = br.readLine()) != null) {
+			if(line.startsWith("@info")){
+				break;
+			}
+		}
+
+		// get the JSON metadata
+		StringBuilder sb = new StringBuilder();
+		while ((line = br.readLine()) != null) {
+			if(line.trim().isEmpty()){
+				break;
+			}
+			sb.append(line);
+		}
+		Table schema = JSONUtils.getTableFromJSON(sb.toString());
+
+		// skip lines till you encounter @data
+		while ((line = br.readLine()) != null) {
+			if(line.startsWith("@data")){
+				break;
+			}
+		}
+		return schema;
+	}
+
+	static Table createTable(Table schema) {
+		Table table = new Table(schema.getName(), schema.getIdAttribute(),
+				schema.getAttributes(), schema.getProjectName(), Table.Storage.COLUMNS);
+		table.setDescription(schema.getDescription());
+		return table;
+	}
+
+	// a CSV file whose header is the schema, with the first attribute being the id
+	public Table loadTableFromCSVWithHeaderAsSchema(String projectName,
+			String tableName, String csvFilePath) throws IOException {
+		Reader r = new BufferedReader(new FileReader(csvFilePath));
+		try {
+			CSVParser parser = new CSVParser(r, CSVFormat.DEFAULT);
+			Iterator<CSVRecord> records = parser.iterator();
+			if (!records.hasNext()) {
+				throw new IOException("No header in " + csvFilePath);
+			}
+			List<Attribute> attributes = getAttributes(records.next());
+			Table table = new Table(tableName, attributes.get(0), attributes, projectName,
+					Table.Storage.COLUMNS);
+			loadRecords(table, attributes, records, 1, true);
+			return table;
+		}
+		finally {
+			r.close();
+		}
+	}
+
+	/*
+	 * The attributes of a header:
+	 * attr1_name:attr1_type,attr2_name:attr_type,...
+	 * if attr_type is missing, it is assumed to be TEXT by default
+	 */
+	static List<Attribute> getAttributes(CSVRecord header) {
+		List<Attribute> attributes = new ArrayList<Attribute>();
+		for (int i = 0; i < header.size(); i++) {
+			attributes.add(getAttribute(header.get(i)));
+		}
+		return attributes;
+	}
+
+	private static Attribute getAttribute(String attribStr){
+		// attribStr is of the form <attrib_name> or <attrib_name:attrib_type>
+		String[] vals = attribStr.split(":");
+		String attribName = vals[0].trim();
+		String attribType = "TEXT";
+		if(vals.length > 1){
+			attribType = vals[1].trim();
+		}
+		return new Attribute(attribName,Attribute.Type.valueOf(attribType));
+	}
+
+	// a CSV file without a header, whose columns are the attributes in order
+	public Table loadTableFromCSV(String projectName, String tableName,
+			String csvFilePath, Attribute idAttrib, List<Attribute> attributes)
+					throws IOException {
+		Reader r = new BufferedReader(new FileReader(csvFilePath));
+		try {
+			Table table = new Table(tableName, idAttrib, attributes, projectName,
+					Table.Storage.COLUMNS);
+			loadRecords(table, attributes, new CSVParser(r, CSVFormat.DEFAULT).iterator(), 0,
+					false);
+			return table;
+		}
+		finally {
+			r.close();
+		}
+	}
+
+	/*
+	 * Adds the records to the table until there are none left or the table
+	 * has maxRows tuples. firstRecord is the number of the first record in
+	 * the file, for the error messages.
+	 */
+	private void loadRecords(Table table, List<Attribute> attributes, Iterator<CSVRecord> records,
+			int firstRecord, boolean exactSize) throws IOException {
+		Schema schema = table.getSchema();
+		long numTuples = 0;
+		try {
+			while ((maxRows == NO_LIMIT || numTuples < maxRows) && records.hasNext()) {
+				table.addTuple(toTuple(records.next(), attributes, schema,
+						firstRecord + numTuples, exactSize));
+				numTuples++;
+				if (null != listener && numTuples % progressInterval == 0) {
+					listener.progress(table.getName(), numTuples);
+				}
+			}
+		}
+		catch (RuntimeException e) {
+			// the iterator of the parser cannot throw the IOException itself
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		}
+		if (null != listener && (0 == numTuples || numTuples % progressInterval != 0)) {
+			listener.progress(table.getName(), numTuples);
+		}
+	}
+
+	/*
+	 * The tuple of a record, with the values converted to the types of the
+	 * attributes. The record must have a value per attribute, and no other
+	 * value if exactSize.
+	 */
+	static Tuple toTuple(CSVRecord rec, List<Attribute> attributes, Schema schema,
+			long recordNumber, boolean exactSize) throws IOException {
+		if (!hasSize(rec, attributes, exactSize)) {
+			throw incorrectSize(recordNumber, rec.size(), attributes.size());
+		}
+		Tuple tuple = new Tuple(schema);
+		for (int j = 0; j < attributes.size(); j++) {
+			Attribute a = attributes.get(j);
+			tuple.setAttributeValue(a, a.convertValueToObject(rec.get(j)));
+		}
+		return tuple;
+	}
+
+	static boolean hasSize(CSVRecord rec, List<Attribute> attributes, boolean exactSize) {
+		return exactSize ? rec.size() == attributes.size() : rec.size() >= attributes.size();
+	}
+
+	static IOException incorrectSize(long recordNumber, int size, int expectedSize) {
+		return new IOException("Tuple " + recordNumber + " has incorrect number of " +
+				"attributes: " + size + ".\nExpected number of " +
+				"attributes: " + expectedSize);
+	}
+}
@@ -42,23 +42,9 @@ public class NormalizeAndMatchMPN extends Function {
 		if (simValue != 0.0f)
 			return simValue;
 		
-		String arg1 = args[0].replaceAll("[^\\w]", "");
-		String arg2 = args[1].replaceAll("[^\\w]", "");
+		String arg1 = normalize(args[0]);
+		String arg2 = normalize(args[1]);
 		//System.out.println("arg1: " + arg1 + ", arg2: " + arg2);
-		try {
-			int numArg1 = Integer.parseInt(arg1);
-			int numArg2 = Integer.parseInt(arg2);
-			//System.out.println("numArg1: " + numArg1 + ", numArg2: " + numArg2);
-			if (numArg1 == numArg2) {
-				return 1.0f;
-			}
-			else {
-				return 0.0f;
-			}
-		}
-		catch(NumberFormatException e) {
-			// do nothing
-		}
 		
 		if (arg1.equals(arg2)) {
 			return 1.0f;
@@ -68,6 +54,21 @@ public class NormalizeAndMatchMPN extends Function {
 		}
 	}
 
+	/*
+	 * Drops everything but the word characters of an MPN, and the leading
+	 * zeros of a numeric MPN. Also used as a blocking key function.
+	 */
+	public static String normalize(String mpn) {
+		String normalized = mpn.replaceAll("[^\\w]", "");
+		try {
+			return String.valueOf(Integer.parseInt(normalized));
+		}
+		catch(NumberFormatException e) {
+			// not numeric
+		}
+		return normalized;
+	}
+
 	@Override
 	public String getSignature() {
 		StringBuilder sb = new StringBuilder();
@@ -50,8 +50,8 @@ public class NormalizeAndMatchUPC extends Function {
 			return -1.0f;
 		}
 		
-		String normArg1 = arg1.substring(0, arg1.length() - 1);
-		String normArg2 = arg2.substring(2);
+		String normArg1 = normalize(arg1);
+		String normArg2 = normalize(arg2);
 		
 		if (normArg1.equals(normArg2)) {
 			return 1.0f;
@@ -61,6 +61,22 @@ public class NormalizeAndMatchUPC extends Function {
 		}
 	}
 
+	/*
+	 * Reduces a UPC to the 11 digits that identify the item: a 12 digit UPC-A
+	 * loses its check digit, a 13 digit code its two leading digits. Returns
+	 * null for anything else. Also used as a blocking key function.
+	 */
+	public static String normalize(String upc) {
+		String digits = upc.replaceAll("[^\\d]", "");
+		if (digits.length() == 12) {
+			return digits.substring(0, digits.length() - 1);
+		}
+		if (digits.length() == 13) {
+			return digits.substring(2);
+		}
+		return null;
+	}
+
 	@Override
 	public String getSignature() {
 		StringBuilder sb = new StringBuilder();
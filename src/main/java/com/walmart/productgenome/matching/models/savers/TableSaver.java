@@ -28,42 +28,57 @@ public class TableSaver {
 	
 	public static void saveTable(Table table, String tableFilePath) {
         try {
-            BufferedWriter bw = new BufferedWriter(new FileWriter(tableFilePath));
-            
-            // meta data
-            bw.write("@info");
-            // bw.newLine();
-            String tableJSON = JSONUtils.getTableJSON(table);
-            bw.write(tableJSON);
-            bw.newLine();
-            bw.newLine();
-            
-            // data
-            bw.write("@data");
-            bw.newLine();
-            
-            CSVPrinter dataPrinter = new CSVPrinter(bw,CSVFormat.DEFAULT.toBuilder().withRecordSeparator("\n").build());
-            
-            // print the header 
+            CSVPrinter dataPrinter = openTableFile(table, tableFilePath);
             List<Attribute> attributes = table.getAttributes();
-            for(Attribute a : attributes){
-            	dataPrinter.print(a.getName() + ":" + a.getType().name());
-    		}
-            dataPrinter.println();
           
     		//print the tuples
     		for(Tuple t : table.getAllTuplesInOrder()){
-    			for(Attribute a : attributes){
-    				// System.out.println(a + " : " + t.getAttributeValue(a));
-    				dataPrinter.print(t.getAttributeValue(a));
-    			}
-    			dataPrinter.println();
+    			printTuple(dataPrinter, attributes, t);
     		}
     		dataPrinter.close();
-            bw.close();
         } catch (IOException ioe) {
             ioe.printStackTrace();
         }
 	}
 	
+	/*
+	 * Writes the metadata and the header of the table file, and returns a
+	 * printer for the tuples. The tuples themselves need not be in memory, the
+	 * caller streams them with printTuple and closes the printer.
+	 */
+	public static CSVPrinter openTableFile(Table table, String tableFilePath) throws IOException {
+        BufferedWriter bw = new BufferedWriter(new FileWriter(tableFilePath));
+        
+        // meta data
+        bw.write("@info");
+        // bw.newLine();
+        String tableJSON = JSONUtils.getTableJSON(table);
+        bw.write(tableJSON);
+        bw.newLine();
+        bw.newLine();
+        
+        // data
+        bw.write("@data");
+        bw.newLine();
+        
+        CSVPrinter dataPrinter = new CSVPrinter(bw,CSVFormat.DEFAULT.toBuilder().withRecordSeparator("\n").build());
+        
+        // print the header 
+        List<Attribute> attributes = table.getAttributes();
+        for(Attribute a : attributes){
+        	dataPrinter.print(a.getName() + ":" + a.getType().name());
+		}
+        dataPrinter.println();
+        return dataPrinter;
+	}
+	
+	public static void printTuple(CSVPrinter dataPrinter, List<Attribute> attributes,
+			Tuple t) throws IOException {
+		for(Attribute a : attributes){
+			// System.out.println(a + " : " + t.getAttributeValue(a));
+			dataPrinter.print(t.getAttributeValue(a));
+		}
+		dataPrinter.println();
+	}
+	
 }
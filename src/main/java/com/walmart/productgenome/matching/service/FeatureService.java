@@ -13,7 +13,9 @@ import com.walmart.productgenome.matching.models.data.Attribute;
 import com.walmart.productgenome.matching.models.data.Attribute.AllTypes;
 import com.walmart.productgenome.matching.models.data.Attribute.Type;
 import com.walmart.productgenome.matching.models.data.AttributePair;
+import com.walmart.productgenome.matching.models.data.PairTable;
 import com.walmart.productgenome.matching.models.data.Project;
+import com.walmart.productgenome.matching.models.data.Schema;
 import com.walmart.productgenome.matching.models.data.Table;
 import com.walmart.productgenome.matching.models.data.Tuple;
 import com.walmart.productgenome.matching.models.rules.Feature;
@@ -40,23 +42,27 @@ public class FeatureService {
 		Table featureVectors = new Table(featureTableName, idAttribute,
 				attributes, projectName);
 
-		Attribute id1 = pairsAttributes.get(1);
-		Attribute id2 = pairsAttributes.get(2); 
+		// read the pairs by slot
+		Schema pairsSchema = pairsTable.getSchema();
+		int idSlot = pairsSchema.getSlot(idAttribute);
+		int labelSlot = pairsSchema.getSlot(labelAttribute);
+		// the tuples of the pairs are resolved by index
+		PairTable pairs = PairTable.of(pairsTable, table1, table2, false);
+		int index = 0;
 		for (Tuple pair : pairsTable.getAllTuplesInOrder()) {
-			Object id1Val = pair.getAttributeValue(id1);
-			Object id2Val = pair.getAttributeValue(id2);
-			Tuple tuple1 = table1.getTuple(id1Val);
-			Tuple tuple2 = table2.getTuple(id2Val);
-			Map<Attribute, Object> featureData = new HashMap<Attribute, Object>();
-			featureData.put(idAttribute, pair.getAttributeValue(idAttribute));
+			Tuple tuple1 = pairs.getTuple1(index);
+			Tuple tuple2 = pairs.getTuple2(index);
+			index++;
+			Tuple featureVector = new Tuple(featureVectors.getSchema());
+			featureVector.setAttributeValue(idAttribute, pair.getValue(pairsSchema, idSlot));
 			for (int i = 0; i < features.size(); i++) {
 				float featureVal = features.get(i).compute(tuple1, tuple2); 
-				featureData.put(attributes.get(i+1), featureVal);
+				featureVector.setAttributeValue(attributes.get(i+1), featureVal);
 			}
 			if (hasLabel) {
-				featureData.put(labelAttribute, pair.getAttributeValue(labelAttribute));
+				featureVector.setAttributeValue(labelAttribute, pair.getValue(pairsSchema, labelSlot));
 			}
-			featureVectors.addTuple(new Tuple(featureData));
+			featureVectors.addTuple(featureVector);
 		}
 		return featureVectors;
 	}
@@ -286,9 +292,7 @@ public class FeatureService {
 
 	public static Map<String, FeatureStatistics> computeFeatureCosts(String
 			projectName, Table pairsTable, Table table1, Table table2, List<Feature> features) {
-		List<Attribute> pairsAttributes = pairsTable.getAttributes();
-		Attribute id1 = pairsAttributes.get(1);
-		Attribute id2 = pairsAttributes.get(2);
+		PairTable pairs = PairTable.of(pairsTable, table1, table2, false);
 		Map<String, FeatureStatistics> featureStatsMap = new HashMap<String, FeatureStatistics>();
 		System.out.println("No. of tuple pairs: " + pairsTable.getSize());
 		for (Feature f: features) {
@@ -297,11 +301,9 @@ public class FeatureService {
 			long[] bucketCounts = {0, 0, 0, 0, 0}; // (0-0.2], (0.2-0.4], ..., (0.8,1)
 			long avgFeatureCostPerTuple = 0;
 			long avgFeatureCostPerTupleExcludingNull = 0;
-			for (Tuple pair : pairsTable.getAllTuples()) {
-				Object id1Val = pair.getAttributeValue(id1);
-				Object id2Val = pair.getAttributeValue(id2);
-				Tuple tuple1 = table1.getTuple(id1Val);
-				Tuple tuple2 = table2.getTuple(id2Val);
+			for (int index = 0; index < pairs.size(); index++) {
+				Tuple tuple1 = pairs.getTuple1(index);
+				Tuple tuple2 = pairs.getTuple2(index);
 				long startTime = System.nanoTime();
 				float featureVal = f.compute(tuple1, tuple2);
 				long elapsedTime = System.nanoTime() - startTime;
@@ -23,6 +23,7 @@ import com.walmart.productgenome.matching.daos.ProjectDao;
 import com.walmart.productgenome.matching.models.RelationalOperator;
 import com.walmart.productgenome.matching.models.audit.MatchStatus;
 import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.PairTable;
 import com.walmart.productgenome.matching.models.data.Project;
 import com.walmart.productgenome.matching.models.data.Table;
 import com.walmart.productgenome.matching.models.data.Tuple;
@@ -81,19 +82,18 @@ public class RuleService {
 				actualPositives++;
 			}
 		}
-		Attribute id1 = attributes.get(1);
-		Attribute id2 = attributes.get(2);
+		PairTable pairs = PairTable.of(testData, table1, table2, false);
 		
 		for (String rule : rules) {
 			long predictedPositives = 0;
 			long truePositives = 0;
 			List<Term> terms = ParsingUtils.parseRuleFromDisplayString(project,
 					rule);
+			int index = 0;
 			for (Tuple tuple : testData.getAllTuples()) {
-				Object id1Val = tuple.getAttributeValue(id1);
-				Object id2Val = tuple.getAttributeValue(id2);
-				Tuple tuple1 = table1.getTuple(id1Val);
-				Tuple tuple2 = table2.getTuple(id2Val);
+				Tuple tuple1 = pairs.getTuple1(index);
+				Tuple tuple2 = pairs.getTuple2(index);
+				index++;
 				MatchStatus result = MatchStatus.MATCH;
 				for (Term term : terms) {
 					try {
@@ -0,0 +1,370 @@
+package com.walmart.productgenome.matching.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Schema;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.models.data.TupleCursor;
+
+/*
+ * Random samples of the tuples of a table, taken in a single pass over the
+ * table with reservoirs of the sample size. The samples are returned as
+ * views of the table (see Table), with the sampled tuples in table order,
+ * and the table itself is left as it is.
+ *
+ * Stratified samples keep a reservoir per stratum and split the sample size
+ * between the strata once the pass is over, either in proportion to their
+ * sizes or equally, in which case the strata smaller than their share are
+ * taken whole and the rest of the sample is split between the others.
+ *
+ * The uniform and weighted samples hold at most the sample size of ids, so
+ * their memory does not grow with the table. A stratified sample holds up
+ * to the sample size of ids per stratum, which is up to the whole table
+ * when most values of the attribute are distinct. The bucketed samples
+ * bound the number of strata by the number of buckets.
+ */
+public class SamplingService {
+
+	// how the sample size of a stratified sample is split between the strata
+	public enum Allocation {
+		PROPORTIONAL,
+		EQUAL
+	}
+
+	// the ids of a uniform random sample of the tuples, in table order
+	public static List<Object> sampleIds(Table table, int sampleSize, Random random) {
+		checkSampleSize(sampleSize);
+		Reservoir reservoir = new Reservoir(sampleSize, random);
+		TupleCursor cursor = table.getCursor();
+		for (long position = 0; cursor.next(); position++) {
+			reservoir.offer(cursor.getId(), position);
+		}
+		return toTableOrder(Collections.singletonList(reservoir),
+				new int[] { reservoir.size });
+	}
+
+	public static Table sample(Table table, String sampleName, int sampleSize, Random random) {
+		return new Table(table, sampleName, sampleIds(table, sampleSize, random));
+	}
+
+	/*
+	 * A sample where the chance of a tuple to be drawn is proportional to the
+	 * value of a numeric attribute, the tuples being drawn without
+	 * replacement (Efraimidis and Spirakis). The tuples whose weight is null
+	 * or not positive are never drawn.
+	 */
+	public static Table sampleWeighted(Table table, String sampleName, int sampleSize,
+			Attribute weightAttribute, Random random) {
+		checkSampleSize(sampleSize);
+		checkNumeric(weightAttribute);
+		Schema schema = table.getSchema();
+		int slot = schema.getSlot(weightAttribute);
+		// the sampled tuples with the largest keys log(u) / weight, smallest first
+		PriorityQueue<Keyed> sampled = new PriorityQueue<Keyed>(Math.max(1, sampleSize),
+				new Comparator<Keyed>() {
+					public int compare(Keyed keyed1, Keyed keyed2) {
+						return Double.compare(keyed1.key, keyed2.key);
+					}
+				});
+		TupleCursor cursor = table.getCursor();
+		for (long position = 0; cursor.next() && sampleSize > 0; position++) {
+			Object value = cursor.getTuple().getValue(schema, slot);
+			double weight = value instanceof Number ? ((Number) value).doubleValue() : 0;
+			if (!(weight > 0)) {
+				continue;
+			}
+			double key = Math.log(1 - random.nextDouble()) / weight;
+			if (sampled.size() < sampleSize) {
+				sampled.add(new Keyed(key, cursor.getId(), position));
+			}
+			else if (key > sampled.peek().key) {
+				sampled.poll();
+				sampled.add(new Keyed(key, cursor.getId(), position));
+			}
+		}
+		Reservoir reservoir = new Reservoir(sampled.size(), random);
+		for (Keyed keyed : sampled) {
+			reservoir.add(keyed.id, keyed.position);
+		}
+		return new Table(table, sampleName, toTableOrder(Collections.singletonList(reservoir),
+				new int[] { reservoir.size }));
+	}
+
+	// a sample stratified by the values of an attribute, null being a value too
+	public static Table sampleStratified(Table table, String sampleName, int sampleSize,
+			Attribute attribute, Allocation allocation, Random random) {
+		final Schema schema = table.getSchema();
+		final int slot = schema.getSlot(attribute);
+		return sampleStratified(table, sampleName, sampleSize, new Stratifier() {
+			public Object getStratum(Tuple tuple) {
+				return tuple.getValue(schema, slot);
+			}
+		}, allocation, random);
+	}
+
+	/*
+	 * A sample stratified by the bucket of the value of a numeric attribute,
+	 * typically a feature or a match score, out of numBuckets buckets of equal
+	 * width between its smallest and largest values. The tuples without a
+	 * value make a stratum of their own. The bounds take a first pass over the
+	 * table.
+	 */
+	public static Table sampleByBuckets(Table table, String sampleName, int sampleSize,
+			Attribute scoreAttribute, int numBuckets, Allocation allocation, Random random) {
+		checkNumeric(scoreAttribute);
+		if (numBuckets < 1) {
+			throw new IllegalArgumentException("Number of buckets must be positive: " + numBuckets);
+		}
+		final Schema schema = table.getSchema();
+		final int slot = schema.getSlot(scoreAttribute);
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		TupleCursor cursor = table.getCursor();
+		while (cursor.next()) {
+			Object score = cursor.getTuple().getValue(schema, slot);
+			if (score instanceof Number) {
+				min = Math.min(min, ((Number) score).doubleValue());
+				max = Math.max(max, ((Number) score).doubleValue());
+			}
+		}
+		final double lowest = min;
+		final double width = (max - min) / numBuckets;
+		final int lastBucket = numBuckets - 1;
+		return sampleStratified(table, sampleName, sampleSize, new Stratifier() {
+			public Object getStratum(Tuple tuple) {
+				Object score = tuple.getValue(schema, slot);
+				if (!(score instanceof Number)) {
+					return null;
+				}
+				if (width <= 0) {
+					return 0;
+				}
+				int bucket = (int) ((((Number) score).doubleValue() - lowest) / width);
+				return Math.min(bucket, lastBucket);
+			}
+		}, allocation, random);
+	}
+
+	private interface Stratifier {
+		Object getStratum(Tuple tuple);
+	}
+
+	private static Table sampleStratified(Table table, String sampleName, int sampleSize,
+			Stratifier stratifier, Allocation allocation, Random random) {
+		checkSampleSize(sampleSize);
+		Map<Object, Reservoir> strata = new LinkedHashMap<Object, Reservoir>();
+		TupleCursor cursor = table.getCursor();
+		for (long position = 0; cursor.next(); position++) {
+			Object stratum = stratifier.getStratum(cursor.getTuple());
+			Reservoir reservoir = strata.get(stratum);
+			if (null == reservoir) {
+				reservoir = new Reservoir(sampleSize, random);
+				strata.put(stratum, reservoir);
+			}
+			reservoir.offer(cursor.getId(), position);
+		}
+		List<Reservoir> reservoirs = new ArrayList<Reservoir>(strata.values());
+		int[] allocations = allocation == Allocation.EQUAL
+				? allocateEqually(reservoirs, sampleSize) : allocateProportionally(reservoirs, sampleSize);
+		return new Table(table, sampleName, toTableOrder(reservoirs, allocations));
+	}
+
+	// largest remainder method
+	private static int[] allocateProportionally(List<Reservoir> reservoirs, int sampleSize) {
+		long total = 0;
+		for (Reservoir reservoir : reservoirs) {
+			total += reservoir.seen;
+		}
+		int[] allocations = new int[reservoirs.size()];
+		if (total <= sampleSize) {
+			for (int i = 0; i < allocations.length; i++) {
+				allocations[i] = reservoirs.get(i).size;
+			}
+			return allocations;
+		}
+		final double[] remainders = new double[allocations.length];
+		int allocated = 0;
+		for (int i = 0; i < allocations.length; i++) {
+			double share = (double) sampleSize * reservoirs.get(i).seen / total;
+			allocations[i] = (int) share;
+			remainders[i] = share - allocations[i];
+			allocated += allocations[i];
+		}
+		Integer[] order = new Integer[allocations.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				return Double.compare(remainders[i2], remainders[i1]);
+			}
+		});
+		for (int i = 0; allocated < sampleSize && i < order.length; i++) {
+			allocations[order[i]]++;
+			allocated++;
+		}
+		return allocations;
+	}
+
+	// the smallest strata first, each taking at most an equal share of what is left
+	private static int[] allocateEqually(final List<Reservoir> reservoirs, int sampleSize) {
+		Integer[] order = new Integer[reservoirs.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				return Integer.compare(reservoirs.get(i1).size, reservoirs.get(i2).size);
+			}
+		});
+		int[] allocations = new int[order.length];
+		int remaining = sampleSize;
+		for (int i = 0; i < order.length; i++) {
+			int share = remaining / (order.length - i);
+			allocations[order[i]] = Math.min(reservoirs.get(order[i]).size, share);
+			remaining -= allocations[order[i]];
+		}
+		return allocations;
+	}
+
+	/*
+	 * The ids of random subsets of the reservoirs, of the allocated sizes, in
+	 * table order.
+	 */
+	private static List<Object> toTableOrder(List<Reservoir> reservoirs, int[] allocations) {
+		int total = 0;
+		for (int allocation : allocations) {
+			total += allocation;
+		}
+		final long[] positions = new long[total];
+		Object[] ids = new Object[total];
+		int n = 0;
+		for (int i = 0; i < allocations.length; i++) {
+			Reservoir reservoir = reservoirs.get(i);
+			reservoir.shuffle(allocations[i]);
+			System.arraycopy(reservoir.positions, 0, positions, n, allocations[i]);
+			System.arraycopy(reservoir.ids, 0, ids, n, allocations[i]);
+			n += allocations[i];
+		}
+		Integer[] order = new Integer[total];
+		for (int i = 0; i < total; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				return Long.compare(positions[i1], positions[i2]);
+			}
+		});
+		List<Object> sample = new ArrayList<Object>(total);
+		for (Integer i : order) {
+			sample.add(ids[i]);
+		}
+		return sample;
+	}
+
+	private static void checkSampleSize(int sampleSize) {
+		if (sampleSize < 0) {
+			throw new IllegalArgumentException("Sample size must not be negative: " + sampleSize);
+		}
+	}
+
+	private static void checkNumeric(Attribute attribute) {
+		Type type = attribute.getType();
+		if (type != Type.INTEGER && type != Type.LONG && type != Type.FLOAT) {
+			throw new IllegalArgumentException("Numeric attribute expected: " + attribute.getName());
+		}
+	}
+
+	private static class Keyed {
+		final double key;
+		final Object id;
+		final long position;
+
+		Keyed(double key, Object id, long position) {
+			this.key = key;
+			this.id = id;
+			this.position = position;
+		}
+	}
+
+	/*
+	 * A uniform random sample of at most capacity of the ids offered to it,
+	 * with their positions in the table. Once it is full, it skips ahead to
+	 * the next id to take instead of drawing a number for every id (Li's
+	 * Algorithm L).
+	 */
+	private static class Reservoir {
+		private final int capacity;
+		private final Random random;
+		private Object[] ids = new Object[0];
+		private long[] positions = new long[0];
+		private int size;
+		// the number of ids offered so far
+		private long seen;
+		private double w;
+		// the count of offered ids at which the next one is taken
+		private long next;
+
+		Reservoir(int capacity, Random random) {
+			this.capacity = capacity;
+			this.random = random;
+		}
+
+		void offer(Object id, long position) {
+			seen++;
+			if (size < capacity) {
+				add(id, position);
+				if (size == capacity) {
+					w = Math.exp(Math.log(1 - random.nextDouble()) / capacity);
+					skip();
+				}
+			}
+			else if (seen == next) {
+				int i = random.nextInt(capacity);
+				ids[i] = id;
+				positions[i] = position;
+				w *= Math.exp(Math.log(1 - random.nextDouble()) / capacity);
+				skip();
+			}
+		}
+
+		void add(Object id, long position) {
+			if (size == ids.length) {
+				int length = (int) Math.min(capacity, Math.max(16, 2L * size));
+				ids = Arrays.copyOf(ids, length);
+				positions = Arrays.copyOf(positions, length);
+			}
+			ids[size] = id;
+			positions[size] = position;
+			size++;
+		}
+
+		private void skip() {
+			next = seen + (long) Math.floor(Math.log(1 - random.nextDouble()) / Math.log(1 - w)) + 1;
+		}
+
+		// moves a random subset of count ids to the front (partial Fisher-Yates)
+		void shuffle(int count) {
+			for (int i = 0; i < count && i < size - 1; i++) {
+				int j = i + random.nextInt(size - i);
+				Object id = ids[i];
+				ids[i] = ids[j];
+				ids[j] = id;
+				long position = positions[i];
+				positions[i] = positions[j];
+				positions[j] = position;
+			}
+		}
+	}
+}
@@ -16,6 +16,7 @@ import com.walmart.productgenome.matching.models.data.Attribute;
 import com.walmart.productgenome.matching.models.data.Project;
 import com.walmart.productgenome.matching.models.data.Table;
 import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.models.data.TupleCursor;
 import com.walmart.productgenome.matching.models.loaders.CSVLoader;
 import com.walmart.productgenome.matching.models.loaders.JsonLoader;
 
@@ -30,7 +31,9 @@ public class TableService {
 		List<Object> testIds = new ArrayList<Object>();
 		Random random = new Random(0);
 		double trainProb = trainPercent/100.0;
-		for (Object id : labeledData.getAllIdsInOrder()) {
+		TupleCursor cursor = labeledData.getCursor();
+		while (cursor.next()) {
+			Object id = cursor.getId();
 			if (random.nextDouble() < trainProb) {
 				trainIds.add(id);
 			}
@@ -51,7 +54,9 @@ public class TableService {
 		List<Object> ids1 = new ArrayList<Object>();
 		List<Object> ids2 = new ArrayList<Object>();
 		Random random = new Random();
-		for (Object id : table.getAllIdsInOrder()) {
+		TupleCursor cursor = table.getCursor();
+		while (cursor.next()) {
+			Object id = cursor.getId();
 			if (random.nextDouble() < splitRatio) {
 				ids1.add(id);
 			}
@@ -0,0 +1,107 @@
+package com.walmart.productgenome.matching.service.explorer;
+
+import java.util.Arrays;
+
+import com.google.common.base.Objects;
+import com.walmart.productgenome.matching.daos.Blocker;
+import com.walmart.productgenome.matching.daos.Blockers;
+import com.walmart.productgenome.matching.daos.KeyFunction;
+
+/*
+ * A conjunctive equality blocking plan over one or more attribute pairs, as
+ * run by BlockingDao.block, together with its estimated cost and quality. The
+ * attribute pairs may be compared on the keys of key functions.
+ */
+
+public class BlockingPlan {
+
+	private final String[] table1AttributeNames;
+	private final String[] table2AttributeNames;
+	private final KeyFunction[] keyFunctions;
+	private final long predictedPairs;
+	private final Object heaviestKey;
+	private final long heaviestKeyPairs;
+	private final double pairCompleteness;
+	private final long predictedMillis;
+
+	public BlockingPlan(String[] table1AttributeNames, String[] table2AttributeNames,
+			KeyFunction[] keyFunctions, long predictedPairs, Object heaviestKey,
+			long heaviestKeyPairs, double pairCompleteness, long predictedMillis) {
+		this.table1AttributeNames = table1AttributeNames;
+		this.table2AttributeNames = table2AttributeNames;
+		this.keyFunctions = keyFunctions;
+		this.predictedPairs = predictedPairs;
+		this.heaviestKey = heaviestKey;
+		this.heaviestKeyPairs = heaviestKeyPairs;
+		this.pairCompleteness = pairCompleteness;
+		this.predictedMillis = predictedMillis;
+	}
+
+	public String[] getTable1AttributeNames() {
+		return table1AttributeNames;
+	}
+
+	public String[] getTable2AttributeNames() {
+		return table2AttributeNames;
+	}
+
+	// the key function of every attribute pair
+	public KeyFunction[] getKeyFunctions() {
+		return keyFunctions;
+	}
+
+	// runs the plan, e.g. through BlockingDao.blockUnion
+	public Blocker toBlocker() {
+		return Blockers.equality(table1AttributeNames, table2AttributeNames, keyFunctions);
+	}
+
+	// estimated size of the candset
+	public long getPredictedPairs() {
+		return predictedPairs;
+	}
+
+	// the blocking key that contributes the most pairs in the sample, or null
+	public Object getHeaviestKey() {
+		return heaviestKey;
+	}
+
+	public long getHeaviestKeyPairs() {
+		return heaviestKeyPairs;
+	}
+
+	// fraction of the gold matches the plan keeps, NaN without gold
+	public double getPairCompleteness() {
+		return pairCompleteness;
+	}
+
+	public boolean hasPairCompleteness() {
+		return !Double.isNaN(pairCompleteness);
+	}
+
+	// estimated single-threaded running time of the block
+	public long getPredictedMillis() {
+		return predictedMillis;
+	}
+
+	private String getKeyFunctionNames() {
+		String[] names = new String[keyFunctions.length];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = keyFunctions[i].getName();
+		}
+		return Arrays.toString(names);
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+			.add("table1Attributes", Arrays.toString(table1AttributeNames))
+			.add("table2Attributes", Arrays.toString(table2AttributeNames))
+			.add("keyFunctions", getKeyFunctionNames())
+			.add("predictedPairs", predictedPairs)
+			.add("heaviestKey", heaviestKey)
+			.add("heaviestKeyPairs", heaviestKeyPairs)
+			.add("pairCompleteness", pairCompleteness)
+			.add("predictedMillis", predictedMillis)
+			.toString();
+	}
+}
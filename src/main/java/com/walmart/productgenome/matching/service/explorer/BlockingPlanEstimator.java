@@ -0,0 +1,347 @@
+package com.walmart.productgenome.matching.service.explorer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.paukov.combinatorics.Factory;
+import org.paukov.combinatorics.Generator;
+import org.paukov.combinatorics.ICombinatoricsVector;
+
+import com.walmart.productgenome.matching.daos.CandsetBuilder;
+import com.walmart.productgenome.matching.daos.KeyFunction;
+import com.walmart.productgenome.matching.daos.KeyFunctions;
+import com.walmart.productgenome.matching.models.audit.MatchStatus;
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+/*
+ * Estimates the cost and the quality of equality blocking plans without
+ * running them.
+ *
+ * Both tables are sampled once. For a plan, the blocking keys of the samples
+ * go through a FrequencyAnalyzer each, and the candset size is estimated from
+ * the two key histograms: sum over the keys of freq1 * freq2, scaled up by the
+ * sampling rates of both tables. Pair completeness is measured exactly on the
+ * matches of a gold table, when one is given. The running time is predicted
+ * from the per-tuple key cost and the per-pair candset cost timed on the
+ * samples.
+ */
+
+public class BlockingPlanEstimator {
+
+	public static final int DEFAULT_SAMPLE_SIZE = 10000;
+	public static final long DEFAULT_SEED = 0;
+
+	// number of sample pairs built to time the per-pair cost
+	private static final int TIMED_PAIRS = 1000;
+
+	private final Table table1;
+	private final Table table2;
+	private final List<Tuple> sample1;
+	private final List<Tuple> sample2;
+	private final double scale;
+	private final List<Tuple[]> goldMatches;
+	private final double pairNanos;
+
+	/*
+	 * gold may be null. Otherwise it has the layout of the gold tables of
+	 * EvaluateDao: the table1 id second, the table2 id third and the label last.
+	 * The projected attribute names are those the block would copy into the
+	 * candset, and only matter for the predicted running time.
+	 */
+	public BlockingPlanEstimator(Table table1, Table table2, Table gold,
+			int sampleSize, long seed, String[] table1AttributeNames,
+			String[] table2AttributeNames) {
+		if (sampleSize < 1) {
+			throw new IllegalArgumentException("Sample size must be positive: " + sampleSize);
+		}
+		this.table1 = table1;
+		this.table2 = table2;
+		Random random = new Random(seed);
+		sample1 = sample(table1, sampleSize, random);
+		sample2 = sample(table2, sampleSize, random);
+		scale = getSamplingFactor(table1, sample1) * getSamplingFactor(table2, sample2);
+		goldMatches = null == gold ? null : getGoldMatches(gold);
+		pairNanos = timePairs(table1AttributeNames, table2AttributeNames);
+	}
+
+	private static List<Tuple> sample(Table table, int sampleSize, Random random) {
+		List<Tuple> tuples = new ArrayList<Tuple>(table.getAllTuplesInOrder());
+		if (tuples.size() <= sampleSize) {
+			return tuples;
+		}
+		// partial Fisher-Yates shuffle
+		for (int i = 0; i < sampleSize; i++) {
+			Collections.swap(tuples, i, i + random.nextInt(tuples.size() - i));
+		}
+		return new ArrayList<Tuple>(tuples.subList(0, sampleSize));
+	}
+
+	private static double getSamplingFactor(Table table, List<Tuple> sample) {
+		return sample.isEmpty() ? 0.0 : (double) table.getSize() / sample.size();
+	}
+
+	// resolves the (table1, table2) tuples of the gold matches
+	private List<Tuple[]> getGoldMatches(Table gold) {
+		List<Attribute> goldAttributes = gold.getAttributes();
+		Attribute goldId1Attr = goldAttributes.get(1);
+		Attribute goldId2Attr = goldAttributes.get(2);
+		Attribute goldLabelAttr = goldAttributes.get(goldAttributes.size()-1);
+
+		List<Tuple[]> matches = new ArrayList<Tuple[]>();
+		for (Tuple goldTuple : gold.getAllTuples()) {
+			Object label = goldTuple.getAttributeValue(goldLabelAttr);
+			if (!Integer.valueOf(MatchStatus.MATCH.getLabel()).equals(label)) {
+				continue;
+			}
+			Tuple tuple1 = table1.getTuple(goldTuple.getAttributeValue(goldId1Attr));
+			Tuple tuple2 = table2.getTuple(goldTuple.getAttributeValue(goldId2Attr));
+			if (null != tuple1 && null != tuple2) {
+				matches.add(new Tuple[] {tuple1, tuple2});
+			}
+		}
+		return matches;
+	}
+
+	private double timePairs(String[] table1AttributeNames, String[] table2AttributeNames) {
+		if (sample1.isEmpty() || sample2.isEmpty()) {
+			return 0.0;
+		}
+		CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2, "estimate",
+				table1AttributeNames, table2AttributeNames);
+		long start = System.nanoTime();
+		for (int i = 0; i < TIMED_PAIRS; i++) {
+			candsetBuilder.createPair(i + 1, sample1.get(i % sample1.size()),
+					sample2.get(i % sample2.size()));
+		}
+		return (double) (System.nanoTime() - start) / TIMED_PAIRS;
+	}
+
+	public BlockingPlan estimate(String[] table1AttributeNames,
+			String[] table2AttributeNames) {
+		return estimate(table1AttributeNames, table2AttributeNames,
+				getExactKeyFunctions(table1AttributeNames.length));
+	}
+
+	// the plan blocking on the keys of the key functions, as Blockers.equality
+	public BlockingPlan estimate(String[] table1AttributeNames,
+			String[] table2AttributeNames, KeyFunction[] keyFunctions) {
+		Attribute[] attributes1 = resolveAttributes(table1, table1AttributeNames);
+		Attribute[] attributes2 = resolveAttributes(table2, table2AttributeNames);
+		checkPlan(attributes1, attributes2, keyFunctions);
+
+		// key histograms of the samples
+		long start = System.nanoTime();
+		FrequencyAnalyzer keys1 = getKeyFrequencies(sample1, attributes1, keyFunctions);
+		FrequencyAnalyzer keys2 = getKeyFrequencies(sample2, attributes2, keyFunctions);
+		double tupleNanos = (double) (System.nanoTime() - start)
+				/ Math.max(1, sample1.size() + sample2.size());
+
+		// size of the equi-join of the samples
+		long samplePairs = 0;
+		Object heaviestKey = null;
+		long heaviestKeyPairs = 0;
+		for (Map.Entry<Object, Integer> entry : keys1.getValueFrequencies().entrySet()) {
+			long pairs = (long) entry.getValue() * keys2.getFrequencyForValue(entry.getKey());
+			samplePairs += pairs;
+			if (pairs > heaviestKeyPairs) {
+				heaviestKey = entry.getKey();
+				heaviestKeyPairs = pairs;
+			}
+		}
+		long predictedPairs = Math.round(samplePairs * scale);
+
+		long predictedMillis = Math.round(((table1.getSize() + table2.getSize()) * tupleNanos
+				+ predictedPairs * pairNanos) / 1000000.0);
+
+		return new BlockingPlan(table1AttributeNames, table2AttributeNames, keyFunctions,
+				predictedPairs, heaviestKey, Math.round(heaviestKeyPairs * scale),
+				getPairCompleteness(attributes1, attributes2, keyFunctions), predictedMillis);
+	}
+
+	private static KeyFunction[] getExactKeyFunctions(int length) {
+		KeyFunction[] keyFunctions = new KeyFunction[length];
+		Arrays.fill(keyFunctions, KeyFunctions.exact());
+		return keyFunctions;
+	}
+
+	private static void checkPlan(Attribute[] attributes1, Attribute[] attributes2,
+			KeyFunction[] keyFunctions) {
+		if (attributes1.length != attributes2.length || attributes1.length == 0
+				|| attributes1.length != keyFunctions.length) {
+			throw new IllegalArgumentException("A blocking plan needs the same, "
+					+ "positive number of attributes for the two tables");
+		}
+	}
+
+	// number of gold matches found in the tables, 0 without gold
+	public int getNumGoldMatches() {
+		return null == goldMatches ? 0 : goldMatches.size();
+	}
+
+	// the gold matches the plan keeps, by their position in the gold table
+	public BitSet getKeptGoldMatches(String[] table1AttributeNames,
+			String[] table2AttributeNames, KeyFunction[] keyFunctions) {
+		Attribute[] attributes1 = resolveAttributes(table1, table1AttributeNames);
+		Attribute[] attributes2 = resolveAttributes(table2, table2AttributeNames);
+		checkPlan(attributes1, attributes2, keyFunctions);
+		return getKeptGoldMatches(attributes1, attributes2, keyFunctions);
+	}
+
+	private BitSet getKeptGoldMatches(Attribute[] attributes1, Attribute[] attributes2,
+			KeyFunction[] keyFunctions) {
+		BitSet kept = new BitSet();
+		if (null == goldMatches) {
+			return kept;
+		}
+		for (int i = 0; i < goldMatches.size(); i++) {
+			Tuple[] match = goldMatches.get(i);
+			Object key1 = getKey(match[0], attributes1, keyFunctions);
+			if (null != key1 && key1.equals(getKey(match[1], attributes2, keyFunctions))) {
+				kept.set(i);
+			}
+		}
+		return kept;
+	}
+
+	private static Attribute[] resolveAttributes(Table table, String[] attributeNames) {
+		Attribute[] attributes = new Attribute[attributeNames.length];
+		for (int i = 0; i < attributeNames.length; i++) {
+			attributes[i] = table.getAttributeByName(attributeNames[i]);
+			if (null == attributes[i]) {
+				throw new IllegalArgumentException("No attribute " + attributeNames[i]
+						+ " in table " + table.getName());
+			}
+		}
+		return attributes;
+	}
+
+	private static FrequencyAnalyzer getKeyFrequencies(List<Tuple> tuples,
+			Attribute[] attributes, KeyFunction[] keyFunctions) {
+		FrequencyAnalyzer frequencyAnalyzer = new FrequencyAnalyzer();
+		for (Tuple tuple : tuples) {
+			Object key = getKey(tuple, attributes, keyFunctions);
+			if (null != key) {
+				frequencyAnalyzer.addValue(key);
+			}
+		}
+		return frequencyAnalyzer;
+	}
+
+	/*
+	 * The blocking key of a tuple, or null if it is never blocked: like
+	 * BlockingDao, a tuple without a key for one of the attributes is not
+	 * indexed.
+	 */
+	private static Object getKey(Tuple tuple, Attribute[] attributes,
+			KeyFunction[] keyFunctions) {
+		if (attributes.length == 1) {
+			return keyFunctions[0].getKey(tuple.getAttributeValue(attributes[0]));
+		}
+		List<Object> key = new ArrayList<Object>(attributes.length);
+		for (int i = 0; i < attributes.length; i++) {
+			String attributeKey = keyFunctions[i].getKey(tuple.getAttributeValue(attributes[i]));
+			if (null == attributeKey) {
+				return null;
+			}
+			key.add(attributeKey);
+		}
+		return key;
+	}
+
+	private double getPairCompleteness(Attribute[] attributes1, Attribute[] attributes2,
+			KeyFunction[] keyFunctions) {
+		if (null == goldMatches || goldMatches.isEmpty()) {
+			return Double.NaN;
+		}
+		return (double) getKeptGoldMatches(attributes1, attributes2, keyFunctions)
+				.cardinality() / goldMatches.size();
+	}
+
+	/*
+	 * Estimates the plans over the attributes that both tables have, by name
+	 * and type, and combinations of up to maxAttrCount of them. Attributes the
+	 * explorer heuristics rule out (mostly missing, or too few distinct values)
+	 * are skipped.
+	 *
+	 * The plans predicted to stay within maxPairs come first. With gold they
+	 * are ranked by pair completeness and then by size; without gold by
+	 * decreasing size, the largest affordable candset being the most likely to
+	 * keep the matches. The plans over budget follow, smallest first.
+	 */
+	public List<BlockingPlan> rankPlans(int maxAttrCount, final long maxPairs) {
+		List<String> names = getCandidateAttributeNames();
+		List<BlockingPlan> plans = new ArrayList<BlockingPlan>();
+		if (names.isEmpty()) {
+			return plans;
+		}
+		ICombinatoricsVector<String> initialVector = Factory.createVector(names);
+		for (int size = 1; size <= Math.min(maxAttrCount, names.size()); size++) {
+			Generator<String> gen = Factory.createSimpleCombinationGenerator(initialVector, size);
+			for (ICombinatoricsVector<String> combination : gen) {
+				String[] attributeNames = combination.getVector().toArray(new String[size]);
+				plans.add(estimate(attributeNames, attributeNames));
+			}
+		}
+
+		Collections.sort(plans, new Comparator<BlockingPlan>() {
+			public int compare(BlockingPlan plan1, BlockingPlan plan2) {
+				boolean fits1 = plan1.getPredictedPairs() <= maxPairs;
+				boolean fits2 = plan2.getPredictedPairs() <= maxPairs;
+				if (fits1 != fits2) {
+					return fits1 ? -1 : 1;
+				}
+				if (!fits1) {
+					return Long.compare(plan1.getPredictedPairs(), plan2.getPredictedPairs());
+				}
+				if (plan1.hasPairCompleteness() && plan2.hasPairCompleteness()) {
+					int cmp = Double.compare(plan2.getPairCompleteness(), plan1.getPairCompleteness());
+					if (cmp != 0) {
+						return cmp;
+					}
+					return Long.compare(plan1.getPredictedPairs(), plan2.getPredictedPairs());
+				}
+				return Long.compare(plan2.getPredictedPairs(), plan1.getPredictedPairs());
+			}
+		});
+		return plans;
+	}
+
+	List<String> getCandidateAttributeNames() {
+		List<String> names = new ArrayList<String>();
+		for (Attribute attribute1 : table1.getAttributes()) {
+			// the ids do not block anything
+			if (attribute1.equals(table1.getIdAttribute())) {
+				continue;
+			}
+			Attribute attribute2 = table2.getAttributeByName(attribute1.getName());
+			if (null == attribute2 || attribute2.getType() != attribute1.getType()
+					|| attribute2.equals(table2.getIdAttribute())) {
+				continue;
+			}
+			if (isUseless(sample1, attribute1) || isUseless(sample2, attribute2)) {
+				continue;
+			}
+			names.add(attribute1.getName());
+		}
+		return names;
+	}
+
+	// same heuristics as the AttributeSelector filter
+	private static boolean isUseless(List<Tuple> sample, Attribute attribute) {
+		List<Object> values = new ArrayList<Object>(sample.size());
+		for (Tuple tuple : sample) {
+			values.add(tuple.getAttributeValue(attribute));
+		}
+		AttrStats attrStats = Explorer.getAttrStats(attribute.getType(), values, 1, 1);
+		return attrStats.getPercentMissing() > ExplorerConstants.MAX_MISSING
+				|| attrStats.getTotalDistinct() < ExplorerConstants.MIN_DISTINCT + 1;
+	}
+}
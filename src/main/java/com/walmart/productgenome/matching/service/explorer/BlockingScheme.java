@@ -0,0 +1,58 @@
+package com.walmart.productgenome.matching.service.explorer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Objects;
+import com.walmart.productgenome.matching.daos.Blocker;
+
+/*
+ * A disjunction of conjunctive blocking plans: a pair is a candidate if any
+ * of the plans finds it. Run it with BlockingDao.blockUnion(..., getBlockers(), ...).
+ */
+
+public class BlockingScheme {
+
+	private final List<BlockingPlan> plans;
+	private final long predictedPairs;
+	private final double recall;
+
+	public BlockingScheme(List<BlockingPlan> plans, long predictedPairs, double recall) {
+		this.plans = Collections.unmodifiableList(new ArrayList<BlockingPlan>(plans));
+		this.predictedPairs = predictedPairs;
+		this.recall = recall;
+	}
+
+	// the disjuncts, in the order they were chosen
+	public List<BlockingPlan> getPlans() {
+		return plans;
+	}
+
+	public List<Blocker> getBlockers() {
+		List<Blocker> blockers = new ArrayList<Blocker>(plans.size());
+		for (BlockingPlan plan : plans) {
+			blockers.add(plan.toBlocker());
+		}
+		return blockers;
+	}
+
+	// sum of the predicted sizes of the plans, an upper bound of the union
+	public long getPredictedPairs() {
+		return predictedPairs;
+	}
+
+	// fraction of the labeled matches the scheme keeps
+	public double getRecall() {
+		return recall;
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+			.add("plans", plans)
+			.add("predictedPairs", predictedPairs)
+			.add("recall", recall)
+			.toString();
+	}
+}
@@ -0,0 +1,147 @@
+package com.walmart.productgenome.matching.service.explorer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import com.walmart.productgenome.matching.daos.KeyFunction;
+import com.walmart.productgenome.matching.daos.KeyFunctions;
+
+/*
+ * Learns a blocking scheme from labeled pairs: a disjunction of conjunctions
+ * of (attribute, key function) predicates that keeps as many labeled matches
+ * as possible within a budget of candidate pairs.
+ *
+ * The candidate conjunctions combine up to maxConjunctionSize predicates on
+ * distinct attributes, over the attributes rankPlans would consider. Their
+ * sizes are estimated by the BlockingPlanEstimator from the samples, and the
+ * matches they keep are measured on its gold table. The scheme is then built
+ * greedily, as a weighted set cover: the next disjunct is the one keeping the
+ * most matches not kept yet per predicted pair, among those that still fit
+ * in the budget. The budget is charged with the full predicted size of every
+ * disjunct, so the union of the plans stays within it.
+ */
+
+public class BlockingSchemeLearner {
+
+	public static final int DEFAULT_MAX_CONJUNCTION_SIZE = 2;
+
+	private final BlockingPlanEstimator estimator;
+	private final List<KeyFunction> keyFunctions;
+	private final int maxConjunctionSize;
+
+	public BlockingSchemeLearner(BlockingPlanEstimator estimator,
+			List<KeyFunction> keyFunctions, int maxConjunctionSize) {
+		if (estimator.getNumGoldMatches() == 0) {
+			throw new IllegalArgumentException("Learning a blocking scheme needs "
+					+ "labeled matches");
+		}
+		if (keyFunctions.isEmpty() || maxConjunctionSize < 1) {
+			throw new IllegalArgumentException("Learning a blocking scheme needs key "
+					+ "functions and a positive conjunction size");
+		}
+		this.estimator = estimator;
+		this.keyFunctions = new ArrayList<KeyFunction>(keyFunctions);
+		this.maxConjunctionSize = maxConjunctionSize;
+	}
+
+	public BlockingSchemeLearner(BlockingPlanEstimator estimator) {
+		this(estimator, getDefaultKeyFunctions(), DEFAULT_MAX_CONJUNCTION_SIZE);
+	}
+
+	public static List<KeyFunction> getDefaultKeyFunctions() {
+		List<KeyFunction> keyFunctions = new ArrayList<KeyFunction>();
+		keyFunctions.add(KeyFunctions.exact());
+		keyFunctions.add(KeyFunctions.upc());
+		keyFunctions.add(KeyFunctions.mpn());
+		keyFunctions.add(KeyFunctions.soundex());
+		keyFunctions.add(KeyFunctions.firstTokens(1));
+		keyFunctions.add(KeyFunctions.firstTokens(2));
+		return keyFunctions;
+	}
+
+	private static class Candidate {
+		private final BlockingPlan plan;
+		private final BitSet matches;
+
+		Candidate(BlockingPlan plan, BitSet matches) {
+			this.plan = plan;
+			this.matches = matches;
+		}
+	}
+
+	public BlockingScheme learn(long maxPairs) {
+		List<Candidate> candidates = getCandidates();
+
+		List<BlockingPlan> plans = new ArrayList<BlockingPlan>();
+		BitSet kept = new BitSet();
+		long pairs = 0;
+		while (true) {
+			Candidate best = null;
+			double bestGain = 0.0;
+			for (Candidate candidate : candidates) {
+				long candidatePairs = candidate.plan.getPredictedPairs();
+				if (pairs + candidatePairs > maxPairs) {
+					continue;
+				}
+				BitSet newMatches = (BitSet) candidate.matches.clone();
+				newMatches.andNot(kept);
+				if (newMatches.isEmpty()) {
+					continue;
+				}
+				double gain = (double) newMatches.cardinality() / Math.max(1, candidatePairs);
+				if (gain > bestGain) {
+					best = candidate;
+					bestGain = gain;
+				}
+			}
+			if (null == best) {
+				break;
+			}
+			plans.add(best.plan);
+			kept.or(best.matches);
+			pairs += best.plan.getPredictedPairs();
+			candidates.remove(best);
+		}
+		return new BlockingScheme(plans, pairs,
+				(double) kept.cardinality() / estimator.getNumGoldMatches());
+	}
+
+	private List<Candidate> getCandidates() {
+		List<String> names = estimator.getCandidateAttributeNames();
+		List<Candidate> candidates = new ArrayList<Candidate>();
+		int numPredicates = names.size() * keyFunctions.size();
+		int[] predicates = new int[maxConjunctionSize];
+		for (int size = 1; size <= Math.min(maxConjunctionSize, names.size()); size++) {
+			addCandidates(names, numPredicates, predicates, 0, size, 0, candidates);
+		}
+		return candidates;
+	}
+
+	// enumerates the conjunctions of predicates on increasing, distinct attributes
+	private void addCandidates(List<String> names, int numPredicates, int[] predicates,
+			int depth, int size, int from, List<Candidate> candidates) {
+		if (depth == size) {
+			String[] attributeNames = new String[size];
+			KeyFunction[] conjunction = new KeyFunction[size];
+			for (int i = 0; i < size; i++) {
+				attributeNames[i] = names.get(predicates[i] / keyFunctions.size());
+				conjunction[i] = keyFunctions.get(predicates[i] % keyFunctions.size());
+			}
+			BitSet matches = estimator.getKeptGoldMatches(attributeNames, attributeNames,
+					conjunction);
+			// a conjunction keeping no match is never chosen
+			if (!matches.isEmpty()) {
+				candidates.add(new Candidate(estimator.estimate(attributeNames, attributeNames,
+						conjunction), matches));
+			}
+			return;
+		}
+		for (int predicate = from; predicate < numPredicates; predicate++) {
+			predicates[depth] = predicate;
+			int nextAttribute = (predicate / keyFunctions.size() + 1) * keyFunctions.size();
+			addCandidates(names, numPredicates, predicates, depth + 1, size, nextAttribute,
+					candidates);
+		}
+	}
+}
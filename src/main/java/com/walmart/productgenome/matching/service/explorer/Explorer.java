@@ -4,9 +4,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.walmart.productgenome.matching.models.Constants;
 import com.walmart.productgenome.matching.models.data.Attribute;
 import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Dictionary;
 import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
 
 /*
  * Generate Table and Attribute Statistics.
@@ -45,12 +48,20 @@ public class Explorer {
 	}
 	
 	public static AttrStats getAttrStats(Table table, Attribute attr, int topKFreqs, int maxNumValues){
+		Dictionary dictionary = table.getDictionary(attr);
+		if (null != dictionary) {
+			return getAttrStats(attr.getType(), getCodeFrequencyAnalysis(table, dictionary),
+			    topKFreqs, maxNumValues);
+		}
 		return getAttrStats(attr.getType(), table.getAllValuesForAttribute(attr), topKFreqs, maxNumValues);
 	}
 	
 	public static AttrStats getAttrStats(Type type, List<Object> values, int topKFreqs, int maxNumValues) {
-	  
-	  FrequencyAnalyzer frequencyAnalyzer = getAttrValueFrequencyAnalysis(values);
+	  return getAttrStats(type, getAttrValueFrequencyAnalysis(values), topKFreqs, maxNumValues);
+	}
+	
+	private static AttrStats getAttrStats(Type type, FrequencyAnalyzer frequencyAnalyzer,
+	    int topKFreqs, int maxNumValues) {
     
     AttrStats attrStats = new AttrStats(type,
                                         frequencyAnalyzer.getTotalValues(), frequencyAnalyzer.getTotalMissing(),
@@ -76,6 +87,37 @@ public class Explorer {
 		return frequencyAnalyzer;
 	}
 
+	/*
+	 * Count the codes of a dictionary-encoded attribute, and input every
+	 * distinct value once with its count.
+	 */
+	private static FrequencyAnalyzer getCodeFrequencyAnalysis(Table table, Dictionary dictionary) {
+		
+		int[] counts = new int[dictionary.size()];
+		int numMissing = 0;
+		for (Tuple tuple : table.getAllTuples()) {
+			int code = dictionary.getCode(tuple);
+			if (code == Dictionary.NO_CODE) {
+				numMissing++;
+			}
+			else {
+				counts[code]++;
+			}
+		}
+		
+		FrequencyAnalyzer frequencyAnalyzer = new FrequencyAnalyzer();
+		for (int code = 0; code < counts.length; code++) {
+			if (counts[code] > 0) {
+				frequencyAnalyzer.addValue(dictionary.getValue(code), counts[code]);
+			}
+		}
+		if (numMissing > 0) {
+			frequencyAnalyzer.addValue(Constants.MISSING_VALUE, numMissing);
+		}
+		
+		return frequencyAnalyzer;
+	}
+
   public static AttrStats getAttrStats(List<Object> values, int topKFreq,
       int maxNumValues) {
     // Note that for Attribute combinations we will have an attribute with null type.
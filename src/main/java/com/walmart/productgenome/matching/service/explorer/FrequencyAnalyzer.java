@@ -46,8 +46,13 @@ public class FrequencyAnalyzer {
 	
 	// Add a value to the list of values.
 	public void addValue(Object value) {
+		addValue(value, 1);
+	}
+	
+	// Add a value that occurs times times, e.g. once per dictionary code.
+	public void addValue(Object value, int times) {
 		
-		setTotalValues(totalValues + 1);
+		setTotalValues(totalValues + times);
 		
 		Integer count = valueToFreq.get(value);
 		if (count == null) {
@@ -57,16 +62,16 @@ public class FrequencyAnalyzer {
     // Note: Will convert all types to String.
 		// to get token length and average length.
 		String strValue = String.valueOf(value);
-		setAvgLength((avgLength*(totalValues - 1) + 
-		              strValue.length())/
+		setAvgLength((avgLength*(totalValues - times) + 
+		              strValue.length()*(double)times)/
 		              (double)totalValues);
 		
-		setAvgNumTokens((avgNumTokens*(totalValues - 1) + 
-		                getTokens(strValue).length)/
+		setAvgNumTokens((avgNumTokens*(totalValues - times) + 
+		                getTokens(strValue).length*(double)times)/
 		                (double)totalValues);
 		
-		updateValueToFreq(value, count);
-		updateFreqToValues(value, count);
+		updateValueToFreq(value, count, times);
+		updateFreqToValues(value, count, times);
 	}
 	
 	public int getTotalValues() {
@@ -95,6 +100,11 @@ public class FrequencyAnalyzer {
 	  return 0;
 	}
 	
+	// the full value histogram, e.g. to estimate the size of an equi-join
+	public Map<Object, Integer> getValueFrequencies() {
+	  return Collections.unmodifiableMap(valueToFreq);
+	}
+	
 	public Set<Object> getValuesWithFreq(int freq) {
 	  if (freqToValues.containsKey(freq)){
 	    return freqToValues.get(freq);
@@ -147,22 +157,22 @@ public class FrequencyAnalyzer {
 		return topKFrequencies;
 	}
 	
-	private void updateValueToFreq(Object value, int count) {
-		valueToFreq.put(value, count + 1);
+	private void updateValueToFreq(Object value, int count, int times) {
+		valueToFreq.put(value, count + times);
 	}
 	
-	private void updateFreqToValues(Object value, int count) {
+	private void updateFreqToValues(Object value, int count, int times) {
 		
 		if (count > 0){
 			freqToValues.get(count).remove(value);
 		} 
 		
-		if (!freqToValues.containsKey(count + 1)) {
+		if (!freqToValues.containsKey(count + times)) {
 			Set<Object> valueSet = new HashSet<Object>();
-			freqToValues.put(count + 1, valueSet);
+			freqToValues.put(count + times, valueSet);
 		}
 			
-		freqToValues.get(count + 1).add(value);
+		freqToValues.get(count + times).add(value);
 	}
 	
 	private void setTotalValues(int value) {
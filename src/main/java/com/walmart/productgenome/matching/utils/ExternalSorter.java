@@ -0,0 +1,222 @@
+package com.walmart.productgenome.matching.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/*
+ * Sorts an arbitrary number of records within a bounded amount of memory.
+ *
+ * Records are buffered in memory until the buffer holds maxRecordsInMemory
+ * records. The buffer is then sorted and spilled to a temporary run file.
+ * Iterating over the sorter merges the runs (and whatever is left in the
+ * buffer) with a k-way merge. If the input never exceeds the memory budget
+ * the records are sorted in memory and no file is written.
+ *
+ * The buffer is sorted with Arrays.parallelSort, on all the cores. The sort
+ * is stable: records that compare equal come out in insertion order.
+ */
+public class ExternalSorter<T> {
+
+	/*
+	 * Writes and reads the records of the run files.
+	 */
+	public interface Codec<T> {
+		void write(DataOutput out, T record) throws IOException;
+		T read(DataInput in) throws IOException;
+	}
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Comparator<T> comparator;
+	private final Codec<T> codec;
+	private final int maxRecordsInMemory;
+	private final File tempDir;
+	private final List<File> runs = new ArrayList<File>();
+	private final List<DataInputStream> openRuns = new ArrayList<DataInputStream>();
+	private List<T> buffer = new ArrayList<T>();
+	private long size = 0;
+
+	public ExternalSorter(Comparator<T> comparator, Codec<T> codec, int maxRecordsInMemory) {
+		this(comparator, codec, maxRecordsInMemory, null);
+	}
+
+	// tempDir may be null, in which case the default temporary-file directory is used
+	public ExternalSorter(Comparator<T> comparator, Codec<T> codec,
+			int maxRecordsInMemory, File tempDir) {
+		if (maxRecordsInMemory < 1) {
+			throw new IllegalArgumentException("Memory budget must be at least one record: "
+					+ maxRecordsInMemory);
+		}
+		this.comparator = comparator;
+		this.codec = codec;
+		this.maxRecordsInMemory = maxRecordsInMemory;
+		this.tempDir = tempDir;
+	}
+
+	public void add(T record) throws IOException {
+		buffer.add(record);
+		size++;
+		if (buffer.size() >= maxRecordsInMemory) {
+			spill();
+		}
+	}
+
+	public long size() {
+		return size;
+	}
+
+	public int getNumRuns() {
+		return runs.size();
+	}
+
+	/*
+	 * Returns the records in sorted order. Must be called once, after all the
+	 * records have been added. The run files are deleted by close().
+	 */
+	public Iterator<T> sortedIterator() throws IOException {
+		if (runs.isEmpty()) {
+			sortBuffer();
+			List<T> sorted = buffer;
+			buffer = new ArrayList<T>();
+			return sorted.iterator();
+		}
+		if (!buffer.isEmpty()) {
+			spill();
+		}
+		return new MergeIterator();
+	}
+
+	public void close() {
+		for (DataInputStream in : openRuns) {
+			try {
+				in.close();
+			}
+			catch (IOException e) {
+				// the run file is deleted anyway
+			}
+		}
+		openRuns.clear();
+		for (File run : runs) {
+			run.delete();
+		}
+		runs.clear();
+		buffer.clear();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void sortBuffer() {
+		T[] records = (T[]) buffer.toArray();
+		Arrays.parallelSort(records, comparator);
+		for (int i = 0; i < records.length; i++) {
+			buffer.set(i, records[i]);
+		}
+	}
+
+	private void spill() throws IOException {
+		sortBuffer();
+		File run = File.createTempFile("sort-run-", ".bin", tempDir);
+		run.deleteOnExit();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(run), BUFFER_SIZE));
+		try {
+			for (T record : buffer) {
+				codec.write(out, record);
+			}
+		}
+		finally {
+			out.close();
+		}
+		runs.add(run);
+		buffer.clear();
+	}
+
+	/*
+	 * Head record of a run, ordered by the record and then by the run number
+	 * so that the merge keeps the insertion order of equal records.
+	 */
+	private class RunCursor {
+		final int runNumber;
+		final DataInputStream in;
+		T head;
+
+		RunCursor(int runNumber, File run) throws IOException {
+			this.runNumber = runNumber;
+			this.in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(run), BUFFER_SIZE));
+			openRuns.add(in);
+		}
+
+		boolean advance() throws IOException {
+			try {
+				head = codec.read(in);
+				return true;
+			}
+			catch (EOFException e) {
+				in.close();
+				head = null;
+				return false;
+			}
+		}
+	}
+
+	private class MergeIterator implements Iterator<T> {
+
+		private final PriorityQueue<RunCursor> heap;
+
+		MergeIterator() throws IOException {
+			heap = new PriorityQueue<RunCursor>(runs.size(), new Comparator<RunCursor>() {
+				public int compare(RunCursor c1, RunCursor c2) {
+					int cmp = comparator.compare(c1.head, c2.head);
+					return cmp != 0 ? cmp : c1.runNumber - c2.runNumber;
+				}
+			});
+			for (int i = 0; i < runs.size(); i++) {
+				RunCursor cursor = new RunCursor(i, runs.get(i));
+				if (cursor.advance()) {
+					heap.add(cursor);
+				}
+			}
+		}
+
+		public boolean hasNext() {
+			return !heap.isEmpty();
+		}
+
+		public T next() {
+			RunCursor cursor = heap.poll();
+			if (null == cursor) {
+				throw new NoSuchElementException();
+			}
+			T record = cursor.head;
+			try {
+				if (cursor.advance()) {
+					heap.add(cursor);
+				}
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Failed to read sorted run", e);
+			}
+			return record;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.walmart.productgenome.matching.utils;
+
+/*
+ * Set of primitive longs with open addressing and linear probing.
+ *
+ * Takes 8 to 16 bytes per element, against some 50 bytes for a
+ * HashSet<Long>, which matters when deduplicating hundreds of millions of
+ * candidate pairs encoded as (ordinal1 << 32 | ordinal2).
+ */
+public class LongHashSet {
+
+	private static final int MIN_CAPACITY = 16;
+
+	// 0 marks an empty slot, so the 0 key is kept aside
+	private long[] slots;
+	private boolean containsZero;
+	private int size;
+
+	public LongHashSet() {
+		this(MIN_CAPACITY);
+	}
+
+	public LongHashSet(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity / 2 < expectedSize) {
+			capacity <<= 1;
+		}
+		slots = new long[capacity];
+	}
+
+	// returns true if the value was not in the set
+	public boolean add(long value) {
+		if (value == 0) {
+			if (containsZero) {
+				return false;
+			}
+			containsZero = true;
+			size++;
+			return true;
+		}
+		int mask = slots.length - 1;
+		int slot = hash(value) & mask;
+		while (slots[slot] != 0) {
+			if (slots[slot] == value) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = value;
+		size++;
+		// keep the load factor at most 1/2
+		if (size * 2 > slots.length) {
+			rehash(slots.length * 2);
+		}
+		return true;
+	}
+
+	public boolean contains(long value) {
+		if (value == 0) {
+			return containsZero;
+		}
+		int mask = slots.length - 1;
+		int slot = hash(value) & mask;
+		while (slots[slot] != 0) {
+			if (slots[slot] == value) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldSlots = slots;
+		slots = new long[capacity];
+		int mask = capacity - 1;
+		for (long value : oldSlots) {
+			if (value != 0) {
+				int slot = hash(value) & mask;
+				while (slots[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = value;
+			}
+		}
+	}
+
+	// finalization mix of MurmurHash3
+	private static int hash(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return (int) value;
+	}
+}
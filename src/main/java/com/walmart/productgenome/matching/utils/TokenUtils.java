@@ -0,0 +1,29 @@
+package com.walmart.productgenome.matching.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+public class TokenUtils {
+
+	private static final Pattern TOKEN_DELIMITER = Pattern.compile("[^\\p{Alnum}]+");
+
+	/**
+	 * Lowercases the value and splits it on non-alphanumeric characters.
+	 * Returns the distinct tokens in the order of their first occurrence.
+	 */
+	public static List<String> getDistinctTokens(String value) {
+		Set<String> tokens = new LinkedHashSet<String>();
+		if (null == value) {
+			return new ArrayList<String>(tokens);
+		}
+		for (String token : TOKEN_DELIMITER.split(value.toLowerCase())) {
+			if (!token.isEmpty()) {
+				tokens.add(token);
+			}
+		}
+		return new ArrayList<String>(tokens);
+	}
+}
@@ -0,0 +1,174 @@
+package com.walmart.productgenome.matching.daos;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.Constants;
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.utils.FileUtils;
+
+public class BlockingIndexDaoTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute brand = new Attribute("brand", Type.TEXT);
+
+  List<Attribute> attrs;
+  String projectName = "blocking_index_test";
+  File projectDir = new File(Constants.ROOT_DIR + projectName);
+  File tableFile = new File(projectDir, "walmart" + Constants.TABLE_EXTENSION);
+  File indexFile = new File(projectDir, Constants.BLOCKING_DIR_NAME + "/walmart.brand."
+      + BlockingIndexDao.EXACT_KEY_FUNCTION + Constants.INDEX_EXTENSION);
+
+  @Before
+  public void init() throws IOException {
+    attrs = new ArrayList<Attribute>();
+    attrs.add(id);
+    attrs.add(brand);
+    // no open project, so the table file is the saved table
+    assertNull(ProjectDao.open(projectName));
+    projectDir.mkdirs();
+    FileWriter writer = new FileWriter(tableFile);
+    writer.write("table");
+    writer.close();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (projectDir.exists()) {
+      FileUtils.deleteRecursive(projectDir);
+    }
+  }
+
+  // the table as it is loaded from its file
+  private Table table() {
+    String[] brands = {"apple", "sony", "apple", null, "lg", "sony"};
+    Table table = new Table("walmart", id, attrs, projectName);
+    for (int i = 0; i < brands.length; i++) {
+      Tuple tuple = new Tuple();
+      tuple.setAttributeValue(id, i + 1);
+      tuple.setAttributeValue(brand, brands[i]);
+      table.addTuple(tuple);
+    }
+    table.markMatchesFile();
+    return table;
+  }
+
+  private PostingIndex getIndex(Table table) throws IOException {
+    return BlockingIndexDao.getIndex(projectName, table, brand);
+  }
+
+  // the index has the ordinals of the tuples of every brand in the table
+  private void assertIndexOf(Table table, PostingIndex index) {
+    List<Tuple> tuples = table.getAllTuplesInOrder();
+    int numPostings = 0;
+    for (String key : new String[] {"apple", "sony", "lg", "samsung"}) {
+      List<Integer> expected = new ArrayList<Integer>();
+      for (int ordinal = 0; ordinal < tuples.size(); ordinal++) {
+        if (key.equals(tuples.get(ordinal).getAttributeValue(brand))) {
+          expected.add(ordinal);
+        }
+      }
+      int[] ordinals = index.get(key);
+      List<Integer> actual = new ArrayList<Integer>();
+      if (null != ordinals) {
+        for (int ordinal : ordinals) {
+          actual.add(ordinal);
+        }
+      }
+      assertEquals(key, expected, actual);
+      numPostings += actual.size();
+    }
+    assertTrue(numPostings > 0);
+  }
+
+  @Test
+  public void testSaveAndLoad() throws IOException {
+    Table table = table();
+    PostingIndex index = getIndex(table);
+    assertIndexOf(table, index);
+    assertTrue(indexFile.exists());
+
+    // another table loaded from the same file maps the saved index
+    assertTrue(indexFile.setLastModified(1000000L));
+    Table reloaded = table();
+    PostingIndex loaded = getIndex(reloaded);
+    assertNotSame(index, loaded);
+    assertIndexOf(reloaded, loaded);
+    assertEquals(1000000L, indexFile.lastModified());
+
+    // a changed table file gets a new index
+    assertTrue(tableFile.setLastModified(tableFile.lastModified() - 10000L));
+    Table changed = table();
+    assertIndexOf(changed, getIndex(changed));
+    assertFalse(1000000L == indexFile.lastModified());
+  }
+
+  @Test
+  public void testReuse() throws IOException {
+    Table table = table();
+    PostingIndex index = getIndex(table);
+    assertSame(index, getIndex(table));
+    assertSame(index, getIndex(table));
+  }
+
+  @Test
+  public void testTableChangedInMemory() throws IOException {
+    Table table = table();
+    PostingIndex index = getIndex(table);
+    assertTrue(indexFile.setLastModified(1000000L));
+
+    // trimmed in place
+    table.getRandomSample(3L);
+    PostingIndex trimmed = getIndex(table);
+    assertNotSame(index, trimmed);
+    assertIndexOf(table, trimmed);
+    assertSame(trimmed, getIndex(table));
+
+    // edited in place
+    table.getAllTuplesInOrder().get(0).setAttributeValue(brand, "samsung");
+    PostingIndex edited = getIndex(table);
+    assertNotSame(trimmed, edited);
+    assertIndexOf(table, edited);
+
+    // a table changed before its first lookup
+    Table other = table();
+    other.getTuple(2).setAttributeValue(brand, "lg");
+    assertIndexOf(other, getIndex(other));
+
+    // a table with a tuple added
+    Table added = table();
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(id, 7);
+    tuple.setAttributeValue(brand, "lg");
+    added.addTuple(tuple);
+    assertIndexOf(added, getIndex(added));
+
+    // a table built in memory
+    Table unmarked = new Table("walmart", id, attrs, projectName);
+    unmarked.addTuple(tuple);
+    assertIndexOf(unmarked, getIndex(unmarked));
+
+    // the saved index is still the one of the table file
+    assertEquals(1000000L, indexFile.lastModified());
+    Table reloaded = table();
+    assertIndexOf(reloaded, getIndex(reloaded));
+  }
+}
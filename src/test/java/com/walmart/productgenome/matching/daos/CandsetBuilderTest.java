@@ -0,0 +1,137 @@
+package com.walmart.productgenome.matching.daos;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.models.loaders.TableLoader;
+
+public class CandsetBuilderTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute title = new Attribute("title", Type.TEXT);
+
+  Table table1;
+  Table table2;
+
+  @Before
+  public void init() {
+    List<Attribute> attrs = new ArrayList<Attribute>();
+    attrs.add(id);
+    attrs.add(title);
+
+    table1 = new Table("walmart", id, attrs, "dummyProj");
+    table1.addTuple(tuple(1, "Apple iPod nano, 8GB"));
+    table1.addTuple(tuple(2, "Samsung \"Galaxy\" S5"));
+
+    table2 = new Table("vendor", id, attrs, "dummyProj");
+    table2.addTuple(tuple(10, "apple ipod nano"));
+    table2.addTuple(tuple(11, null));
+  }
+
+  private Tuple tuple(int idValue, String titleValue) {
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(id, idValue);
+    tuple.setAttributeValue(title, titleValue);
+    return tuple;
+  }
+
+  private void addPairs(CandsetBuilder candsetBuilder) {
+    for (Tuple tuple1 : table1.getAllTuplesInOrder()) {
+      for (Tuple tuple2 : table2.getAllTuplesInOrder()) {
+        candsetBuilder.addPair(tuple1, tuple2);
+      }
+    }
+  }
+
+  @Test
+  public void testStreamedCandsetMatchesInMemoryCandset() throws IOException {
+    String[] names = new String[] {"title"};
+    CandsetBuilder inMemory = new CandsetBuilder(table1, table2, "candset",
+        names, names);
+    addPairs(inMemory);
+    Table expected = inMemory.getCandset();
+
+    File file = File.createTempFile("candset", ".table");
+    try {
+      CandsetBuilder streaming = new CandsetBuilder(table1, table2, "candset",
+          names, names, file.getAbsolutePath());
+      try {
+        addPairs(streaming);
+      }
+      finally {
+        streaming.close();
+      }
+      assertEquals(4, streaming.getNumPairs());
+
+      Table actual = TableLoader.loadTable(file.getAbsolutePath());
+      assertEquals(expected.getAttributes(), actual.getAttributes());
+      assertEquals(expected.getSize(), actual.getSize());
+      List<Tuple> expectedTuples = expected.getAllTuplesInOrder();
+      List<Tuple> actualTuples = actual.getAllTuplesInOrder();
+      for (int i = 0; i < expectedTuples.size(); i++) {
+        for (Attribute attribute : expected.getAttributes()) {
+          assertEquals(expectedTuples.get(i).getAttributeValue(attribute),
+              actualTuples.get(i).getAttributeValue(attribute));
+        }
+      }
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testStreamedCandsetIsNotHeldInMemory() throws IOException {
+    File file = File.createTempFile("candset", ".table");
+    try {
+      CandsetBuilder streaming = new CandsetBuilder(table1, table2, "candset",
+          null, null, file.getAbsolutePath());
+      streaming.close();
+      streaming.getCandset();
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testDeduplicatedPairsKeepTheirFirstPairId() {
+    CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+        "candset", null, null);
+    candsetBuilder.deduplicatePairs();
+    List<Tuple> tuples1 = table1.getAllTuplesInOrder();
+    List<Tuple> tuples2 = table2.getAllTuplesInOrder();
+    candsetBuilder.addPair(tuples1.get(0), tuples2.get(0));
+    candsetBuilder.addPair(tuples1.get(1), tuples2.get(0));
+    candsetBuilder.addPair(tuples1.get(0), tuples2.get(0));
+    candsetBuilder.addPair(tuples1.get(1), tuples2.get(1));
+    assertEquals(3, candsetBuilder.getNumPairs());
+
+    Table candset = candsetBuilder.getCandset();
+    Attribute id1 = candset.getAttributes().get(1);
+    Attribute id2 = candset.getAttributes().get(2);
+    List<Tuple> pairs = candset.getAllTuplesInOrder();
+    assertEquals(2, pairs.get(1).getAttributeValue(id1));
+    assertEquals(10, pairs.get(1).getAttributeValue(id2));
+    assertEquals(2, pairs.get(2).getAttributeValue(id1));
+    assertEquals(11, pairs.get(2).getAttributeValue(id2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPairOfTupleNotFromTableIsRejected() {
+    CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+        "candset", null, null);
+    candsetBuilder.addPair(tuple(3, "Sony Walkman"), table2.getAllTuplesInOrder().get(0));
+  }
+}
@@ -0,0 +1,133 @@
+package com.walmart.productgenome.matching.daos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+public class EditDistanceBlockerTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute mpn = new Attribute("mpn", Type.TEXT);
+
+  List<Attribute> attrs;
+
+  @Before
+  public void init() {
+    attrs = new ArrayList<Attribute>();
+    attrs.add(id);
+    attrs.add(mpn);
+  }
+
+  private Table table(String name, int firstId, String[] values) {
+    Table table = new Table(name, id, attrs, "dummyProj");
+    for (int i = 0; i < values.length; i++) {
+      Tuple tuple = new Tuple();
+      tuple.setAttributeValue(id, firstId + i);
+      tuple.setAttributeValue(mpn, values[i]);
+      table.addTuple(tuple);
+    }
+    return table;
+  }
+
+  // the "id1 id2" pairs of the candset
+  private Set<String> block(Table table1, Table table2, EditDistanceBlocker blocker) {
+    CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+        "candset", null, null);
+    blocker.block(table1, table2, mpn, mpn, candsetBuilder);
+    Table candset = candsetBuilder.getCandset();
+    Attribute id1 = candset.getAttributes().get(1);
+    Attribute id2 = candset.getAttributes().get(2);
+    Set<String> pairs = new HashSet<String>();
+    for (Tuple pair : candset.getAllTuplesInOrder()) {
+      pairs.add(pair.getAttributeValue(id1) + " " + pair.getAttributeValue(id2));
+    }
+    return pairs;
+  }
+
+  @Test
+  public void testMpnTypos() {
+    Table table1 = table("walmart", 1, new String[] {"MB123LL/A", "SM-G900V", "XYZ", null});
+    Table table2 = table("vendor", 10, new String[] {"MB132LLA", "SMG900", "XY", ""});
+    Set<String> pairs = block(table1, table2,
+        new EditDistanceBlocker(2, EditDistanceBlocker.DEFAULT_Q, KeyFunctions.mpn()));
+    Set<String> expected = new HashSet<String>();
+    expected.add("1 10");
+    expected.add("2 11");
+    expected.add("3 12");
+    assertEquals(expected, pairs);
+  }
+
+  @Test
+  public void testJoinMatchesTheCrossProduct() {
+    Random random = new Random(3);
+    String[] values1 = randomValues(300, random);
+    String[] values2 = randomValues(200, random);
+    Table table1 = table("walmart", 0, values1);
+    Table table2 = table("vendor", 1000, values2);
+    for (int q = 1; q <= 3; q++) {
+      for (int d = 0; d <= 3; d++) {
+        Set<String> expected = new HashSet<String>();
+        for (int i = 0; i < values1.length; i++) {
+          for (int j = 0; j < values2.length; j++) {
+            if (distance(values1[i], values2[j]) <= d) {
+              expected.add(i + " " + (1000 + j));
+            }
+          }
+        }
+        assertEquals(expected, block(table1, table2,
+            new EditDistanceBlocker(d, q, KeyFunctions.exact())));
+      }
+    }
+  }
+
+  @Test
+  public void testBandedDistance() {
+    assertTrue(EditDistanceBlocker.isWithinDistance("kitten", "sitting", 3));
+    assertFalse(EditDistanceBlocker.isWithinDistance("kitten", "sitting", 2));
+    assertTrue(EditDistanceBlocker.isWithinDistance("", "ab", 2));
+    assertFalse(EditDistanceBlocker.isWithinDistance("abcd", "dcba", 3));
+  }
+
+  private static String[] randomValues(int count, Random random) {
+    String[] values = new String[count];
+    for (int i = 0; i < count; i++) {
+      StringBuilder value = new StringBuilder();
+      int length = 1 + random.nextInt(7);
+      for (int j = 0; j < length; j++) {
+        value.append((char) ('a' + random.nextInt(3)));
+      }
+      values[i] = value.toString();
+    }
+    return values;
+  }
+
+  private static int distance(String s1, String s2) {
+    int[][] d = new int[s1.length() + 1][s2.length() + 1];
+    for (int i = 0; i <= s1.length(); i++) {
+      for (int j = 0; j <= s2.length(); j++) {
+        if (i == 0 || j == 0) {
+          d[i][j] = i + j;
+        }
+        else {
+          int cost = s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1;
+          d[i][j] = Math.min(d[i - 1][j - 1] + cost, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+        }
+      }
+    }
+    return d[s1.length()][s2.length()];
+  }
+}
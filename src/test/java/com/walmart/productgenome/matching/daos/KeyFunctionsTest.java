@@ -0,0 +1,72 @@
+package com.walmart.productgenome.matching.daos;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+public class KeyFunctionsTest {
+
+  @Test
+  public void testUpcKeysAgreeAcrossFormats() {
+    KeyFunction upc = KeyFunctions.upc();
+    // 12 digits with a check digit, 13 digits with two leading digits
+    assertEquals("88513000119", upc.getKey("885130001195"));
+    assertEquals("88513000119", upc.getKey("0088513000119"));
+    assertEquals("88513000119", upc.getKey(885130001195L));
+    assertNull(upc.getKey("12345"));
+    assertNull(upc.getKey(null));
+  }
+
+  @Test
+  public void testMpnKeys() {
+    KeyFunction mpn = KeyFunctions.mpn();
+    assertEquals("MB123LLA", mpn.getKey("MB123LL/A"));
+    assertEquals("123", mpn.getKey("00123"));
+    assertNull(mpn.getKey("/-"));
+  }
+
+  @Test
+  public void testSoundex() {
+    assertEquals("R163", KeyFunctions.soundex("Robert"));
+    assertEquals("R163", KeyFunctions.soundex("Rupert"));
+    assertEquals("A261", KeyFunctions.soundex("Ashcraft"));
+    assertEquals("T522", KeyFunctions.soundex("Tymczak"));
+    assertEquals("P236", KeyFunctions.soundex("Pfister"));
+    assertNull(KeyFunctions.soundex("123"));
+  }
+
+  @Test
+  public void testFirstTokensAndNumericBuckets() {
+    assertEquals("apple ipod", KeyFunctions.firstTokens(2).getKey("Apple iPod nano"));
+    assertEquals("apple", KeyFunctions.firstTokens(2).getKey("apple"));
+    KeyFunction bucket = KeyFunctions.numericBucket(10.0);
+    assertEquals("1", bucket.getKey("$19.99"));
+    assertEquals("1", bucket.getKey(10));
+    assertNull(bucket.getKey("n/a"));
+  }
+
+  @Test
+  public void testIndexStoresKeys() {
+    Attribute upc = new Attribute("upc", Type.TEXT);
+    List<Tuple> tuples = new ArrayList<Tuple>();
+    String[] values = new String[] {"885130001195", "0088513000119", "bad", null};
+    for (String value : values) {
+      Tuple tuple = new Tuple();
+      tuple.setAttributeValue(upc, value);
+      tuples.add(tuple);
+    }
+    PostingIndex index = PostingIndex.build(tuples, upc, KeyFunctions.upc());
+    assertEquals(1, index.size());
+    assertArrayEquals(new int[] {0, 1}, index.get("88513000119"));
+    assertNull(index.get("885130001195"));
+  }
+}
@@ -0,0 +1,139 @@
+package com.walmart.productgenome.matching.daos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+public class MetaBlockerTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute brand = new Attribute("brand", Type.TEXT);
+  Attribute title = new Attribute("title", Type.TEXT);
+
+  Table table1;
+  Table table2;
+  Table gold;
+  List<MetaBlocker.BlockSource> sources;
+
+  @Before
+  public void init() {
+    List<Attribute> attrs = new ArrayList<Attribute>();
+    attrs.add(id);
+    attrs.add(brand);
+    attrs.add(title);
+
+    table1 = new Table("walmart", id, attrs, "dummyProj");
+    table1.addTuple(tuple(1, "Generic", "red cotton shirt"));
+    table1.addTuple(tuple(2, "Generic", "blue denim jeans"));
+    table1.addTuple(tuple(3, "Acme", "red cotton shirt large"));
+    table1.addTuple(tuple(4, "Generic", "green wool hat"));
+
+    table2 = new Table("vendor", id, attrs, "dummyProj");
+    table2.addTuple(tuple(10, "Generic", "Red Cotton Shirt"));
+    table2.addTuple(tuple(11, "Generic", "denim jeans, blue"));
+    table2.addTuple(tuple(12, "Acme", "cotton socks"));
+
+    Attribute goldId = new Attribute("id", Type.INTEGER);
+    Attribute goldId1 = new Attribute("walmart.id", Type.INTEGER);
+    Attribute goldId2 = new Attribute("vendor.id", Type.INTEGER);
+    Attribute label = new Attribute("label", Type.INTEGER);
+    List<Attribute> goldAttrs = new ArrayList<Attribute>();
+    goldAttrs.add(goldId);
+    goldAttrs.add(goldId1);
+    goldAttrs.add(goldId2);
+    goldAttrs.add(label);
+    gold = new Table("gold", goldId, goldAttrs, "dummyProj");
+    int[][] matches = new int[][] {{1, 10}, {2, 11}, {4, 11}};
+    for (int i = 0; i < matches.length; i++) {
+      Tuple tuple = new Tuple();
+      tuple.setAttributeValue(goldId, i);
+      tuple.setAttributeValue(goldId1, matches[i][0]);
+      tuple.setAttributeValue(goldId2, matches[i][1]);
+      tuple.setAttributeValue(label, 1);
+      gold.addTuple(tuple);
+    }
+
+    sources = new ArrayList<MetaBlocker.BlockSource>();
+    sources.add(MetaBlocker.BlockSource.keys("brand", "brand", KeyFunctions.exact()));
+    sources.add(MetaBlocker.BlockSource.tokens("title", "title"));
+  }
+
+  private Tuple tuple(int idValue, String brandValue, String titleValue) {
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(id, idValue);
+    tuple.setAttributeValue(brand, brandValue);
+    tuple.setAttributeValue(title, titleValue);
+    return tuple;
+  }
+
+  private Set<String> getPairs(CandsetBuilder candsetBuilder) {
+    Table candset = candsetBuilder.getCandset();
+    Attribute id1 = candset.getAttributes().get(1);
+    Attribute id2 = candset.getAttributes().get(2);
+    Set<String> pairs = new LinkedHashSet<String>();
+    for (Tuple pair : candset.getAllTuplesInOrder()) {
+      pairs.add(pair.getAttributeValue(id1) + " " + pair.getAttributeValue(id2));
+    }
+    return pairs;
+  }
+
+  @Test
+  public void testPurgingAndCommonBlocksPruning() {
+    CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2, "candset",
+        null, null);
+    MetaBlockingReport report = new MetaBlocker(sources, 4, MetaBlocker.Weighting.CBS)
+        .block(table1, table2, gold, candsetBuilder);
+
+    Set<String> expected = new LinkedHashSet<String>();
+    expected.add("1 10");
+    expected.add("3 10");
+    expected.add("2 11");
+    expected.add("3 12");
+    assertEquals(expected, getPairs(candsetBuilder));
+
+    // brand=Generic is the only block over 4 pairs
+    assertEquals(8, report.getNumBlocks());
+    assertEquals(1, report.getNumPurgedBlocks());
+    assertEquals(18, report.getBlockPairs());
+    assertEquals(6, report.getPurgedPairs());
+    assertEquals(Long.valueOf(6), report.getHeaviestBlocks().values().iterator().next());
+    assertEquals(5, report.getGraphEdges());
+    assertEquals(4, report.getCandsetPairs());
+
+    // (4, 11) only shared the purged block
+    assertTrue(report.hasRecall());
+    assertEquals(1.0, report.getBlockingRecall(), 1e-9);
+    assertEquals(2.0 / 3, report.getRecall(), 1e-9);
+    assertEquals(1.0 / 3, report.getPurgingRecallLoss(), 1e-9);
+    assertEquals(1.0 / 3, report.getRecallLoss(), 1e-9);
+  }
+
+  @Test
+  public void testJaccardPruning() {
+    CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2, "candset",
+        null, null);
+    MetaBlockingReport report = new MetaBlocker(sources, 4, MetaBlocker.Weighting.JACCARD)
+        .block(table1, table2, null, candsetBuilder);
+
+    Set<String> expected = new LinkedHashSet<String>();
+    expected.add("1 10");
+    expected.add("2 11");
+    expected.add("3 12");
+    assertEquals(expected, getPairs(candsetBuilder));
+    assertFalse(report.hasRecall());
+    assertTrue(Double.isNaN(report.getRecallLoss()));
+  }
+}
@@ -0,0 +1,215 @@
+package com.walmart.productgenome.matching.daos;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.Constants;
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.utils.FileUtils;
+import com.walmart.productgenome.matching.utils.TokenUtils;
+
+public class MinHashBlockerTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute title = new Attribute("title", Type.TEXT);
+
+  List<Attribute> attrs;
+  String projectName = "minhash_test";
+  File projectDir = new File(Constants.ROOT_DIR + projectName);
+
+  @Before
+  public void init() {
+    attrs = new ArrayList<Attribute>();
+    attrs.add(id);
+    attrs.add(title);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (projectDir.exists()) {
+      FileUtils.deleteRecursive(projectDir);
+    }
+  }
+
+  private Table table(String name, int firstId, String[] values) {
+    Table table = new Table(name, id, attrs, "dummyProj");
+    for (int i = 0; i < values.length; i++) {
+      Tuple tuple = new Tuple();
+      tuple.setAttributeValue(id, firstId + i);
+      tuple.setAttributeValue(title, values[i]);
+      table.addTuple(tuple);
+    }
+    return table;
+  }
+
+  // the "id1 id2" pairs of the candset
+  private Set<String> block(Table table1, Table table2, MinHashBlocker blocker) {
+    CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+        "candset", null, null);
+    blocker.block(table1, table2, blocker.computeSignatures(table1, title),
+        blocker.computeSignatures(table2, title), candsetBuilder);
+    Table candset = candsetBuilder.getCandset();
+    Attribute id1 = candset.getAttributes().get(1);
+    Attribute id2 = candset.getAttributes().get(2);
+    Set<String> pairs = new HashSet<String>();
+    for (Tuple pair : candset.getAllTuplesInOrder()) {
+      pairs.add(pair.getAttributeValue(id1) + " " + pair.getAttributeValue(id2));
+    }
+    return pairs;
+  }
+
+  @Test
+  public void testSimilarTitles() {
+    Table table1 = table("walmart", 1, new String[] {
+        "apple iphone 6 16gb gold unlocked", "samsung galaxy s5 black", "", null});
+    Table table2 = table("vendor", 10, new String[] {
+        "Apple iPhone 6 (16GB, Gold) - unlocked", "sony xperia z3 black", "", null});
+    Set<String> expected = new HashSet<String>();
+    expected.add("1 10");
+    assertEquals(expected, block(table1, table2,
+        MinHashBlocker.forThreshold(0.5, 0.99, MinHashBlocker.DEFAULT_NUM_HASHES,
+            MinHashBlocker.DEFAULT_SEED)));
+  }
+
+  @Test
+  public void testJoinMatchesTheCrossProduct() {
+    Random random = new Random(5);
+    String[] values1 = randomValues(300, random);
+    String[] values2 = randomValues(200, random);
+    // copies and near copies of some table1 values
+    for (int j = 0; j < 60; j++) {
+      values2[j] = values1[j * 5] + (j % 2 == 0 ? "" : " w" + j);
+    }
+    Table table1 = table("walmart", 0, values1);
+    Table table2 = table("vendor", 1000, values2);
+    double threshold = 0.5;
+    Set<String> pairs = block(table1, table2, MinHashBlocker.forThreshold(threshold, 0.99,
+        MinHashBlocker.DEFAULT_NUM_HASHES, MinHashBlocker.DEFAULT_SEED));
+
+    // the estimates of the similarity are off by a few hundredths: all the
+    // pairs clearly above the threshold are found, nearly all of those a bit
+    // above it, and none clearly below it
+    int numAbove = 0;
+    int numAboveFound = 0;
+    for (int i = 0; i < values1.length; i++) {
+      for (int j = 0; j < values2.length; j++) {
+        double jaccard = jaccard(values1[i], values2[j]);
+        boolean found = pairs.contains(i + " " + (1000 + j));
+        if (jaccard >= threshold + 0.2) {
+          assertTrue(i + " " + j + " " + jaccard, found);
+        }
+        if (jaccard < threshold - 0.2) {
+          assertFalse(i + " " + j + " " + jaccard, found);
+        }
+        if (jaccard >= threshold + 0.1) {
+          numAbove++;
+          numAboveFound += found ? 1 : 0;
+        }
+      }
+    }
+    assertTrue(numAbove >= 60);
+    assertTrue(numAboveFound + " of " + numAbove, numAboveFound >= 0.95 * numAbove);
+  }
+
+  @Test
+  public void testForThreshold() {
+    MinHashBlocker blocker = MinHashBlocker.forThreshold(0.8, 0.95, 128, 1);
+    assertTrue(blocker.getNumHashes() <= 128);
+    double bandMatch = Math.pow(0.8, blocker.getRows());
+    assertTrue(1.0 - Math.pow(1.0 - bandMatch, blocker.getBands()) >= 0.95);
+  }
+
+  @Test
+  public void testSignaturesArePersisted() throws IOException {
+    Table table = table("walmart", 1, new String[] {"a b c", null, "b c d", "x"});
+    table.markMatchesFile();
+    assertNull(ProjectDao.open(projectName));
+    File tableFile = new File(projectDir, "walmart" + Constants.TABLE_EXTENSION);
+    projectDir.mkdirs();
+    FileWriter writer = new FileWriter(tableFile);
+    writer.write("table");
+    writer.close();
+    File signatureFile = new File(projectDir, Constants.BLOCKING_DIR_NAME + "/walmart.title"
+        + Constants.MINHASH_EXTENSION);
+
+    int[][] expected = MinHashBlocker.computeSignatures(table, title, 16, 7);
+    assertNull(expected[1]);
+    assertArrayEquals(expected, MinHashSignatureDao.getSignatures(projectName, table,
+        title, 16, 7));
+    assertTrue(signatureFile.exists());
+
+    // read back from the file, which is not rewritten
+    assertTrue(signatureFile.setLastModified(1000000L));
+    assertArrayEquals(expected, MinHashSignatureDao.getSignatures(projectName, table,
+        title, 16, 7));
+    assertEquals(1000000L, signatureFile.lastModified());
+
+    // other hash functions are recomputed
+    assertArrayEquals(MinHashBlocker.computeSignatures(table, title, 8, 7),
+        MinHashSignatureDao.getSignatures(projectName, table, title, 8, 7));
+    assertArrayEquals(MinHashBlocker.computeSignatures(table, title, 8, 3),
+        MinHashSignatureDao.getSignatures(projectName, table, title, 8, 3));
+
+    // and so are the signatures of a changed table file
+    assertTrue(signatureFile.setLastModified(1000000L));
+    assertTrue(tableFile.setLastModified(tableFile.lastModified() - 10000L));
+    assertArrayEquals(MinHashBlocker.computeSignatures(table, title, 8, 3),
+        MinHashSignatureDao.getSignatures(projectName, table, title, 8, 3));
+    assertFalse(1000000L == signatureFile.lastModified());
+
+    // a table changed in memory does not match its file
+    assertTrue(signatureFile.setLastModified(1000000L));
+    table.getTuple(4).setAttributeValue(title, "y z");
+    assertArrayEquals(MinHashBlocker.computeSignatures(table, title, 8, 3),
+        MinHashSignatureDao.getSignatures(projectName, table, title, 8, 3));
+    assertEquals(1000000L, signatureFile.lastModified());
+
+    // nor does a table built in memory with one more tuple
+    Table added = table("walmart", 1, new String[] {"a b c", null, "b c d", "x", "e f"});
+    assertArrayEquals(MinHashBlocker.computeSignatures(added, title, 8, 3),
+        MinHashSignatureDao.getSignatures(projectName, added, title, 8, 3));
+    assertEquals(1000000L, signatureFile.lastModified());
+  }
+
+  // titles of a few words out of a small vocabulary
+  private static String[] randomValues(int count, Random random) {
+    String[] values = new String[count];
+    for (int i = 0; i < count; i++) {
+      StringBuilder value = new StringBuilder();
+      int length = 2 + random.nextInt(6);
+      for (int j = 0; j < length; j++) {
+        value.append(" t").append(random.nextInt(30));
+      }
+      values[i] = value.toString();
+    }
+    return values;
+  }
+
+  private static double jaccard(String s1, String s2) {
+    Set<String> tokens1 = new HashSet<String>(TokenUtils.getDistinctTokens(s1));
+    Set<String> tokens2 = new HashSet<String>(TokenUtils.getDistinctTokens(s2));
+    Set<String> union = new HashSet<String>(tokens1);
+    union.addAll(tokens2);
+    tokens1.retainAll(tokens2);
+    return (double) tokens1.size() / union.size();
+  }
+}
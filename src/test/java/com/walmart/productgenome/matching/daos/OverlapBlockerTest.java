@@ -0,0 +1,87 @@
+package com.walmart.productgenome.matching.daos;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+public class OverlapBlockerTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute title = new Attribute("title", Type.TEXT);
+
+  Table table1;
+  Table table2;
+
+  @Before
+  public void init() {
+    List<Attribute> attrs = new ArrayList<Attribute>();
+    attrs.add(id);
+    attrs.add(title);
+
+    table1 = new Table("walmart", id, attrs, "dummyProj");
+    table1.addTuple(tuple(1, "Apple iPod nano 8GB Blue"));
+    table1.addTuple(tuple(2, "Samsung Galaxy S5 16GB Black"));
+    table1.addTuple(tuple(3, "Apple iPod touch 32GB"));
+    table1.addTuple(tuple(4, null));
+
+    table2 = new Table("vendor", id, attrs, "dummyProj");
+    table2.addTuple(tuple(10, "apple ipod nano 8gb blue"));
+    table2.addTuple(tuple(11, "Apple iPod nano 8GB - Pink"));
+    table2.addTuple(tuple(12, "Galaxy S5 Samsung black 16GB"));
+    table2.addTuple(tuple(13, ""));
+  }
+
+  private Tuple tuple(int idValue, String titleValue) {
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(id, idValue);
+    tuple.setAttributeValue(title, titleValue);
+    return tuple;
+  }
+
+  private Table block(OverlapBlocker.Measure measure, double threshold) {
+    CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+        "candset", new String[] {"title"}, null);
+    new OverlapBlocker(measure, threshold).block(table1, table2, title, title,
+        candsetBuilder);
+    return candsetBuilder.getCandset();
+  }
+
+  @Test
+  public void testJaccardThreshold() {
+    Table candset = block(OverlapBlocker.Measure.JACCARD, 0.6);
+    // {1,10} and {2,12} are identical token sets, {1,11} shares 4 of 6 tokens
+    assertEquals(3, candset.getSize());
+    Attribute id1 = candset.getAttributes().get(1);
+    Attribute id2 = candset.getAttributes().get(2);
+    Tuple first = candset.getTuple(1);
+    assertEquals(1, first.getAttributeValue(id1));
+    assertEquals(10, first.getAttributeValue(id2));
+    assertEquals("Apple iPod nano 8GB Blue",
+        first.getAttributeValue(candset.getAttributeByName("walmart.title")));
+  }
+
+  @Test
+  public void testHighJaccardThreshold() {
+    assertEquals(2, block(OverlapBlocker.Measure.JACCARD, 1.0).getSize());
+  }
+
+  @Test
+  public void testOverlapThreshold() {
+    // tuples 1 and 3 share "apple" and "ipod" with 10 and 11
+    assertEquals(5, block(OverlapBlocker.Measure.OVERLAP, 2).getSize());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidJaccardThreshold() {
+    new OverlapBlocker(OverlapBlocker.Measure.JACCARD, 1.5);
+  }
+}
@@ -0,0 +1,142 @@
+package com.walmart.productgenome.matching.daos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+public class ParallelProberTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute key = new Attribute("key", Type.INTEGER);
+  Attribute title = new Attribute("title", Type.TEXT);
+
+  ForkJoinPool pool = new ForkJoinPool(4);
+
+  @After
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  private Table table(String name, int firstId, int size, int numKeys, Random random) {
+    List<Attribute> attrs = new ArrayList<Attribute>();
+    attrs.add(id);
+    attrs.add(key);
+    attrs.add(title);
+    Table table = new Table(name, id, attrs, "dummyProj");
+    for (int i = 0; i < size; i++) {
+      Tuple tuple = new Tuple();
+      tuple.setAttributeValue(id, firstId + i);
+      tuple.setAttributeValue(key, random.nextInt(numKeys));
+      tuple.setAttributeValue(title, name + " " + i);
+      table.addTuple(tuple);
+    }
+    return table;
+  }
+
+  // pairs the tuples with equal keys, twice when repeat is set
+  private ParallelProber.Probe probe(Table table1, final boolean repeat) {
+    final Map<Object, List<Tuple>> index = new HashMap<Object, List<Tuple>>();
+    for (Tuple tuple : table1.getAllTuplesInOrder()) {
+      List<Tuple> tuples = index.get(tuple.getAttributeValue(key));
+      if (null == tuples) {
+        tuples = new ArrayList<Tuple>();
+        index.put(tuple.getAttributeValue(key), tuples);
+      }
+      tuples.add(tuple);
+    }
+    return new ParallelProber.Probe() {
+      public void probe(Tuple table2Tuple, ParallelProber.PairBuffer pairs) {
+        List<Tuple> tuples = index.get(table2Tuple.getAttributeValue(key));
+        if (null != tuples) {
+          for (int i = 0; i < (repeat ? 2 : 1); i++) {
+            for (Tuple tuple : tuples) {
+              pairs.add(tuple, table2Tuple);
+            }
+          }
+        }
+      }
+    };
+  }
+
+  private CandsetBuilder candsetBuilder(Table table1, Table table2, boolean deduplicate) {
+    CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2, "candset",
+        new String[] {"title"}, new String[] {"title"});
+    if (deduplicate) {
+      candsetBuilder.deduplicatePairs();
+    }
+    return candsetBuilder;
+  }
+
+  // the probe of the table2 tuples one after the other
+  private Table probeSequentially(Table table1, Table table2, ParallelProber.Probe probe,
+      boolean deduplicate) {
+    CandsetBuilder candsetBuilder = candsetBuilder(table1, table2, deduplicate);
+    for (Tuple tuple2 : table2.getAllTuplesInOrder()) {
+      for (Tuple tuple1 : pairsOf(probe, tuple2)) {
+        candsetBuilder.addPair(tuple1, tuple2);
+      }
+    }
+    return candsetBuilder.getCandset();
+  }
+
+  // the table1 tuples the probe pairs with tuple2
+  private List<Tuple> pairsOf(ParallelProber.Probe probe, Tuple tuple2) {
+    final List<Tuple> tuples1 = new ArrayList<Tuple>();
+    probe.probe(tuple2, new ParallelProber.PairBuffer() {
+      @Override
+      public void add(Tuple table1Tuple, Tuple table2Tuple) {
+        tuples1.add(table1Tuple);
+      }
+    });
+    return tuples1;
+  }
+
+  private void assertSameCandset(Table expected, Table actual) {
+    List<Tuple> expectedPairs = expected.getAllTuplesInOrder();
+    List<Tuple> actualPairs = actual.getAllTuplesInOrder();
+    assertEquals(expectedPairs.size(), actualPairs.size());
+    for (int i = 0; i < expectedPairs.size(); i++) {
+      assertEquals(i + 1, actualPairs.get(i).getAttributeValue(BlockingDao.PAIR_ID_ATTRIBUTE));
+      for (Attribute attribute : expected.getAttributes()) {
+        assertEquals(expectedPairs.get(i).getAttributeValue(attribute),
+            actualPairs.get(i).getAttributeValue(attribute));
+      }
+    }
+  }
+
+  @Test
+  public void testSameCandsetAsSequentialProbe() {
+    assertTrue(pool.getParallelism() > 1);
+    Random random = new Random(11);
+    Table table1 = table("walmart", 1, 300, 100, random);
+    Table table2 = table("vendor", 1001, 500, 100, random);
+    for (boolean deduplicate : new boolean[] {false, true}) {
+      for (boolean repeat : new boolean[] {false, true}) {
+        ParallelProber.Probe probe = probe(table1, repeat);
+        Table expected = probeSequentially(table1, table2, probe, deduplicate);
+        assertTrue(expected.getSize() > 1000);
+        // chunks of a few tuples, over several rounds, and a single chunk
+        for (int chunkSize : new int[] {1, 7, 1000}) {
+          CandsetBuilder candsetBuilder = candsetBuilder(table1, table2, deduplicate);
+          ParallelProber.run(table2.getAllTuplesInOrder(), probe, candsetBuilder, pool,
+              chunkSize);
+          assertSameCandset(expected, candsetBuilder.getCandset());
+        }
+      }
+    }
+  }
+}
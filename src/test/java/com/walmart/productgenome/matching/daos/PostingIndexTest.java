@@ -0,0 +1,135 @@
+package com.walmart.productgenome.matching.daos;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+public class PostingIndexTest {
+
+  Attribute brand = new Attribute("brand", Type.TEXT);
+
+  private Tuple tuple(String brandValue) {
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(brand, brandValue);
+    return tuple;
+  }
+
+  @Test
+  public void testBuild() {
+    List<Tuple> tuples = new ArrayList<Tuple>();
+    tuples.add(tuple("apple"));
+    tuples.add(tuple("samsung"));
+    tuples.add(tuple(""));
+    tuples.add(tuple("apple"));
+    tuples.add(tuple(null));
+
+    PostingIndex index = PostingIndex.build(tuples, brand);
+    assertEquals(2, index.size());
+    assertArrayEquals(new int[] {0, 3}, index.get("apple"));
+    assertArrayEquals(new int[] {1}, index.get("samsung"));
+    assertNull(index.get(""));
+  }
+
+  @Test
+  public void testBuildFromDictionary() {
+    Attribute id = new Attribute("id", Type.INTEGER);
+    List<Attribute> attrs = new ArrayList<Attribute>();
+    attrs.add(id);
+    attrs.add(brand);
+    Table table = new Table("t", id, attrs, "dummyProj", Table.Storage.COLUMNS);
+    String[] brands = {"Apple", "samsung", "", "apple", null, "APPLE"};
+    for (int i = 0; i < brands.length; i++) {
+      Tuple tuple = tuple(brands[i]);
+      tuple.setAttributeValue(id, i);
+      table.addTuple(tuple);
+    }
+    assertEquals(5, table.getDictionary(brand).size());
+
+    PostingIndex index = PostingIndex.build(table, brand, KeyFunctions.firstTokens(1));
+    PostingIndex expected = PostingIndex.build(table.getAllTuplesInOrder(), brand,
+        KeyFunctions.firstTokens(1));
+    assertEquals(expected.size(), index.size());
+    assertArrayEquals(new int[] {0, 3, 5}, index.get("apple"));
+    assertArrayEquals(expected.get("samsung"), index.get("samsung"));
+  }
+
+  @Test
+  public void testIntersect() {
+    assertArrayEquals(new int[] {3, 9},
+        PostingIndex.intersect(new int[][] {
+            {1, 3, 5, 7, 9, 11}, {3, 9}, {0, 2, 3, 4, 6, 8, 9, 10}}));
+    assertArrayEquals(new int[0],
+        PostingIndex.intersect(new int[][] {{1, 2}, {3, 4}}));
+  }
+
+  @Test
+  public void testIntersectRandomLists() {
+    Random random = new Random(0);
+    for (int trial = 0; trial < 100; trial++) {
+      int[][] lists = new int[3][];
+      TreeSet<Integer> expected = null;
+      for (int l = 0; l < lists.length; l++) {
+        TreeSet<Integer> values = new TreeSet<Integer>();
+        int n = random.nextInt(200);
+        for (int i = 0; i < n; i++) {
+          values.add(random.nextInt(300));
+        }
+        lists[l] = new int[values.size()];
+        int i = 0;
+        for (int value : values) {
+          lists[l][i++] = value;
+        }
+        if (null == expected) {
+          expected = values;
+        }
+        else {
+          expected.retainAll(values);
+        }
+      }
+      int[] actual = PostingIndex.intersect(lists);
+      assertEquals(expected.size(), actual.length);
+      int i = 0;
+      for (int value : expected) {
+        assertEquals(value, actual[i++]);
+      }
+    }
+  }
+
+  @Test
+  public void testIntersectIndexesInPlace() {
+    Attribute color = new Attribute("color", Type.TEXT);
+    Random random = new Random(3);
+    List<Tuple> tuples = new ArrayList<Tuple>();
+    for (int i = 0; i < 500; i++) {
+      Tuple tuple = tuple("b" + random.nextInt(5));
+      tuple.setAttributeValue(color, "c" + random.nextInt(8));
+      tuples.add(tuple);
+    }
+    PostingIndex brands = PostingIndex.build(tuples, brand);
+    PostingIndex colors = PostingIndex.build(tuples, color);
+    assertEquals(PostingIndex.NO_SLOT, brands.getSlot("x"));
+    for (int b = 0; b < 5; b++) {
+      int brandSlot = brands.getSlot("b" + b);
+      int[] brandList = brands.get("b" + b);
+      assertEquals(brandList.length, brands.getEnd(brandSlot) - brands.getStart(brandSlot));
+      assertEquals(brandList[0], brands.getPosting(brands.getStart(brandSlot)));
+      for (int c = 0; c < 8; c++) {
+        int[] expected = PostingIndex.intersect(new int[][] {brandList, colors.get("c" + c)});
+        assertArrayEquals(expected, PostingIndex.intersect(new PostingIndex[] {colors, brands},
+            new int[] {colors.getSlot("c" + c), brandSlot}));
+      }
+    }
+  }
+}
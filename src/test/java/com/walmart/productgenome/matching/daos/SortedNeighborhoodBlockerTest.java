@@ -0,0 +1,126 @@
+package com.walmart.productgenome.matching.daos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+public class SortedNeighborhoodBlockerTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute brand = new Attribute("brand", Type.TEXT);
+  Attribute mpn = new Attribute("mpn", Type.TEXT);
+
+  private Table table(String name, int firstId, String[] brands, String[] mpns) {
+    Table table = new Table(name, id, Arrays.asList(id, brand, mpn), "dummyProj");
+    for (int i = 0; i < mpns.length; i++) {
+      Tuple tuple = new Tuple();
+      tuple.setAttributeValue(id, firstId + i);
+      tuple.setAttributeValue(brand, brands[i]);
+      tuple.setAttributeValue(mpn, mpns[i]);
+      table.addTuple(tuple);
+    }
+    return table;
+  }
+
+  Table table1 = table("t1", 1, new String[] {"X", "y", "z"},
+      new String[] {"aaa", "ccc", "eee"});
+  Table table2 = table("t2", 101, new String[] {"x ", "q", "Z"},
+      new String[] {"AAB", "ccd", "zzz"});
+
+  // the "id1 id2" pairs of the candset, in pair id order
+  private List<String> block(List<BlockingKey> keys, int windowSize, int maxRecordsInMemory)
+      throws IOException {
+    CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2, "candset", null, null);
+    new SortedNeighborhoodBlocker(keys, windowSize, maxRecordsInMemory).block(table1, table2,
+        candsetBuilder);
+    Table candset = candsetBuilder.getCandset();
+    Attribute id1 = candset.getAttributes().get(1);
+    Attribute id2 = candset.getAttributes().get(2);
+    List<String> pairs = new ArrayList<String>();
+    int pairId = 1;
+    for (Tuple pair : candset.getAllTuplesInOrder()) {
+      assertEquals(pairId++, pair.getAttributeValue(BlockingDao.PAIR_ID_ATTRIBUTE));
+      pairs.add(pair.getAttributeValue(id1) + " " + pair.getAttributeValue(id2));
+    }
+    return pairs;
+  }
+
+  private Set<String> set(String... pairs) {
+    return new HashSet<String>(Arrays.asList(pairs));
+  }
+
+  @Test
+  public void testSinglePass() throws IOException {
+    // merged mpn order: aaa(1) aab(101) ccc(2) ccd(102) eee(3) zzz(103)
+    List<String> pairs = block(Arrays.asList(BlockingKey.parse("mpn")), 2, 1000);
+    assertEquals(Arrays.asList("1 101", "2 101", "2 102", "3 102", "3 103"), pairs);
+  }
+
+  @Test
+  public void testWindowSize() throws IOException {
+    // the entries 3 apart in the mpn order are of different tables
+    List<String> pairs = block(Arrays.asList(BlockingKey.parse("mpn")), 4, 1000);
+    assertEquals(set("1 101", "2 101", "2 102", "3 102", "3 103", "1 102", "3 101", "2 103"),
+        new HashSet<String>(pairs));
+    assertEquals(8, pairs.size());
+  }
+
+  @Test
+  public void testPassesAreDeduplicated() throws IOException {
+    // merged brand order: q(102) x(1) x(101) y(2) z(3) z(103), which finds
+    // 1 102 and again 1 101, 2 101 and 3 103 of the mpn pass
+    List<BlockingKey> keys = Arrays.asList(BlockingKey.parse("mpn"), BlockingKey.parse("brand"));
+    Set<String> expected = set("1 101", "2 101", "2 102", "3 102", "3 103", "1 102");
+    for (int maxRecordsInMemory : new int[] {1000, 2}) {
+      List<String> pairs = block(keys, 2, maxRecordsInMemory);
+      assertEquals(expected, new HashSet<String>(pairs));
+      assertEquals(expected.size(), pairs.size());
+    }
+  }
+
+  @Test
+  public void testKeyPrefix() throws IOException {
+    // merged order: qc(102) xa(1) xa(101) yc(2) ze(3) zz(103)
+    List<String> pairs = block(Arrays.asList(BlockingKey.parse("brand[1]+mpn[1]")), 2, 1000);
+    assertEquals(Arrays.asList("1 102", "1 101", "2 101", "3 103"), pairs);
+  }
+
+  private String key(BlockingKey key, String brandVal, String mpnVal) {
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(brand, brandVal);
+    tuple.setAttributeValue(mpn, mpnVal);
+    return key.getKey(tuple, new Attribute[] {brand, mpn});
+  }
+
+  @Test
+  public void testKeyParts() {
+    BlockingKey key = BlockingKey.parse("brand+mpn");
+    // the parts do not run into each other, and a null part is not skipped
+    assertFalse(key(key, "ab", "c").equals(key(key, "a", "bc")));
+    assertFalse(key(key, null, "x").equals(key(key, "x", null)));
+    assertEquals(key(key, "Sony ", "KDL-40"), key(key, "sony", "kdl40"));
+    assertTrue(key(key, null, "x").compareTo(key(key, "", "x")) < 0);
+    assertTrue(key(key, "a", "z").compareTo(key(key, "ab", "a")) < 0);
+    assertNull(key(key, null, "--"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWindowTooSmall() {
+    new SortedNeighborhoodBlocker(Arrays.asList(BlockingKey.parse("mpn")), 1, 1000);
+  }
+}
@@ -0,0 +1,125 @@
+package com.walmart.productgenome.matching.daos;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+public class TopKBlockerTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute title = new Attribute("title", Type.TEXT);
+
+  List<Attribute> attrs;
+  Table table1;
+  Table table2;
+
+  @Before
+  public void init() {
+    attrs = new ArrayList<Attribute>();
+    attrs.add(id);
+    attrs.add(title);
+
+    table1 = new Table("walmart", id, attrs, "dummyProj");
+    table1.addTuple(tuple(1, "Apple iPod nano 8GB Blue"));
+    table1.addTuple(tuple(2, "Samsung Galaxy S5 16GB Black"));
+    table1.addTuple(tuple(3, "Apple iPod touch 32GB"));
+    table1.addTuple(tuple(4, null));
+    table1.addTuple(tuple(5, "Apple iPhone 6 16GB"));
+
+    table2 = new Table("vendor", id, attrs, "dummyProj");
+    table2.addTuple(tuple(10, "apple ipod nano blue"));
+    table2.addTuple(tuple(11, "Galaxy S5 black"));
+    table2.addTuple(tuple(12, "kindle"));
+    table2.addTuple(tuple(13, null));
+  }
+
+  private Tuple tuple(int idValue, String titleValue) {
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(id, idValue);
+    tuple.setAttributeValue(title, titleValue);
+    return tuple;
+  }
+
+  // table2 id -> table1 ids, in candset order
+  private Map<Object, List<Object>> block(int k, TopKBlocker.Weighting weighting) {
+    CandsetBuilder candsetBuilder = new CandsetBuilder(table1, table2,
+        "candset", null, null);
+    new TopKBlocker(k, weighting).block(table1, table2, title, title, candsetBuilder);
+    Table candset = candsetBuilder.getCandset();
+    Attribute id1 = candset.getAttributes().get(1);
+    Attribute id2 = candset.getAttributes().get(2);
+    Map<Object, List<Object>> pairs = new HashMap<Object, List<Object>>();
+    for (Tuple pair : candset.getAllTuplesInOrder()) {
+      Object key = pair.getAttributeValue(id2);
+      if (!pairs.containsKey(key)) {
+        pairs.put(key, new ArrayList<Object>());
+      }
+      pairs.get(key).add(pair.getAttributeValue(id1));
+    }
+    return pairs;
+  }
+
+  @Test
+  public void testBestCandidatesComeFirst() {
+    for (TopKBlocker.Weighting weighting : TopKBlocker.Weighting.values()) {
+      Map<Object, List<Object>> pairs = block(2, weighting);
+      assertEquals(2, pairs.size());
+      assertEquals(1, pairs.get(10).get(0));
+      assertEquals(3, pairs.get(10).get(1));
+      // only one table1 tuple shares a token with it
+      assertEquals(1, pairs.get(11).size());
+      assertEquals(2, pairs.get(11).get(0));
+    }
+  }
+
+  @Test
+  public void testPrunedTopKIsThePrefixOfTheFullRanking() {
+    String[] words = new String[40];
+    for (int i = 0; i < words.length; i++) {
+      words[i] = "w" + i;
+    }
+    Random random = new Random(7);
+    table1 = new Table("walmart", id, attrs, "dummyProj");
+    for (int i = 0; i < 500; i++) {
+      table1.addTuple(tuple(i, randomTitle(words, random)));
+    }
+    table2 = new Table("vendor", id, attrs, "dummyProj");
+    for (int i = 0; i < 100; i++) {
+      table2.addTuple(tuple(1000 + i, randomTitle(words, random)));
+    }
+
+    for (TopKBlocker.Weighting weighting : TopKBlocker.Weighting.values()) {
+      // no pruning happens while the heap is not full
+      Map<Object, List<Object>> full = block(500, weighting);
+      Map<Object, List<Object>> topK = block(5, weighting);
+      assertEquals(full.keySet(), topK.keySet());
+      for (Map.Entry<Object, List<Object>> entry : topK.entrySet()) {
+        List<Object> ranking = full.get(entry.getKey());
+        assertEquals(ranking.subList(0, Math.min(5, ranking.size())), entry.getValue());
+      }
+    }
+  }
+
+  private static String randomTitle(String[] words, Random random) {
+    StringBuilder title = new StringBuilder();
+    int length = 1 + random.nextInt(6);
+    for (int i = 0; i < length; i++) {
+      // skewed towards the first words, as real token frequencies are
+      int word = (int) (words.length * Math.pow(random.nextDouble(), 2));
+      title.append(words[word]).append(' ');
+    }
+    return title.toString();
+  }
+}
@@ -0,0 +1,138 @@
+package com.walmart.productgenome.matching.models.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+
+public class ColumnStoreTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute title = new Attribute("title", Type.TEXT);
+  Attribute price = new Attribute("price", Type.FLOAT);
+  Attribute upc = new Attribute("upc", Type.LONG);
+  Attribute active = new Attribute("active", Type.BOOLEAN);
+
+  Table rows;
+  Table columns;
+
+  @Before
+  public void init() {
+    List<Attribute> attrs = new ArrayList<Attribute>();
+    attrs.add(id);
+    attrs.add(title);
+    attrs.add(price);
+    attrs.add(upc);
+    attrs.add(active);
+    rows = new Table("rows", id, attrs, "dummyProj");
+    columns = new Table("columns", id, attrs, "dummyProj", Table.Storage.COLUMNS);
+    add(tuple(1, "Apple iPod nano", 149.99f, 885909565555L, true));
+    add(tuple(2, null, null, null, null));
+    add(tuple(3, "Café 😀 mug", 9.5f, 12L, false));
+  }
+
+  private Tuple tuple(int idValue, String titleValue, Float priceValue, Long upcValue,
+      Boolean activeValue) {
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(id, idValue);
+    tuple.setAttributeValue(title, titleValue);
+    tuple.setAttributeValue(price, priceValue);
+    tuple.setAttributeValue(upc, upcValue);
+    tuple.setAttributeValue(active, activeValue);
+    return tuple;
+  }
+
+  private void add(Tuple tuple) {
+    rows.addTuple(tuple);
+    columns.addTuple(tuple);
+  }
+
+  private void assertSameTables() {
+    assertEquals(rows.getAllIdsInOrder(), columns.getAllIdsInOrder());
+    assertEquals(rows.getSize(), columns.getSize());
+    List<Tuple> expected = rows.getAllTuplesInOrder();
+    List<Tuple> actual = columns.getAllTuplesInOrder();
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), actual.get(i));
+    }
+  }
+
+  @Test
+  public void testColumnsHoldTheRowValues() {
+    assertEquals(Table.Storage.COLUMNS, columns.getStorage());
+    assertSameTables();
+    assertEquals(885909565555L, columns.getTuple(1).getAttributeValue(upc));
+    assertNull(columns.getTuple(2).getAttributeValue(title));
+  }
+
+  @Test
+  public void testRowViewsAreStableAndWritable() {
+    Tuple view = columns.getTuple(3);
+    assertSame(view, columns.getAllTuplesInOrder().get(2));
+    view.setAttributeValue(title, "teapot");
+    assertEquals("teapot", columns.getTuple(3).getAttributeValue(title));
+
+    // a value the typed column cannot hold moves it to objects
+    view.setAttributeValue(price, "12.5");
+    assertEquals("12.5", view.getAttributeValue(price));
+    assertEquals(149.99f, columns.getTuple(1).getAttributeValue(price));
+
+    // an unpaired surrogate does not survive UTF-8
+    view.setAttributeValue(title, "bad \ud800");
+    assertEquals("bad \ud800", view.getAttributeValue(title));
+  }
+
+  @Test
+  public void testOverwriteRemoveAndReAdd() {
+    add(tuple(1, "Apple iPod touch", 199.0f, null, true));
+    rows.removeTuple(2);
+    columns.removeTuple(2);
+    add(tuple(2, "back", null, null, false));
+    assertSameTables();
+
+    rows.removeAttr(price);
+    columns.removeAttr(price);
+    assertSameTables();
+    assertNull(columns.getTuple(1).getAttributeValue(price));
+  }
+
+  @Test
+  public void testRemovedRowsAreCompacted() {
+    for (int i = 4; i <= 1000; i++) {
+      add(tuple(i, i % 3 == 0 ? null : "title " + i, (float) i, (long) i, i % 2 == 0));
+    }
+    List<Tuple> views = columns.getAllTuplesInOrder();
+    // trimmed to a small sample, as getRandomSample does
+    for (int i = 1; i <= 1000; i++) {
+      if (i % 50 != 0) {
+        rows.removeTuple(i);
+        columns.removeTuple(i);
+      }
+    }
+    assertSameTables();
+    ColumnStore store = (ColumnStore) columns.getStore();
+    assertTrue(store.getNumRows() < 2 * columns.getSize() + 64);
+
+    // the views of the tuples kept are moved along, the removed ones keep their values
+    assertSame(views.get(49), columns.getTuple(50));
+    assertEquals("title 50", views.get(49).getAttributeValue(title));
+    assertEquals(rows.getTuple(100), views.get(99));
+    assertEquals("title 998", views.get(997).getAttributeValue(title));
+    assertEquals(998L, views.get(997).getAttributeValue(upc));
+    views.get(997).setAttributeValue(title, "removed");
+    assertNull(columns.getTuple(998));
+
+    views.get(49).setAttributeValue(title, "kept");
+    rows.getTuple(50).setAttributeValue(title, "kept");
+    add(tuple(7, "back", 7f, null, null));
+    assertSameTables();
+  }
+}
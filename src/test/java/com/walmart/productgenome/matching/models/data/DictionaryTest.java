@@ -0,0 +1,74 @@
+package com.walmart.productgenome.matching.models.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+
+public class DictionaryTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute brand = new Attribute("brand", Type.TEXT);
+
+  private Table table(String name, Table.Storage storage, int numRows, int numBrands) {
+    List<Attribute> attrs = new ArrayList<Attribute>();
+    attrs.add(id);
+    attrs.add(brand);
+    Table table = new Table(name, id, attrs, "dummyProj", storage);
+    for (int i = 0; i < numRows; i++) {
+      Tuple tuple = new Tuple();
+      tuple.setAttributeValue(id, i);
+      tuple.setAttributeValue(brand, i % 7 == 0 ? null : new String("brand" + i % numBrands));
+      table.addTuple(tuple);
+    }
+    return table;
+  }
+
+  @Test
+  public void testLowCardinalityIsEncoded() {
+    Table table = table("t", Table.Storage.COLUMNS, 5000, 10);
+    Dictionary dictionary = table.getDictionary(brand);
+    assertNotNull(dictionary);
+    assertEquals(10, dictionary.size());
+
+    Tuple tuple = table.getTuple(3);
+    int code = dictionary.getCode(tuple);
+    assertEquals("brand3", dictionary.getValue(code));
+    assertSame(tuple.getAttributeValue(brand), table.getTuple(13).getAttributeValue(brand));
+    assertEquals(Dictionary.NO_CODE, dictionary.getCode(table.getTuple(7)));
+
+    // values of other tables are looked up, and share the strings
+    Table other = table("other", Table.Storage.COLUMNS, 20, 5);
+    Tuple otherTuple = other.getTuple(3);
+    assertEquals(code, dictionary.getCode(otherTuple));
+    assertSame(tuple.getAttributeValue(brand), otherTuple.getAttributeValue(brand));
+    assertEquals(Dictionary.NO_CODE, dictionary.getCode("brand11"));
+  }
+
+  @Test
+  public void testHighCardinalityIsNotEncoded() {
+    Table table = table("t", Table.Storage.COLUMNS, 5000, 5000);
+    assertNull(table.getDictionary(brand));
+    assertEquals("brand4321", table.getTuple(4321).getAttributeValue(brand));
+    assertNull(table.getTuple(4200).getAttributeValue(brand));
+    assertNull(table("rows", Table.Storage.ROWS, 10, 2).getDictionary(brand));
+  }
+
+  @Test
+  public void testReplacedColumnIsNotRead() {
+    Table table = table("t", Table.Storage.COLUMNS, 100, 3);
+    Dictionary dictionary = table.getDictionary(brand);
+    table.getTuple(1).setAttributeValue(brand, 5);
+    assertNull(table.getDictionary(brand));
+    assertEquals(5, table.getTuple(1).getAttributeValue(brand));
+    assertEquals(dictionary.getCode("brand2"), dictionary.getCode(table.getTuple(2)));
+    assertEquals(Dictionary.NO_CODE, dictionary.getCode(table.getTuple(1)));
+  }
+}
@@ -0,0 +1,341 @@
+package com.walmart.productgenome.matching.models.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+
+public class PairTableTest {
+
+  Attribute id = new Attribute("id", Type.TEXT);
+  Attribute title = new Attribute("title", Type.TEXT);
+  Attribute pairId = new Attribute("pairId", Type.INTEGER);
+  Attribute id1 = new Attribute("t1.id", Type.TEXT);
+  Attribute id2 = new Attribute("t2.id", Type.TEXT);
+  Attribute label = new Attribute("label", Type.INTEGER);
+
+  Table table1 = table("t1", "a", 5);
+  Table table2 = table("t2", "b", 4);
+
+  private Table table(String name, String prefix, int size) {
+    Table table = new Table(name, id, Arrays.asList(id, title), "dummyProj");
+    for (int i = 0; i < size; i++) {
+      Tuple tuple = new Tuple();
+      tuple.setAttributeValue(id, prefix + i);
+      tuple.setAttributeValue(title, "title " + prefix + i);
+      table.addTuple(tuple);
+    }
+    return table;
+  }
+
+  private PairTable pairs(Attribute labelAttribute) {
+    return new PairTable("pairs", "dummyProj", table1, table2, pairId, id1, id2,
+        labelAttribute);
+  }
+
+  private Tuple pair(int pairIdVal, String id1Val, String id2Val, Integer labelVal) {
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(pairId, pairIdVal);
+    tuple.setAttributeValue(id1, id1Val);
+    tuple.setAttributeValue(id2, id2Val);
+    tuple.setAttributeValue(label, labelVal);
+    return tuple;
+  }
+
+  private List<Object> pairIds(Table table) {
+    return pairIds(table.getAllTuplesInOrder());
+  }
+
+  private List<Object> pairIds(List<Tuple> tuples) {
+    List<Object> ids = new ArrayList<Object>();
+    for (Tuple tuple : tuples) {
+      ids.add(tuple.getAttributeValue(pairId));
+    }
+    return ids;
+  }
+
+  @Test
+  public void testAddPair() {
+    PairTable pairs = pairs(label);
+    pairs.addPair(1, pairs.lookupOrdinal1("a3"), pairs.lookupOrdinal2("b0"));
+    pairs.addPair(2, pairs.lookupOrdinal1("a4"), pairs.lookupOrdinal2("b2"), 1);
+    pairs.addPairOfIds(3, "a1", "b3", -1);
+    assertEquals(3, pairs.size());
+    assertTrue(pairs.hasLabels());
+
+    // the ordinals number the tuples in the order they are first looked up
+    assertEquals(1, pairs.getPairId(0));
+    assertEquals(0, pairs.getOrdinal1(0));
+    assertEquals(0, pairs.getOrdinal2(0));
+    assertEquals(0, pairs.lookupOrdinal1("a3"));
+    assertSame(table1.getTuple("a3"), pairs.getTuple1(0));
+    assertSame(table2.getTuple("b0"), pairs.getTuple2(0));
+    assertNull(pairs.getLabel(0));
+    assertEquals(Integer.valueOf(1), pairs.getLabel(1));
+
+    assertEquals(2, pairs.getOrdinal1(2));
+    assertEquals(2, pairs.getOrdinal2(2));
+    assertEquals("a1", pairs.getId1(2));
+    assertEquals("b3", pairs.getId2(2));
+    assertEquals(Integer.valueOf(-1), pairs.getLabel(2));
+
+    pairs.setLabel(0, 0);
+    assertEquals(Integer.valueOf(0), pairs.getLabel(0));
+  }
+
+  @Test
+  public void testUnknownIds() {
+    PairTable pairs = pairs(null);
+    assertFalse(pairs.hasLabels());
+    assertEquals(PairTable.NO_ORDINAL, pairs.lookupOrdinal1("b0"));
+    pairs.addPairOfIds(1, "a0", "x", null);
+    assertEquals(PairTable.NO_ORDINAL, pairs.getOrdinal2(0));
+    assertNull(pairs.getTuple2(0));
+    assertNull(pairs.getId2(0));
+  }
+
+  @Test
+  public void testLookupOnFirstUse() {
+    // the tuples are looked up when they are paired, not when the pairs are made
+    PairTable pairs = pairs(null);
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(id, "a9");
+    table1.addTuple(tuple);
+    pairs.addPairOfIds(1, "a9", "b0", null);
+    pairs.addPairOfIds(2, "a9", "b1", null);
+    assertSame(tuple, pairs.getTuple1(0));
+    assertEquals(0, pairs.getOrdinal1(1));
+    assertEquals(1, pairs.getOrdinal2(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadOrdinal() {
+    // no tuple has been looked up yet
+    pairs(null).addPair(1, 0, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLabelOutOfRange() {
+    pairs(label).addPairOfIds(1, "a0", "b0", 1000);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNoLabels() {
+    PairTable pairs = pairs(null);
+    pairs.addPairOfIds(1, "a0", "b0", null);
+    pairs.setLabel(0, 1);
+  }
+
+  @Test
+  public void testTable() {
+    PairTable pairs = pairs(label);
+    Table table = pairs.getTable();
+    assertEquals(Arrays.asList(pairId, id1, id2, label), table.getAttributes());
+    table.addTuple(pair(1, "a0", "b1", 1));
+    table.addTuple(pair(2, "a2", "b2", null));
+    table.addTuple(pair(3, "a4", "b0", 0));
+    assertEquals(3, table.getSize());
+    assertEquals(3, pairs.size());
+    assertSame(table1.getTuple("a2"), pairs.getTuple1(1));
+
+    Tuple tuple = table.getTuple(1);
+    assertEquals(pair(1, "a0", "b1", 1), tuple);
+    assertEquals("a0", tuple.getAttributeValue(id1));
+    assertNull(table.getTuple(4));
+    assertEquals(Arrays.<Object>asList(1, 2, 3), pairIds(table));
+
+    // the label is set through the view
+    table.getTuple(2).setAttributeValue(label, 1);
+    assertEquals(Integer.valueOf(1), pairs.getLabel(1));
+
+    // a pair of the same id is overwritten
+    table.addTuple(pair(2, "a3", "b3", 0));
+    assertEquals(3, pairs.size());
+    assertSame(table1.getTuple("a3"), pairs.getTuple1(1));
+    assertEquals(Integer.valueOf(0), pairs.getLabel(1));
+  }
+
+  @Test
+  public void testRemove() {
+    PairTable pairs = pairs(null);
+    Table table = pairs.getTable();
+    for (int i = 1; i <= 4; i++) {
+      pairs.addPairOfIds(i, "a" + i, "b" + (i - 1), null);
+    }
+    table.removeTuple(2);
+    assertNull(table.getTuple(2));
+    assertEquals(3, table.getSize());
+    assertEquals(Arrays.<Object>asList(1, 3, 4), pairIds(table));
+
+    // the later pairs move to lower indexes, the rows of the tuples stay
+    List<Tuple> tuples = table.getAllTuplesInOrder();
+    assertEquals(3, pairs.size());
+    assertEquals(3, pairs.getPairId(1));
+    assertEquals("a3", pairs.getId1(1));
+    assertEquals(4, pairs.getPairId(2));
+    assertEquals(Arrays.<Object>asList(1, 3, 4), pairIds(table));
+    assertEquals(Arrays.<Object>asList(1, 3, 4), pairIds(tuples));
+    assertEquals("b2", tuples.get(1).getAttributeValue(id2));
+    assertSame(table.getTuple(3), tuples.get(1));
+
+    // and so do the ones of the tuples read before the removal
+    table.removeTuple(1);
+    assertEquals(3, pairs.getPairId(0));
+    assertEquals(Arrays.<Object>asList(3, 4), pairIds(tuples.subList(1, 3)));
+    assertEquals("a4", tuples.get(2).getAttributeValue(id1));
+    table.addTuple(pair(5, "a0", "b0", null));
+    assertEquals(5, pairs.getPairId(2));
+    assertEquals(Arrays.<Object>asList(3, 4, 5), pairIds(table));
+
+    table.clear();
+    assertEquals(0, pairs.size());
+    table.addTuple(pair(7, "a0", "b0", null));
+    assertEquals(7, pairs.getPairId(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTableUnknownId() {
+    pairs(null).getTable().addTuple(pair(1, "a0", "x", null));
+  }
+
+  @Test
+  public void testTableSetIds() {
+    PairTable pairs = pairs(null);
+    pairs.addPairOfIds(1, "a0", "b0", null);
+    Tuple tuple = pairs.getTable().getTuple(1);
+    tuple.setAttributeValue(id1, "a1");
+    assertEquals(1, pairs.getOrdinal1(0));
+    assertSame(table1.getTuple("a1"), pairs.getTuple1(0));
+
+    // an id that is not in the table is only seen by the tuple
+    tuple.setAttributeValue(id2, "x");
+    assertEquals("x", tuple.getAttributeValue(id2));
+    assertSame(table2.getTuple("b0"), pairs.getTuple2(0));
+    tuple.setAttributeValue(id2, "b3");
+    assertEquals("b3", tuple.getAttributeValue(id2));
+    assertSame(table2.getTuple("b3"), pairs.getTuple2(0));
+  }
+
+  @Test
+  public void testProjectedAttributes() {
+    PairTable pairs = new PairTable("pairs", "dummyProj", table1, table2, pairId, id1, id2,
+        Arrays.asList(title), Arrays.asList(title), label);
+    Attribute title1 = new Attribute("t1.title", Type.TEXT);
+    Attribute title2 = new Attribute("t2.title", Type.TEXT);
+    assertEquals(Arrays.asList(title1, title2), pairs.getProjectedAttributes());
+    Table table = pairs.getTable();
+    assertEquals(Arrays.asList(pairId, id1, id2, title1, title2, label),
+        table.getAttributes());
+
+    table.addTuple(pair(1, "a2", "b3", 1));
+    pairs.addPairOfIds(2, "a0", "b1", 0);
+    Tuple tuple = table.getTuple(1);
+    assertEquals("title a2", tuple.getAttributeValue(title1));
+    assertEquals("title b3", tuple.getAttributeValue(title2));
+    assertEquals(Integer.valueOf(1), tuple.getAttributeValue(label));
+    assertEquals("title b1", table.getTuple(2).getAttributeValue(title2));
+    assertEquals("title a0", table.getTuple(2).getData().get(title1));
+
+    // the values are read from the tuples, not copied
+    table1.getTuple("a2").setAttributeValue(title, "new title");
+    assertEquals("new title", tuple.getAttributeValue(title1));
+
+    tuple.setAttributeValue(label, 0);
+    assertEquals(Integer.valueOf(0), pairs.getLabel(0));
+  }
+
+  @Test
+  public void testTableSetAndRemoveAttributes() {
+    PairTable pairs = new PairTable("pairs", "dummyProj", table1, table2, pairId, id1, id2,
+        Arrays.asList(title), new ArrayList<Attribute>(), null);
+    Attribute title1 = new Attribute("t1.title", Type.TEXT);
+    Attribute score = new Attribute("score", Type.FLOAT);
+    Table table = pairs.getTable();
+    pairs.addPairOfIds(1, "a0", "b0", null);
+    pairs.addPairOfIds(2, "a1", "b1", null);
+    Tuple tuple = table.getTuple(1);
+    tuple.setAttributeValue(title1, "x");
+    tuple.setAttributeValue(score, 0.5f);
+    assertEquals("x", tuple.getAttributeValue(title1));
+    assertEquals(0.5f, tuple.getData().get(score));
+    assertEquals("title a0", pairs.getTuple1(0).getAttributeValue(title));
+    assertEquals("title a1", table.getTuple(2).getAttributeValue(title1));
+    assertNull(table.getTuple(2).getAttributeValue(score));
+
+    table.removeAttr(title1);
+    assertEquals(Arrays.asList(pairId, id1, id2), table.getAttributes());
+    assertNull(tuple.getAttributeValue(title1));
+    assertNull(table.getTuple(2).getAttributeValue(title1));
+
+    // a pair put over the tuple drops the values set on it
+    Tuple pair = pair(1, "a4", "b2", null);
+    table.addTuple(pair);
+    assertSame(tuple, table.getTuple(1));
+    assertEquals("a4", tuple.getAttributeValue(id1));
+    assertEquals("title a4", tuple.getAttributeValue(title1));
+    assertNull(tuple.getAttributeValue(score));
+  }
+
+  @Test
+  public void testOf() {
+    PairTable pairs = pairs(null);
+    pairs.addPairOfIds(1, "a0", "b1", null);
+    pairs.addPairOfIds(2, "a1", "b0", null);
+    assertSame(pairs, PairTable.of(pairs.getTable(), table1, table2, false));
+    assertNotSame(pairs, PairTable.of(pairs.getTable(), table2, table1, false));
+
+    Table candset = new Table("candset", pairId, Arrays.asList(pairId, id1, id2, title),
+        "dummyProj");
+    candset.addTuple(pair(5, "a3", "b2", null));
+    candset.addTuple(pair(9, "a0", "b3", null));
+    PairTable read = PairTable.of(candset, table1, table2, false);
+    assertEquals(2, read.size());
+    assertEquals(9, read.getPairId(1));
+    assertSame(table1.getTuple("a0"), read.getTuple1(1));
+    assertSame(table2.getTuple("b3"), read.getTuple2(1));
+  }
+
+  @Test
+  public void testOfTextPairIds() {
+    Attribute textPairId = new Attribute("pairId", Type.TEXT);
+    Table candset = new Table("candset", textPairId, Arrays.asList(textPairId, id1, id2),
+        "dummyProj");
+    for (int i = 0; i < 3; i++) {
+      Tuple tuple = new Tuple();
+      tuple.setAttributeValue(textPairId, "p" + i);
+      tuple.setAttributeValue(id1, "a" + i);
+      tuple.setAttributeValue(id2, "b" + i);
+      candset.addTuple(tuple);
+    }
+    PairTable read = PairTable.of(candset, table1, table2, false);
+    assertEquals(3, read.size());
+    assertEquals(3, read.getPairId(2));
+    assertEquals("a2", read.getId1(2));
+  }
+
+  @Test
+  public void testOfView() {
+    PairTable pairs = pairs(label);
+    for (int i = 1; i <= 4; i++) {
+      pairs.addPairOfIds(i, "a" + i, "b" + (i - 1), i % 2);
+    }
+    Table view = new Table(pairs.getTable(), "view", new ArrayList<Object>(Arrays.asList(4, 2)));
+    assertEquals(Arrays.<Object>asList(4, 2), pairIds(view));
+    PairTable read = PairTable.of(view, table1, table2, true);
+    assertNotSame(pairs, read);
+    assertEquals(2, read.size());
+    assertEquals(4, read.getPairId(0));
+    assertEquals("a2", read.getId1(1));
+    assertEquals(Integer.valueOf(0), read.getLabel(1));
+  }
+}
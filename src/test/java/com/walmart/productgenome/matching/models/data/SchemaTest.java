@@ -0,0 +1,81 @@
+package com.walmart.productgenome.matching.models.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+
+public class SchemaTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute title = new Attribute("title", Type.TEXT);
+  Attribute brand = new Attribute("brand", Type.TEXT);
+
+  private Table table(String name, Table.Storage storage) {
+    List<Attribute> attrs = new ArrayList<Attribute>();
+    attrs.add(id);
+    attrs.add(title);
+    return new Table(name, id, attrs, "dummyProj", storage);
+  }
+
+  @Test
+  public void testSlots() {
+    Schema schema = table("t", Table.Storage.ROWS).getSchema();
+    assertEquals(2, schema.size());
+    assertEquals(1, schema.getSlot(new Attribute("title", Type.TEXT)));
+    assertEquals(-1, schema.getSlot(brand));
+    assertEquals(-1, schema.getSlot(new Attribute("title", Type.INTEGER)));
+  }
+
+  @Test
+  public void testAddedTupleKeepsItsIdentityAndValues() {
+    Table table = table("t", Table.Storage.ROWS);
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(id, 7);
+    tuple.setAttributeValue(title, null);
+    tuple.setAttributeValue(brand, "Apple");
+    Tuple copy = new Tuple(tuple.getData());
+    table.addTuple(tuple);
+
+    assertSame(tuple, table.getTuple(7));
+    assertEquals(copy, tuple);
+    assertTrue(tuple.getData().containsKey(title));
+
+    Schema schema = table.getSchema();
+    assertEquals(7, tuple.getValue(schema, schema.getSlot(id)));
+    assertEquals("Apple", tuple.getValue(schema, schema.getSlot(brand)));
+
+    // changes after adding reach the table
+    tuple.setAttributeValue(title, "iPod");
+    assertEquals("iPod", table.getTuple(7).getAttributeValue(title));
+    table.removeAttr(title);
+    assertFalse(tuple.getData().containsKey(title));
+    assertNull(tuple.getValue(schema, schema.getSlot(title)));
+  }
+
+  @Test
+  public void testValueOfAnotherSchema() {
+    Table rows = table("rows", Table.Storage.ROWS);
+    Table columns = table("columns", Table.Storage.COLUMNS);
+    Tuple tuple = new Tuple(rows.getSchema());
+    tuple.setAttributeValue(id, 1);
+    tuple.setAttributeValue(title, "iPod");
+    rows.addTuple(tuple);
+    columns.addTuple(tuple);
+
+    Schema schema = columns.getSchema();
+    int slot = schema.getSlot(title);
+    assertEquals("iPod", tuple.getValue(schema, slot));
+    assertEquals("iPod", columns.getTuple(1).getValue(schema, slot));
+    assertEquals("iPod", columns.getTuple(1).getValue(rows.getSchema(), slot));
+    assertNull(tuple.getValue(schema, -1));
+  }
+}
@@ -0,0 +1,129 @@
+package com.walmart.productgenome.matching.models.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table.QueryOps;
+
+public class TableIndexesTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute brand = new Attribute("brand", Type.TEXT);
+  Attribute price = new Attribute("price", Type.FLOAT);
+
+  Random random = new Random(7);
+  Table table;
+
+  @Before
+  public void init() {
+    table = new Table("t", id, Arrays.asList(id, brand, price), "dummyProj");
+    for (int i = 0; i < 2000; i++) {
+      add(i);
+    }
+  }
+
+  private void add(int i) {
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(id, i);
+    tuple.setAttributeValue(brand, random.nextInt(10) == 0 ? null : "brand" + random.nextInt(50));
+    tuple.setAttributeValue(price, random.nextInt(10) == 0 ? null : (float) random.nextInt(1000));
+    table.addTuple(tuple);
+  }
+
+  // the ids a full scan finds
+  private List<Object> scan(List<Attribute> attrs, List<Object> values, List<QueryOps> ops) {
+    List<Object> ids = new ArrayList<Object>();
+    for (Tuple tuple : table.getAllTuplesInOrder()) {
+      boolean matches = true;
+      for (int i = 0; i < attrs.size() && matches; i++) {
+        Object value = tuple.getAttributeValue(attrs.get(i));
+        matches = null != value && Table.compareUsingOps(attrs.get(i).getType(), ops.get(i),
+            value, values.get(i));
+      }
+      if (matches) {
+        ids.add(tuple.getAttributeValue(id));
+      }
+    }
+    return ids;
+  }
+
+  private void assertQuery(List<Attribute> attrs, List<Object> values, List<QueryOps> ops) {
+    assertEquals(scan(attrs, values, ops), table.getAllRowsWithQueryCondition(attrs, values, ops));
+  }
+
+  private void assertQueries() {
+    assertQuery(Arrays.asList(brand), Arrays.<Object>asList("brand7"),
+        Arrays.asList(QueryOps.EQUALS));
+    assertQuery(Arrays.asList(price), Arrays.<Object>asList(950f),
+        Arrays.asList(QueryOps.GREATER_THAN));
+    assertQuery(Arrays.asList(price), Arrays.<Object>asList(20f),
+        Arrays.asList(QueryOps.LESS_THAN_EQUALS));
+    assertQuery(Arrays.asList(brand), Arrays.<Object>asList("nd4"),
+        Arrays.asList(QueryOps.CONTAINS));
+    assertQuery(Arrays.asList(price, brand), Arrays.<Object>asList(500f, "brand3"),
+        Arrays.asList(QueryOps.GREATER_THAN_EQUALS, QueryOps.CONTAINS));
+    assertQuery(Arrays.asList(brand, price), Arrays.<Object>asList("brand", 10f),
+        Arrays.asList(QueryOps.CONTAINS, QueryOps.LESS_THAN));
+  }
+
+  @Test
+  public void testQueriesMatchScans() {
+    assertQueries();
+
+    // the indexes follow the changes of the table
+    for (int i = 0; i < 500; i++) {
+      table.removeTuple(random.nextInt(2000));
+      add(random.nextInt(2500));
+    }
+    assertQueries();
+  }
+
+  @Test
+  public void testQueriesAfterInPlaceChanges() {
+    Table columns = new Table("c", id, table.getAttributes(), "dummyProj", Table.Storage.COLUMNS);
+    for (Tuple tuple : table.getAllTuplesInOrder()) {
+      Tuple copy = new Tuple(columns.getSchema());
+      copy.setAttributeValue(id, tuple.getAttributeValue(id));
+      copy.setAttributeValue(brand, tuple.getAttributeValue(brand));
+      copy.setAttributeValue(price, tuple.getAttributeValue(price));
+      columns.addTuple(copy);
+    }
+    for (Table t : Arrays.asList(table, columns)) {
+      table = t;
+      assertQueries();
+      long version = table.getVersion();
+      for (int i = 0; i < 100; i++) {
+        Tuple tuple = table.getTuple(random.nextInt(2000));
+        tuple.setAttributeValue(brand, "brand" + random.nextInt(10));
+        tuple.setAttributeValue(price, (float) random.nextInt(1000));
+      }
+      assertEquals(false, version == table.getVersion());
+      assertQueries();
+
+      table.getTuple(5).removeAttr(brand);
+      assertQueries();
+    }
+  }
+
+  @Test
+  public void testRowIdsWithAttrValue() {
+    List<Object> expected = new ArrayList<Object>();
+    for (Tuple tuple : table.getAllTuplesInOrder()) {
+      if (String.valueOf(tuple.getAttributeValue(brand)).contains("brand42")) {
+        expected.add(tuple.getAttributeValue(id));
+      }
+    }
+    assertEquals(expected, table.getAllRowIdsWithAttrValue(brand, "brand42"));
+    table.removeTuple(expected.get(0));
+    assertEquals(expected.subList(1, expected.size()),
+        table.getAllRowIdsWithAttrValue(brand, "brand42"));
+  }
+}
@@ -0,0 +1,95 @@
+package com.walmart.productgenome.matching.models.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+
+public class TableSorterTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute brand = new Attribute("brand", Type.TEXT);
+  Attribute title = new Attribute("title", Type.TEXT);
+  Attribute price = new Attribute("price", Type.FLOAT);
+  Attribute upc = new Attribute("upc", Type.LONG);
+
+  private Table table(Table.Storage storage) {
+    Random random = new Random(11);
+    Table table = new Table("t", id, Arrays.asList(id, brand, title, price, upc), "dummyProj",
+        storage);
+    for (int i = 0; i < 3000; i++) {
+      Tuple tuple = new Tuple();
+      tuple.setAttributeValue(id, i);
+      tuple.setAttributeValue(brand, random.nextInt(8) == 0 ? null : "b" + random.nextInt(20));
+      tuple.setAttributeValue(title, "t" + random.nextInt(100000));
+      tuple.setAttributeValue(price, random.nextInt(8) == 0 ? null
+          : (float) (random.nextInt(200) - 100) / 4);
+      tuple.setAttributeValue(upc, random.nextLong());
+      table.addTuple(tuple);
+    }
+    return table;
+  }
+
+  // the order of a stable sort on the attributes
+  private List<Object> expected(final Table table, List<Object> ids,
+      final List<Attribute> attrs, final List<Boolean> ascending) {
+    List<Object> sorted = new ArrayList<Object>(ids);
+    Collections.sort(sorted, new Comparator<Object>() {
+      @SuppressWarnings({"unchecked", "rawtypes"})
+      public int compare(Object id1, Object id2) {
+        for (int k = 0; k < attrs.size(); k++) {
+          Comparable value1 = (Comparable) table.getTuple(id1).getAttributeValue(attrs.get(k));
+          Comparable value2 = (Comparable) table.getTuple(id2).getAttributeValue(attrs.get(k));
+          int cmp = null == value1 ? (null == value2 ? 0 : -1)
+              : (null == value2 ? 1 : value1.compareTo(value2));
+          if (cmp != 0) {
+            return ascending.get(k) ? cmp : -cmp;
+          }
+        }
+        return 0;
+      }
+    });
+    return sorted;
+  }
+
+  private void assertSorts(Table table, List<Attribute> attrs, List<Boolean> ascending)
+      throws Exception {
+    List<Object> ids = table.getAllIdsInOrder();
+    Collections.shuffle(ids, new Random(3));
+    List<Object> expected = expected(table, ids, attrs, ascending);
+    assertEquals(expected, table.sortTableByAttributes(new ArrayList<Object>(ids), attrs,
+        ascending));
+    // spilling runs of 100 ids
+    assertEquals(expected, new TableSorter(table, attrs, ascending, 100, null)
+        .sort(new ArrayList<Object>(ids)));
+  }
+
+  @Test
+  public void testSort() throws Exception {
+    for (Table.Storage storage : Table.Storage.values()) {
+      Table table = table(storage);
+      assertSorts(table, Arrays.asList(price), Arrays.asList(true));
+      assertSorts(table, Arrays.asList(upc), Arrays.asList(false));
+      assertSorts(table, Arrays.asList(title), Arrays.asList(true));
+      assertSorts(table, Arrays.asList(brand, price, id), Arrays.asList(true, false, true));
+      assertSorts(table, Arrays.asList(brand, title), Arrays.asList(false, true));
+    }
+  }
+
+  @Test
+  public void testSortTableByAttribute() {
+    Table table = table(Table.Storage.COLUMNS);
+    List<Object> ids = table.getAllIdsInOrder();
+    List<Object> expected = expected(table, ids, Arrays.asList(brand), Arrays.asList(true));
+    Collections.reverse(expected);
+    assertEquals(expected, table.sortTableByAttribute(ids, brand, false));
+  }
+}
@@ -0,0 +1,162 @@
+package com.walmart.productgenome.matching.models.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.service.TableService;
+
+public class TableViewTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute title = new Attribute("title", Type.TEXT);
+
+  private Table table(Table.Storage storage) {
+    Table table = new Table("t", id, Arrays.asList(id, title), "dummyProj", storage);
+    for (int i = 0; i < 10; i++) {
+      table.addTuple(tuple(i));
+    }
+    return table;
+  }
+
+  private Tuple tuple(int i) {
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(id, i);
+    tuple.setAttributeValue(title, "title " + i);
+    return tuple;
+  }
+
+  private List<Object> ids(Object... ids) {
+    return new ArrayList<Object>(Arrays.asList(ids));
+  }
+
+  private List<Object> cursorIds(Table table) {
+    List<Object> ids = new ArrayList<Object>();
+    TupleCursor cursor = table.getCursor();
+    while (cursor.next()) {
+      ids.add(cursor.getId());
+      assertSame(table.getTuple(cursor.getId()), cursor.getTuple());
+    }
+    assertFalse(cursor.next());
+    return ids;
+  }
+
+  @Test
+  public void testView() {
+    for (Table.Storage storage : Table.Storage.values()) {
+      Table table = table(storage);
+      Table view = new Table(table, "view", ids(7, 2, 5));
+      assertTrue(view.isView());
+      assertEquals(storage, view.getStorage());
+      assertEquals(3, view.getSize());
+      assertEquals(ids(7, 2, 5), view.getAllIdsInOrder());
+      assertEquals(ids(7, 2, 5), cursorIds(view));
+      assertSame(table.getTuple(2), view.getTuple(2));
+      assertNull(view.getTuple(3));
+      assertEquals(table.getAllIdsInOrder(), new Table(table).getAllIdsInOrder());
+      assertEquals(table.getAllIdsInOrder(), cursorIds(table));
+
+      // a view of a view reads the first table
+      Table subView = new Table(view, "subView", ids(5, 7));
+      assertEquals(ids(5, 7), subView.getAllIdsInOrder());
+      assertSame(table.getTuple(5), subView.getTuple(5));
+    }
+  }
+
+  @Test
+  public void testCopyOnWrite() {
+    for (Table.Storage storage : Table.Storage.values()) {
+      Table table = table(storage);
+      Table view = new Table(table, "view", ids(1, 2, 3));
+
+      // removing only drops the id from the view
+      view.removeTuple(2);
+      assertTrue(view.isView());
+      assertEquals(ids(1, 3), view.getAllIdsInOrder());
+      assertEquals(ids(1, 3), cursorIds(view));
+      assertEquals(10, table.getSize());
+
+      // adding copies the view
+      view.addTuple(tuple(20));
+      assertFalse(view.isView());
+      assertEquals(ids(1, 3, 20), view.getAllIdsInOrder());
+      assertEquals(ids(1, 3, 20), cursorIds(view));
+      assertNull(table.getTuple(20));
+
+      // changing the table copies its views first
+      Table otherView = new Table(table, "otherView", ids(4, 5));
+      Table subView = new Table(otherView, "subView", ids(5));
+      table.removeTuple(5);
+      table.addTuple(tuple(30));
+      assertFalse(otherView.isView());
+      assertEquals(ids(4, 5), otherView.getAllIdsInOrder());
+      assertEquals("title 5", otherView.getTuple(5).getAttributeValue(title));
+      assertEquals(ids(5), subView.getAllIdsInOrder());
+      assertFalse(otherView.getAllIdsInOrder().contains(30));
+
+      otherView.clear();
+      assertEquals(0, otherView.getSize());
+      assertEquals(10, table.getSize());
+    }
+  }
+
+  @Test
+  public void testCopiesKeepTheirValues() {
+    for (Table.Storage storage : Table.Storage.values()) {
+      // a tuple put again with the same id
+      Table table = table(storage);
+      Table view = new Table(table, "view", ids(1, 2, 3));
+      Tuple changed = tuple(2);
+      changed.setAttributeValue(title, "changed");
+      table.addTuple(changed);
+      assertFalse(view.isView());
+      assertEquals("changed", table.getTuple(2).getAttributeValue(title));
+      assertEquals("title 2", view.getTuple(2).getAttributeValue(title));
+
+      // the tuples added after a clear
+      table = table(storage);
+      view = new Table(table, "view", ids(0, 1));
+      table.clear();
+      table.addTuple(tuple(40));
+      table.addTuple(tuple(41));
+      assertEquals(ids(0, 1), view.getAllIdsInOrder());
+      assertEquals("title 0", view.getTuple(0).getAttributeValue(title));
+      assertEquals("title 1", view.getTuple(1).getAttributeValue(title));
+      assertEquals(tuple(1), view.getTuple(1));
+
+      // a view copied by a change of its own
+      table = table(storage);
+      view = new Table(table, "view", ids(4, 5));
+      view.addTuple(tuple(50));
+      table.addTuple(changed);
+      table.clear();
+      table.addTuple(tuple(60));
+      assertEquals("title 4", view.getTuple(4).getAttributeValue(title));
+      assertEquals("title 5", view.getTuple(5).getAttributeValue(title));
+    }
+  }
+
+  @Test
+  public void testSplit() {
+    Table table = table(Table.Storage.ROWS);
+    Table[] splits = TableService.split(table, 50);
+    assertTrue(splits[0].isView());
+    assertTrue(splits[1].isView());
+    List<Object> ids = new ArrayList<Object>(splits[0].getAllIdsInOrder());
+    ids.addAll(splits[1].getAllIdsInOrder());
+    assertEquals(table.getSize(), ids.size());
+    for (Object splitId : ids) {
+      assertSame(table.getTuple(splitId), splits[0].contains(table.getTuple(splitId))
+          ? splits[0].getTuple(splitId) : splits[1].getTuple(splitId));
+    }
+  }
+}
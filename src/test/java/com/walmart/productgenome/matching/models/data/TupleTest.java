@@ -1,5 +1,10 @@
 package com.walmart.productgenome.matching.models.data;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+
 import org.junit.Test;
 
 import com.walmart.productgenome.matching.models.data.Attribute.Type;
@@ -27,4 +32,37 @@ public class TupleTest {
     assert(Tuple1.equals(Tuple3) == false);
   }
 
+  @Test
+  public void equalsAcrossStorage() {
+    Attribute id = new Attribute("id", Type.INTEGER);
+    Attribute title = new Attribute("title", Type.TEXT);
+    Attribute price = new Attribute("price", Type.FLOAT);
+    Table rows = new Table("rows", id, Arrays.asList(id, title, price), "dummyProj");
+    Table columns = new Table("columns", id, Arrays.asList(id, title, price), "dummyProj",
+        Table.Storage.COLUMNS);
+
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(id, 1);
+    tuple.setAttributeValue(title, "mug");
+    tuple.setAttributeValue(price, null);
+    rows.addTuple(tuple);
+    columns.addTuple(tuple);
+    Tuple unset = new Tuple();
+    unset.setAttributeValue(id, 1);
+    unset.setAttributeValue(title, "mug");
+
+    // a value set to null is the same as one never set
+    for (Tuple other : Arrays.asList(unset, rows.getTuple(1), columns.getTuple(1))) {
+      assertEquals(other, tuple);
+      assertEquals(tuple, other);
+      assertEquals(tuple.hashCode(), other.hashCode());
+    }
+
+    columns.getTuple(1).setAttributeValue(price, 2f);
+    assertFalse(tuple.equals(columns.getTuple(1)));
+    assertFalse(columns.getTuple(1).equals(tuple));
+    unset.setAttributeValue(price, 2f);
+    assertEquals(unset, columns.getTuple(1));
+    assertEquals(unset.hashCode(), columns.getTuple(1).hashCode());
+  }
 }
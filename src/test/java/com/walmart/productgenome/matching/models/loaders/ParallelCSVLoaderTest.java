@@ -0,0 +1,136 @@
+package com.walmart.productgenome.matching.models.loaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+
+public class ParallelCSVLoaderTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute title = new Attribute("title", Type.TEXT);
+  Attribute price = new Attribute("price", Type.FLOAT);
+
+  File file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("parallel", ".csv");
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  private void write(String content) throws IOException {
+    FileWriter writer = new FileWriter(file);
+    writer.write(content);
+    writer.close();
+  }
+
+  // records with quoted line breaks, commas and quotes, of varying lengths
+  private String csv(int numRecords) {
+    StringBuilder sb = new StringBuilder("id:INTEGER,title,price:FLOAT\n");
+    for (int i = 1; i <= numRecords; i++) {
+      sb.append(i).append(',');
+      if (i % 3 == 0) {
+        sb.append("\"title ").append(i).append("\nsecond, \"\"line\"\"\n\"");
+      }
+      else {
+        sb.append("title ").append(i);
+      }
+      sb.append(',').append(i % 5 == 0 ? "" : i + ".25").append(i % 7 == 0 ? "\r\n" : "\n");
+    }
+    return sb.toString();
+  }
+
+  private void assertSameTable(Table expected, Table actual) {
+    assertEquals(expected.getAttributes(), actual.getAttributes());
+    assertEquals(expected.getIdAttribute(), actual.getIdAttribute());
+    assertEquals(expected.getAllTuplesInOrder(), actual.getAllTuplesInOrder());
+  }
+
+  @Test
+  public void testLoadWithHeaderAsSchema() throws IOException {
+    write(csv(200));
+    Table expected = new StreamingCSVLoader().loadTableFromCSVWithHeaderAsSchema("proj",
+        "t", file.getAbsolutePath());
+    assertEquals(200, expected.getSize());
+    // chunks of a few records, and chunks smaller than a record
+    for (int chunkSize : new int[] {1, 7, 64, 1000, ParallelCSVLoader.DEFAULT_CHUNK_SIZE}) {
+      Table actual = new ParallelCSVLoader(chunkSize, null)
+          .loadTableFromCSVWithHeaderAsSchema("proj", "t", file.getAbsolutePath());
+      assertSameTable(expected, actual);
+    }
+  }
+
+  @Test
+  public void testLoadWithoutHeader() throws IOException {
+    write("1,\"a\nb\",1.5\n2,b,\n3,\"c,\"\"d\"\"\",2.0");
+    List<Attribute> attributes = Arrays.asList(id, title, price);
+    Table expected = new StreamingCSVLoader().loadTableFromCSV("proj", "t",
+        file.getAbsolutePath(), id, attributes);
+    Table actual = new ParallelCSVLoader(4, null).loadTableFromCSV("proj", "t",
+        file.getAbsolutePath(), id, attributes);
+    assertEquals(3, actual.getSize());
+    assertEquals("c,\"d\"", actual.getTuple(3).getAttributeValue(title));
+    assertSameTable(expected, actual);
+  }
+
+  @Test
+  public void testProgress() throws IOException {
+    write(csv(50));
+    final List<Long> counts = new ArrayList<Long>();
+    new ParallelCSVLoader(100, new StreamingCSVLoader.ProgressListener() {
+      public void progress(String tableName, long numTuples) {
+        counts.add(numTuples);
+      }
+    }).loadTableFromCSVWithHeaderAsSchema("proj", "t", file.getAbsolutePath());
+    assertEquals(Long.valueOf(50), counts.get(counts.size() - 1));
+    for (int i = 1; i < counts.size(); i++) {
+      assertTrue(counts.get(i) > counts.get(i - 1));
+    }
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    write("id:INTEGER,title\n");
+    Table table = new ParallelCSVLoader().loadTableFromCSVWithHeaderAsSchema("proj", "t",
+        file.getAbsolutePath());
+    assertEquals(Arrays.asList(id, title), table.getAttributes());
+    assertEquals(0, table.getSize());
+  }
+
+  @Test
+  public void testIncorrectNumberOfAttributes() throws IOException {
+    StringBuilder sb = new StringBuilder("id:INTEGER,title\n");
+    for (int i = 1; i <= 30; i++) {
+      sb.append(i).append(",t").append(i).append(i == 23 ? ",x\n" : "\n");
+    }
+    write(sb.toString());
+    try {
+      new ParallelCSVLoader(16, null).loadTableFromCSVWithHeaderAsSchema("proj", "t",
+          file.getAbsolutePath());
+      fail();
+    }
+    catch (IOException e) {
+      assertEquals("Tuple 23 has incorrect number of attributes: 3.\n"
+          + "Expected number of attributes: 2", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package com.walmart.productgenome.matching.models.loaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.models.savers.TableSaver;
+
+public class StreamingCSVLoaderTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute title = new Attribute("title", Type.TEXT);
+  Attribute price = new Attribute("price", Type.FLOAT);
+
+  File file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("streaming", ".csv");
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  private void write(String content) throws IOException {
+    FileWriter writer = new FileWriter(file);
+    writer.write(content);
+    writer.close();
+  }
+
+  private String csv(int numRecords) {
+    StringBuilder sb = new StringBuilder("id:INTEGER,title,price:FLOAT\n");
+    for (int i = 1; i <= numRecords; i++) {
+      sb.append(i).append(",\"title ").append(i).append("\nline 2, \"\"quoted\"\"\",")
+          .append(i).append(".5\n");
+    }
+    return sb.toString();
+  }
+
+  private static class Progress implements StreamingCSVLoader.ProgressListener {
+    List<Long> counts = new ArrayList<Long>();
+
+    public void progress(String tableName, long numTuples) {
+      counts.add(numTuples);
+    }
+  }
+
+  @Test
+  public void testLoadWithHeaderAsSchema() throws IOException {
+    write(csv(5));
+    Table table = new StreamingCSVLoader().loadTableFromCSVWithHeaderAsSchema("proj",
+        "t", file.getAbsolutePath());
+    assertEquals(Arrays.asList(id, title, price), table.getAttributes());
+    assertEquals(id, table.getIdAttribute());
+    assertEquals(Table.Storage.COLUMNS, table.getStorage());
+    assertEquals(5, table.getSize());
+    Tuple tuple = table.getTuple(3);
+    assertEquals("title 3\nline 2, \"quoted\"", tuple.getAttributeValue(title));
+    assertEquals(3.5f, tuple.getAttributeValue(price));
+    assertEquals(Arrays.<Object>asList(1, 2, 3, 4, 5), ids(table));
+  }
+
+  private List<Object> ids(Table table) {
+    List<Object> ids = new ArrayList<Object>();
+    for (Tuple tuple : table.getAllTuplesInOrder()) {
+      ids.add(tuple.getAttributeValue(id));
+    }
+    return ids;
+  }
+
+  @Test
+  public void testRowLimitAndProgress() throws IOException {
+    write(csv(10));
+    Progress progress = new Progress();
+    Table table = new StreamingCSVLoader(7, progress, 3)
+        .loadTableFromCSVWithHeaderAsSchema("proj", "t", file.getAbsolutePath());
+    assertEquals(Arrays.<Object>asList(1, 2, 3, 4, 5, 6, 7), ids(table));
+    assertEquals(Arrays.asList(3L, 6L, 7L), progress.counts);
+
+    progress = new Progress();
+    new StreamingCSVLoader(StreamingCSVLoader.NO_LIMIT, progress, 5)
+        .loadTableFromCSVWithHeaderAsSchema("proj", "t", file.getAbsolutePath());
+    assertEquals(Arrays.asList(5L, 10L), progress.counts);
+
+    progress = new Progress();
+    table = new StreamingCSVLoader(0, progress, 5)
+        .loadTableFromCSVWithHeaderAsSchema("proj", "t", file.getAbsolutePath());
+    assertEquals(0, table.getSize());
+    assertEquals(Arrays.asList(0L), progress.counts);
+  }
+
+  @Test
+  public void testLoadWithoutHeader() throws IOException {
+    write("1,a,\n2,b,2.0\n");
+    Table table = new StreamingCSVLoader().loadTableFromCSV("proj", "t",
+        file.getAbsolutePath(), id, Arrays.asList(id, title, price));
+    assertEquals(2, table.getSize());
+    assertNull(table.getTuple(1).getAttributeValue(price));
+    assertEquals("b", table.getTuple(2).getAttributeValue(title));
+  }
+
+  @Test
+  public void testIncorrectNumberOfAttributes() throws IOException {
+    write("id:INTEGER,title\n1,a\n2,b,c\n");
+    try {
+      new StreamingCSVLoader().loadTableFromCSVWithHeaderAsSchema("proj", "t",
+          file.getAbsolutePath());
+      fail();
+    }
+    catch (IOException e) {
+      assertEquals("Tuple 2 has incorrect number of attributes: 3.\n"
+          + "Expected number of attributes: 2", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testLoadTableFile() throws IOException {
+    write(csv(4));
+    Table expected = new StreamingCSVLoader().loadTableFromCSVWithHeaderAsSchema("proj",
+        "t", file.getAbsolutePath());
+    TableSaver.saveTable(expected, file.getAbsolutePath());
+
+    Table actual = TableLoader.loadTable(file.getAbsolutePath());
+    assertEquals("t", actual.getName());
+    assertEquals(expected.getAttributes(), actual.getAttributes());
+    assertEquals(expected.getAllTuplesInOrder(), actual.getAllTuplesInOrder());
+
+    Progress progress = new Progress();
+    actual = new StreamingCSVLoader(2, progress, 10).loadTable(file.getAbsolutePath());
+    assertEquals(Arrays.<Object>asList(1, 2), ids(actual));
+    assertEquals(Arrays.asList(2L), progress.counts);
+  }
+}
@@ -0,0 +1,147 @@
+package com.walmart.productgenome.matching.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+import com.walmart.productgenome.matching.service.SamplingService.Allocation;
+
+public class SamplingServiceTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute brand = new Attribute("brand", Type.TEXT);
+  Attribute score = new Attribute("score", Type.FLOAT);
+
+  Table table;
+
+  // 100 tuples: 70 of brand a, 20 of b, 10 of c; score i / 100, weight 0 for odd ids
+  @Before
+  public void init() {
+    table = new Table("t", id, Arrays.asList(id, brand, score), "dummyProj");
+    for (int i = 0; i < 100; i++) {
+      Tuple tuple = new Tuple();
+      tuple.setAttributeValue(id, i);
+      tuple.setAttributeValue(brand, i < 70 ? "a" : (i < 90 ? "b" : "c"));
+      tuple.setAttributeValue(score, i % 2 == 0 ? i / 100f : 0f);
+      table.addTuple(tuple);
+    }
+  }
+
+  private Map<Object, Integer> countBrands(Table sample) {
+    Map<Object, Integer> counts = new HashMap<Object, Integer>();
+    for (Tuple tuple : sample.getAllTuples()) {
+      Object value = tuple.getAttributeValue(brand);
+      counts.put(value, counts.containsKey(value) ? counts.get(value) + 1 : 1);
+    }
+    return counts;
+  }
+
+  private void assertInTableOrder(Table sample) {
+    List<Object> ids = sample.getAllIdsInOrder();
+    assertEquals(ids.size(), new HashSet<Object>(ids).size());
+    List<Object> sorted = new ArrayList<Object>(table.getAllIdsInOrder());
+    sorted.retainAll(ids);
+    assertEquals(sorted, ids);
+  }
+
+  @Test
+  public void testSample() {
+    Random random = new Random(1);
+    int[] counts = new int[100];
+    for (int trial = 0; trial < 2000; trial++) {
+      Table sample = SamplingService.sample(table, "sample", 10, random);
+      assertEquals(10, sample.getSize());
+      assertInTableOrder(sample);
+      for (Object sampled : sample.getAllIdsInOrder()) {
+        counts[(Integer) sampled]++;
+      }
+    }
+    // every tuple is drawn 200 times on average
+    for (int count : counts) {
+      assertTrue(String.valueOf(count), count > 130 && count < 270);
+    }
+    assertEquals(100, table.getSize());
+    assertEquals(100, SamplingService.sample(table, "all", 500, random).getSize());
+    assertEquals(0, SamplingService.sample(table, "none", 0, random).getSize());
+  }
+
+  @Test
+  public void testSampleWeighted() {
+    Random random = new Random(2);
+    int low = 0;
+    int high = 0;
+    for (int trial = 0; trial < 200; trial++) {
+      Table sample = SamplingService.sampleWeighted(table, "sample", 10, score, random);
+      assertEquals(10, sample.getSize());
+      assertInTableOrder(sample);
+      for (Object sampled : sample.getAllIdsInOrder()) {
+        int i = (Integer) sampled;
+        assertTrue(i % 2 == 0 && i > 0);
+        if (i < 50) {
+          low++;
+        }
+        else {
+          high++;
+        }
+      }
+    }
+    assertTrue(low + " " + high, high > 2 * low);
+    assertEquals(49, SamplingService.sampleWeighted(table, "all", 100, score, random).getSize());
+  }
+
+  @Test
+  public void testSampleStratified() {
+    Random random = new Random(3);
+    Table proportional = SamplingService.sampleStratified(table, "sample", 20, brand,
+        Allocation.PROPORTIONAL, random);
+    assertInTableOrder(proportional);
+    Map<Object, Integer> counts = countBrands(proportional);
+    assertEquals(14, (int) counts.get("a"));
+    assertEquals(4, (int) counts.get("b"));
+    assertEquals(2, (int) counts.get("c"));
+
+    Table equal = SamplingService.sampleStratified(table, "sample", 45, brand,
+        Allocation.EQUAL, random);
+    assertInTableOrder(equal);
+    counts = countBrands(equal);
+    assertEquals(10, (int) counts.get("c"));
+    assertEquals(17, (int) counts.get("b"));
+    assertEquals(18, (int) counts.get("a"));
+  }
+
+  @Test
+  public void testSampleByBuckets() {
+    // the odd ids, with a score of 0, and the even ids below 20 fall in the
+    // first of the buckets of width 0.196, the other even ids in the other 4
+    Table sample = SamplingService.sampleByBuckets(table, "sample", 20, score, 5,
+        Allocation.EQUAL, new Random(4));
+    assertEquals(20, sample.getSize());
+    int[] buckets = new int[5];
+    for (Tuple tuple : sample.getAllTuples()) {
+      buckets[Math.min(4, (int) ((Float) tuple.getAttributeValue(score) / 0.196f))]++;
+    }
+    assertEquals(Arrays.toString(buckets), "[4, 4, 4, 4, 4]");
+  }
+
+  @Test
+  public void testGetRandomSample() {
+    List<Object> sample = table.getRandomSample(10L);
+    assertEquals(10, sample.size());
+    assertEquals(10, table.getSize());
+    assertEquals(sample, table.getAllIdsInOrder());
+  }
+}
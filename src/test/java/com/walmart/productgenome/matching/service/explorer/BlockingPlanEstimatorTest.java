@@ -0,0 +1,113 @@
+package com.walmart.productgenome.matching.service.explorer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+public class BlockingPlanEstimatorTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute brand = new Attribute("brand", Type.TEXT);
+  Attribute color = new Attribute("color", Type.TEXT);
+
+  Table table1;
+  Table table2;
+  Table gold;
+
+  @Before
+  public void init() {
+    List<Attribute> attrs = new ArrayList<Attribute>();
+    attrs.add(id);
+    attrs.add(brand);
+    attrs.add(color);
+
+    String[] brands = {"apple", "samsung", "sony", "lg", "hp"};
+    String[] colors = {"black", "white", "red", "blue", "green"};
+    table1 = new Table("walmart", id, attrs, "dummyProj");
+    table2 = new Table("vendor", id, attrs, "dummyProj");
+    for (int i = 0; i < 100; i++) {
+      table1.addTuple(tuple(i, brands[i % 5], colors[i % 5]));
+      table2.addTuple(tuple(i, brands[i % 5], colors[(i / 5) % 5]));
+    }
+
+    Attribute pairId = new Attribute("pairId", Type.INTEGER);
+    Attribute id1 = new Attribute("walmart.id", Type.INTEGER);
+    Attribute id2 = new Attribute("vendor.id", Type.INTEGER);
+    Attribute label = new Attribute("label", Type.INTEGER);
+    List<Attribute> goldAttrs = new ArrayList<Attribute>();
+    goldAttrs.add(pairId);
+    goldAttrs.add(id1);
+    goldAttrs.add(id2);
+    goldAttrs.add(label);
+    gold = new Table("gold", pairId, goldAttrs, "dummyProj");
+    // tuple i of both tables match, for the first 20 tuples
+    for (int i = 0; i < 20; i++) {
+      Tuple tuple = new Tuple();
+      tuple.setAttributeValue(pairId, i + 1);
+      tuple.setAttributeValue(id1, i);
+      tuple.setAttributeValue(id2, i);
+      tuple.setAttributeValue(label, 1);
+      gold.addTuple(tuple);
+    }
+  }
+
+  private Tuple tuple(int idValue, String brandValue, String colorValue) {
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(id, idValue);
+    tuple.setAttributeValue(brand, brandValue);
+    tuple.setAttributeValue(color, colorValue);
+    return tuple;
+  }
+
+  @Test
+  public void testExactEstimateOnFullSample() {
+    BlockingPlanEstimator estimator = new BlockingPlanEstimator(table1, table2,
+        gold, 1000, 0, null, null);
+
+    // 5 brands with 20 tuples on each side
+    BlockingPlan plan = estimator.estimate(new String[] {"brand"},
+        new String[] {"brand"});
+    assertEquals(5 * 20 * 20, plan.getPredictedPairs());
+    assertEquals(1.0, plan.getPairCompleteness(), 0.0);
+
+    // table2 colors follow i / 5, so only 1 in 5 gold matches agree on color
+    plan = estimator.estimate(new String[] {"brand", "color"},
+        new String[] {"brand", "color"});
+    assertEquals(5 * 20 * 4, plan.getPredictedPairs());
+    assertEquals(0.2, plan.getPairCompleteness(), 1e-9);
+  }
+
+  @Test
+  public void testSampledEstimate() {
+    BlockingPlanEstimator estimator = new BlockingPlanEstimator(table1, table2,
+        null, 50, 0, null, null);
+    BlockingPlan plan = estimator.estimate(new String[] {"brand"},
+        new String[] {"brand"});
+    assertEquals(2000, plan.getPredictedPairs(), 600);
+    assertFalse(plan.hasPairCompleteness());
+  }
+
+  @Test
+  public void testRankPlans() {
+    BlockingPlanEstimator estimator = new BlockingPlanEstimator(table1, table2,
+        gold, 1000, 0, null, null);
+    List<BlockingPlan> plans = estimator.rankPlans(2, 1000);
+    assertEquals(3, plans.size());
+    // brand+color is the only plan within budget, the others follow
+    assertArrayEquals(new String[] {"brand", "color"},
+        plans.get(0).getTable1AttributeNames());
+    assertEquals(2000, plans.get(1).getPredictedPairs());
+    assertEquals(2000, plans.get(2).getPredictedPairs());
+  }
+}
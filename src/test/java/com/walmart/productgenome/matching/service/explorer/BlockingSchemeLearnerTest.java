@@ -0,0 +1,104 @@
+package com.walmart.productgenome.matching.service.explorer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.walmart.productgenome.matching.daos.KeyFunction;
+import com.walmart.productgenome.matching.daos.KeyFunctions;
+import com.walmart.productgenome.matching.models.data.Attribute;
+import com.walmart.productgenome.matching.models.data.Attribute.Type;
+import com.walmart.productgenome.matching.models.data.Table;
+import com.walmart.productgenome.matching.models.data.Tuple;
+
+public class BlockingSchemeLearnerTest {
+
+  Attribute id = new Attribute("id", Type.INTEGER);
+  Attribute brand = new Attribute("brand", Type.TEXT);
+  Attribute color = new Attribute("color", Type.TEXT);
+  Attribute title = new Attribute("title", Type.TEXT);
+
+  BlockingPlanEstimator estimator;
+
+  @Before
+  public void init() {
+    List<Attribute> attrs = new ArrayList<Attribute>();
+    attrs.add(id);
+    attrs.add(brand);
+    attrs.add(color);
+    attrs.add(title);
+
+    String[] brands = {"apple", "samsung", "sony", "lg", "hp"};
+    String[] colors = {"black", "white", "red", "blue", "green"};
+    Table table1 = new Table("walmart", id, attrs, "dummyProj");
+    Table table2 = new Table("vendor", id, attrs, "dummyProj");
+    for (int i = 0; i < 100; i++) {
+      // the titles only agree on their model number
+      table1.addTuple(tuple(i, brands[i % 5], colors[i % 5], "model" + i + " by " + brands[i % 5]));
+      table2.addTuple(tuple(i, brands[i % 5], colors[(i / 5) % 5], "model" + i + " new"));
+    }
+
+    Attribute pairId = new Attribute("pairId", Type.INTEGER);
+    Attribute id1 = new Attribute("walmart.id", Type.INTEGER);
+    Attribute id2 = new Attribute("vendor.id", Type.INTEGER);
+    Attribute label = new Attribute("label", Type.INTEGER);
+    List<Attribute> goldAttrs = new ArrayList<Attribute>();
+    goldAttrs.add(pairId);
+    goldAttrs.add(id1);
+    goldAttrs.add(id2);
+    goldAttrs.add(label);
+    Table gold = new Table("gold", pairId, goldAttrs, "dummyProj");
+    for (int i = 0; i < 20; i++) {
+      Tuple tuple = new Tuple();
+      tuple.setAttributeValue(pairId, i + 1);
+      tuple.setAttributeValue(id1, i);
+      tuple.setAttributeValue(id2, i);
+      tuple.setAttributeValue(label, 1);
+      gold.addTuple(tuple);
+    }
+    estimator = new BlockingPlanEstimator(table1, table2, gold, 1000, 0, null, null);
+  }
+
+  private Tuple tuple(int idValue, String brandValue, String colorValue, String titleValue) {
+    Tuple tuple = new Tuple();
+    tuple.setAttributeValue(id, idValue);
+    tuple.setAttributeValue(brand, brandValue);
+    tuple.setAttributeValue(color, colorValue);
+    tuple.setAttributeValue(title, titleValue);
+    return tuple;
+  }
+
+  @Test
+  public void testLearnsKeyFunction() {
+    BlockingScheme scheme = new BlockingSchemeLearner(estimator).learn(500);
+    assertEquals(1, scheme.getPlans().size());
+    BlockingPlan plan = scheme.getPlans().get(0);
+    assertArrayEquals(new String[] {"title"}, plan.getTable1AttributeNames());
+    assertEquals("first1tokens", plan.getKeyFunctions()[0].getName());
+    assertEquals(100, scheme.getPredictedPairs());
+    assertEquals(1.0, scheme.getRecall(), 0.0);
+    assertEquals(1, scheme.getBlockers().size());
+  }
+
+  @Test
+  public void testBudgetForcesConjunction() {
+    List<KeyFunction> exact = Collections.singletonList(KeyFunctions.exact());
+    BlockingScheme scheme = new BlockingSchemeLearner(estimator, exact, 2).learn(500);
+    // brand alone keeps all the matches but predicts 2000 pairs
+    assertEquals(1, scheme.getPlans().size());
+    assertArrayEquals(new String[] {"brand", "color"},
+        scheme.getPlans().get(0).getTable1AttributeNames());
+    assertEquals(400, scheme.getPredictedPairs());
+    assertEquals(0.2, scheme.getRecall(), 1e-9);
+
+    scheme = new BlockingSchemeLearner(estimator, exact, 1).learn(500);
+    assertEquals(0, scheme.getPlans().size());
+    assertEquals(0.0, scheme.getRecall(), 0.0);
+  }
+}
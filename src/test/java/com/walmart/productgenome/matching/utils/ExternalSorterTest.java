@@ -0,0 +1,82 @@
+package com.walmart.productgenome.matching.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ExternalSorterTest {
+
+  private static final Comparator<Integer> COMPARATOR = new Comparator<Integer>() {
+    public int compare(Integer i1, Integer i2) {
+      return i1.compareTo(i2);
+    }
+  };
+
+  private static final ExternalSorter.Codec<Integer> CODEC = new ExternalSorter.Codec<Integer>() {
+    public void write(DataOutput out, Integer record) throws IOException {
+      out.writeInt(record);
+    }
+
+    public Integer read(DataInput in) throws IOException {
+      return in.readInt();
+    }
+  };
+
+  private List<Integer> sort(List<Integer> values, int maxRecordsInMemory,
+      int expectedRuns) throws IOException {
+    ExternalSorter<Integer> sorter = new ExternalSorter<Integer>(COMPARATOR, CODEC,
+        maxRecordsInMemory);
+    try {
+      for (Integer value : values) {
+        sorter.add(value);
+      }
+      assertEquals(expectedRuns, sorter.getNumRuns());
+      List<Integer> sorted = new ArrayList<Integer>();
+      Iterator<Integer> it = sorter.sortedIterator();
+      while (it.hasNext()) {
+        sorted.add(it.next());
+      }
+      assertFalse(it.hasNext());
+      return sorted;
+    }
+    finally {
+      sorter.close();
+    }
+  }
+
+  private List<Integer> randomValues(int n) {
+    Random random = new Random(0);
+    List<Integer> values = new ArrayList<Integer>();
+    for (int i = 0; i < n; i++) {
+      values.add(random.nextInt(100));
+    }
+    return values;
+  }
+
+  @Test
+  public void testInMemorySort() throws IOException {
+    List<Integer> values = randomValues(50);
+    List<Integer> expected = new ArrayList<Integer>(values);
+    Collections.sort(expected);
+    assertEquals(expected, sort(values, 100, 0));
+  }
+
+  @Test
+  public void testSpilledSort() throws IOException {
+    List<Integer> values = randomValues(1005);
+    List<Integer> expected = new ArrayList<Integer>(values);
+    Collections.sort(expected);
+    assertEquals(expected, sort(values, 100, 10));
+  }
+}
@@ -0,0 +1,43 @@
+package com.walmart.productgenome.matching.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class LongHashSetTest {
+
+  @Test
+  public void testAddAndContains() {
+    LongHashSet set = new LongHashSet();
+    assertTrue(set.add(0));
+    assertFalse(set.add(0));
+    assertTrue(set.add(-1));
+    assertTrue(set.add(3L << 32 | 7));
+    assertFalse(set.add(3L << 32 | 7));
+    assertTrue(set.contains(0));
+    assertTrue(set.contains(3L << 32 | 7));
+    assertFalse(set.contains(7L << 32 | 3));
+    assertEquals(3, set.size());
+  }
+
+  @Test
+  public void testAgainstHashSet() {
+    Random random = new Random(0);
+    LongHashSet set = new LongHashSet();
+    Set<Long> expected = new HashSet<Long>();
+    for (int i = 0; i < 100000; i++) {
+      long value = (long) random.nextInt(1000) << 32 | random.nextInt(1000);
+      assertEquals(expected.add(value), set.add(value));
+    }
+    assertEquals(expected.size(), set.size());
+    for (long value : expected) {
+      assertTrue(set.contains(value));
+    }
+  }
+}